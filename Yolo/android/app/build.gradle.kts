@@ -6,12 +6,51 @@
  * LICENSE file in the root directory of this source tree.
  */
 
+import java.security.MessageDigest
+
 plugins {
     alias(libs.plugins.android.application)
     alias(libs.plugins.kotlin.android)
     alias(libs.plugins.kotlin.compose)
 }
 
+/**
+ * Writes asset_manifest.json with the size and SHA-256 of every file in src/main/assets, so the
+ * app extracts a model again exactly when it changed and can verify the copy.
+ */
+abstract class AssetManifestTask : DefaultTask() {
+    @get:InputFiles
+    @get:PathSensitive(PathSensitivity.RELATIVE)
+    abstract val assetDirectory: ConfigurableFileCollection
+
+    @get:OutputDirectory
+    abstract val outputDirectory: DirectoryProperty
+
+    @TaskAction
+    fun generate() {
+        val entries = sortedMapOf<String, String>()
+        assetDirectory.asFileTree.visit {
+            if (!isDirectory) {
+                val digest = MessageDigest.getInstance("SHA-256")
+                file.inputStream().use { input ->
+                    val buffer = ByteArray(1 shl 20)
+                    while (true) {
+                        val read = input.read(buffer)
+                        if (read < 0) break
+                        digest.update(buffer, 0, read)
+                    }
+                }
+                val hash = digest.digest().joinToString("") { "%02x".format(it) }
+                entries[relativePath.pathString] = "{\"size\": ${file.length()}, \"sha256\": \"$hash\"}"
+            }
+        }
+        val json = entries.entries.joinToString(",\n", "{\"version\": 1, \"assets\": {\n", "\n}}\n") {
+            "  \"${it.key}\": ${it.value}"
+        }
+        outputDirectory.file("asset_manifest.json").get().asFile.writeText(json)
+    }
+}
+
 val qnnVersion: String? = project.findProperty("qnnVersion") as? String
 val useLocalAar: Boolean? = (project.findProperty("useLocalAar") as? String)?.toBoolean()
 
@@ -48,6 +87,29 @@ android {
         compose = true
     }
     packaging { resources { excludes += "/META-INF/{AL2.0,LGPL2.1}" } }
+    testOptions {
+        // Forward -Preplay.* to the replay harness and -Pbenchmarks=true, with the benchmarks'
+        // own -Pyolo.* and -Pgovernor.* inputs, to the otherwise skipped benchmarks
+        unitTests.all { test ->
+            project.properties
+                .filterKeys {
+                    it == "benchmarks" || it.startsWith("replay.") || it.startsWith("yolo.")
+                        || it.startsWith("governor.")
+                }
+                .forEach { (key, value) -> test.systemProperty(key, value.toString()) }
+        }
+    }
+}
+
+androidComponents {
+    onVariants { variant ->
+        val manifest = tasks.register<AssetManifestTask>(
+            "generate${variant.name.replaceFirstChar { it.uppercase() }}AssetManifest"
+        ) {
+            assetDirectory.from(layout.projectDirectory.dir("src/main/assets"))
+        }
+        variant.sources.assets?.addGeneratedSourceDirectory(manifest, AssetManifestTask::outputDirectory)
+    }
 }
 
 dependencies {
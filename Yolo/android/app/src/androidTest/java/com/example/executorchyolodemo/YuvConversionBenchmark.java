@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * On-device comparison of the camera frame to YOLO input conversion paths.
+ *
+ * The legacy path packs the planes into NV21, round-trips through JPEG, scales the decoded
+ * Bitmap and unpacks it pixel by pixel. The direct path samples the planes once with
+ * {@link YuvFrame}. Results are written to logcat under the "YuvConversionBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class YuvConversionBenchmark {
+    private static final String TAG = "YuvConversionBenchmark";
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int INPUT_SIZE = 640;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 30;
+
+    private final ByteBuffer yPlane = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+    private final ByteBuffer vuPlane = ByteBuffer.allocateDirect(WIDTH * HEIGHT / 2);
+
+    public YuvConversionBenchmark() {
+        for (int i = 0; i < yPlane.capacity(); i++) {
+            yPlane.put(i, (byte) ((i % WIDTH) ^ (i / WIDTH)));
+        }
+        for (int i = 0; i < vuPlane.capacity(); i++) {
+            vuPlane.put(i, (byte) (96 + (i % 64)));
+        }
+    }
+
+    @Test
+    public void compareConversionPaths() {
+        float[] tensor = new float[3 * INPUT_SIZE * INPUT_SIZE];
+        YuvFrame frame = new YuvFrame();
+
+        ByteBuffer vPlane = vuPlane.duplicate();
+        ByteBuffer uPlane = ((ByteBuffer) vuPlane.duplicate().position(1)).slice();
+
+        for (int i = 0; i < WARMUP; i++) {
+            legacyConversion(tensor);
+            frame.set(yPlane, uPlane, vPlane, WIDTH, WIDTH, 2, WIDTH, HEIGHT, 90);
+            frame.fillTensor(0, 0, frame.getWidth(), frame.getHeight(),
+                    INPUT_SIZE, INPUT_SIZE, FrameSource.Normalization.UNIT, tensor, 0);
+        }
+
+        long legacyStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            legacyConversion(tensor);
+        }
+        long legacyNanos = (System.nanoTime() - legacyStart) / ITERATIONS;
+
+        long directStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            frame.set(yPlane, uPlane, vPlane, WIDTH, WIDTH, 2, WIDTH, HEIGHT, 90);
+            frame.fillTensor(0, 0, frame.getWidth(), frame.getHeight(),
+                    INPUT_SIZE, INPUT_SIZE, FrameSource.Normalization.UNIT, tensor, 0);
+        }
+        long directNanos = (System.nanoTime() - directStart) / ITERATIONS;
+
+        Log.i(TAG, String.format("legacy NV21->JPEG->Bitmap: %.2f ms/frame", legacyNanos / 1e6));
+        Log.i(TAG, String.format("direct YUV->tensor:       %.2f ms/frame", directNanos / 1e6));
+        Log.i(TAG, String.format("speedup: %.1fx", (double) legacyNanos / directNanos));
+        assertEquals(HEIGHT, frame.getWidth());
+    }
+
+    /** The conversion BirdDetectionActivity and BirdDetectionPipeline used before YuvFrame. */
+    private void legacyConversion(float[] floatArray) {
+        byte[] nv21 = new byte[yPlane.capacity() + vuPlane.capacity()];
+        ((ByteBuffer) yPlane.duplicate().rewind()).get(nv21, 0, yPlane.capacity());
+        ((ByteBuffer) vuPlane.duplicate().rewind()).get(nv21, yPlane.capacity(), vuPlane.capacity());
+
+        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, WIDTH, HEIGHT, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        yuvImage.compressToJpeg(new Rect(0, 0, WIDTH, HEIGHT), 80, out);
+        byte[] imageBytes = out.toByteArray();
+        Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+
+        Bitmap resized = Bitmap.createScaledBitmap(bitmap, INPUT_SIZE, INPUT_SIZE, false);
+        int[] pixels = new int[INPUT_SIZE * INPUT_SIZE];
+        resized.getPixels(pixels, 0, INPUT_SIZE, 0, 0, INPUT_SIZE, INPUT_SIZE);
+        int planeSize = INPUT_SIZE * INPUT_SIZE;
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            floatArray[i] = ((pixel >> 16) & 0xff) / 255.0f;
+            floatArray[planeSize + i] = ((pixel >> 8) & 0xff) / 255.0f;
+            floatArray[2 * planeSize + i] = (pixel & 0xff) / 255.0f;
+        }
+        resized.recycle();
+        bitmap.recycle();
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Copies assets to files so native code can open them by path.
+ *
+ * An asset is copied again only when it changed: the expected size and SHA-256 come from
+ * {@value #MANIFEST_ASSET} (generated at build time), or for assets not in the manifest from the
+ * app version. Each extracted file has a stamp recording what it was extracted from, so a file
+ * left by an older APK or cut short by a crash is never reused. Copies go to a temp file that
+ * is verified, synced and renamed over the target, so the target is always complete.
+ */
+public final class AssetExtractor {
+    static final String MANIFEST_ASSET = "asset_manifest.json";
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final String STAMP_SUFFIX = ".stamp";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** Opens an asset by name. */
+    public interface AssetSource {
+        InputStream open(String name) throws IOException;
+    }
+
+    /** Expected size and hash of an asset. */
+    static final class Entry {
+        final long size;
+        final String sha256;
+
+        Entry(long size, String sha256) {
+            this.size = size;
+            this.sha256 = sha256;
+        }
+    }
+
+    /** Where an asset ended up and what it cost to get it there. */
+    public static final class Result {
+        public final File file;
+        public final boolean extracted;
+        public final long bytes;
+        public final long millis;
+
+        Result(File file, boolean extracted, long bytes, long millis) {
+            this.file = file;
+            this.extracted = extracted;
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+    }
+
+    private static AssetExtractor instance;
+
+    private final AssetSource source;
+    private final File directory;
+    private final String appVersion;
+    private Map<String, Entry> manifest;
+
+    /** Extractor for the app's assets into its files directory. */
+    public static synchronized AssetExtractor getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new AssetExtractor(appContext.getAssets()::open, appContext.getFilesDir(),
+                    appVersion(appContext));
+        }
+        return instance;
+    }
+
+    /**
+     * @param appVersion identifies the installed build; assets without a manifest entry are
+     *                   extracted again when it changes
+     */
+    public AssetExtractor(AssetSource source, File directory, String appVersion) {
+        this.source = source;
+        this.directory = directory;
+        this.appVersion = appVersion;
+    }
+
+    /**
+     * Returns the file for {@code name}, extracting it first if it is missing or out of date.
+     *
+     * @throws IOException if the asset cannot be read, or does not match its manifest entry
+     */
+    public Result extract(String name) throws IOException {
+        File target = new File(directory, name);
+        File stamp = new File(directory, name + STAMP_SUFFIX);
+        Entry entry = getManifest().get(name);
+        String version = entry != null ? "sha256:" + entry.sha256 : "app:" + appVersion;
+
+        String[] recorded = readStamp(stamp);
+        if (recorded != null && recorded[0].equals(version) && target.isFile()
+                && target.length() == Long.parseLong(recorded[1])) {
+            return new Result(target, false, target.length(), 0);
+        }
+
+        long start = System.nanoTime();
+        File parent = target.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        // The stamp goes first: if the copy is interrupted the next launch starts over
+        if (stamp.exists() && !stamp.delete()) {
+            throw new IOException("Cannot delete " + stamp);
+        }
+        File temp = new File(directory, name + TEMP_SUFFIX);
+        long bytes;
+        try {
+            bytes = copy(name, temp, entry);
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            if (temp.exists()) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+        writeStamp(stamp, version, bytes);
+
+        return new Result(target, true, bytes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Copies the asset into {@code temp}, verifying it against {@code entry} if there is one. */
+    private long copy(String name, File temp, Entry entry) throws IOException {
+        MessageDigest digest = sha256();
+        long bytes = 0;
+        try (InputStream in = source.open(name); FileOutputStream out = new FileOutputStream(temp)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                bytes += read;
+            }
+            out.getFD().sync();
+        }
+        if (entry != null) {
+            String hash = toHex(digest.digest());
+            if (bytes != entry.size || !hash.equalsIgnoreCase(entry.sha256)) {
+                throw new IOException(String.format("Asset %s does not match the manifest: %d bytes, sha256 %s;"
+                        + " expected %d bytes, sha256 %s", name, bytes, hash, entry.size, entry.sha256));
+            }
+        }
+        return bytes;
+    }
+
+    private synchronized Map<String, Entry> getManifest() throws IOException {
+        if (manifest == null) {
+            InputStream in;
+            try {
+                in = source.open(MANIFEST_ASSET);
+            } catch (FileNotFoundException e) {
+                manifest = new HashMap<>();
+                return manifest;
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                manifest = parseManifest(reader);
+            }
+        }
+        return manifest;
+    }
+
+    /** Parses {@code {"assets": {"name": {"size": 123, "sha256": "..."}}}}. */
+    static Map<String, Entry> parseManifest(Reader reader) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        try {
+            JsonObject root = new Gson().fromJson(reader, JsonObject.class);
+            JsonObject assets = root == null ? null : root.getAsJsonObject("assets");
+            if (assets != null) {
+                for (Map.Entry<String, JsonElement> asset : assets.entrySet()) {
+                    JsonObject value = asset.getValue().getAsJsonObject();
+                    entries.put(asset.getKey(),
+                            new Entry(value.get("size").getAsLong(), value.get("sha256").getAsString()));
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed " + MANIFEST_ASSET, e);
+        }
+        return entries;
+    }
+
+    private static String[] readStamp(File stamp) {
+        if (!stamp.isFile()) {
+            return null;
+        }
+        try {
+            String[] lines = new String(Files.readAllBytes(stamp.toPath()), StandardCharsets.UTF_8).split("\n");
+            if (lines.length < 2) {
+                return null;
+            }
+            Long.parseLong(lines[1]);
+            return lines;
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void writeStamp(File stamp, String version, long bytes) throws IOException {
+        File temp = new File(stamp.getPath() + TEMP_SUFFIX);
+        Files.write(temp.toPath(), (version + "\n" + bytes + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), stamp.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String appVersion(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            // lastUpdateTime also changes when a debug build is reinstalled with the same version
+            return info.getLongVersionCode() + "@" + info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return "unknown";
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
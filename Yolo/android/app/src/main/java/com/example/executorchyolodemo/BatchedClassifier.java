@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Runs the species classifier once per frame over all crops packed into an N x 3 x H x W batch.
+ *
+ * Classifiers exported with a static batch dimension of 1 reject larger batches, or ignore the
+ * batch dimension and return a single row. A batched output must hold exactly one row per crop
+ * of the class count seen in a single-crop output. When it does not, or when a batched call
+ * fails but the same crops classify one at a time, the classifier falls back to one forward
+ * call per crop and stays in that mode, reporting why to the {@link FallbackListener}. A call
+ * that fails either way is treated as transient and leaves batching enabled.
+ *
+ * Has no Android dependencies; the model call is supplied through {@link Forward}.
+ */
+public final class BatchedClassifier {
+
+    /**
+     * Runs the model on an input buffer of the given shape and returns the flat scores,
+     * positioned at zero. The scores are only read until the next call.
+     */
+    public interface Forward {
+        FloatBuffer run(FloatBuffer input, long[] shape) throws Exception;
+    }
+
+    /** Told once, when batching is turned off because the model does not support it. */
+    public interface FallbackListener {
+        void onBatchingDisabled(String reason);
+    }
+
+    private final TensorBufferPool pool;
+    private final int inputSize;
+    private final int cropSize;
+    private final long[][] batchShapes;
+
+    private boolean batchingEnabled = true;
+    // Scores per crop, from the first single-crop output; 0 until then
+    private int numClasses;
+    private FallbackListener fallbackListener;
+    private long batchedCalls;
+    private long singleCalls;
+
+    /**
+     * @param maxBatch largest number of crops classified together; one input shape is
+     *                 allocated per batch size up to this value
+     */
+    public BatchedClassifier(TensorBufferPool pool, int inputSize, int maxBatch) {
+        this.pool = pool;
+        this.inputSize = inputSize;
+        this.cropSize = 3 * inputSize * inputSize;
+        this.batchShapes = new long[maxBatch + 1][];
+        for (int n = 1; n <= maxBatch; n++) {
+            batchShapes[n] = new long[]{n, 3, inputSize, inputSize};
+        }
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    /** Number of floats one crop occupies in the batch array. */
+    public int getCropSize() {
+        return cropSize;
+    }
+
+    public int getMaxBatch() {
+        return batchShapes.length - 1;
+    }
+
+    /** Forces per-crop classification, e.g. for a classifier known to be exported with batch 1. */
+    public void setBatchingEnabled(boolean enabled) {
+        batchingEnabled = enabled;
+    }
+
+    public boolean isBatchingEnabled() {
+        return batchingEnabled;
+    }
+
+    public void setFallbackListener(FallbackListener listener) {
+        fallbackListener = listener;
+    }
+
+    /** Number of classes the model scores, or 0 before the first single-crop call. */
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    public long getBatchedCalls() {
+        return batchedCalls;
+    }
+
+    public long getSingleCalls() {
+        return singleCalls;
+    }
+
+    /**
+     * Classifies {@code count} crops stored back to back in {@code crops}, writing the arg-max
+     * class and its score for crop i into {@code outClass[i]} and {@code outScore[i]}.
+     */
+    public void classify(float[] crops, int count, Forward forward,
+                         int[] outClass, float[] outScore) throws Exception {
+        classify(crops, null, count, forward, outClass, outScore);
+    }
+
+    /**
+     * Classifies only the crops listed in {@code selected} (the first {@code count} entries),
+     * writing the result for crop {@code selected[i]} into {@code outClass[selected[i]]} and
+     * {@code outScore[selected[i]]}. A null {@code selected} means crops 0 to count - 1.
+     */
+    public void classify(float[] crops, int[] selected, int count, Forward forward,
+                         int[] outClass, float[] outScore) throws Exception {
+        if (count <= 0) {
+            return;
+        }
+        if (count > getMaxBatch()) {
+            throw new IllegalArgumentException("Batch of " + count + " exceeds " + getMaxBatch());
+        }
+
+        int from = 0;
+        if (count > 1 && batchingEnabled && numClasses == 0) {
+            // Batched outputs are checked against the class count of a single-crop output
+            classifySingly(crops, selected, 0, 1, forward, outClass, outScore);
+            from = 1;
+        }
+        int batch = count - from;
+        if (batch > 1 && batchingEnabled) {
+            long[] shape = batchShapes[batch];
+            FloatBuffer scores;
+            Exception failure = null;
+            try {
+                scores = forward.run(uploadBatch(shape, crops, selected, from, batch), shape);
+            } catch (Exception e) {
+                scores = null;
+                failure = e;
+            }
+            if (scores != null && scores.limit() == batch * numClasses) {
+                batchedCalls++;
+                for (int i = 0; i < batch; i++) {
+                    argMax(scores, i * numClasses, numClasses, outClass, outScore,
+                            cropIndex(selected, from + i));
+                }
+                return;
+            }
+            // Throws, leaving batching enabled, if the model fails on single crops as well
+            classifySingly(crops, selected, from, count, forward, outClass, outScore);
+            disableBatching(failure != null
+                    ? "batch of " + batch + " failed: " + failure
+                    : "batch of " + batch + " returned " + scores.limit() + " scores, expected "
+                            + batch * numClasses);
+            return;
+        }
+        classifySingly(crops, selected, from, count, forward, outClass, outScore);
+    }
+
+    private void classifySingly(float[] crops, int[] selected, int from, int to, Forward forward,
+                                int[] outClass, float[] outScore) throws Exception {
+        long[] shape = batchShapes[1];
+        for (int i = from; i < to; i++) {
+            int crop = cropIndex(selected, i);
+            FloatBuffer scores = forward.run(pool.upload(shape, crops, crop * cropSize, cropSize), shape);
+            singleCalls++;
+            if (numClasses == 0) {
+                numClasses = scores.limit();
+            }
+            argMax(scores, 0, scores.limit(), outClass, outScore, crop);
+        }
+    }
+
+    private void disableBatching(String reason) {
+        batchingEnabled = false;
+        FallbackListener listener = fallbackListener;
+        if (listener != null) {
+            listener.onBatchingDisabled(reason);
+        }
+    }
+
+    private FloatBuffer uploadBatch(long[] shape, float[] crops, int[] selected, int from, int count) {
+        if (selected == null) {
+            return pool.upload(shape, crops, from * cropSize, count * cropSize);
+        }
+        FloatBuffer buffer = pool.floatBuffer(shape);
+        for (int i = from; i < from + count; i++) {
+            buffer.put(crops, selected[i] * cropSize, cropSize);
+        }
+        buffer.rewind();
+        return buffer;
+    }
+
+    private static int cropIndex(int[] selected, int i) {
+        return selected == null ? i : selected[i];
+    }
+
+    private static void argMax(FloatBuffer scores, int offset, int length,
+                               int[] outClass, float[] outScore, int slot) {
+        int best = 0;
+        float bestScore = scores.get(offset);
+        for (int c = 1; c < length; c++) {
+            float score = scores.get(offset + c);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        outClass[slot] = best;
+        outScore[slot] = bestScore;
+    }
+}
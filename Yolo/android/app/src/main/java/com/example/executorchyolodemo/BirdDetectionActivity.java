@@ -12,28 +12,25 @@ import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.RectF;
-import android.graphics.YuvImage;
-import android.graphics.ImageFormat;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.PowerManager;
 import android.util.Log;
 import android.util.Size;
 import android.widget.Button;
-import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.camera.core.AspectRatio;
 import androidx.camera.core.Camera;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.AspectRatioStrategy;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.app.ActivityCompat;
@@ -41,22 +38,52 @@ import androidx.core.content.ContextCompat;
 
 import com.google.common.util.concurrent.ListenableFuture;
 
-import java.io.ByteArrayOutputStream;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 public class BirdDetectionActivity extends AppCompatActivity {
     private static final String TAG = "BirdDetectionActivity";
+    private static final int STATS_LOG_INTERVAL = 30; // Log pipeline stats every 30 results
+    // Step metrics are collected while this tag is loggable at DEBUG:
+    // adb shell setprop log.tag.BirdMetrics DEBUG
+    private static final String METRICS_TAG = "BirdMetrics";
+    private static final String STARTUP_TAG = "BirdStartup";
+    // Between full-frame scans the detector only looks at the regions around tracked birds.
+    // Needs frames of at least twice the area of the detector input, see ANALYSIS_RESOLUTION
+    private static final boolean ROI_DETECTION = true;
+    private static final int ROI_FULL_SCAN_INTERVAL = 5;
+    // Preview and analysis use the same aspect ratio, so both show the same field of view and
+    // the overlay maps analyzed boxes onto the preview by scaling alone
+    private static final AspectRatioStrategy FRAME_ASPECT_RATIO =
+            AspectRatioStrategy.RATIO_4_3_FALLBACK_AUTO_STRATEGY;
+    // Twice the detector input across, so that a 640x640 region around a bird is a third of
+    // the frame and RoiPlanner uses it; at 640x480 every region would cover most of the frame
+    // and each frame would be a full scan. Full scans sample the frame down to the detector
+    // input, so the larger frame costs them little.
+    private static final Size ANALYSIS_RESOLUTION = new Size(1280, 960);
+    // Sighting thumbnails: context around the box in frame pixels, and their longer side
+    private static final float THUMBNAIL_PADDING = 60;
+    private static final int THUMBNAIL_MAX_SIDE = 150;
+    // Thumbnails are written as lossy WebP, smaller than JPEG at the same quality
+    private static final boolean THUMBNAIL_WEBP = true;
+    private static final int THUMBNAIL_QUALITY = 80;
     private static final int REQUEST_CODE_PERMISSIONS = 1001;
     private static final String[] REQUIRED_PERMISSIONS = {Manifest.permission.CAMERA};
-    private static final int FRAME_SKIP_COUNT = 5; // Process every 5th frame
+
+    // Frame rate governor: analyze as often as a 300 ms result latency allows, at most 10 fps,
+    // less when the device heats up. Starts at every 5th frame, re-decided every 5 results.
+    private static final double TARGET_LATENCY_MS = 300;
+    private static final double MAX_ANALYZED_FPS = 10;
+    private static final int MAX_FRAME_INTERVAL = 30;
+    private static final int INITIAL_FRAME_INTERVAL = 5;
+    private static final int GOVERNOR_DECISION_PERIOD = 5;
 
     private PreviewView previewView;
-    private ImageView overlayImageView;
+    private DetectionOverlayView overlayView;
     private TextView resultTextView;
     private Button sessionButton;
     private Button viewLogsButton;
@@ -64,13 +91,25 @@ public class BirdDetectionActivity extends AppCompatActivity {
     private BirdDetectionPipeline birdPipeline;
     private BirdSessionManager sessionManager;
     private ExecutorService cameraExecutor;
-    private AtomicBoolean isProcessing = new AtomicBoolean(false);
-    private int frameCounter = 0;
-    private boolean isSessionActive = false;
+    private volatile PipelinedExecutor<CameraFrame, DetectionEngine.PendingFrame, FrameResult> detectionEngine;
+    private final ConcurrentLinkedQueue<CameraFrame> cameraFramePool = new ConcurrentLinkedQueue<>();
+    private final YuvFrame yuvFrame = new YuvFrame(); // Reused across frames, only touched by the detect stage
+    private final FrameRateGovernor frameRateGovernor = new FrameRateGovernor(
+            new SkipPolicy.LatencyTarget(TARGET_LATENCY_MS, MAX_ANALYZED_FPS, MAX_FRAME_INTERVAL),
+            INITIAL_FRAME_INTERVAL, GOVERNOR_DECISION_PERIOD);
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+    private int resultCounter = 0; // Only touched by the classify stage
+    private long reportedDrops = 0; // Only touched by the classify stage
+    // Written on the UI thread, read by the camera analyzer and the pipeline stages
+    private volatile boolean isSessionActive = false;
+    // Startup metrics: launch time, and the session start still waiting for its first result
+    private long createdNanos;
+    private volatile long firstResultPendingSince = -1;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        createdNanos = System.nanoTime();
         setContentView(R.layout.activity_bird_detection);
 
         initializeViews();
@@ -79,16 +118,27 @@ public class BirdDetectionActivity extends AppCompatActivity {
 
         cameraExecutor = Executors.newSingleThreadExecutor();
 
-        // Initialize bird detection pipeline
-        try {
-            birdPipeline = new BirdDetectionPipeline(this);
-            Log.d(TAG, "Bird detection pipeline initialized successfully");
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to initialize bird pipeline", e);
-            Toast.makeText(this, "Failed to load models: " + e.getMessage(), Toast.LENGTH_LONG).show();
-            finish();
-            return;
-        }
+        // Load the models in the background; the preview starts right away and sessions can
+        // start once the pipeline is ready
+        sessionButton.setEnabled(false);
+        resultTextView.setText("Loading models...");
+        PipelineLoader.loadAsync(this, ContextCompat.getMainExecutor(this), new PipelineLoader.Listener() {
+            @Override
+            public void onLoaded(BirdDetectionPipeline pipeline, PipelineLoader.Timings timings) {
+                onPipelineLoaded(pipeline, timings);
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                Log.e(TAG, "Failed to initialize bird pipeline", e);
+                if (!isDestroyed()) {
+                    Toast.makeText(BirdDetectionActivity.this, "Failed to load models: " + e.getMessage(),
+                            Toast.LENGTH_LONG).show();
+                    finish();
+                }
+            }
+        });
+        startThermalMonitoring();
 
         if (allPermissionsGranted()) {
             startCamera();
@@ -97,14 +147,47 @@ public class BirdDetectionActivity extends AppCompatActivity {
         }
     }
 
+    private void onPipelineLoaded(BirdDetectionPipeline pipeline, PipelineLoader.Timings timings) {
+        if (isDestroyed()) {
+            pipeline.close();
+            return;
+        }
+        birdPipeline = pipeline;
+        birdPipeline.setRoiDetection(ROI_DETECTION, ROI_FULL_SCAN_INTERVAL);
+        startDetectionEngine();
+        sessionButton.setEnabled(true);
+        resultTextView.setText("Ready. Start a session to detect birds.");
+        Log.d(STARTUP_TAG, String.format(Locale.US, "Pipeline ready %dms after launch: %s",
+                (System.nanoTime() - createdNanos) / 1_000_000, timings));
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
 
+        // Stop both pipeline stages before the models they use are destroyed
+        PipelinedExecutor<CameraFrame, DetectionEngine.PendingFrame, FrameResult> engine = detectionEngine;
+        boolean stagesStopped = true;
+        if (engine != null) {
+            try {
+                stagesStopped = engine.shutdown(1000);
+            } catch (InterruptedException e) {
+                stagesStopped = engine.isTerminated();
+                Thread.currentThread().interrupt();
+            }
+            detectionEngine = null;
+        }
+        stopThermalMonitoring();
+
         // Clean up the detection pipeline
         if (birdPipeline != null) {
-            birdPipeline.close();
-            birdPipeline = null;
+            if (stagesStopped) {
+                birdPipeline.close();
+                birdPipeline = null;
+            } else {
+                // A stage is still inside a forward pass; the models must outlive it
+                closeWhenStagesStop(engine, birdPipeline);
+            }
         }
 
         // Shutdown camera executor
@@ -120,6 +203,19 @@ public class BirdDetectionActivity extends AppCompatActivity {
         Log.d(TAG, "BirdDetectionActivity destroyed");
     }
 
+    private static void closeWhenStagesStop(
+            PipelinedExecutor<?, ?, ?> engine, BirdDetectionPipeline pipeline) {
+        Log.w(TAG, "Pipeline stages still running; closing the models once they finish");
+        new Thread(() -> {
+            try {
+                engine.awaitTermination();
+                pipeline.close();
+            } catch (InterruptedException e) {
+                Log.e(TAG, "Interrupted waiting for pipeline stages; models not closed", e);
+            }
+        }, "pipeline-close").start();
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
@@ -134,7 +230,7 @@ public class BirdDetectionActivity extends AppCompatActivity {
 
     private void initializeViews() {
         previewView = findViewById(R.id.previewView);
-        overlayImageView = findViewById(R.id.overlayImageView);
+        overlayView = findViewById(R.id.overlayView);
         resultTextView = findViewById(R.id.resultTextView);
         sessionButton = findViewById(R.id.sessionButton);
         viewLogsButton = findViewById(R.id.viewLogsButton);
@@ -142,6 +238,7 @@ public class BirdDetectionActivity extends AppCompatActivity {
 
     private void initializeManagers() {
         sessionManager = new BirdSessionManager(this); // Pass context for file operations
+        sessionManager.setThumbnailFormat(THUMBNAIL_WEBP, THUMBNAIL_QUALITY);
         updateSessionUI();
     }
 
@@ -159,7 +256,11 @@ public class BirdDetectionActivity extends AppCompatActivity {
 
     private void startSession() {
         isSessionActive = true;
+        firstResultPendingSince = System.nanoTime();
         sessionManager.startNewSession();
+        PipelineMetrics metrics = birdPipeline.getMetrics();
+        metrics.reset();
+        metrics.setEnabled(Log.isLoggable(METRICS_TAG, Log.DEBUG));
         sessionButton.setText("End Session");
         sessionButton.setBackgroundColor(ContextCompat.getColor(this, android.R.color.holo_red_light));
         resultTextView.setText("Session started! Point camera at birds to detect them.");
@@ -170,6 +271,10 @@ public class BirdDetectionActivity extends AppCompatActivity {
 
     private void endSession() {
         isSessionActive = false;
+        sessionManager.endSession();
+        if (birdPipeline.getMetrics().isEnabled()) {
+            Log.d(METRICS_TAG, "Session metrics: " + birdPipeline.getMetrics().export());
+        }
         sessionButton.setText("Start Session");
         sessionButton.setBackgroundColor(ContextCompat.getColor(this, android.R.color.holo_green_light));
 
@@ -183,9 +288,8 @@ public class BirdDetectionActivity extends AppCompatActivity {
     private void viewBirdLogs() {
         Intent intent = new Intent(this, BirdLogActivity.class);
 
-        // FIXED: Pass the sighting data (without bitmaps) through Intent
-        ArrayList<BirdSessionManager.BirdSighting> currentLogs = sessionManager.getCurrentSessionLogs();
-        intent.putExtra("bird_logs", currentLogs);
+        // Sightings are read from the store, so only the session to show is passed along
+        intent.putExtra(BirdLogActivity.EXTRA_SESSION_ID, sessionManager.getSessionId());
 
         startActivity(intent);
     }
@@ -216,12 +320,18 @@ public class BirdDetectionActivity extends AppCompatActivity {
 
     private void bindPreview(@NonNull ProcessCameraProvider cameraProvider) {
         Preview preview = new Preview.Builder()
-                .setTargetAspectRatio(AspectRatio.RATIO_16_9)
+                .setResolutionSelector(new ResolutionSelector.Builder()
+                        .setAspectRatioStrategy(FRAME_ASPECT_RATIO)
+                        .build())
                 .build();
         preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
         ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
-                .setTargetResolution(new Size(640, 480))
+                .setResolutionSelector(new ResolutionSelector.Builder()
+                        .setAspectRatioStrategy(FRAME_ASPECT_RATIO)
+                        .setResolutionStrategy(new ResolutionStrategy(ANALYSIS_RESOLUTION,
+                                ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER))
+                        .build())
                 .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                 .build();
 
@@ -239,138 +349,226 @@ public class BirdDetectionActivity extends AppCompatActivity {
         }
     }
 
-    private void analyzeImage(@NonNull ImageProxy imageProxy) {
-        try {
-            // Skip frames to reduce processing load
-            frameCounter++;
-            if (frameCounter % FRAME_SKIP_COUNT != 0) {
-                return;
-            }
+    /** Detections of one frame with the size of the frame, for the overlay, and thumbnails. */
+    private static class FrameResult {
+        // Detections the session manager wants logged, null if none
+        final boolean[] toLog;
+        // Thumbnail per detection to log, null where its crop failed
+        final Bitmap[] thumbnails;
+        final List<BirdDetectionPipeline.BirdDetection> detections;
+        final int frameWidth;
+        final int frameHeight;
+        final long arrivalNanos;
+
+        FrameResult(boolean[] toLog, Bitmap[] thumbnails,
+                    List<BirdDetectionPipeline.BirdDetection> detections,
+                    int frameWidth, int frameHeight, long arrivalNanos) {
+            this.toLog = toLog;
+            this.thumbnails = thumbnails;
+            this.detections = detections;
+            this.frameWidth = frameWidth;
+            this.frameHeight = frameHeight;
+            this.arrivalNanos = arrivalNanos;
+        }
+    }
 
-            // Skip if already processing or session not active
-            if (isProcessing.get() || !isSessionActive) {
-                return;
-            }
+    /** A camera image plus the time it reached the analyzer; pooled to avoid per-frame garbage. */
+    private static final class CameraFrame {
+        ImageProxy image;
+        long arrivalNanos;
+    }
 
-            isProcessing.set(true);
+    /**
+     * YOLO runs on one thread and species classification on another, so detection of the next
+     * frame overlaps with classification of the previous one. Each hand-off keeps only the
+     * newest frame.
+     */
+    private void startDetectionEngine() {
+        detectionEngine = new PipelinedExecutor<>(
+                "detect", this::detectStage, this::releaseCameraFrame,
+                "classify", this::classifyStage, birdPipeline::recycle,
+                this::onFrameResult, 1);
+        detectionEngine.setFailureListener((stage, e) ->
+                Log.e(TAG, "Pipeline stage " + stage + " failed; further failures are only counted", e));
+        detectionEngine.start();
+    }
 
-            Bitmap bitmap = imageProxyToBitmapSimple(imageProxy);
-            if (bitmap != null) {
-                List<BirdDetectionPipeline.BirdDetection> detections =
-                        birdPipeline.detectBirds(bitmap);
+    /** Feeds the device thermal status to the frame rate governor (API 29+). */
+    private void startThermalMonitoring() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return;
+        }
+        PowerManager powerManager = getSystemService(PowerManager.class);
+        if (powerManager == null) {
+            return;
+        }
+        frameRateGovernor.setThermalStatus(powerManager.getCurrentThermalStatus());
+        thermalListener = status -> {
+            Log.d(TAG, "Thermal status changed: " + status);
+            frameRateGovernor.setThermalStatus(status);
+        };
+        powerManager.addThermalStatusListener(ContextCompat.getMainExecutor(this), thermalListener);
+    }
 
-                runOnUiThread(() -> updateUI(bitmap, detections));
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Analysis failed", e);
-        } finally {
-            isProcessing.set(false);
+    private void stopThermalMonitoring() {
+        if (thermalListener == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return;
+        }
+        PowerManager powerManager = getSystemService(PowerManager.class);
+        if (powerManager != null) {
+            powerManager.removeThermalStatusListener(thermalListener);
+        }
+        thermalListener = null;
+    }
+
+    private void analyzeImage(@NonNull ImageProxy imageProxy) {
+        long now = System.nanoTime();
+        PipelinedExecutor<CameraFrame, DetectionEngine.PendingFrame, FrameResult> engine = detectionEngine;
+        // The governor decides how many frames to skip based on latency and thermal status
+        if (!isSessionActive || engine == null || !frameRateGovernor.onFrameArrived(now)) {
             imageProxy.close();
+            return;
+        }
+
+        CameraFrame cameraFrame = cameraFramePool.poll();
+        if (cameraFrame == null) {
+            cameraFrame = new CameraFrame();
+        }
+        cameraFrame.image = imageProxy;
+        cameraFrame.arrivalNanos = now;
+
+        // The engine releases the frame once the detect stage is done with it
+        if (!engine.submit(cameraFrame)) {
+            releaseCameraFrame(cameraFrame);
         }
     }
 
-    private Bitmap imageProxyToBitmapSimple(ImageProxy imageProxy) {
-        try {
-            ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
-            ImageProxy.PlaneProxy y = planes[0];
-            ImageProxy.PlaneProxy u = planes[1];
-            ImageProxy.PlaneProxy v = planes[2];
+    private void releaseCameraFrame(CameraFrame cameraFrame) {
+        cameraFrame.image.close();
+        cameraFrame.image = null;
+        cameraFramePool.offer(cameraFrame);
+    }
 
-            int ySize = y.getBuffer().remaining();
-            int uSize = u.getBuffer().remaining();
-            int vSize = v.getBuffer().remaining();
+    private DetectionEngine.PendingFrame detectStage(CameraFrame cameraFrame) {
+        DetectionEngine.PendingFrame work = birdPipeline.obtainPendingFrame();
+        work.setArrivalNanos(cameraFrame.arrivalNanos);
+        YuvFrame frame = wrapImageProxy(cameraFrame.image);
+        if (!birdPipeline.detect(frame, work)) {
+            birdPipeline.recycle(work);
+            return null;
+        }
 
-            byte[] nv21 = new byte[ySize + uSize + vSize];
-            y.getBuffer().get(nv21, 0, ySize);
-            v.getBuffer().get(nv21, ySize, vSize);
-            u.getBuffer().get(nv21, ySize + vSize, uSize);
+        // The frame is released after this stage and the species are not known yet, so keep
+        // a thumbnail-sized crop of each box; the overlay draws from the boxes alone
+        if (work.getCandidateCount() > 0) {
+            work.captureThumbnails(frame, THUMBNAIL_PADDING, THUMBNAIL_MAX_SIDE);
+        }
+        return work;
+    }
 
-            YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21,
-                    imageProxy.getWidth(), imageProxy.getHeight(), null);
+    private FrameResult classifyStage(DetectionEngine.PendingFrame work) {
+        List<BirdDetectionPipeline.BirdDetection> detections = birdPipeline.classify(work);
+
+        // Bitmaps only for the detections the session will log
+        boolean[] toLog = null;
+        Bitmap[] thumbnails = null;
+        int[] pixels = work.getThumbnailPixels();
+        for (int i = 0; i < detections.size() && isSessionActive; i++) {
+            BirdDetectionPipeline.BirdDetection detection = detections.get(i);
+            if (!sessionManager.wantsThumbnail(detection.species, detection.confidence)) {
+                continue;
+            }
+            if (toLog == null) {
+                toLog = new boolean[detections.size()];
+                thumbnails = new Bitmap[detections.size()];
+            }
+            toLog[i] = true;
+            int width = work.getThumbnailWidth(i);
+            if (pixels != null && width > 0) {
+                thumbnails[i] = Bitmap.createBitmap(pixels, work.getThumbnailOffset(i), width,
+                        width, work.getThumbnailHeight(i), Bitmap.Config.ARGB_8888);
+            }
+        }
+        return new FrameResult(toLog, thumbnails, detections, work.getFrameWidth(),
+                work.getFrameHeight(), work.getArrivalNanos());
+    }
 
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            yuvImage.compressToJpeg(new android.graphics.Rect(0, 0,
-                    imageProxy.getWidth(), imageProxy.getHeight()), 80, out);
+    private void onFrameResult(FrameResult result) {
+        PipelinedExecutor<CameraFrame, DetectionEngine.PendingFrame, FrameResult> engine = detectionEngine;
+        if (engine != null) {
+            long drops = engine.getFirstStageStats().getDropped() + engine.getSecondStageStats().getDropped();
+            if (drops > reportedDrops) {
+                frameRateGovernor.onFramesDropped((int) (drops - reportedDrops));
+                reportedDrops = drops;
+            }
+        }
+        long now = System.nanoTime();
+        frameRateGovernor.onFrameCompleted(result.arrivalNanos, now);
+        long pendingSince = firstResultPendingSince;
+        if (pendingSince >= 0) {
+            firstResultPendingSince = -1;
+            Log.d(STARTUP_TAG, String.format(Locale.US,
+                    "Time to first detection: %dms after session start, %dms after launch, frame latency %dms",
+                    (now - pendingSince) / 1_000_000, (now - createdNanos) / 1_000_000,
+                    (now - result.arrivalNanos) / 1_000_000));
+        }
 
-            byte[] imageBytes = out.toByteArray();
-            return android.graphics.BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to convert ImageProxy to bitmap", e);
-            return null;
+        if (++resultCounter % STATS_LOG_INTERVAL == 0 && engine != null) {
+            PipelinedExecutor.StageStats detect = engine.getFirstStageStats();
+            PipelinedExecutor.StageStats classify = engine.getSecondStageStats();
+            Log.d(TAG, String.format("Pipeline %s, %.1f fps | %s, %.1f fps",
+                    detect, detect.sampleThroughput(), classify, classify.sampleThroughput()));
+            Log.d(TAG, "Frame rate governor " + frameRateGovernor);
+            if (birdPipeline.getMetrics().isEnabled()) {
+                Log.d(METRICS_TAG, birdPipeline.getMetrics().export());
+                Log.d(METRICS_TAG, "Buffers and caches: " + birdPipeline.getCacheStats());
+            }
         }
+        runOnUiThread(() -> updateUI(result));
+    }
+
+    private YuvFrame wrapImageProxy(ImageProxy imageProxy) {
+        ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
+        return yuvFrame.set(
+                planes[0].getBuffer(), planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[0].getRowStride(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                imageProxy.getWidth(), imageProxy.getHeight(),
+                imageProxy.getImageInfo().getRotationDegrees());
     }
 
-    private void updateUI(Bitmap originalBitmap, List<BirdDetectionPipeline.BirdDetection> detections) {
+    private void updateUI(FrameResult result) {
+        List<BirdDetectionPipeline.BirdDetection> detections = result.detections;
+
         if (!isSessionActive) {
+            recycleThumbnails(result);
             resultTextView.setText("Session not active. Press 'Start Session' to begin bird watching.");
-            overlayImageView.setImageBitmap(null);
+            overlayView.clear();
             return;
         }
 
         if (detections.isEmpty()) {
-            overlayImageView.setImageBitmap(null);
+            overlayView.clear();
             String sessionInfo = sessionManager.getSessionSummary();
             resultTextView.setText("No birds detected. " + sessionInfo);
             return;
         }
 
-        // Create overlay with bounding boxes
-        Bitmap workingBitmap = originalBitmap.copy(Bitmap.Config.ARGB_8888, true);
-        Canvas canvas = new Canvas(workingBitmap);
-        Paint paint = new Paint();
-        paint.setColor(Color.GREEN);
-        paint.setStrokeWidth(5);
-        paint.setStyle(Paint.Style.STROKE);
-        paint.setAntiAlias(true);
-
-        Paint textPaint = new Paint();
-        textPaint.setColor(Color.GREEN);
-        textPaint.setTextSize(30);
-        textPaint.setAntiAlias(true);
-        textPaint.setShadowLayer(4, 2, 2, Color.BLACK);
-
-        Paint stablePaint = new Paint();
-        stablePaint.setColor(Color.BLUE);
-        stablePaint.setStrokeWidth(7);
-        stablePaint.setStyle(Paint.Style.STROKE);
-        stablePaint.setAntiAlias(true);
+        // Boxes are drawn as vectors over the live preview; the frame itself is not copied
+        overlayView.setDetections(detections, result.frameWidth, result.frameHeight);
 
         StringBuilder resultText = new StringBuilder("🐦 Birds Detected:\n");
 
-        for (BirdDetectionPipeline.BirdDetection detection : detections) {
-            // Use different colors for stable vs unstable detections
-            Paint currentPaint = detection.isStable ? stablePaint : paint;
-            canvas.drawRect(detection.boundingBox, currentPaint);
-
-            String label = detection.species + " (" + String.format("%.1f%%", detection.confidence * 100) + ")";
-            if (detection.isStable) {
-                label += " ✓"; // Add checkmark for stable detections
-            }
-
-            // Background for text
-            Paint backgroundPaint = new Paint();
-            backgroundPaint.setColor(detection.isStable ?
-                    Color.argb(180, 0, 0, 150) : Color.argb(180, 0, 150, 0));
-            float textWidth = textPaint.measureText(label);
-            canvas.drawRect(detection.boundingBox.left,
-                    detection.boundingBox.top - 40,
-                    detection.boundingBox.left + textWidth + 20,
-                    detection.boundingBox.top, backgroundPaint);
-
-            canvas.drawText(label,
-                    detection.boundingBox.left + 10,
-                    detection.boundingBox.top - 15,
-                    textPaint);
-
+        for (int i = 0; i < detections.size(); i++) {
+            BirdDetectionPipeline.BirdDetection detection = detections.get(i);
             resultText.append("• ").append(detection.species)
                     .append(" (").append(String.format("%.1f%%", detection.confidence * 100)).append(")")
                     .append(detection.isStable ? " ✓" : "").append("\n");
 
-            // Log bird sighting with ORIGINAL bitmap (not the overlay)
-            if (isSessionActive) {
-                Bitmap thumbnail = createThumbnailFixed(originalBitmap, detection.boundingBox);
-                sessionManager.logBirdSighting(detection.species, thumbnail, detection.confidence);
-                Log.d(TAG, "Created thumbnail for " + detection.species + ": " + (thumbnail != null ? "Success" : "Failed"));
+            // Log bird sighting, with its thumbnail if the crop succeeded; the session manager
+            // writes the thumbnail in the background and recycles it afterwards
+            if (result.toLog != null && result.toLog[i]) {
+                sessionManager.logBirdSighting(detection.species, result.thumbnails[i],
+                        detection.confidence);
             }
         }
 
@@ -378,52 +576,18 @@ public class BirdDetectionActivity extends AppCompatActivity {
         String sessionInfo = sessionManager.getSessionSummary();
         resultText.append("\n📊 ").append(sessionInfo);
 
-        overlayImageView.setImageBitmap(workingBitmap);
         resultTextView.setText(resultText.toString());
     }
 
-    private Bitmap createThumbnailFixed(Bitmap originalBitmap, RectF boundingBox) {
-        try {
-            if (originalBitmap == null || originalBitmap.isRecycled()) {
-                Log.e(TAG, "Original bitmap is null or recycled");
-                return null;
-            }
-
-            float padding = 30;
-            int left = (int) Math.max(0, boundingBox.left - padding);
-            int top = (int) Math.max(0, boundingBox.top - padding);
-            int right = (int) Math.min(originalBitmap.getWidth(), boundingBox.right + padding);
-            int bottom = (int) Math.min(originalBitmap.getHeight(), boundingBox.bottom + padding);
-
-            int width = right - left;
-            int height = bottom - top;
-
-            Log.d(TAG, "Creating thumbnail: left=" + left + " top=" + top + " width=" + width + " height=" + height);
-
-            if (width > 0 && height > 0 && width <= originalBitmap.getWidth() && height <= originalBitmap.getHeight()) {
-                Bitmap croppedBitmap = Bitmap.createBitmap(originalBitmap, left, top, width, height);
-
-                int maxThumbnailSize = 150;
-                float scale = Math.min((float) maxThumbnailSize / width, (float) maxThumbnailSize / height);
-                int scaledWidth = Math.max(1, (int) (width * scale));
-                int scaledHeight = Math.max(1, (int) (height * scale));
-
-                Bitmap thumbnail = Bitmap.createScaledBitmap(croppedBitmap, scaledWidth, scaledHeight, true);
-
-                Log.d(TAG, "Thumbnail created successfully: " + scaledWidth + "x" + scaledHeight);
-
-                if (croppedBitmap != thumbnail) {
-                    croppedBitmap.recycle();
-                }
-
-                return thumbnail;
-            } else {
-                Log.w(TAG, "Invalid thumbnail dimensions: " + width + "x" + height);
+    private static void recycleThumbnails(FrameResult result) {
+        if (result.thumbnails == null) {
+            return;
+        }
+        for (Bitmap thumbnail : result.thumbnails) {
+            if (thumbnail != null) {
+                thumbnail.recycle();
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to create thumbnail", e);
         }
-        return null;
     }
 
     private boolean allPermissionsGranted() {
@@ -13,70 +13,25 @@ import android.graphics.Bitmap;
 import android.graphics.RectF;
 import android.util.Log;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
-import org.pytorch.executorch.EValue;
-import org.pytorch.executorch.Module;
-import org.pytorch.executorch.Tensor;
-
 import java.io.IOException;
-import java.io.InputStream;
-import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class BirdDetectionPipeline {
     private static final String TAG = "BirdDetectionPipeline";
 
-    private static final float CONFIDENCE_THRESHOLD = 0.75f; // Increased from 0.6 to 0.75 (25% boost)
-    private static final float NMS_THRESHOLD = 0.35f; // Reduced from 0.4 to 0.35 for better suppression
-    private static final int MAX_DETECTIONS = 3; // Reduced from 5 to 3 for more selectivity
-    private static final int MIN_BOX_SIZE = 40; // Increased from 30 to 40
+    private static final int MIN_BOX_SIZE = DetectionEngine.MIN_BOX_SIZE;
     private static final float MIN_ASPECT_RATIO = 0.3f; // Tightened from 0.2
     private static final float MAX_ASPECT_RATIO = 3.5f; // Tightened from 5.0
-    private static final boolean DEBUG_OUTPUT = true;
-
-    private Map<String, DetectionHistory> detectionHistory = new HashMap<>();
-    private int frameCounter = 0;
-    private static final float STABILITY_THRESHOLD = 0.8f; // Require 80% confidence across frames
-    private static final int HISTORY_WINDOW = 5; // Track last 5 frames
-    private static final float TEMPORAL_BONUS = 0.15f; // Higher bonus for stable detections
-
-    private static class DetectionHistory {
-        List<Float> recentConfidences = new ArrayList<>();
-        int consecutiveFrames = 0;
-        long lastSeenTime = System.currentTimeMillis();
-
-        void addConfidence(float confidence) {
-            recentConfidences.add(confidence);
-            if (recentConfidences.size() > HISTORY_WINDOW) {
-                recentConfidences.remove(0);
-            }
-            consecutiveFrames++;
-            lastSeenTime = System.currentTimeMillis();
-        }
-
-        float getAverageConfidence() {
-            if (recentConfidences.isEmpty()) return 0f;
-            float sum = 0f;
-            for (float conf : recentConfidences) sum += conf;
-            return sum / recentConfidences.size();
-        }
-
-        boolean isStable() {
-            return recentConfidences.size() >= 3 &&
-                    getAverageConfidence() >= STABILITY_THRESHOLD &&
-                    consecutiveFrames >= 3;
-        }
-    }
-
-    private Module yoloModule;
-    private Module classifierModule;
+    // Per-frame numbers are in PipelineMetrics; this only covers rare events
+    private static final boolean DEBUG_OUTPUT = false;
+
+    private ExecuTorchModelRunner modelRunner;
+    // Everything between the two forward calls lives in the engine, which runs without Android
+    private DetectionEngine engine;
+    private final TensorBufferPool bitmapFramePool = new TensorBufferPool();
+    private final BitmapFrameSource bitmapFrame = new BitmapFrameSource(bitmapFramePool);
+    private final DetectionEngine.PendingFrame syncFrame = new DetectionEngine.PendingFrame();
     private String[] birdSpeciesNames;
 
     public static class BirdDetection {
@@ -84,6 +39,7 @@ public class BirdDetectionPipeline {
         public String species;
         public float confidence;
         public boolean isStable; // New field for stability
+        public long trackId; // Same value for the same bird across frames
 
         public BirdDetection(RectF boundingBox, String species, float confidence, boolean isStable) {
             this.boundingBox = boundingBox;
@@ -93,161 +49,101 @@ public class BirdDetectionPipeline {
         }
     }
 
-    private static class Detection {
-        public RectF boundingBox;
-        public float confidence;
-        public int classIndex;
-        public String locationKey;
+    /**
+     * Loads the models, in parallel, and blocks until they are ready. Prefer
+     * {@link PipelineLoader#loadAsync} on the main thread.
+     */
+    public BirdDetectionPipeline(Context context) throws IOException {
+        this(PipelineLoader.load(context));
+    }
 
-        public Detection(RectF boundingBox, float confidence, int classIndex) {
-            this.boundingBox = boundingBox;
-            this.confidence = confidence;
-            this.classIndex = classIndex;
-            this.locationKey = generateLocationKey(boundingBox);
-        }
+    BirdDetectionPipeline(PipelineLoader.Loaded loaded) {
+        modelRunner = loaded.runner;
+        engine = new DetectionEngine(modelRunner, loaded.detectorSpec);
+        engine.getClassifier().setFallbackListener(
+                reason -> Log.w(TAG, "Classifying crops one at a time: " + reason));
+        birdSpeciesNames = loaded.speciesNames;
+    }
 
-        private String generateLocationKey(RectF box) {
-            // More precise location key for better stability tracking
-            int centerX = (int) ((box.left + box.right) / 2 / 50); // 50px grid (tighter)
-            int centerY = (int) ((box.top + box.bottom) / 2 / 50);
-            return centerX + "," + centerY;
+    public List<BirdDetection> detectBirds(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            Log.w(TAG, "Invalid bitmap for detection");
+            return new ArrayList<>();
         }
+        return detectBirds(bitmapFrame.set(bitmap));
     }
 
-    public BirdDetectionPipeline(Context context) throws IOException {
-        try {
-            String yoloPath = Utils.assetFilePath(context, "yolo_detector.pte");
-            String classifierPath = Utils.assetFilePath(context, "bird_classifier.pte");
-
-            yoloModule = Module.load(yoloPath);
-            classifierModule = Module.load(classifierPath);
-
-            loadBirdSpeciesNames(context);
-            Log.d(TAG, "Models loaded successfully with OPTIMIZED settings for false positive reduction");
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to load models", e);
-            throw new IOException("Model loading failed: " + e.getMessage(), e);
+    /**
+     * Runs detection and classification on a frame. Boxes in the returned detections are in
+     * the frame's upright coordinate space.
+     */
+    public List<BirdDetection> detectBirds(FrameSource frame) {
+        if (!detect(frame, syncFrame)) {
+            return new ArrayList<>();
         }
+        return classify(syncFrame);
     }
 
-    private void loadBirdSpeciesNames(Context context) throws IOException {
+    /**
+     * Detection stage: runs YOLO and NMS on the frame and crops the survivors into
+     * {@code out}. Once this returns the frame is no longer needed and can be released.
+     * Must always be called from the same thread.
+     *
+     * @return false if the frame could not be processed
+     */
+    public boolean detect(FrameSource frame, DetectionEngine.PendingFrame out) {
         try {
-            InputStream is = context.getAssets().open("bird_species.json");
-            int size = is.available();
-            byte[] buffer = new byte[size];
-            is.read(buffer);
-            is.close();
-            String json = new String(buffer, StandardCharsets.UTF_8);
-
-            Gson gson = new Gson();
-            Type listType = new TypeToken<List<String>>() {}.getType();
-            List<String> speciesList = gson.fromJson(json, listType);
-            birdSpeciesNames = speciesList.toArray(new String[0]);
-
-            Log.d(TAG, "Loaded " + birdSpeciesNames.length + " bird species names");
+            engine.detect(frame, out);
+            return true;
         } catch (Exception e) {
-            Log.e(TAG, "Failed to load bird species names", e);
-            birdSpeciesNames = new String[]{"Bird"};
+            Log.e(TAG, "Error in detect", e);
+            return false;
         }
     }
 
-    public List<BirdDetection> detectBirds(Bitmap bitmap) {
+    /**
+     * Classification stage: classifies all crops of a detected frame in one batch and applies
+     * temporal stability tracking. Must always be called from the same thread, which may differ
+     * from the detection thread.
+     */
+    public List<BirdDetection> classify(DetectionEngine.PendingFrame work) {
         List<BirdDetection> results = new ArrayList<>();
-        frameCounter++;
-
-        Tensor yoloInput = null;
-        EValue[] yoloOutputs = null;
 
         try {
-            // Cleanup old detection history every 30 frames
-            if (frameCounter % 30 == 0) {
-                cleanupOldDetections();
-            }
-
-            yoloInput = preprocessForYolo(bitmap);
-            if (yoloInput == null) {
-                return results;
-            }
-
-            yoloOutputs = yoloModule.forward(EValue.from(yoloInput));
-            if (yoloOutputs == null || yoloOutputs.length == 0) {
-                return results;
-            }
-
-            List<Detection> detections = parseYoloV8OutputOptimized(yoloOutputs, bitmap.getWidth(), bitmap.getHeight());
-
-            if (DEBUG_OUTPUT) {
-                Log.d(TAG, "Raw detections before NMS: " + detections.size());
-            }
-
-            // Apply enhanced NMS
-            List<Detection> nmsDetections = applyEnhancedNMS(detections);
-
-            if (DEBUG_OUTPUT) {
-                Log.d(TAG, "Detections after NMS: " + nmsDetections.size());
-            }
-
-            // Classify each detection
-            for (Detection detection : nmsDetections) {
-                try {
-                    Bitmap croppedBird = cropBitmap(bitmap, detection.boundingBox);
-                    if (croppedBird == null) continue;
-
-                    String[] classificationResult = classifyBird(bitmap, detection.boundingBox);
-                    String species = (classificationResult != null && classificationResult.length > 0) ? classificationResult[0] : "Unknown Bird";
-
-                    // Recycle the cropped bitmap immediately after classification
-                    if (!croppedBird.isRecycled()) {
-                        croppedBird.recycle();
-                    }
-
-                    // Update detection history
-                    DetectionHistory history = detectionHistory.get(detection.locationKey);
-                    if (history == null) {
-                        history = new DetectionHistory();
-                        detectionHistory.put(detection.locationKey, history);
-                    }
-                    history.addConfidence(detection.confidence);
-
-                    // Apply temporal bonus for stable detections
-                    float finalConfidence = detection.confidence;
-                    if (history.isStable()) {
-                        finalConfidence = Math.min(1.0f, detection.confidence + TEMPORAL_BONUS);
-                    }
-
-                    BirdDetection birdDetection = new BirdDetection(
-                            detection.boundingBox,
-                            species,
-                            finalConfidence,
-                            history.isStable()
-                    );
-                    results.add(birdDetection);
-
-                    if (DEBUG_OUTPUT) {
-                        Log.d(TAG, String.format("Bird detected: %s (%.2f) at [%.0f,%.0f,%.0f,%.0f] stable=%b",
-                                species, finalConfidence,
-                                detection.boundingBox.left, detection.boundingBox.top,
-                                detection.boundingBox.right, detection.boundingBox.bottom,
-                                history.isStable()));
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error classifying detection", e);
-                }
-            }
-
-            if (DEBUG_OUTPUT) {
-                Log.d(TAG, "Final bird detections: " + results.size());
+            engine.classify(work);
+
+            int crops = work.getCandidateCount();
+            DetectionBuffer boxes = work.getBoxes();
+            for (int c = 0; c < crops; c++) {
+                int speciesIndex = work.getSpecies(c);
+                String species = (speciesIndex < birdSpeciesNames.length) ?
+                        birdSpeciesNames[speciesIndex] : "Bird";
+
+                BirdDetection birdDetection = new BirdDetection(
+                        new RectF(boxes.left(c), boxes.top(c), boxes.right(c), boxes.bottom(c)),
+                        species,
+                        work.getConfidence(c),
+                        work.isStable(c)
+                );
+                birdDetection.trackId = work.getTrackId(c);
+                results.add(birdDetection);
             }
-
         } catch (Exception e) {
-            Log.e(TAG, "Error in detectBirds", e);
-        } finally {
-            // Note: ExecutorTorch handles tensor cleanup automatically via garbage collection
+            Log.e(TAG, "Error classifying detections", e);
         }
 
         return results;
     }
 
+    /** Returns an idle PendingFrame, reusing one released by {@link #recycle} if possible. */
+    public DetectionEngine.PendingFrame obtainPendingFrame() {
+        return engine.obtainPendingFrame();
+    }
+
+    public void recycle(DetectionEngine.PendingFrame frame) {
+        engine.recycle(frame);
+    }
+
     private boolean validateBirdDetectionEnhanced(Bitmap bitmap, RectF boundingBox) {
         float width = boundingBox.width();
         float height = boundingBox.height();
@@ -293,38 +189,6 @@ public class BirdDetectionPipeline {
         return true;
     }
 
-    private List<Detection> applyTemporalStabilityTracking(List<Detection> detections) {
-        // Update detection history and apply temporal bonus
-        for (Detection detection : detections) {
-            String locationKey = detection.locationKey;
-            DetectionHistory history = detectionHistory.computeIfAbsent(locationKey, k -> new DetectionHistory());
-
-            history.addConfidence(detection.confidence);
-
-            // Apply temporal bonus for stable detections
-            if (history.isStable()) {
-                detection.confidence = Math.min(1.0f, detection.confidence + TEMPORAL_BONUS);
-                if (DEBUG_OUTPUT) {
-                    Log.d(TAG, "Temporal stability bonus applied at " + locationKey + " new conf: " + detection.confidence);
-                }
-            }
-        }
-
-        return detections;
-    }
-
-    private void cleanupOldDetections() {
-        long currentTime = System.currentTimeMillis();
-        long maxAge = 5000; // 5 seconds
-
-        detectionHistory.entrySet().removeIf(entry ->
-                currentTime - entry.getValue().lastSeenTime > maxAge);
-
-        if (DEBUG_OUTPUT) {
-            Log.d(TAG, "Cleaned up old detections, remaining: " + detectionHistory.size());
-        }
-    }
-
     /**
      * Release all resources and destroy models.
      * Call this when the pipeline is no longer needed.
@@ -333,364 +197,69 @@ public class BirdDetectionPipeline {
         Log.d(TAG, "Closing BirdDetectionPipeline and releasing resources");
 
         try {
-            if (yoloModule != null) {
-                yoloModule.destroy();
-                yoloModule = null;
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error destroying yoloModule", e);
-        }
-
-        try {
-            if (classifierModule != null) {
-                classifierModule.destroy();
-                classifierModule = null;
+            if (modelRunner != null) {
+                modelRunner.destroy();
+                modelRunner = null;
             }
         } catch (Exception e) {
-            Log.e(TAG, "Error destroying classifierModule", e);
+            Log.e(TAG, "Error destroying models", e);
         }
 
-        // Clear detection history
-        if (detectionHistory != null) {
-            detectionHistory.clear();
-        }
+        // Clear tracks and pooled buffers
+        engine.close();
+        bitmapFramePool.clear();
 
         Log.d(TAG, "BirdDetectionPipeline closed successfully");
     }
 
-    private Tensor preprocessForYolo(Bitmap bitmap) {
-        try {
-            if (bitmap == null || bitmap.isRecycled()) {
-                Log.w(TAG, "Invalid bitmap for preprocessing");
-                return null;
-            }
-
-            Bitmap resized = Bitmap.createScaledBitmap(bitmap, 640, 640, false);
-            int[] pixels = new int[640 * 640];
-            resized.getPixels(pixels, 0, 640, 0, 0, 640, 640);
-
-            float[] floatArray = new float[3 * 640 * 640];
-            for (int i = 0; i < pixels.length; i++) {
-                int pixel = pixels[i];
-                floatArray[i] = ((pixel >> 16) & 0xff) / 255.0f; // R
-                floatArray[640 * 640 + i] = ((pixel >> 8) & 0xff) / 255.0f; // G
-                floatArray[2 * 640 * 640 + i] = (pixel & 0xff) / 255.0f; // B
-            }
-
-            return Tensor.fromBlob(floatArray, new long[]{1, 3, 640, 640});
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to preprocess for YOLO", e);
-            return null;
-        }
-    }
-
-    private List<Detection> parseYoloV8OutputOptimized(EValue[] outputs, int imageWidth, int imageHeight) {
-        List<Detection> detections = new ArrayList<>();
-
-        try {
-            float[] output = outputs[0].toTensor().getDataAsFloatArray();
-
-            if (DEBUG_OUTPUT) {
-                Log.d(TAG, "=== YOLO PARSING ===");
-                Log.d(TAG, "Output length: " + output.length);
-            }
-
-            // Detect which YOLO version based on output size
-            if (output.length == 1800) {
-                // YOLOv26 format: [x1, y1, x2, y2, confidence, class] × 300
-                return parseYoloV26Output(output, imageWidth, imageHeight);
-            } else if (output.length == 705600) {
-                // YOLOv8 format: 84 × 8400
-                return parseYoloV8Output(output, imageWidth, imageHeight);
-            } else {
-                Log.e(TAG, "Unexpected output size: " + output.length);
-                return detections;
-            }
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error parsing YOLO output", e);
-        }
-
-        return detections;
-    }
-
-    private List<Detection> parseYoloV26Output(float[] output, int imageWidth, int imageHeight) {
-        List<Detection> detections = new ArrayList<>();
-
-        int numDetections = 300;
-        int numFeatures = 6;
-
-        float scaleX = (float) imageWidth / 640.0f;
-        float scaleY = (float) imageHeight / 640.0f;
-
-        for (int i = 0; i < numDetections; i++) {
-            int offset = i * numFeatures;
-
-            float x1 = output[offset + 0] * scaleX;
-            float y1 = output[offset + 1] * scaleY;
-            float x2 = output[offset + 2] * scaleX;
-            float y2 = output[offset + 3] * scaleY;
-            float confidence = output[offset + 4];
-            float classId = output[offset + 5];
-
-            // Filter by confidence threshold
-            if (confidence < CONFIDENCE_THRESHOLD) {
-                continue;
-            }
-
-            // Convert to RectF
-            RectF boundingBox = new RectF(x1, y1, x2, y2);
-
-            // Validate detection
-            float width = x2 - x1;
-            float height = y2 - y1;
-            if (width < MIN_BOX_SIZE || height < MIN_BOX_SIZE) {
-                continue;
-            }
-
-            Detection detection = new Detection(boundingBox, confidence, (int) classId);
-            detections.add(detection);
-
-            if (DEBUG_OUTPUT && detections.size() <= 5) {
-                Log.d(TAG, String.format("YOLOv26 Detection %d: conf=%.2f, class=%d, box=[%.1f,%.1f,%.1f,%.1f]",
-                        detections.size(), confidence, (int)classId, x1, y1, x2, y2));
-            }
-        }
-
-        if (DEBUG_OUTPUT) {
-            Log.d(TAG, "YOLOv26 parsed " + detections.size() + " detections");
-        }
-
-        return detections;
-    }
-
-    private List<Detection> parseYoloV8Output(float[] output, int imageWidth, int imageHeight) {
-        List<Detection> detections = new ArrayList<>();
-
-        int numDetections = 8400;
-        int numFeatures = 84;
-
-        float scaleX = (float) imageWidth / 640.0f;
-        float scaleY = (float) imageHeight / 640.0f;
-
-        for (int i = 0; i < numDetections; i++) {
-            float x = output[0 * numDetections + i];
-            float y = output[1 * numDetections + i];
-            float w = output[2 * numDetections + i];
-            float h = output[3 * numDetections + i];
-
-            // Enhanced coordinate validation
-            if (x <= 0 || y <= 0 || w <= 0 || h <= 0 || w > 640 || h > 640) {
-                continue;
-            }
-
-            // Find max class confidence
-            float maxClassScore = 0;
-            int bestClass = -1;
-
-            for (int classIdx = 0; classIdx < 80; classIdx++) {
-                int featureIdx = 4 + classIdx;
-                if (featureIdx < numFeatures) {
-                    float classScore = output[featureIdx * numDetections + i];
-                    if (classScore > maxClassScore) {
-                        maxClassScore = classScore;
-                        bestClass = classIdx;
-                    }
-                }
-            }
-
-            float confidence = maxClassScore;
-
-            // Stricter confidence and class checking
-            if (confidence > CONFIDENCE_THRESHOLD && bestClass == 14) { // 14 = bird class in COCO
-                RectF boundingBox = convertYoloV8Coordinates(x, y, w, h, scaleX, scaleY, imageWidth, imageHeight);
-
-                if (boundingBox != null) {
-                    detections.add(new Detection(boundingBox, confidence, bestClass));
-
-                    if (DEBUG_OUTPUT && detections.size() <= 5) {
-                        Log.d(TAG, "YOLOv8 ACCEPTED detection: " + boundingBox.toString() + " conf=" + confidence);
-                    }
-                }
-            }
-        }
-
-        if (DEBUG_OUTPUT) {
-            Log.d(TAG, "YOLOv8 parsed " + detections.size() + " detections");
-        }
-
-        return detections;
-    }
-
-
-
-    private RectF convertYoloV8Coordinates(float centerX, float centerY, float width, float height,
-                                           float scaleX, float scaleY, int imageWidth, int imageHeight) {
-
-        float scaledCenterX = centerX * scaleX;
-        float scaledCenterY = centerY * scaleY;
-        float scaledWidth = width * scaleX;
-        float scaledHeight = height * scaleY;
-
-        float left = scaledCenterX - scaledWidth / 2;
-        float top = scaledCenterY - scaledHeight / 2;
-        float right = scaledCenterX + scaledWidth / 2;
-        float bottom = scaledCenterY + scaledHeight / 2;
-
-        // Clamp to image bounds
-        left = Math.max(0, left);
-        top = Math.max(0, top);
-        right = Math.min(imageWidth, right);
-        bottom = Math.min(imageHeight, bottom);
-
-        float finalWidth = right - left;
-        float finalHeight = bottom - top;
-
-        // Stricter size validation
-        if (finalWidth >= MIN_BOX_SIZE && finalHeight >= MIN_BOX_SIZE) {
-            return new RectF(left, top, right, bottom);
-        }
-
-        return null;
+    /**
+     * Sets the COCO classes kept by the YOLOv8 decoder. Defaults to bird only; other classes are
+     * never scanned, so decoding cost grows with the number of targets.
+     */
+    public void setTargetClasses(int... classIds) {
+        engine.setTargetClasses(classIds);
     }
 
-    private List<Detection> applyEnhancedNMS(List<Detection> detections) {
-        if (detections.size() <= 1) return detections;
-
-        Collections.sort(detections, (a, b) -> Float.compare(b.confidence, a.confidence));
-
-        List<Detection> result = new ArrayList<>();
-        boolean[] suppressed = new boolean[detections.size()];
-
-        for (int i = 0; i < detections.size(); i++) {
-            if (suppressed[i]) continue;
-
-            result.add(detections.get(i));
-
-            for (int j = i + 1; j < detections.size(); j++) {
-                if (suppressed[j]) continue;
-
-                float iou = calculateIoU(detections.get(i).boundingBox, detections.get(j).boundingBox);
-                if (iou > NMS_THRESHOLD) {
-                    suppressed[j] = true;
-
-                    if (DEBUG_OUTPUT) {
-                        Log.d(TAG, "Enhanced NMS: Suppressed detection with IoU " + iou);
-                    }
-                }
-            }
-
-            if (result.size() >= MAX_DETECTIONS) {
-                break;
-            }
-        }
-
-        return result;
+    /** Allocation counters of the detection stage buffers; flat once the pipeline is warm. */
+    public TensorBufferPool getDetectBufferPool() {
+        return engine.getDetectBufferPool();
     }
 
-    private float calculateIoU(RectF box1, RectF box2) {
-        float area1 = (box1.right - box1.left) * (box1.bottom - box1.top);
-        float area2 = (box2.right - box2.left) * (box2.bottom - box2.top);
-
-        float intersectLeft = Math.max(box1.left, box2.left);
-        float intersectTop = Math.max(box1.top, box2.top);
-        float intersectRight = Math.min(box1.right, box2.right);
-        float intersectBottom = Math.min(box1.bottom, box2.bottom);
-
-        if (intersectLeft >= intersectRight || intersectTop >= intersectBottom) {
-            return 0;
-        }
-
-        float intersectArea = (intersectRight - intersectLeft) * (intersectBottom - intersectTop);
-        return intersectArea / (area1 + area2 - intersectArea);
+    /** Allocation counters of the classification stage buffers. */
+    public TensorBufferPool getClassifyBufferPool() {
+        return engine.getClassifyBufferPool();
     }
 
-    private Tensor preprocessForClassifier(Bitmap bitmap) {
-        try {
-            if (bitmap == null || bitmap.isRecycled()) {
-                return null;
-            }
-
-            Bitmap resized = Bitmap.createScaledBitmap(bitmap, 224, 224, false);
-            int[] pixels = new int[224 * 224];
-            resized.getPixels(pixels, 0, 224, 0, 0, 224, 224);
-
-            float[] mean = {0.485f, 0.456f, 0.406f};
-            float[] std = {0.229f, 0.224f, 0.225f};
-            float[] floatArray = new float[3 * 224 * 224];
-
-            for (int i = 0; i < pixels.length; i++) {
-                int pixel = pixels[i];
-                floatArray[i] = (((pixel >> 16) & 0xff) / 255.0f - mean[0]) / std[0];
-                floatArray[224 * 224 + i] = (((pixel >> 8) & 0xff) / 255.0f - mean[1]) / std[1];
-                floatArray[2 * 224 * 224 + i] = ((pixel & 0xff) / 255.0f - mean[2]) / std[2];
-            }
-
-            return Tensor.fromBlob(floatArray, new long[]{1, 3, 224, 224});
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to preprocess for classifier", e);
-            return null;
-        }
+    /** Classifier calls saved by reusing species verdicts. */
+    public SpeciesVerdictCache getVerdictCache() {
+        return engine.getVerdictCache();
     }
 
-    private String[] classifyBird(Bitmap bitmap, RectF boundingBox) throws Exception {
-        Bitmap croppedBird = cropBitmap(bitmap, boundingBox);
-        if (croppedBird == null) {
-            return new String[]{"Bird", "0.5"};
-        }
-
-        Tensor classifierInput = preprocessForClassifier(croppedBird);
-        if (classifierInput == null) {
-            return new String[]{"Bird", "0.5"};
-        }
-
-        EValue[] classifierOutputs = classifierModule.forward(EValue.from(classifierInput));
-        return parseClassifierOutput(classifierOutputs);
+    /**
+     * Runs the detector on regions around tracked birds, at native resolution, instead of the
+     * whole frame, with a full-frame scan every {@code fullScanInterval} frames to find new ones.
+     */
+    public void setRoiDetection(boolean enabled, int fullScanInterval) {
+        RoiPlanner planner = engine.getRoiPlanner();
+        planner.setFullScanInterval(fullScanInterval);
+        planner.setEnabled(enabled);
     }
 
-    private String[] parseClassifierOutput(EValue[] outputs) {
-        try {
-            float[] probabilities = outputs[0].toTensor().getDataAsFloatArray();
-            int maxIndex = 0;
-            float maxProb = probabilities[0];
-
-            for (int i = 1; i < probabilities.length; i++) {
-                if (probabilities[i] > maxProb) {
-                    maxProb = probabilities[i];
-                    maxIndex = i;
-                }
-            }
-
-            String species = (maxIndex < birdSpeciesNames.length) ?
-                    birdSpeciesNames[maxIndex] : "Bird";
-
-            return new String[]{species, String.valueOf(maxProb)};
-        } catch (Exception e) {
-            return new String[]{"Bird", "0.5"};
-        }
+    /**
+     * Latency histograms and counters for every pipeline step. Off by default; enable it to
+     * collect, and call {@link PipelineMetrics#export()} to read.
+     */
+    public PipelineMetrics getMetrics() {
+        return engine.getMetrics();
     }
 
-    private Bitmap cropBitmap(Bitmap bitmap, RectF box) {
-        try {
-            if (bitmap == null || bitmap.isRecycled()) {
-                return null;
-            }
-
-            int left = (int) Math.max(0, box.left);
-            int top = (int) Math.max(0, box.top);
-            int width = (int) Math.min(bitmap.getWidth() - left, box.width());
-            int height = (int) Math.min(bitmap.getHeight() - top, box.height());
-
-            if (width > 0 && height > 0 && left + width <= bitmap.getWidth() && top + height <= bitmap.getHeight()) {
-                return Bitmap.createBitmap(bitmap, left, top, width, height);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to crop bitmap", e);
-        }
-        return null;
+    /** One-line summary of the buffer pools and verdict cache, for periodic logging. */
+    public String getCacheStats() {
+        return "detect[" + engine.getDetectBufferPool().getStats() + "] classify["
+                + engine.getClassifyBufferPool().getStats() + "] verdicts[" + engine.getVerdictCache().getStats() + "]";
     }
 
     public void cleanup() {
-        detectionHistory.clear();
+        engine.reset();
     }
 }
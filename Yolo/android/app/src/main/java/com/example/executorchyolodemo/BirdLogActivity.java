@@ -8,12 +8,14 @@
 
 package com.example.executorchyolodemo;
 
+import android.content.ComponentCallbacks2;
 import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
 
@@ -22,46 +24,147 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
 public class BirdLogActivity extends AppCompatActivity {
     private static final String TAG = "BirdLogActivity";
 
+    /** Session to show first; -1 or absent shows every session. */
+    public static final String EXTRA_SESSION_ID = "session_id";
+    /** Optional species filter. */
+    public static final String EXTRA_SPECIES = "species";
+
+    private SightingStore sightingStore;
+    private BirdLogAdapter adapter;
+    private TextView sessionSummary;
+    private Button scopeToggle;
+    private long sessionId;
+    private String species;
+    private boolean showAllSessions;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_bird_log);
 
         RecyclerView recyclerView = findViewById(R.id.birdLogRecyclerView);
-        TextView sessionSummary = findViewById(R.id.sessionSummary);
+        sessionSummary = findViewById(R.id.sessionSummary);
+        scopeToggle = findViewById(R.id.scopeToggle);
 
-        // FIXED: Get bird logs from Intent extras (the correct way)
-        ArrayList<BirdSessionManager.BirdSighting> birdLogs =
-                (ArrayList<BirdSessionManager.BirdSighting>) getIntent().getSerializableExtra("bird_logs");
-
-        if (birdLogs == null) {
-            birdLogs = new ArrayList<>();
-        }
+        sightingStore = SightingStore.getInstance(this);
+        sessionId = getIntent().getLongExtra(EXTRA_SESSION_ID, -1);
+        species = getIntent().getStringExtra(EXTRA_SPECIES);
+        showAllSessions = sessionId < 0;
 
-        // Setup RecyclerView
-        BirdLogAdapter adapter = new BirdLogAdapter(birdLogs);
+        // Setup RecyclerView; sightings are paged in from the store as the list scrolls
+        adapter = new BirdLogAdapter(sightingStore, ThumbnailCache.getInstance(), this::runOnUiThread);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setAdapter(adapter);
 
-        // Show summary
-        sessionSummary.setText(String.format("Session Summary: %d birds detected", birdLogs.size()));
+        scopeToggle.setVisibility(sessionId < 0 ? View.GONE : View.VISIBLE);
+        scopeToggle.setOnClickListener(v -> {
+            showAllSessions = !showAllSessions;
+            showSightings();
+        });
+        showSightings();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        Log.d(TAG, "Thumbnail cache: " + ThumbnailCache.getInstance().getStats());
+    }
+
+    // RUNNING_LOW is deprecated from API 34, which no longer sends it; older releases still do
+    @Override
+    @SuppressWarnings("deprecation")
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            ThumbnailCache.getInstance().trimMemory();
+        }
+    }
+
+    private void showSightings() {
+        SightingQuery query = showAllSessions ? SightingQuery.all() : SightingQuery.forSession(sessionId);
+        query.species(species);
+        scopeToggle.setText(showAllSessions ? "Show this session" : "Show all sessions");
+        adapter.setQuery(query);
 
-        Log.d(TAG, "BirdLogActivity loaded with " + birdLogs.size() + " sightings");
+        // Show summary
+        String scope = showAllSessions ? "All sessions" : "Session Summary";
+        sightingStore.execute(() -> {
+            long count = sightingStore.count(query);
+            runOnUiThread(() -> sessionSummary.setText(
+                    String.format(Locale.US, "%s: %d birds detected", scope, count)));
+            Log.d(TAG, scope + ": " + count + " sightings");
+        });
     }
 
-    // RecyclerView Adapter
+    /**
+     * RecyclerView Adapter that loads sightings a page at a time, fetching the next page when
+     * the list gets close to the end of what has been loaded.
+     */
     public static class BirdLogAdapter extends RecyclerView.Adapter<BirdLogAdapter.BirdViewHolder> {
         private static final String TAG = "BirdLogAdapter";
-        private List<BirdSessionManager.BirdSighting> birdSightings;
+        private static final int PAGE_SIZE = 50;
+        private static final int PREFETCH_DISTANCE = 10;
+
+        /** Posts work to the UI thread. */
+        public interface UiThread {
+            void post(Runnable runnable);
+        }
+
+        private final SightingStore store;
+        private final ThumbnailCache<Bitmap> thumbnailCache;
+        private final UiThread uiThread;
+        private final List<BirdSessionManager.BirdSighting> birdSightings = new ArrayList<>();
+        private final SimpleDateFormat timeFormat =
+                new SimpleDateFormat("MMM d, HH:mm:ss", Locale.getDefault());
+        private SightingQuery query;
+        private int generation;
+        private boolean loading;
+        private boolean exhausted;
+
+        public BirdLogAdapter(SightingStore store, ThumbnailCache<Bitmap> thumbnailCache, UiThread uiThread) {
+            this.store = store;
+            this.thumbnailCache = thumbnailCache;
+            this.uiThread = uiThread;
+        }
+
+        /** Replaces the list with the first page of {@code query}. */
+        public void setQuery(SightingQuery query) {
+            this.query = query;
+            generation++;
+            birdSightings.clear();
+            loading = false;
+            exhausted = false;
+            notifyDataSetChanged();
+            loadNextPage();
+        }
 
-        public BirdLogAdapter(List<BirdSessionManager.BirdSighting> birdSightings) {
-            this.birdSightings = birdSightings;
+        private void loadNextPage() {
+            if (loading || exhausted || query == null) {
+                return;
+            }
+            loading = true;
+            int requested = generation;
+            BirdSessionManager.BirdSighting last =
+                    birdSightings.isEmpty() ? null : birdSightings.get(birdSightings.size() - 1);
+            store.loadPage(query, last, PAGE_SIZE, (page, lastPage) -> uiThread.post(() -> {
+                if (requested != generation) {
+                    return; // The query changed while this page was loading
+                }
+                loading = false;
+                exhausted = lastPage;
+                int start = birdSightings.size();
+                birdSightings.addAll(page);
+                notifyItemRangeInserted(start, page.size());
+            }));
         }
 
         @NonNull
@@ -74,27 +177,34 @@ public class BirdLogActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(@NonNull BirdViewHolder holder, int position) {
+            if (position >= birdSightings.size() - PREFETCH_DISTANCE) {
+                loadNextPage();
+            }
             BirdSessionManager.BirdSighting sighting = birdSightings.get(position);
 
             holder.birdName.setText(sighting.species);
-            holder.timestamp.setText(sighting.timestamp);
+            holder.timestamp.setText(timeFormat.format(new Date(sighting.timeMillis)));
             holder.confidence.setText(String.format("%.1f%%", sighting.confidence * 100));
 
-            // FIXED: Load bitmap from file instead of using transient bitmap
-            try {
-                Bitmap thumbnail = sighting.loadThumbnail();
-                if (thumbnail != null) {
-                    holder.thumbnail.setImageBitmap(thumbnail);
-                    Log.d(TAG, "Loaded thumbnail for " + sighting.species);
-                } else {
-                    // Default bird icon if thumbnail loading fails
-                    holder.thumbnail.setImageResource(android.R.drawable.ic_menu_gallery);
-                    Log.w(TAG, "Failed to load thumbnail for " + sighting.species + ", using default icon");
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading thumbnail for " + sighting.species, e);
-                holder.thumbnail.setImageResource(android.R.drawable.ic_menu_gallery);
-            }
+            // Thumbnails come from the memory cache or are decoded off the UI thread at the
+            // size of the view; a load still running for the row's previous sighting is dropped
+            holder.cancelThumbnail();
+            holder.thumbnail.setImageResource(android.R.drawable.ic_menu_gallery);
+            ViewGroup.LayoutParams size = holder.thumbnail.getLayoutParams();
+            holder.pendingThumbnail = thumbnailCache.load(sighting.thumbnailPath, size.width, size.height,
+                    bitmap -> {
+                        holder.pendingThumbnail = null;
+                        if (bitmap != null) {
+                            holder.thumbnail.setImageBitmap(bitmap);
+                        } else {
+                            Log.w(TAG, "Failed to load thumbnail for " + sighting.species + ", using default icon");
+                        }
+                    });
+        }
+
+        @Override
+        public void onViewRecycled(@NonNull BirdViewHolder holder) {
+            holder.cancelThumbnail();
         }
 
         @Override
@@ -107,6 +217,7 @@ public class BirdLogActivity extends AppCompatActivity {
             TextView birdName;
             TextView timestamp;
             TextView confidence;
+            ThumbnailCache.Request pendingThumbnail;
 
             BirdViewHolder(View itemView) {
                 super(itemView);
@@ -115,6 +226,13 @@ public class BirdLogActivity extends AppCompatActivity {
                 timestamp = itemView.findViewById(R.id.timestamp);
                 confidence = itemView.findViewById(R.id.confidence);
             }
+
+            void cancelThumbnail() {
+                if (pendingThumbnail != null) {
+                    pendingThumbnail.cancel();
+                    pendingThumbnail = null;
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
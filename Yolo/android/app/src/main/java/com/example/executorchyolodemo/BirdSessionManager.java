@@ -10,74 +10,83 @@ package com.example.executorchyolodemo;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.os.Build;
 import android.util.Log;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Serializable;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
 public class BirdSessionManager {
     private static final String TAG = "BirdSessionManager";
     private static final String THUMBNAILS_DIR = "bird_thumbnails";
-
-    public static class BirdSighting implements Serializable {
+    private static final int THUMBNAIL_QUEUE_CAPACITY = 8;
+    private static final long THUMBNAIL_FLUSH_TIMEOUT_MS = 500;
+    private static final long DUPLICATE_SIGHTING_WINDOW_MS = 3000;
+
+    public static class BirdSighting {
+        public long id = -1; // Row id in the sighting store, once written
+        public long sessionId;
+        public long timeMillis;
         public String species;
-        public String timestamp;
         public float confidence;
         public String thumbnailPath; // Changed from transient Bitmap to file path
         public String sightingId; // Unique ID for each sighting
 
-        public BirdSighting(String species, String timestamp, float confidence, String thumbnailPath) {
+        public BirdSighting(String species, long sessionId, long timeMillis, float confidence,
+                            String thumbnailPath) {
             this.species = species;
-            this.timestamp = timestamp;
+            this.sessionId = sessionId;
+            this.timeMillis = timeMillis;
             this.confidence = confidence;
             this.thumbnailPath = thumbnailPath;
             this.sightingId = UUID.randomUUID().toString();
         }
-
-        // Helper method to load bitmap from file
-        public Bitmap loadThumbnail() {
-            if (thumbnailPath == null || thumbnailPath.isEmpty()) {
-                return null;
-            }
-            try {
-                File file = new File(thumbnailPath);
-                if (file.exists()) {
-                    return BitmapFactory.decodeFile(thumbnailPath);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to load thumbnail from " + thumbnailPath, e);
-            }
-            return null;
-        }
     }
 
     private Context context;
-    private List<BirdSighting> currentSessionSightings;
+    private final SightingStore sightingStore;
+    private long sessionId = -1;
+    private int birdsThisSession;
     private Set<String> uniqueBirdsThisSession;
     private SimpleDateFormat timeFormat;
     private long lastSightingTime;
     private File thumbnailsDir;
 
+    // Thumbnails are encoded and written off the UI thread
+    private final ThumbnailWriter<Bitmap> thumbnailWriter;
+    private volatile boolean webpThumbnails;
+    private volatile int thumbnailQuality = 85;
+    // Latest logged sighting per species and the confidence of its queued thumbnail, so later
+    // frames of the same burst can improve it
+    private final Map<String, BirdSighting> lastSightingBySpecies = new HashMap<>();
+    private final Map<String, Float> thumbnailConfidence = new HashMap<>();
+
     public BirdSessionManager(Context context) {
         this.context = context;
         timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
-        currentSessionSightings = new ArrayList<>();
+        sightingStore = SightingStore.getInstance(context);
         uniqueBirdsThisSession = new HashSet<>();
         lastSightingTime = 0;
 
         // Create thumbnails directory
         setupThumbnailsDirectory();
+        thumbnailWriter = new ThumbnailWriter<>(THUMBNAIL_QUEUE_CAPACITY,
+                this::encodeThumbnail, Bitmap::recycle);
+    }
+
+    /** Selects the thumbnail encoding for sightings logged from now on. */
+    public void setThumbnailFormat(boolean webp, int quality) {
+        webpThumbnails = webp;
+        thumbnailQuality = Math.max(0, Math.min(100, quality));
     }
 
     private void setupThumbnailsDirectory() {
@@ -92,78 +101,151 @@ public class BirdSessionManager {
         }
     }
 
-    public void startNewSession() {
-        // Clean up previous session thumbnails
-        cleanupOldThumbnails();
+    public synchronized void startNewSession() {
+        // Sightings and thumbnails of earlier sessions stay in the store
+        long now = System.currentTimeMillis();
+        sessionId = now;
+        sightingStore.startSession(sessionId, now);
 
-        currentSessionSightings.clear();
+        birdsThisSession = 0;
         uniqueBirdsThisSession.clear();
+        lastSightingBySpecies.clear();
+        thumbnailConfidence.clear();
         lastSightingTime = 0;
 
         Log.d(TAG, "New bird watching session started");
     }
 
-    public void logBirdSighting(String species, Bitmap thumbnail, float confidence) {
+    /**
+     * Ends the session in the store. Queued thumbnails keep being written in the background;
+     * waiting for them, only to report how they went, happens off the calling thread.
+     */
+    public void endSession() {
+        if (sessionId >= 0) {
+            sightingStore.endSession(sessionId, System.currentTimeMillis());
+        }
+        if (thumbnailWriter.isIdle()) {
+            Log.d(TAG, "Thumbnail writer: " + thumbnailWriter.getStats());
+            return;
+        }
+        new Thread(() -> {
+            try {
+                if (!thumbnailWriter.flush(THUMBNAIL_FLUSH_TIMEOUT_MS)) {
+                    Log.w(TAG, "Thumbnail writes still pending at end of session");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Log.d(TAG, "Thumbnail writer: " + thumbnailWriter.getStats());
+        }, "thumbnail-flush").start();
+    }
+
+    /**
+     * True if {@link #logBirdSighting} would use a thumbnail for this detection, either for a
+     * new sighting or to improve one whose thumbnail has not been written yet. Lets the caller
+     * skip cropping frames that would be thrown away. Safe to call from any thread.
+     */
+    public synchronized boolean wantsThumbnail(String species, float confidence) {
+        if (isNewSighting(species, System.currentTimeMillis())) {
+            return true;
+        }
+        BirdSighting last = lastSightingBySpecies.get(species);
+        return last != null && last.thumbnailPath != null
+                && confidence > thumbnailConfidence.get(species)
+                && thumbnailWriter.isPending(new File(last.thumbnailPath));
+    }
+
+    /** Logs a sighting. Takes ownership of {@code thumbnail}, which may be null. */
+    public synchronized void logBirdSighting(String species, Bitmap thumbnail, float confidence) {
         long currentTime = System.currentTimeMillis();
 
         // Avoid duplicate detections within 3 seconds of same species
-        if (currentTime - lastSightingTime > 3000 || !uniqueBirdsThisSession.contains(species)) {
-            String timestamp = timeFormat.format(new Date());
+        if (isNewSighting(species, currentTime)) {
+            String timestamp = timeFormat.format(new Date(currentTime));
 
-            // Save thumbnail to file instead of keeping in memory
+            // Queue the thumbnail for writing; the path is valid once the write completes
             String thumbnailPath = saveThumbnailToFile(thumbnail, species, timestamp);
 
-            BirdSighting sighting = new BirdSighting(species, timestamp, confidence, thumbnailPath);
+            BirdSighting sighting = new BirdSighting(species, sessionId, currentTime, confidence,
+                    thumbnailPath);
+            sightingStore.insert(sighting);
 
-            currentSessionSightings.add(sighting);
+            birdsThisSession++;
             uniqueBirdsThisSession.add(species);
+            lastSightingBySpecies.put(species, sighting);
+            thumbnailConfidence.put(species, confidence);
             lastSightingTime = currentTime;
 
             Log.d(TAG, "Logged bird sighting: " + species + " with thumbnail: " + thumbnailPath);
+            return;
+        }
+
+        // A duplicate within the burst: keep the best frame if the earlier one is still queued
+        BirdSighting last = lastSightingBySpecies.get(species);
+        if (thumbnail != null && last != null && last.thumbnailPath != null
+                && confidence > thumbnailConfidence.get(species)
+                && thumbnailWriter.coalesce(new File(last.thumbnailPath), thumbnail)) {
+            thumbnailConfidence.put(species, confidence);
+            return;
+        }
+        if (thumbnail != null) {
+            thumbnail.recycle();
         }
     }
 
+    private boolean isNewSighting(String species, long currentTime) {
+        return currentTime - lastSightingTime > DUPLICATE_SIGHTING_WINDOW_MS
+                || !uniqueBirdsThisSession.contains(species);
+    }
+
     private String saveThumbnailToFile(Bitmap bitmap, String species, String timestamp) {
         if (bitmap == null || thumbnailsDir == null) {
             Log.w(TAG, "Cannot save thumbnail: bitmap or directory is null");
             return null;
         }
 
-        try {
-            // Create unique filename
-            String filename = "bird_" + species.replaceAll("[^a-zA-Z0-9]", "_") +
-                    "_" + timestamp.replaceAll(":", "") +
-                    "_" + System.currentTimeMillis() + ".jpg";
-
-            File thumbnailFile = new File(thumbnailsDir, filename);
-
-            // Save bitmap to file
-            FileOutputStream fos = new FileOutputStream(thumbnailFile);
-            boolean saved = bitmap.compress(Bitmap.CompressFormat.JPEG, 85, fos);
-            fos.close();
-
-            if (saved) {
-                Log.d(TAG, "Thumbnail saved successfully: " + thumbnailFile.getAbsolutePath());
-                return thumbnailFile.getAbsolutePath();
-            } else {
-                Log.e(TAG, "Failed to save thumbnail");
-                return null;
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Error saving thumbnail to file", e);
+        // Create unique filename
+        String filename = "bird_" + species.replaceAll("[^a-zA-Z0-9]", "_") +
+                "_" + timestamp.replaceAll(":", "") +
+                "_" + System.currentTimeMillis() + (webpThumbnails ? ".webp" : ".jpg");
+
+        File thumbnailFile = new File(thumbnailsDir, filename);
+        if (!thumbnailWriter.submit(thumbnailFile, bitmap)) {
+            Log.w(TAG, "Thumbnail queue full, dropping thumbnail for " + species);
+            bitmap.recycle();
             return null;
         }
+        return thumbnailFile.getAbsolutePath();
+    }
+
+    // Runs on the writer thread
+    private void encodeThumbnail(Bitmap bitmap, OutputStream out) throws IOException {
+        Bitmap.CompressFormat format = Bitmap.CompressFormat.JPEG;
+        if (webpThumbnails) {
+            format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                    ? Bitmap.CompressFormat.WEBP_LOSSY : legacyWebp();
+        }
+        if (!bitmap.compress(format, thumbnailQuality, out)) {
+            throw new IOException("Failed to compress thumbnail");
+        }
+    }
+
+    // WEBP is deprecated from API 30 but is the only WebP format before it; lossy with quality < 100
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat legacyWebp() {
+        return Bitmap.CompressFormat.WEBP;
     }
 
-    public ArrayList<BirdSighting> getCurrentSessionLogs() {
-        return new ArrayList<>(currentSessionSightings);
+    /** Id of the current or most recent session, or -1 before the first one starts. */
+    public long getSessionId() {
+        return sessionId;
     }
 
-    public int getTotalBirdsInSession() {
-        return currentSessionSightings.size();
+    public synchronized int getTotalBirdsInSession() {
+        return birdsThisSession;
     }
 
-    public int getUniqueSpeciesCount() {
+    public synchronized int getUniqueSpeciesCount() {
         return uniqueBirdsThisSession.size();
     }
 
@@ -172,27 +254,18 @@ public class BirdSessionManager {
                 getTotalBirdsInSession(), getUniqueSpeciesCount());
     }
 
-    private void cleanupOldThumbnails() {
-        if (thumbnailsDir == null || !thumbnailsDir.exists()) {
-            return;
-        }
-
-        try {
-            File[] files = thumbnailsDir.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        boolean deleted = file.delete();
-                        Log.d(TAG, "Cleanup old thumbnail: " + file.getName() + " deleted: " + deleted);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error cleaning up old thumbnails", e);
-        }
-    }
-
+    /**
+     * Stops the thumbnail writer once its queued writes are done or have timed out. The wait
+     * happens off the calling thread, which is usually the UI thread in onDestroy; thumbnails
+     * logged afterwards are recycled without being written.
+     */
     public void cleanup() {
-        cleanupOldThumbnails();
+        new Thread(() -> {
+            try {
+                thumbnailWriter.close(THUMBNAIL_FLUSH_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "thumbnail-close").start();
     }
 }
\ No newline at end of file
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Associates detections across frames so each bird keeps one track, and with it one
+ * confidence history, while it moves around the frame.
+ *
+ * Every track carries a constant-velocity motion model. On each frame the track boxes are
+ * moved to where the model predicts them and matched greedily to detections by IoU; boxes that
+ * no longer overlap but whose centers are close still match, which covers fast movement.
+ * Unmatched detections start new tracks and tracks not seen for a number of frames are dropped.
+ *
+ * Time is measured in frame indices supplied by the caller, so skipped or dropped frames count
+ * as elapsed time. Tracks are pooled and reused; not thread-safe.
+ */
+public final class BirdTracker {
+
+    /** One tracked object. Values are valid until the next {@link #update}. */
+    public static final class Track {
+        private long id;
+        private float left;
+        private float top;
+        private float right;
+        private float bottom;
+        private float velocityX;
+        private float velocityY;
+        private long firstSeenFrame;
+        private long lastSeenFrame;
+        private int consecutiveFrames;
+
+        // Ring buffer of the most recent detection confidences
+        private final float[] confidences;
+        private int confidenceCount;
+        private int confidenceHead;
+        private float confidenceSum;
+
+        Track(int historySize) {
+            confidences = new float[historySize];
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public float getLeft() {
+            return left;
+        }
+
+        public float getTop() {
+            return top;
+        }
+
+        public float getRight() {
+            return right;
+        }
+
+        public float getBottom() {
+            return bottom;
+        }
+
+        /** Estimated center motion in pixels per frame. */
+        public float getVelocityX() {
+            return velocityX;
+        }
+
+        public float getVelocityY() {
+            return velocityY;
+        }
+
+        public long getLastSeenFrame() {
+            return lastSeenFrame;
+        }
+
+        /** Frames since the track was created, including the current one. */
+        public long getAgeFrames() {
+            return lastSeenFrame - firstSeenFrame + 1;
+        }
+
+        /** Number of back-to-back frames the track was matched in, up to the current one. */
+        public int getConsecutiveFrames() {
+            return consecutiveFrames;
+        }
+
+        public int getConfidenceCount() {
+            return confidenceCount;
+        }
+
+        /**
+         * True once the track has been matched in at least {@code minFrames} back-to-back frames
+         * and its windowed mean confidence reaches {@code minAverage}.
+         */
+        public boolean isStable(int minFrames, float minAverage) {
+            return confidenceCount >= minFrames
+                    && consecutiveFrames >= minFrames
+                    && getAverageConfidence() >= minAverage;
+        }
+
+        /** Mean of the confidences in the history window. */
+        public float getAverageConfidence() {
+            return confidenceCount == 0 ? 0f : confidenceSum / confidenceCount;
+        }
+
+        /** The i-th most recent confidence, 0 being the latest. */
+        public float getConfidence(int i) {
+            int index = confidenceHead - 1 - i;
+            if (index < 0) {
+                index += confidences.length;
+            }
+            return confidences[index];
+        }
+
+        void start(long id, float left, float top, float right, float bottom,
+                   float confidence, long frame) {
+            this.id = id;
+            setBox(left, top, right, bottom);
+            velocityX = 0;
+            velocityY = 0;
+            firstSeenFrame = frame;
+            lastSeenFrame = frame;
+            consecutiveFrames = 1;
+            confidenceCount = 0;
+            confidenceHead = 0;
+            confidenceSum = 0;
+            addConfidence(confidence);
+        }
+
+        void match(float left, float top, float right, float bottom, float confidence,
+                   long frame, float smoothing) {
+            long elapsed = Math.max(1, frame - lastSeenFrame);
+            float measuredX = (centerX(left, right) - centerX(this.left, this.right)) / elapsed;
+            float measuredY = (centerY(top, bottom) - centerY(this.top, this.bottom)) / elapsed;
+            velocityX += smoothing * (measuredX - velocityX);
+            velocityY += smoothing * (measuredY - velocityY);
+            consecutiveFrames = elapsed == 1 ? consecutiveFrames + 1 : 1;
+            lastSeenFrame = frame;
+            setBox(left, top, right, bottom);
+            addConfidence(confidence);
+        }
+
+        private void setBox(float left, float top, float right, float bottom) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+        private void addConfidence(float confidence) {
+            if (confidenceCount == confidences.length) {
+                confidenceSum -= confidences[confidenceHead];
+            } else {
+                confidenceCount++;
+            }
+            confidences[confidenceHead] = confidence;
+            confidenceSum += confidence;
+            confidenceHead = (confidenceHead + 1) % confidences.length;
+        }
+    }
+
+    private final int historySize;
+    private final int maxAgeFrames;
+    private final float minIou;
+    private final float maxCenterDistance;
+    private final float velocitySmoothing;
+
+    private final List<Track> tracks = new ArrayList<>();
+    private final List<Track> freeTracks = new ArrayList<>();
+    private long nextTrackId = 1;
+
+    // Matching scratch, grown on demand
+    private float[] predicted = new float[0];
+    private boolean[] trackMatched = new boolean[0];
+    private float[] pairAffinity = new float[0];
+
+    /**
+     * @param historySize       confidences kept per track
+     * @param maxAgeFrames      tracks not matched for more than this many frames are dropped
+     * @param minIou            IoU between a prediction and a detection that counts as a match
+     * @param maxCenterDistance fallback match radius for non-overlapping boxes, as a fraction
+     *                          of the track's larger side
+     */
+    public BirdTracker(int historySize, int maxAgeFrames, float minIou, float maxCenterDistance) {
+        this.historySize = historySize;
+        this.maxAgeFrames = maxAgeFrames;
+        this.minIou = minIou;
+        this.maxCenterDistance = maxCenterDistance;
+        this.velocitySmoothing = 0.5f;
+    }
+
+    /**
+     * Advances all tracks to {@code frame} and matches them against {@code detections}.
+     * {@code assigned[i]} receives the track of detection i.
+     */
+    public void update(DetectionBuffer detections, long frame, Track[] assigned) {
+        expireTracks(frame);
+
+        int detectionCount = detections.size();
+        int trackCount = tracks.size();
+        ensureCapacity(trackCount, detectionCount);
+
+        for (int t = 0; t < trackCount; t++) {
+            Track track = tracks.get(t);
+            float dx = track.velocityX * (frame - track.lastSeenFrame);
+            float dy = track.velocityY * (frame - track.lastSeenFrame);
+            predicted[4 * t] = track.left + dx;
+            predicted[4 * t + 1] = track.top + dy;
+            predicted[4 * t + 2] = track.right + dx;
+            predicted[4 * t + 3] = track.bottom + dy;
+            trackMatched[t] = false;
+        }
+        for (int d = 0; d < detectionCount; d++) {
+            assigned[d] = null;
+            for (int t = 0; t < trackCount; t++) {
+                pairAffinity[d * trackCount + t] = affinity(detections, d, t);
+            }
+        }
+
+        // Greedy assignment, best pair first; there are only a handful of birds per frame
+        while (true) {
+            int bestDetection = -1;
+            int bestTrack = -1;
+            float best = 0;
+            for (int d = 0; d < detectionCount; d++) {
+                if (assigned[d] != null) {
+                    continue;
+                }
+                for (int t = 0; t < trackCount; t++) {
+                    float value = pairAffinity[d * trackCount + t];
+                    if (!trackMatched[t] && value > best) {
+                        best = value;
+                        bestDetection = d;
+                        bestTrack = t;
+                    }
+                }
+            }
+            if (bestDetection < 0) {
+                break;
+            }
+            Track track = tracks.get(bestTrack);
+            track.match(detections.left(bestDetection), detections.top(bestDetection),
+                    detections.right(bestDetection), detections.bottom(bestDetection),
+                    detections.score(bestDetection), frame, velocitySmoothing);
+            trackMatched[bestTrack] = true;
+            assigned[bestDetection] = track;
+        }
+
+        for (int d = 0; d < detectionCount; d++) {
+            if (assigned[d] == null) {
+                Track track = freeTracks.isEmpty()
+                        ? new Track(historySize) : freeTracks.remove(freeTracks.size() - 1);
+                track.start(nextTrackId++, detections.left(d), detections.top(d),
+                        detections.right(d), detections.bottom(d), detections.score(d), frame);
+                tracks.add(track);
+                assigned[d] = track;
+            }
+        }
+    }
+
+    public int getTrackCount() {
+        return tracks.size();
+    }
+
+    public Track getTrack(int i) {
+        return tracks.get(i);
+    }
+
+    public void clear() {
+        freeTracks.addAll(tracks);
+        tracks.clear();
+    }
+
+    /**
+     * Match strength between detection d and the predicted box of track t. Overlapping pairs
+     * score their IoU; close but non-overlapping pairs score below {@code minIou} so a real
+     * overlap always wins. Zero means no match.
+     */
+    private float affinity(DetectionBuffer detections, int d, int t) {
+        float left = detections.left(d);
+        float top = detections.top(d);
+        float right = detections.right(d);
+        float bottom = detections.bottom(d);
+        float trackLeft = predicted[4 * t];
+        float trackTop = predicted[4 * t + 1];
+        float trackRight = predicted[4 * t + 2];
+        float trackBottom = predicted[4 * t + 3];
+
+        float intersectWidth = Math.min(right, trackRight) - Math.max(left, trackLeft);
+        float intersectHeight = Math.min(bottom, trackBottom) - Math.max(top, trackTop);
+        if (intersectWidth > 0 && intersectHeight > 0) {
+            float intersection = intersectWidth * intersectHeight;
+            float union = (right - left) * (bottom - top)
+                    + (trackRight - trackLeft) * (trackBottom - trackTop) - intersection;
+            float iou = intersection / union;
+            if (iou >= minIou) {
+                return iou;
+            }
+        }
+
+        float size = Math.max(trackRight - trackLeft, trackBottom - trackTop);
+        float dx = centerX(left, right) - centerX(trackLeft, trackRight);
+        float dy = centerY(top, bottom) - centerY(trackTop, trackBottom);
+        float distance = (float) Math.sqrt(dx * dx + dy * dy) / Math.max(1f, size);
+        if (distance < maxCenterDistance) {
+            return minIou * (1f - distance / maxCenterDistance);
+        }
+        return 0f;
+    }
+
+    private void expireTracks(long frame) {
+        for (int t = tracks.size() - 1; t >= 0; t--) {
+            Track track = tracks.get(t);
+            if (frame - track.lastSeenFrame > maxAgeFrames) {
+                tracks.remove(t);
+                freeTracks.add(track);
+            }
+        }
+    }
+
+    private void ensureCapacity(int trackCount, int detectionCount) {
+        if (trackMatched.length < trackCount) {
+            trackMatched = new boolean[trackCount * 2];
+            predicted = new float[trackCount * 8];
+        }
+        if (pairAffinity.length < trackCount * detectionCount) {
+            pairAffinity = new float[trackCount * detectionCount * 2];
+        }
+    }
+
+    private static float centerX(float left, float right) {
+        return (left + right) / 2;
+    }
+
+    private static float centerY(float top, float bottom) {
+        return (top + bottom) / 2;
+    }
+}
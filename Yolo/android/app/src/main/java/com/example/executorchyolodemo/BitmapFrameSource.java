@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import android.graphics.Bitmap;
+
+/**
+ * FrameSource backed by an ARGB Bitmap, for callers that already hold a decoded image.
+ * The region is read once with getPixels into the pool's pixel scratch array and then
+ * sampled, so no scaled copy is created.
+ */
+public class BitmapFrameSource implements FrameSource {
+    private final TensorBufferPool pool;
+    private Bitmap bitmap;
+    private int[] regionPixels;
+    private int[] colCoords = new int[0];
+    private int[] rowCoords = new int[0];
+
+    public BitmapFrameSource(TensorBufferPool pool) {
+        this.pool = pool;
+    }
+
+    public BitmapFrameSource set(Bitmap bitmap) {
+        this.bitmap = bitmap;
+        return this;
+    }
+
+    @Override
+    public int getWidth() {
+        return bitmap.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return bitmap.getHeight();
+    }
+
+    @Override
+    public void fillTensor(float left, float top, float right, float bottom,
+                           int dstWidth, int dstHeight, Normalization normalization,
+                           float[] dst, int dstOffset) {
+        int regionWidth = readRegion(left, top, right, bottom, dstWidth, dstHeight);
+        int planeSize = dstWidth * dstHeight;
+        int out = dstOffset;
+
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int row = rowCoords[dy] * regionWidth;
+            for (int dx = 0; dx < dstWidth; dx++, out++) {
+                int pixel = regionPixels[row + colCoords[dx]];
+                dst[out] = normalization.red[(pixel >> 16) & 0xff];
+                dst[out + planeSize] = normalization.green[(pixel >> 8) & 0xff];
+                dst[out + 2 * planeSize] = normalization.blue[pixel & 0xff];
+            }
+        }
+    }
+
+    @Override
+    public void fillArgb(float left, float top, float right, float bottom,
+                         int dstWidth, int dstHeight, int[] dst, int dstOffset) {
+        int regionWidth = readRegion(left, top, right, bottom, dstWidth, dstHeight);
+        int out = dstOffset;
+
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int row = rowCoords[dy] * regionWidth;
+            for (int dx = 0; dx < dstWidth; dx++, out++) {
+                dst[out] = regionPixels[row + colCoords[dx]];
+            }
+        }
+    }
+
+    /**
+     * Copies the integer bounds of the region into regionPixels and fills the sampling tables
+     * with coordinates relative to that region. Returns the region width.
+     */
+    private int readRegion(float left, float top, float right, float bottom, int dstWidth, int dstHeight) {
+        int x0 = Math.min(bitmap.getWidth() - 1, Math.max(0, (int) left));
+        int y0 = Math.min(bitmap.getHeight() - 1, Math.max(0, (int) top));
+        int x1 = Math.min(bitmap.getWidth(), (int) Math.ceil(right));
+        int y1 = Math.min(bitmap.getHeight(), (int) Math.ceil(bottom));
+        int regionWidth = Math.max(1, x1 - x0);
+        int regionHeight = Math.max(1, y1 - y0);
+
+        regionPixels = pool.intScratch(regionWidth * regionHeight);
+        if (colCoords.length < dstWidth) {
+            colCoords = new int[dstWidth];
+        }
+        if (rowCoords.length < dstHeight) {
+            rowCoords = new int[dstHeight];
+        }
+
+        bitmap.getPixels(regionPixels, 0, regionWidth, x0, y0, regionWidth, regionHeight);
+        FrameSource.sampleAxis(left - x0, right - x0, dstWidth, regionWidth, colCoords);
+        FrameSource.sampleAxis(top - y0, bottom - y0, dstHeight, regionHeight, rowCoords);
+        return regionWidth;
+    }
+}
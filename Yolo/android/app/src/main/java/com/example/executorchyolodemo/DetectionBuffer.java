@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of detections stored as parallel primitive arrays (one array per field).
+ *
+ * Decoding writes into a buffer that is cleared and reused every frame, so the per-anchor
+ * work creates no objects. Boxes are in image pixel coordinates.
+ */
+public final class DetectionBuffer {
+    private float[] left;
+    private float[] top;
+    private float[] right;
+    private float[] bottom;
+    private float[] score;
+    private int[] classId;
+    private int size;
+
+    public DetectionBuffer() {
+        this(64);
+    }
+
+    public DetectionBuffer(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        left = new float[capacity];
+        top = new float[capacity];
+        right = new float[capacity];
+        bottom = new float[capacity];
+        score = new float[capacity];
+        classId = new int[capacity];
+    }
+
+    public void add(float left, float top, float right, float bottom, float score, int classId) {
+        if (size == this.left.length) {
+            grow();
+        }
+        this.left[size] = left;
+        this.top[size] = top;
+        this.right[size] = right;
+        this.bottom[size] = bottom;
+        this.score[size] = score;
+        this.classId[size] = classId;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public float left(int i) {
+        return left[i];
+    }
+
+    public float top(int i) {
+        return top[i];
+    }
+
+    public float right(int i) {
+        return right[i];
+    }
+
+    public float bottom(int i) {
+        return bottom[i];
+    }
+
+    public float score(int i) {
+        return score[i];
+    }
+
+    public int classId(int i) {
+        return classId[i];
+    }
+
+    private void grow() {
+        int capacity = left.length * 2;
+        left = Arrays.copyOf(left, capacity);
+        top = Arrays.copyOf(top, capacity);
+        right = Arrays.copyOf(right, capacity);
+        bottom = Arrays.copyOf(bottom, capacity);
+        score = Arrays.copyOf(score, capacity);
+        classId = Arrays.copyOf(classId, capacity);
+    }
+}
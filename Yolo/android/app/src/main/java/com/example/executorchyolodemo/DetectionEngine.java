@@ -0,0 +1,587 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Detection and classification core of the bird pipeline: preprocessing, YOLO decoding, NMS,
+ * cropping, species classification with verdict reuse, and tracking.
+ *
+ * Model execution goes through a {@link ModelRunner}, so the engine has no Android or
+ * ExecuTorch dependencies. On device the runner wraps the ExecuTorch modules; on a plain JVM it
+ * can replay recorded model outputs, which lets everything after {@code forward} be
+ * benchmarked and regression-tested without a phone.
+ *
+ * {@link #detect} and {@link #classify} are the two pipeline stages. Each must always be called
+ * from the same thread, but the two threads may differ.
+ */
+public final class DetectionEngine {
+    static final float CONFIDENCE_THRESHOLD = 0.75f; // Increased from 0.6 to 0.75 (25% boost)
+    static final float NMS_THRESHOLD = 0.35f; // Reduced from 0.4 to 0.35 for better suppression
+    static final int MAX_DETECTIONS = 3; // Reduced from 5 to 3 for more selectivity
+    static final int MIN_BOX_SIZE = 40; // Increased from 30 to 40
+
+    static final float STABILITY_THRESHOLD = 0.8f; // Require 80% confidence across frames
+    static final int HISTORY_WINDOW = 5; // Track last 5 frames
+    static final int STABLE_MIN_FRAMES = 3;
+    static final float TEMPORAL_BONUS = 0.15f; // Higher bonus for stable detections
+    static final int TRACK_MAX_AGE_FRAMES = 30; // Drop tracks unseen for 30 analyzed frames
+    static final float TRACK_MIN_IOU = 0.3f;
+    static final float TRACK_MAX_CENTER_DISTANCE = 0.5f; // Fraction of the bird's size
+
+    // Species verdicts are reused for a bird that stays in place; re-verified at least every
+    // REVERIFY_MAX_FRAMES frames, more often when the classifier is cheap enough to fit the
+    // per-frame budget
+    static final int VERDICT_CACHE_SIZE = 8;
+    static final float VERDICT_MIN_IOU = 0.6f;
+    static final float VERDICT_MAX_CONFIDENCE_DROP = 0.1f;
+    static final int REVERIFY_MIN_FRAMES = 5;
+    static final int REVERIFY_MAX_FRAMES = 30;
+    static final double CLASSIFY_BUDGET_MS = 15;
+
+    // Detector input size when the model does not say otherwise
+    static final int YOLO_INPUT_SIZE = 640;
+    static final int CLASSIFIER_INPUT_SIZE = 224;
+    static final int YOLO_V8_NUM_CLASSES = 80;
+    static final int YOLO_V8_NUM_ANCHORS = 8400;
+    static final int YOLO_V26_NUM_DETECTIONS = 300;
+
+    /** Executes the two models. Each method is only called from its stage's thread. */
+    public interface ModelRunner {
+        /**
+         * Runs the detector on a 1 x 3 x S x S input and returns its flat output. The buffer
+         * is only read until the next call.
+         */
+        FloatBuffer runDetector(FloatBuffer input, long[] shape) throws Exception;
+
+        /**
+         * Runs the classifier on a N x 3 x S x S batch and returns N rows of class scores. The
+         * buffer is only read until the next call.
+         */
+        FloatBuffer runClassifier(FloatBuffer input, long[] shape) throws Exception;
+    }
+
+    /** Steps of the two stages, for latency accounting. */
+    public enum Step {
+        PREPROCESS, DETECTOR, DECODE, NMS, CROP, CLASSIFIER, TRACK
+    }
+
+    /**
+     * Output of the detection stage: the boxes that survived NMS and their classifier crops,
+     * detached from the camera frame so it can be released before classification runs. After
+     * {@link #classify} it also holds the per-bird results.
+     */
+    public static class PendingFrame {
+        final DetectionBuffer boxes = new DetectionBuffer(MAX_DETECTIONS);
+        long frameIndex;
+        long arrivalNanos;
+        final float[] crops = new float[MAX_DETECTIONS * 3 * CLASSIFIER_INPUT_SIZE * CLASSIFIER_INPUT_SIZE];
+        int cropCount;
+        int frameWidth;
+        int frameHeight;
+        int candidateCount;
+        int regionCount;
+        // Small ARGB crops of the boxes for sighting thumbnails, one slot per box
+        private int[] thumbnailPixels = new int[0];
+        private int thumbnailSlotSize;
+        final int[] thumbnailWidth = new int[MAX_DETECTIONS];
+        final int[] thumbnailHeight = new int[MAX_DETECTIONS];
+        private boolean hasThumbnails;
+
+        // Classification results, one entry per crop
+        final int[] species = new int[MAX_DETECTIONS];
+        final float[] speciesScore = new float[MAX_DETECTIONS];
+        final float[] confidence = new float[MAX_DETECTIONS];
+        final long[] trackId = new long[MAX_DETECTIONS];
+        final boolean[] stable = new boolean[MAX_DETECTIONS];
+        int classifiedCount;
+
+        final long[] stepNanos = new long[Step.values().length];
+
+        public int getCandidateCount() {
+            return cropCount;
+        }
+
+        /** Boxes the decoder produced before NMS. */
+        public int getRawDetectionCount() {
+            return candidateCount;
+        }
+
+        /** Regions the detector ran on, or 0 if it scanned the whole frame. */
+        public int getRegionCount() {
+            return regionCount;
+        }
+
+        public long getFrameIndex() {
+            return frameIndex;
+        }
+
+        /** Time the camera frame reached the analyzer, as recorded by the caller. */
+        public void setArrivalNanos(long arrivalNanos) {
+            this.arrivalNanos = arrivalNanos;
+        }
+
+        public long getArrivalNanos() {
+            return arrivalNanos;
+        }
+
+        public int getFrameWidth() {
+            return frameWidth;
+        }
+
+        public int getFrameHeight() {
+            return frameHeight;
+        }
+
+        /** Boxes of the birds in this frame, in frame coordinates. */
+        public DetectionBuffer getBoxes() {
+            return boxes;
+        }
+
+        /** Detector confidence of bird i, raised for stable tracks. */
+        public float getConfidence(int i) {
+            return confidence[i];
+        }
+
+        public int getSpecies(int i) {
+            return species[i];
+        }
+
+        /** Crops of this frame that went to the classifier rather than the verdict cache. */
+        public int getClassifiedCount() {
+            return classifiedCount;
+        }
+
+        public long getTrackId(int i) {
+            return trackId[i];
+        }
+
+        public boolean isStable(int i) {
+            return stable[i];
+        }
+
+        /** Time spent in {@code step} for this frame, zero if it did not run. */
+        public long getStepNanos(Step step) {
+            return stepNanos[step.ordinal()];
+        }
+
+        /**
+         * Keeps an ARGB crop of each box for sighting thumbnails: the box plus {@code padding}
+         * frame pixels on every side, scaled so its longer side is {@code maxSide}. Only these
+         * crops are sampled from the frame, never the whole of it.
+         */
+        public void captureThumbnails(FrameSource frame, float padding, int maxSide) {
+            int slotSize = maxSide * maxSide;
+            if (thumbnailPixels.length < MAX_DETECTIONS * slotSize) {
+                thumbnailPixels = new int[MAX_DETECTIONS * slotSize];
+            }
+            thumbnailSlotSize = slotSize;
+            for (int c = 0; c < cropCount; c++) {
+                int left = (int) Math.max(0, boxes.left(c) - padding);
+                int top = (int) Math.max(0, boxes.top(c) - padding);
+                int right = (int) Math.min(frame.getWidth(), boxes.right(c) + padding);
+                int bottom = (int) Math.min(frame.getHeight(), boxes.bottom(c) + padding);
+                int width = right - left;
+                int height = bottom - top;
+                if (width <= 0 || height <= 0) {
+                    thumbnailWidth[c] = 0;
+                    thumbnailHeight[c] = 0;
+                    continue;
+                }
+                float scale = Math.min((float) maxSide / width, (float) maxSide / height);
+                int scaledWidth = Math.max(1, Math.min(maxSide, (int) (width * scale)));
+                int scaledHeight = Math.max(1, Math.min(maxSide, (int) (height * scale)));
+                frame.fillArgb(left, top, right, bottom, scaledWidth, scaledHeight,
+                        thumbnailPixels, c * slotSize);
+                thumbnailWidth[c] = scaledWidth;
+                thumbnailHeight[c] = scaledHeight;
+            }
+            hasThumbnails = true;
+        }
+
+        /**
+         * The captured thumbnail crops, or null if {@link #captureThumbnails} was not called.
+         * Crop i starts at {@link #getThumbnailOffset} and has rows of {@link #getThumbnailWidth}.
+         */
+        public int[] getThumbnailPixels() {
+            return hasThumbnails ? thumbnailPixels : null;
+        }
+
+        public int getThumbnailOffset(int i) {
+            return i * thumbnailSlotSize;
+        }
+
+        /** Width of crop i, 0 if its box was empty. */
+        public int getThumbnailWidth(int i) {
+            return thumbnailWidth[i];
+        }
+
+        public int getThumbnailHeight(int i) {
+            return thumbnailHeight[i];
+        }
+
+        void reset() {
+            boxes.clear();
+            cropCount = 0;
+            candidateCount = 0;
+            regionCount = 0;
+            classifiedCount = 0;
+            hasThumbnails = false;
+            Arrays.fill(stepNanos, 0);
+        }
+    }
+
+    private final ModelRunner runner;
+
+    // Detection-thread state. The frame index is carried with each PendingFrame so that
+    // dropped frames still count as elapsed time for tracking
+    private long detectedFrames;
+    // Input buffers are sized once per model input shape and reused for every frame.
+    // The detection and classification stages may run on different threads, so each owns a pool.
+    private final TensorBufferPool detectBufferPool = new TensorBufferPool();
+    private final int detectorInputSize;
+    private final long[] detectorInputShape;
+    // Decoder for the detector's output layout, bound once per model. Replaced as a whole when
+    // the target classes change, since it is read on the detection thread
+    private volatile DetectorHead detectorHead;
+    private DetectorSpec detectorSpec; // Guarded by this
+    private int[] targetClasses = {YoloV8Decoder.COCO_BIRD}; // Guarded by this
+    private final DetectionBuffer decodedBoxes = new DetectionBuffer();
+    private final DetectionBuffer regionBoxes = new DetectionBuffer();
+    // Regions around known birds, scanned instead of the whole frame when enabled
+    private final RoiPlanner roiPlanner;
+    private final float[] roiRegions = new float[4 * MAX_DETECTIONS];
+    private final DetectionBuffer nmsBoxes = new DetectionBuffer(MAX_DETECTIONS);
+    // Class-agnostic: overlapping boxes are one object, whatever class the detector picked
+    private final NmsEngine nms = new NmsEngine(NMS_THRESHOLD, MAX_DETECTIONS);
+
+    // Classification-thread state
+    private final TensorBufferPool classifyBufferPool = new TensorBufferPool();
+    // All crops of a frame go through the classifier in one batch
+    private final BatchedClassifier classifier =
+            new BatchedClassifier(classifyBufferPool, CLASSIFIER_INPUT_SIZE, MAX_DETECTIONS);
+    private final BatchedClassifier.Forward classifierForward;
+    private final BirdTracker tracker = new BirdTracker(
+            HISTORY_WINDOW, TRACK_MAX_AGE_FRAMES, TRACK_MIN_IOU, TRACK_MAX_CENTER_DISTANCE);
+    private final BirdTracker.Track[] cropTracks = new BirdTracker.Track[MAX_DETECTIONS];
+    private final SpeciesVerdictCache verdictCache = new SpeciesVerdictCache(VERDICT_CACHE_SIZE,
+            VERDICT_MIN_IOU, VERDICT_MAX_CONFIDENCE_DROP, TRACK_MAX_AGE_FRAMES,
+            REVERIFY_MIN_FRAMES, REVERIFY_MAX_FRAMES);
+    private final int[] cropsToClassify = new int[MAX_DETECTIONS];
+    private double classifyMillisPerCrop;
+
+    // Hand-off between the detection and classification stages
+    private final ConcurrentLinkedQueue<PendingFrame> pendingFramePool = new ConcurrentLinkedQueue<>();
+
+    private final PipelineMetrics metrics = new PipelineMetrics();
+
+    /**
+     * Engine for a detector of unknown layout at the default input size; the head is bound from
+     * the length of the first detector output.
+     */
+    public DetectionEngine(ModelRunner runner) {
+        this(runner, null);
+    }
+
+    /**
+     * Engine for a detector described by {@code detectorSpec}, usually negotiated when the
+     * model was loaded. A null spec binds the head from the first output, as above.
+     *
+     * @throws IllegalArgumentException if no registered {@link DetectorHead} accepts the spec
+     */
+    public DetectionEngine(ModelRunner runner, DetectorSpec detectorSpec) {
+        this.runner = runner;
+        this.classifierForward = runner::runClassifier;
+        this.detectorInputSize = detectorSpec != null ? detectorSpec.getInputSize() : YOLO_INPUT_SIZE;
+        this.detectorInputShape = new long[]{1, 3, detectorInputSize, detectorInputSize};
+        this.roiPlanner = new RoiPlanner(detectorInputSize, MAX_DETECTIONS);
+        if (detectorSpec != null) {
+            this.detectorSpec = detectorSpec;
+            if (detectorSpec.getTargetClasses() != null) {
+                this.targetClasses = detectorSpec.getTargetClasses();
+            }
+            this.detectorHead = DetectorHeads.bind(detectorSpec, targetClasses);
+        }
+    }
+
+    /**
+     * Detection stage: runs YOLO and NMS on the frame and crops the survivors into
+     * {@code out}. Once this returns the frame is no longer needed and can be released.
+     * YOLO sees the whole frame, or only the regions around tracked birds when the
+     * {@link RoiPlanner} is enabled.
+     *
+     * @throws IllegalStateException if the detector output does not match the bound head
+     */
+    public void detect(FrameSource frame, PendingFrame out) throws Exception {
+        out.reset();
+        out.frameIndex = ++detectedFrames;
+        out.frameWidth = frame.getWidth();
+        out.frameHeight = frame.getHeight();
+
+        decodedBoxes.clear();
+        int regions = roiPlanner.plan(out.frameIndex, frame.getWidth(), frame.getHeight(), roiRegions);
+        out.regionCount = regions;
+        if (regions == 0) {
+            scan(frame, 0, 0, frame.getWidth(), frame.getHeight(), out);
+        } else {
+            for (int r = 0; r < regions; r++) {
+                scan(frame, roiRegions[4 * r], roiRegions[4 * r + 1], roiRegions[4 * r + 2],
+                        roiRegions[4 * r + 3], out);
+            }
+        }
+        out.candidateCount = decodedBoxes.size();
+
+        long start = System.nanoTime();
+        nmsBoxes.clear();
+        nms.run(decodedBoxes, nmsBoxes);
+        long suppressed = System.nanoTime();
+
+        cropDetections(frame, nmsBoxes, out);
+        long cropped = System.nanoTime();
+
+        out.stepNanos[Step.NMS.ordinal()] = suppressed - start;
+        out.stepNanos[Step.CROP.ordinal()] = cropped - suppressed;
+        metrics.recordDetect(out);
+    }
+
+    /**
+     * Runs the detector on one region of the frame and appends its boxes, in frame
+     * coordinates, to {@code decodedBoxes}. Step times add up over the regions of a frame.
+     */
+    private void scan(FrameSource frame, float left, float top, float right, float bottom,
+                      PendingFrame out) throws Exception {
+        long start = System.nanoTime();
+        // Sample, rotate and normalize straight from the frame, no intermediate Bitmap
+        int size = 3 * detectorInputSize * detectorInputSize;
+        float[] floatArray = detectBufferPool.floatScratch(size);
+        frame.fillTensor(left, top, right, bottom,
+                detectorInputSize, detectorInputSize, FrameSource.Normalization.UNIT, floatArray, 0);
+        FloatBuffer input = detectBufferPool.upload(detectorInputShape, floatArray, size);
+        long preprocessed = System.nanoTime();
+
+        FloatBuffer output = runner.runDetector(input, detectorInputShape);
+        long detected = System.nanoTime();
+
+        int regionWidth = (int) (right - left);
+        int regionHeight = (int) (bottom - top);
+        if (left == 0 && top == 0) {
+            decode(output, regionWidth, regionHeight, decodedBoxes);
+        } else {
+            // Decoded in region coordinates, then shifted into the frame
+            regionBoxes.clear();
+            decode(output, regionWidth, regionHeight, regionBoxes);
+            for (int i = 0; i < regionBoxes.size(); i++) {
+                decodedBoxes.add(regionBoxes.left(i) + left, regionBoxes.top(i) + top,
+                        regionBoxes.right(i) + left, regionBoxes.bottom(i) + top,
+                        regionBoxes.score(i), regionBoxes.classId(i));
+            }
+        }
+        long decoded = System.nanoTime();
+
+        out.stepNanos[Step.PREPROCESS.ordinal()] += preprocessed - start;
+        out.stepNanos[Step.DETECTOR.ordinal()] += detected - preprocessed;
+        out.stepNanos[Step.DECODE.ordinal()] += decoded - detected;
+    }
+
+    /**
+     * Classification stage: classifies the crops of a detected frame in one batch, reusing
+     * recent verdicts for birds that stayed put, and updates the tracks. Results are written
+     * back into {@code work}; {@link PendingFrame#getSpecies} and friends are valid afterwards.
+     */
+    public void classify(PendingFrame work) throws Exception {
+        int crops = work.cropCount;
+        DetectionBuffer boxes = work.boxes;
+        long start = System.nanoTime();
+
+        // Birds that sit still reuse their recent verdict; only the rest go to the classifier
+        int misses = 0;
+        for (int c = 0; c < crops; c++) {
+            int entry = verdictCache.lookup(boxes.left(c), boxes.top(c), boxes.right(c),
+                    boxes.bottom(c), boxes.score(c), work.frameIndex);
+            if (entry >= 0) {
+                work.species[c] = verdictCache.getSpecies(entry);
+                work.speciesScore[c] = verdictCache.getSpeciesScore(entry);
+            } else {
+                cropsToClassify[misses++] = c;
+            }
+        }
+
+        if (misses > 0) {
+            long classifyStart = System.nanoTime();
+            classifier.classify(work.crops, cropsToClassify, misses, classifierForward,
+                    work.species, work.speciesScore);
+            double millisPerCrop = (System.nanoTime() - classifyStart) / 1e6 / misses;
+            classifyMillisPerCrop = classifyMillisPerCrop == 0 ? millisPerCrop
+                    : 0.9 * classifyMillisPerCrop + 0.1 * millisPerCrop;
+
+            for (int i = 0; i < misses; i++) {
+                int c = cropsToClassify[i];
+                verdictCache.store(boxes.left(c), boxes.top(c), boxes.right(c), boxes.bottom(c),
+                        boxes.score(c), work.species[c], work.speciesScore[c], work.frameIndex);
+            }
+        }
+        verdictCache.adaptReverifyInterval(crops, classifyMillisPerCrop, CLASSIFY_BUDGET_MS);
+        work.classifiedCount = misses;
+        long classified = System.nanoTime();
+
+        tracker.update(boxes, work.frameIndex, cropTracks);
+        for (int c = 0; c < crops; c++) {
+            BirdTracker.Track track = cropTracks[c];
+            // Apply temporal bonus for stable detections
+            boolean stable = track.isStable(STABLE_MIN_FRAMES, STABILITY_THRESHOLD);
+            work.stable[c] = stable;
+            work.trackId[c] = track.getId();
+            work.confidence[c] = stable ? Math.min(1.0f, boxes.score(c) + TEMPORAL_BONUS) : boxes.score(c);
+        }
+
+        work.stepNanos[Step.CLASSIFIER.ordinal()] = classified - start;
+        roiPlanner.publish(tracker, work.frameIndex);
+        work.stepNanos[Step.TRACK.ordinal()] = System.nanoTime() - classified;
+        metrics.recordClassify(work);
+    }
+
+    /** Returns an idle PendingFrame, reusing one released by {@link #recycle} if possible. */
+    public PendingFrame obtainPendingFrame() {
+        PendingFrame frame = pendingFramePool.poll();
+        return frame != null ? frame : new PendingFrame();
+    }
+
+    public void recycle(PendingFrame frame) {
+        frame.reset();
+        pendingFramePool.offer(frame);
+    }
+
+    /**
+     * Sets the COCO classes kept by the YOLOv8 decoder. Defaults to bird only; other classes are
+     * never scanned, so decoding cost grows with the number of targets.
+     *
+     * @throws IllegalArgumentException if the bound head cannot keep these classes
+     */
+    public synchronized void setTargetClasses(int... classIds) {
+        if (classIds.length == 0) {
+            throw new IllegalArgumentException("At least one target class is required");
+        }
+        if (detectorSpec != null) {
+            detectorHead = DetectorHeads.bind(detectorSpec, classIds);
+        }
+        targetClasses = classIds.clone();
+    }
+
+    /** The head decoding the detector output, or null until the first frame if not yet bound. */
+    public DetectorHead getDetectorHead() {
+        return detectorHead;
+    }
+
+    /** Side of the square detector input. */
+    public int getDetectorInputSize() {
+        return detectorInputSize;
+    }
+
+    /** Allocation counters of the detection stage buffers; flat once the pipeline is warm. */
+    public TensorBufferPool getDetectBufferPool() {
+        return detectBufferPool;
+    }
+
+    /** Allocation counters of the classification stage buffers. */
+    public TensorBufferPool getClassifyBufferPool() {
+        return classifyBufferPool;
+    }
+
+    /** Classifier calls saved by reusing species verdicts. */
+    public SpeciesVerdictCache getVerdictCache() {
+        return verdictCache;
+    }
+
+    public BatchedClassifier getClassifier() {
+        return classifier;
+    }
+
+    public BirdTracker getTracker() {
+        return tracker;
+    }
+
+    /** Full-frame versus region-of-interest scheduling of the detector; off by default. */
+    public RoiPlanner getRoiPlanner() {
+        return roiPlanner;
+    }
+
+    /** Step latency histograms and detection counters; disabled until switched on. */
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Forgets all tracks and cached verdicts. Call from the classification thread. */
+    public void reset() {
+        tracker.clear();
+        verdictCache.clear();
+        roiPlanner.reset();
+    }
+
+    /** Releases pooled buffers; the engine must not be used afterwards. */
+    public void close() {
+        reset();
+        detectBufferPool.clear();
+        classifyBufferPool.clear();
+        pendingFramePool.clear();
+    }
+
+    /** Decodes the detector output into {@code out} with the bound head. */
+    private void decode(FloatBuffer output, int imageWidth, int imageHeight, DetectionBuffer out) {
+        int outputLength = output.remaining();
+        DetectorHead head = detectorHead;
+        if (head == null) {
+            head = bindFromOutput(outputLength);
+        }
+        if (outputLength != head.getOutputLength()) {
+            throw new IllegalStateException("Detector output has " + outputLength + " floats, the "
+                    + head.getFormat() + " head expects " + head.getOutputLength());
+        }
+        head.decode(output, imageWidth, imageHeight, out);
+    }
+
+    /** Binds the head from the first output when the engine was created without a spec. */
+    private synchronized DetectorHead bindFromOutput(int outputLength) {
+        if (detectorHead == null) {
+            DetectorSpec spec = new DetectorSpec(null, detectorInputSize, outputLength);
+            try {
+                detectorHead = DetectorHeads.bind(spec, targetClasses);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Unexpected detector output size: " + outputLength, e);
+            }
+            detectorSpec = spec;
+        }
+        return detectorHead;
+    }
+
+    /**
+     * Crops every detection once, straight into the classifier batch of {@code out}.
+     * Detections too small to crop are dropped.
+     */
+    private void cropDetections(FrameSource frame, DetectionBuffer detections, PendingFrame out) {
+        int cropSize = classifier.getCropSize();
+        for (int i = 0; i < detections.size() && out.cropCount < MAX_DETECTIONS; i++) {
+            float left = Math.max(0, detections.left(i));
+            float top = Math.max(0, detections.top(i));
+            float right = Math.min(frame.getWidth(), detections.right(i));
+            float bottom = Math.min(frame.getHeight(), detections.bottom(i));
+            if (right - left < 1 || bottom - top < 1) {
+                continue;
+            }
+
+            frame.fillTensor(left, top, right, bottom,
+                    CLASSIFIER_INPUT_SIZE, CLASSIFIER_INPUT_SIZE,
+                    FrameSource.Normalization.IMAGENET, out.crops, out.cropCount * cropSize);
+            out.boxes.add(left, top, right, bottom, detections.score(i), detections.classId(i));
+            out.cropCount++;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import android.view.View;
+
+import java.util.List;
+
+/**
+ * Draws detection boxes and labels as vectors on top of the camera PreviewView.
+ *
+ * Boxes arrive in the coordinates of the analyzed frame and are mapped into view space the way
+ * PreviewView scales the preview (FILL_CENTER by default). This only lines up if the analyzed
+ * frame and the preview have the same aspect ratio, i.e. show the same field of view.
+ *
+ * Paints, box coordinates and label text buffers are allocated once, so updating and drawing
+ * the overlay allocates nothing per frame. Must be used from the UI thread.
+ */
+public class DetectionOverlayView extends View {
+    private static final int MAX_BOXES = 8;
+    private static final int MAX_LABEL_LENGTH = 64;
+    private static final float STROKE_DP = 2.5f;
+    private static final float STABLE_STROKE_DP = 3.5f;
+    private static final float TEXT_SIZE_SP = 14;
+    private static final float LABEL_PADDING_DP = 4;
+
+    private final Paint boxPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint stableBoxPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelBackgroundPaint = new Paint();
+    private final Paint stableLabelBackgroundPaint = new Paint();
+    private final float labelPadding;
+
+    // Current boxes in frame coordinates, with their label text
+    private final float[] boxes = new float[4 * MAX_BOXES];
+    private final boolean[] stable = new boolean[MAX_BOXES];
+    private final char[][] labels = new char[MAX_BOXES][MAX_LABEL_LENGTH];
+    private final int[] labelLengths = new int[MAX_BOXES];
+    private final StringBuilder labelBuilder = new StringBuilder(MAX_LABEL_LENGTH);
+    private int boxCount;
+    private int frameWidth;
+    private int frameHeight;
+    private boolean fillCenter = true;
+
+    public DetectionOverlayView(Context context) {
+        this(context, null);
+    }
+
+    public DetectionOverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        float density = metrics.density;
+
+        boxPaint.setColor(Color.GREEN);
+        boxPaint.setStyle(Paint.Style.STROKE);
+        boxPaint.setStrokeWidth(STROKE_DP * density);
+
+        stableBoxPaint.setColor(Color.BLUE);
+        stableBoxPaint.setStyle(Paint.Style.STROKE);
+        stableBoxPaint.setStrokeWidth(STABLE_STROKE_DP * density);
+
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP, metrics));
+
+        labelBackgroundPaint.setColor(Color.argb(180, 0, 150, 0));
+        stableLabelBackgroundPaint.setColor(Color.argb(180, 0, 0, 150));
+        labelPadding = LABEL_PADDING_DP * density;
+    }
+
+    /**
+     * Matches PreviewView's scale type: true for FILL_CENTER (the default, crops the frame),
+     * false for FIT_CENTER (letterboxes it).
+     */
+    public void setFillCenter(boolean fillCenter) {
+        this.fillCenter = fillCenter;
+        invalidate();
+    }
+
+    /** Replaces the drawn detections. Boxes are in the coordinates of a frame of the given size. */
+    public void setDetections(List<BirdDetectionPipeline.BirdDetection> detections,
+                              int frameWidth, int frameHeight) {
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        boxCount = Math.min(MAX_BOXES, detections.size());
+        for (int i = 0; i < boxCount; i++) {
+            BirdDetectionPipeline.BirdDetection detection = detections.get(i);
+            boxes[4 * i] = detection.boundingBox.left;
+            boxes[4 * i + 1] = detection.boundingBox.top;
+            boxes[4 * i + 2] = detection.boundingBox.right;
+            boxes[4 * i + 3] = detection.boundingBox.bottom;
+            stable[i] = detection.isStable;
+            setLabel(i, detection.species, detection.confidence, detection.isStable);
+        }
+        invalidate();
+    }
+
+    public void clear() {
+        if (boxCount != 0) {
+            boxCount = 0;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (boxCount == 0 || frameWidth <= 0 || frameHeight <= 0) {
+            return;
+        }
+
+        float scaleX = (float) getWidth() / frameWidth;
+        float scaleY = (float) getHeight() / frameHeight;
+        float scale = fillCenter ? Math.max(scaleX, scaleY) : Math.min(scaleX, scaleY);
+        float offsetX = (getWidth() - frameWidth * scale) / 2;
+        float offsetY = (getHeight() - frameHeight * scale) / 2;
+        float textHeight = textPaint.getTextSize();
+
+        for (int i = 0; i < boxCount; i++) {
+            float left = offsetX + boxes[4 * i] * scale;
+            float top = offsetY + boxes[4 * i + 1] * scale;
+            float right = offsetX + boxes[4 * i + 2] * scale;
+            float bottom = offsetY + boxes[4 * i + 3] * scale;
+            canvas.drawRect(left, top, right, bottom, stable[i] ? stableBoxPaint : boxPaint);
+
+            // Label above the box, or inside it when the box touches the top edge
+            float textWidth = textPaint.measureText(labels[i], 0, labelLengths[i]);
+            float labelBottom = top - textHeight - 2 * labelPadding >= 0 ? top : top + textHeight + 2 * labelPadding;
+            float labelTop = labelBottom - textHeight - 2 * labelPadding;
+            canvas.drawRect(left, labelTop, left + textWidth + 2 * labelPadding, labelBottom,
+                    stable[i] ? stableLabelBackgroundPaint : labelBackgroundPaint);
+            canvas.drawText(labels[i], 0, labelLengths[i], left + labelPadding,
+                    labelBottom - labelPadding - textPaint.descent(), textPaint);
+        }
+    }
+
+    /** Formats "species (93.4%)" plus a check mark for stable tracks into the slot's buffer. */
+    private void setLabel(int slot, String species, float confidence, boolean isStable) {
+        StringBuilder label = labelBuilder;
+        label.setLength(0);
+        int tenths = Math.round(confidence * 1000);
+        label.append(species).append(" (").append(tenths / 10).append('.').append(tenths % 10).append("%)");
+        if (isStable) {
+            label.append(" ✓");
+        }
+        int length = Math.min(label.length(), MAX_LABEL_LENGTH);
+        label.getChars(0, length, labels[slot], 0);
+        labelLengths[slot] = length;
+    }
+}
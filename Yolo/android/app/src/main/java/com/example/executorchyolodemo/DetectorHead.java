@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Decoder for one detector output layout, bound to a model once by {@link DetectorHeads} so the
+ * frame loop never has to work out what it is reading.
+ */
+public interface DetectorHead {
+
+    /** Layout name, as used in the detector metadata file, e.g. {@code "yolov8"}. */
+    String getFormat();
+
+    /** Side of the square input the model takes and its box coordinates are expressed in. */
+    int getInputSize();
+
+    /** Number of floats in one output tensor. */
+    int getOutputLength();
+
+    /**
+     * Appends the detections in {@code output} to {@code out}, scaled to an image of the given
+     * size. Uses absolute reads only, so the buffer's position is left untouched.
+     *
+     * @return number of detections added
+     */
+    int decode(FloatBuffer output, int imageWidth, int imageHeight, DetectionBuffer out);
+}
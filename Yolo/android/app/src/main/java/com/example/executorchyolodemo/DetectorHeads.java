@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of detector output layouts. {@link #bind} is called once per model and picks the
+ * head for its {@link DetectorSpec}: the one named by the spec's format if it has one,
+ * otherwise the first, most recently registered, head that recognizes the output shape.
+ *
+ * Built in are the YOLOv8 head ({@code 1 x (4 + classes) x anchors}, any class or anchor count)
+ * and the end-to-end YOLOv26 head ({@code 1 x detections x 6}). Other layouts are added with
+ * {@link #register} before the pipeline is loaded.
+ */
+public final class DetectorHeads {
+
+    /** Creates heads of one layout. */
+    public interface Factory {
+        /**
+         * Returns a head for {@code spec}, or null if its output is not this layout.
+         *
+         * @param targetClasses classes to keep, for heads that can filter by class
+         */
+        DetectorHead create(DetectorSpec spec, int[] targetClasses);
+    }
+
+    private static final class Registration {
+        final String format;
+        final Factory factory;
+
+        Registration(String format, Factory factory) {
+            this.format = format;
+            this.factory = factory;
+        }
+    }
+
+    private static final List<Registration> REGISTRATIONS = new CopyOnWriteArrayList<>();
+
+    static {
+        register(YoloV26Decoder.FORMAT, DetectorHeads::createYoloV26);
+        register(YoloV8Decoder.FORMAT, DetectorHeads::createYoloV8);
+    }
+
+    private DetectorHeads() {
+    }
+
+    /** Adds a layout; it is tried before all layouts registered earlier. */
+    public static void register(String format, Factory factory) {
+        REGISTRATIONS.add(0, new Registration(format, factory));
+    }
+
+    /**
+     * Binds the head for a model.
+     *
+     * @throws IllegalArgumentException if no registered head accepts the spec
+     */
+    public static DetectorHead bind(DetectorSpec spec, int... targetClasses) {
+        if (spec.getInputSize() <= 0 || spec.getOutputLength() <= 0) {
+            throw new IllegalArgumentException("Incomplete detector spec: " + spec);
+        }
+        for (Registration registration : REGISTRATIONS) {
+            if (spec.getFormat() != null && !spec.getFormat().equalsIgnoreCase(registration.format)) {
+                continue;
+            }
+            DetectorHead head = registration.factory.create(spec, targetClasses);
+            if (head != null) {
+                if (head.getOutputLength() != spec.getOutputLength()) {
+                    throw new IllegalArgumentException(registration.format + " head expects "
+                            + head.getOutputLength() + " floats for " + spec);
+                }
+                return head;
+            }
+        }
+        throw new IllegalArgumentException("No detector head for " + spec);
+    }
+
+    /**
+     * Number of YOLOv8 anchors for a square input: one per cell of the stride 8, 16 and 32
+     * grids, 8400 at 640.
+     */
+    static int yoloV8Anchors(int inputSize) {
+        int cells = inputSize / 32;
+        return 21 * cells * cells;
+    }
+
+    private static DetectorHead createYoloV8(DetectorSpec spec, int[] targetClasses) {
+        long[] shape = spec.getOutputShape();
+        int features;
+        int anchors;
+        if (shape.length == 3 && shape[0] == 1 && shape[1] > 4 && shape[2] > shape[1]) {
+            features = (int) shape[1];
+            anchors = (int) shape[2];
+        } else if (shape.length == 1) {
+            // Only the length is known: assume the standard anchor grid for the input size
+            anchors = yoloV8Anchors(spec.getInputSize());
+            if (anchors == 0 || shape[0] % anchors != 0) {
+                return null;
+            }
+            features = (int) (shape[0] / anchors);
+        } else {
+            return null;
+        }
+        int numClasses = features - 4;
+        for (int targetClass : targetClasses) {
+            if (targetClass >= numClasses) {
+                return null;
+            }
+        }
+        return new YoloV8Decoder(numClasses, anchors, spec.getInputSize(),
+                DetectionEngine.CONFIDENCE_THRESHOLD, DetectionEngine.MIN_BOX_SIZE, targetClasses);
+    }
+
+    private static DetectorHead createYoloV26(DetectorSpec spec, int[] targetClasses) {
+        long[] shape = spec.getOutputShape();
+        int detections;
+        if (shape.length == 3 && shape[0] == 1 && shape[2] == YoloV26Decoder.NUM_FEATURES) {
+            detections = (int) shape[1];
+        } else if (shape.length == 1 && shape[0] == (long) DetectionEngine.YOLO_V26_NUM_DETECTIONS
+                * YoloV26Decoder.NUM_FEATURES) {
+            detections = DetectionEngine.YOLO_V26_NUM_DETECTIONS;
+        } else {
+            return null;
+        }
+        // The model already picked one class per box; boxes of every class are kept
+        return new YoloV26Decoder(detections, spec.getInputSize(),
+                DetectionEngine.CONFIDENCE_THRESHOLD, DetectionEngine.MIN_BOX_SIZE);
+    }
+}
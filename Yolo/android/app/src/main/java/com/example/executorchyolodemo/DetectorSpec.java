@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.util.Arrays;
+
+/**
+ * What is known about a detector model: its input size and output shape, and optionally the
+ * name of its output layout.
+ *
+ * Filled in at load time from the model's warm-up output, or read with Gson from the optional
+ * metadata file shipped next to the model:
+ * <pre>
+ *   {"format": "yolov8", "inputSize": 640, "targetClasses": [14]}
+ * </pre>
+ * Every field is optional.
+ */
+public final class DetectorSpec {
+    /** Output layout name; null lets {@link DetectorHeads} pick one from the output shape. */
+    String format;
+    /** Side of the square model input; 0 if unknown. */
+    int inputSize;
+    /** Shape of the first output tensor, or just its length when the shape is unknown. */
+    long[] outputShape;
+    /** Classes to detect, e.g. 0 for a bird-only export; null for COCO bird. */
+    int[] targetClasses;
+
+    public DetectorSpec() {
+    }
+
+    public DetectorSpec(String format, int inputSize, long... outputShape) {
+        this.format = format;
+        this.inputSize = inputSize;
+        this.outputShape = outputShape;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    /** Classes the model should detect by default, or null if the spec does not say. */
+    public int[] getTargetClasses() {
+        return targetClasses == null ? null : targetClasses.clone();
+    }
+
+    public long[] getOutputShape() {
+        return outputShape == null ? new long[0] : outputShape.clone();
+    }
+
+    /** Number of floats in one output tensor, 0 if the shape is unknown. */
+    public long getOutputLength() {
+        if (outputShape == null || outputShape.length == 0) {
+            return 0;
+        }
+        long length = 1;
+        for (long dim : outputShape) {
+            length *= dim;
+        }
+        return length;
+    }
+
+    /** Copy with the input size and output shape observed from the loaded model. */
+    DetectorSpec withModel(int inputSize, long[] outputShape) {
+        DetectorSpec spec = new DetectorSpec(format, inputSize, outputShape.clone());
+        spec.targetClasses = targetClasses;
+        return spec;
+    }
+
+    @Override
+    public String toString() {
+        return "DetectorSpec{format=" + format + ", inputSize=" + inputSize
+                + ", outputShape=" + Arrays.toString(outputShape)
+                + ", targetClasses=" + Arrays.toString(targetClasses) + "}";
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import org.pytorch.executorch.EValue;
+import org.pytorch.executorch.Module;
+import org.pytorch.executorch.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Runs the detector and classifier ExecuTorch modules for the {@link DetectionEngine}.
+ *
+ * Input buffers come from the engine's pools and are reused across frames, so each one is
+ * wrapped in a Tensor only once.
+ */
+public final class ExecuTorchModelRunner implements DetectionEngine.ModelRunner {
+    private Module detector;
+    private Module classifier;
+
+    // Detection-thread state
+    private FloatBuffer detectorInputBuffer;
+    private EValue detectorInput;
+
+    // Classification-thread state, one wrapped input per batch size
+    private final FloatBuffer[] classifierInputBuffers = new FloatBuffer[DetectionEngine.MAX_DETECTIONS + 1];
+    private final EValue[] classifierInputs = new EValue[DetectionEngine.MAX_DETECTIONS + 1];
+
+    public ExecuTorchModelRunner(String detectorPath, String classifierPath) {
+        this(Module.load(detectorPath), Module.load(classifierPath));
+    }
+
+    /** Takes ownership of two already loaded modules. */
+    public ExecuTorchModelRunner(Module detector, Module classifier) {
+        this.detector = detector;
+        this.classifier = classifier;
+    }
+
+    /**
+     * Runs {@code module} once on a zero tensor of {@code shape}, so one-time setup such as
+     * weight packing and memory planning happens before the first camera frame.
+     *
+     * @return shape of the first output
+     */
+    public static long[] warmUp(Module module, long[] shape) {
+        int elements = 1;
+        for (long dim : shape) {
+            elements *= (int) dim;
+        }
+        FloatBuffer blank = ByteBuffer.allocateDirect(elements * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        EValue[] outputs = module.forward(EValue.from(Tensor.fromBlob(blank, shape)));
+        if (outputs == null || outputs.length == 0) {
+            throw new IllegalStateException("Model returned no outputs");
+        }
+        return outputs[0].toTensor().shape();
+    }
+
+    @Override
+    public FloatBuffer runDetector(FloatBuffer input, long[] shape) throws Exception {
+        if (input != detectorInputBuffer) {
+            detectorInputBuffer = input;
+            detectorInput = EValue.from(Tensor.fromBlob(input, shape));
+        }
+        EValue[] outputs = detector.forward(detectorInput);
+        if (outputs == null || outputs.length == 0) {
+            throw new IllegalStateException("Detector returned no outputs");
+        }
+        // Read in place where the runtime allows it
+        return TensorBuffers.floatView(outputs[0].toTensor());
+    }
+
+    @Override
+    public FloatBuffer runClassifier(FloatBuffer input, long[] shape) throws Exception {
+        int batchSize = (int) shape[0];
+        if (input != classifierInputBuffers[batchSize]) {
+            classifierInputBuffers[batchSize] = input;
+            classifierInputs[batchSize] = EValue.from(Tensor.fromBlob(input, shape));
+        }
+        EValue[] outputs = classifier.forward(classifierInputs[batchSize]);
+        if (outputs == null || outputs.length == 0) {
+            throw new IllegalStateException("Classifier returned no outputs");
+        }
+        return TensorBuffers.floatView(outputs[0].toTensor());
+    }
+
+    /** Destroys both modules; the runner must not be used afterwards. */
+    public void destroy() {
+        try {
+            if (detector != null) {
+                detector.destroy();
+            }
+        } finally {
+            detector = null;
+            detectorInput = null;
+            detectorInputBuffer = null;
+            try {
+                if (classifier != null) {
+                    classifier.destroy();
+                }
+            } finally {
+                classifier = null;
+                Arrays.fill(classifierInputs, null);
+                Arrays.fill(classifierInputBuffers, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.util.Locale;
+
+/**
+ * Chooses which camera frames the detector analyzes.
+ *
+ * The governor measures the camera frame rate, the end-to-end latency of analyzed frames and
+ * pipeline drops, and takes the device thermal status from the caller. Every
+ * {@code decisionPeriod} completed frames it asks its {@link SkipPolicy} for a new interval.
+ *
+ * Times are passed in explicitly (nanoseconds on one monotonic clock) so the same code runs
+ * against the camera and in replay benchmarks. Methods are synchronized since the analyzer and
+ * the pipeline report from different threads.
+ */
+public final class FrameRateGovernor {
+
+    // Same values as android.os.PowerManager.THERMAL_STATUS_*
+    public static final int THERMAL_STATUS_NONE = 0;
+    public static final int THERMAL_STATUS_LIGHT = 1;
+    public static final int THERMAL_STATUS_MODERATE = 2;
+    public static final int THERMAL_STATUS_SEVERE = 3;
+    public static final int THERMAL_STATUS_CRITICAL = 4;
+
+    private static final double SMOOTHING = 0.2;
+
+    private final SkipPolicy policy;
+    private final int decisionPeriod;
+    private final SkipPolicy.Inputs inputs = new SkipPolicy.Inputs();
+
+    private int interval;
+    private long framesSeen;
+    private long framesAnalyzed;
+    private long framesCompleted;
+    private long framesDropped;
+    private int completedSinceDecision;
+    private int droppedSinceDecision;
+    private int thermalStatus = THERMAL_STATUS_NONE;
+    private long lastArrivalNanos;
+    private double frameIntervalNanos;
+    private double latencyMillis;
+
+    /**
+     * @param initialInterval interval used until the first decision
+     * @param decisionPeriod  completed frames between two policy decisions
+     */
+    public FrameRateGovernor(SkipPolicy policy, int initialInterval, int decisionPeriod) {
+        this.policy = policy;
+        this.interval = Math.max(1, initialInterval);
+        this.decisionPeriod = Math.max(1, decisionPeriod);
+    }
+
+    /** Called for every camera frame. Returns true if this frame should be analyzed. */
+    public synchronized boolean onFrameArrived(long nowNanos) {
+        if (lastArrivalNanos != 0) {
+            long delta = nowNanos - lastArrivalNanos;
+            frameIntervalNanos = frameIntervalNanos == 0 ? delta
+                    : frameIntervalNanos + SMOOTHING * (delta - frameIntervalNanos);
+        }
+        lastArrivalNanos = nowNanos;
+
+        if (framesSeen++ % interval != 0) {
+            return false;
+        }
+        framesAnalyzed++;
+        return true;
+    }
+
+    /** Called when an analyzed frame produced a result, with its arrival time. */
+    public synchronized void onFrameCompleted(long arrivalNanos, long nowNanos) {
+        double millis = (nowNanos - arrivalNanos) / 1e6;
+        latencyMillis = framesCompleted == 0 ? millis : latencyMillis + SMOOTHING * (millis - latencyMillis);
+        framesCompleted++;
+        if (++completedSinceDecision >= decisionPeriod) {
+            decide();
+        }
+    }
+
+    /** Called when the pipeline discarded analyzed frames in favour of newer ones. */
+    public synchronized void onFramesDropped(int count) {
+        framesDropped += count;
+        droppedSinceDecision += count;
+    }
+
+    /** Thermal status, as reported by PowerManager.getCurrentThermalStatus(). */
+    public synchronized void setThermalStatus(int status) {
+        if (status != thermalStatus) {
+            thermalStatus = status;
+            // Heat is a reason to back off right away, without waiting for the next result
+            decide();
+        }
+    }
+
+    public synchronized int getInterval() {
+        return interval;
+    }
+
+    public synchronized double getCameraFps() {
+        return frameIntervalNanos > 0 ? 1e9 / frameIntervalNanos : 0;
+    }
+
+    /** Frames per second currently sent to the pipeline. */
+    public synchronized double getAnalyzedFps() {
+        return getCameraFps() / interval;
+    }
+
+    public synchronized double getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public synchronized int getThermalStatus() {
+        return thermalStatus;
+    }
+
+    public synchronized long getFramesSeen() {
+        return framesSeen;
+    }
+
+    public synchronized long getFramesAnalyzed() {
+        return framesAnalyzed;
+    }
+
+    public synchronized long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public SkipPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "%s: every %d of %.1f fps -> %.1f fps, latency %.0fms, thermal %d, dropped %d",
+                policy.getName(), interval, getCameraFps(), getAnalyzedFps(), latencyMillis,
+                thermalStatus, framesDropped);
+    }
+
+    private void decide() {
+        inputs.interval = interval;
+        inputs.cameraFps = getCameraFps();
+        inputs.latencyMillis = latencyMillis;
+        inputs.droppedFrames = droppedSinceDecision;
+        inputs.thermalStatus = thermalStatus;
+        interval = Math.max(1, policy.chooseInterval(inputs));
+        completedSinceDecision = 0;
+        droppedSinceDecision = 0;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+/**
+ * A camera frame that can be sampled straight into model input tensors.
+ *
+ * All coordinates are in the upright frame space, i.e. after the sensor rotation has been
+ * applied, so boxes produced by the detector can be used as-is for classifier crops.
+ */
+public interface FrameSource {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Samples the region [left, right) x [top, bottom) with nearest-neighbour scaling into a
+     * planar CHW float tensor of size 3 x dstHeight x dstWidth, starting at dst[dstOffset].
+     */
+    void fillTensor(float left, float top, float right, float bottom,
+                    int dstWidth, int dstHeight, Normalization normalization,
+                    float[] dst, int dstOffset);
+
+    /**
+     * Samples the region [left, right) x [top, bottom) into packed ARGB_8888 pixels, starting
+     * at dst[dstOffset]. Used for overlays and thumbnails.
+     */
+    void fillArgb(float left, float top, float right, float bottom,
+                  int dstWidth, int dstHeight, int[] dst, int dstOffset);
+
+    /**
+     * Maps each destination index along one axis to the nearest source coordinate, clamped to
+     * [0, limit). Matches the sampling of Bitmap.createScaledBitmap with filtering disabled.
+     */
+    static void sampleAxis(float start, float end, int dstSize, int limit, int[] out) {
+        float step = (end - start) / dstSize;
+        for (int i = 0; i < dstSize; i++) {
+            int src = (int) (start + (i + 0.5f) * step);
+            out[i] = src < 0 ? 0 : (src >= limit ? limit - 1 : src);
+        }
+    }
+
+    /**
+     * Per-channel normalization folded into 8-bit lookup tables, so converting a pixel costs a
+     * table read instead of a divide per channel.
+     */
+    final class Normalization {
+        /** Scales channels to [0, 1], as expected by the YOLO detector. */
+        public static final Normalization UNIT =
+                new Normalization(new float[]{0f, 0f, 0f}, new float[]{1f, 1f, 1f});
+        /** ImageNet mean/std, as expected by the species classifier. */
+        public static final Normalization IMAGENET =
+                new Normalization(new float[]{0.485f, 0.456f, 0.406f}, new float[]{0.229f, 0.224f, 0.225f});
+
+        final float[] red = new float[256];
+        final float[] green = new float[256];
+        final float[] blue = new float[256];
+
+        public Normalization(float[] mean, float[] std) {
+            for (int v = 0; v < 256; v++) {
+                red[v] = (v / 255.0f - mean[0]) / std[0];
+                green[v] = (v / 255.0f - mean[1]) / std[1];
+                blue[v] = (v / 255.0f - mean[2]) / std[2];
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounded hand-off queue where the newest frame wins.
+ *
+ * When the queue is full, {@link #offer} evicts the oldest pending item instead of blocking the
+ * producer, so a slow consumer always picks up the most recent frame. Evicted items are handed
+ * to the recycler so their resources (camera images, pooled buffers) are released.
+ */
+public final class LatestFrameQueue<T> {
+
+    /** Receives items the queue drops or drains; called outside the queue lock. */
+    public interface Recycler<T> {
+        void recycle(T item);
+    }
+
+    private final ArrayDeque<T> items;
+    private final int capacity;
+    private final Recycler<T> recycler;
+    private boolean closed;
+    private long dropped;
+
+    public LatestFrameQueue(int capacity, Recycler<T> recycler) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1");
+        }
+        this.capacity = capacity;
+        this.items = new ArrayDeque<>(capacity);
+        this.recycler = recycler;
+    }
+
+    /**
+     * Enqueues an item, evicting the oldest one if the queue is full. Returns false (and
+     * leaves ownership with the caller) if the queue has been closed.
+     */
+    public boolean offer(T item) {
+        T evicted = null;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (items.size() == capacity) {
+                evicted = items.pollFirst();
+                dropped++;
+            }
+            items.addLast(item);
+            notifyAll();
+        }
+        if (evicted != null) {
+            recycler.recycle(evicted);
+        }
+        return true;
+    }
+
+    /** Blocks until an item is available. Returns null once the queue is closed. */
+    public synchronized T take() throws InterruptedException {
+        while (items.isEmpty() && !closed) {
+            wait();
+        }
+        return closed ? null : items.pollFirst();
+    }
+
+    public synchronized int size() {
+        return items.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Number of items evicted because a newer one arrived. */
+    public synchronized long droppedCount() {
+        return dropped;
+    }
+
+    /** Closes the queue, wakes up waiting consumers and recycles anything still pending. */
+    public void close() {
+        ArrayDeque<T> pending;
+        synchronized (this) {
+            closed = true;
+            pending = new ArrayDeque<>(items);
+            items.clear();
+            notifyAll();
+        }
+        for (T item : pending) {
+            recycler.recycle(item);
+        }
+    }
+}
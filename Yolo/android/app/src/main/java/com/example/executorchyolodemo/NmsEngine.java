@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.util.Arrays;
+
+/**
+ * Non-maximum suppression over a {@link DetectionBuffer}.
+ *
+ * Candidates are ordered by sorting packed (score, index) longs, so no objects or comparators
+ * are involved. Every candidate is then registered in a coarse grid covering the boxes, and a
+ * kept box is only compared against candidates sharing a grid cell with it; boxes that do not
+ * share a cell cannot overlap. The result is the same as the plain O(n²) greedy loop.
+ *
+ * Two modes are supported:
+ * <ul>
+ *   <li>hard (default): a candidate is dropped when its IoU with a kept box exceeds the
+ *       threshold.</li>
+ *   <li>soft (Gaussian): overlapping candidates have their score multiplied by
+ *       exp(-IoU² / sigma) and are dropped once it falls below a minimum score.</li>
+ * </ul>
+ * With class-aware suppression enabled, only boxes of the same class suppress each other.
+ *
+ * Not thread-safe; scratch arrays are reused across calls.
+ */
+public final class NmsEngine {
+
+    private static final int MAX_GRID_CELLS_PER_AXIS = 32;
+
+    private final float iouThreshold;
+    private final int maxDetections;
+    private boolean classAware;
+    private boolean softNms;
+    private float softSigma;
+    private float softMinScore;
+
+    // Scratch, grown on demand
+    private long[] order = new long[0];
+    private int[] rank = new int[0];
+    private float[] scores = new float[0];
+    private boolean[] removed = new boolean[0];
+    private int[] visited = new int[0];
+    private int[] cellStart = new int[0];
+    private int[] cellEntries = new int[0];
+    private int visitStamp;
+
+    // Grid geometry of the current call
+    private float gridLeft;
+    private float gridTop;
+    private float cellWidth;
+    private float cellHeight;
+    private int gridColumns;
+    private int gridRows;
+
+    private long iouComparisons;
+
+    /**
+     * @param iouThreshold  IoU above which hard NMS drops a candidate
+     * @param maxDetections stop once this many boxes are kept
+     */
+    public NmsEngine(float iouThreshold, int maxDetections) {
+        this.iouThreshold = iouThreshold;
+        this.maxDetections = maxDetections;
+    }
+
+    /** Only suppress boxes of the same class. Off by default. */
+    public void setClassAware(boolean classAware) {
+        this.classAware = classAware;
+    }
+
+    public boolean isClassAware() {
+        return classAware;
+    }
+
+    /**
+     * Switches to Gaussian soft-NMS.
+     *
+     * @param sigma    decay width; smaller values suppress overlapping boxes harder
+     * @param minScore candidates whose decayed score falls below this are dropped
+     */
+    public void setSoftNms(float sigma, float minScore) {
+        if (sigma <= 0) {
+            throw new IllegalArgumentException("sigma must be > 0");
+        }
+        softNms = true;
+        softSigma = sigma;
+        softMinScore = minScore;
+    }
+
+    /** Switches back to hard NMS. */
+    public void setHardNms() {
+        softNms = false;
+    }
+
+    public boolean isSoftNms() {
+        return softNms;
+    }
+
+    /** IoU evaluations performed across all calls; shows how many pairs the grid skipped. */
+    public long getIouComparisons() {
+        return iouComparisons;
+    }
+
+    /**
+     * Appends the surviving boxes of {@code candidates} to {@code out} in descending score
+     * order. In soft mode the decayed scores are written.
+     *
+     * @return number of boxes kept
+     */
+    public int run(DetectionBuffer candidates, DetectionBuffer out) {
+        int count = candidates.size();
+        if (count == 0 || maxDetections <= 0) {
+            return 0;
+        }
+        ensureCapacity(count);
+        sortByScore(candidates, count);
+        buildGrid(candidates, count);
+        return softNms ? runSoft(candidates, count, out) : runHard(candidates, count, out);
+    }
+
+    private int runHard(DetectionBuffer boxes, int count, DetectionBuffer out) {
+        Arrays.fill(removed, 0, count, false);
+        int kept = 0;
+
+        for (int r = 0; r < count && kept < maxDetections; r++) {
+            int i = (int) order[r];
+            if (removed[i]) {
+                continue;
+            }
+            out.add(boxes.left(i), boxes.top(i), boxes.right(i), boxes.bottom(i),
+                    boxes.score(i), boxes.classId(i));
+            kept++;
+
+            int stamp = nextVisitStamp(count);
+            int c0 = column(boxes.left(i));
+            int c1 = column(boxes.right(i));
+            int r0 = row(boxes.top(i));
+            int r1 = row(boxes.bottom(i));
+            for (int gy = r0; gy <= r1; gy++) {
+                for (int gx = c0; gx <= c1; gx++) {
+                    int cell = gy * gridColumns + gx;
+                    for (int e = cellStart[cell]; e < cellStart[cell + 1]; e++) {
+                        int j = cellEntries[e];
+                        // Only lower-ranked candidates can still be suppressed by box i
+                        if (rank[j] <= r || removed[j] || visited[j] == stamp) {
+                            continue;
+                        }
+                        visited[j] = stamp;
+                        if (classAware && boxes.classId(j) != boxes.classId(i)) {
+                            continue;
+                        }
+                        if (iou(boxes, i, j) > iouThreshold) {
+                            removed[j] = true;
+                        }
+                    }
+                }
+            }
+        }
+        return kept;
+    }
+
+    private int runSoft(DetectionBuffer boxes, int count, DetectionBuffer out) {
+        for (int i = 0; i < count; i++) {
+            scores[i] = boxes.score(i);
+            removed[i] = false;
+        }
+        int kept = 0;
+
+        while (kept < maxDetections) {
+            // Scores change as boxes are kept, so pick the current best by a linear scan.
+            // Scanning in the sorted order keeps ties in the same order as hard NMS.
+            int best = -1;
+            float bestScore = Float.NEGATIVE_INFINITY;
+            for (int r = 0; r < count; r++) {
+                int i = (int) order[r];
+                if (!removed[i] && scores[i] > bestScore) {
+                    bestScore = scores[i];
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            removed[best] = true;
+            out.add(boxes.left(best), boxes.top(best), boxes.right(best), boxes.bottom(best),
+                    bestScore, boxes.classId(best));
+            kept++;
+
+            int stamp = nextVisitStamp(count);
+            int c0 = column(boxes.left(best));
+            int c1 = column(boxes.right(best));
+            int r0 = row(boxes.top(best));
+            int r1 = row(boxes.bottom(best));
+            for (int gy = r0; gy <= r1; gy++) {
+                for (int gx = c0; gx <= c1; gx++) {
+                    int cell = gy * gridColumns + gx;
+                    for (int e = cellStart[cell]; e < cellStart[cell + 1]; e++) {
+                        int j = cellEntries[e];
+                        if (removed[j] || visited[j] == stamp) {
+                            continue;
+                        }
+                        visited[j] = stamp;
+                        if (classAware && boxes.classId(j) != boxes.classId(best)) {
+                            continue;
+                        }
+                        float overlap = iou(boxes, best, j);
+                        if (overlap > 0) {
+                            scores[j] *= (float) Math.exp(-(overlap * overlap) / softSigma);
+                            if (scores[j] < softMinScore) {
+                                removed[j] = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Sorts candidate indices by descending score, ties by ascending index, by packing the
+     * order-preserving bits of the score and the index into one long.
+     */
+    private void sortByScore(DetectionBuffer boxes, int count) {
+        for (int i = 0; i < count; i++) {
+            int bits = Float.floatToIntBits(boxes.score(i));
+            // Flip the magnitude bits of negative floats so that signed int order is float order
+            int sortable = bits ^ ((bits >> 31) & 0x7fffffff);
+            order[i] = ((long) ~sortable << 32) | i;
+        }
+        Arrays.sort(order, 0, count);
+        for (int r = 0; r < count; r++) {
+            order[r] &= 0xffffffffL;
+            rank[(int) order[r]] = r;
+        }
+    }
+
+    /** Buckets every candidate into each grid cell its box touches (compressed row layout). */
+    private void buildGrid(DetectionBuffer boxes, int count) {
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        float totalWidth = 0;
+        float totalHeight = 0;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, boxes.left(i));
+            minY = Math.min(minY, boxes.top(i));
+            maxX = Math.max(maxX, boxes.right(i));
+            maxY = Math.max(maxY, boxes.bottom(i));
+            totalWidth += boxes.right(i) - boxes.left(i);
+            totalHeight += boxes.bottom(i) - boxes.top(i);
+        }
+
+        // Cells about the size of an average box keep each box in a handful of cells
+        float extentX = Math.max(1e-3f, maxX - minX);
+        float extentY = Math.max(1e-3f, maxY - minY);
+        gridLeft = minX;
+        gridTop = minY;
+        cellWidth = Math.max(extentX / MAX_GRID_CELLS_PER_AXIS, Math.max(1e-3f, totalWidth / count));
+        cellHeight = Math.max(extentY / MAX_GRID_CELLS_PER_AXIS, Math.max(1e-3f, totalHeight / count));
+        gridColumns = Math.min(MAX_GRID_CELLS_PER_AXIS, (int) (extentX / cellWidth) + 1);
+        gridRows = Math.min(MAX_GRID_CELLS_PER_AXIS, (int) (extentY / cellHeight) + 1);
+
+        int cells = gridColumns * gridRows;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        }
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+
+        // First pass: count entries per cell
+        int entries = 0;
+        for (int i = 0; i < count; i++) {
+            int c0 = column(boxes.left(i));
+            int c1 = column(boxes.right(i));
+            int r0 = row(boxes.top(i));
+            int r1 = row(boxes.bottom(i));
+            for (int gy = r0; gy <= r1; gy++) {
+                for (int gx = c0; gx <= c1; gx++) {
+                    cellStart[gy * gridColumns + gx + 1]++;
+                }
+            }
+            entries += (c1 - c0 + 1) * (r1 - r0 + 1);
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        if (cellEntries.length < entries) {
+            cellEntries = new int[entries];
+        }
+
+        // Second pass: fill, using visited[] as the per-cell write cursor
+        if (visited.length < cells) {
+            visited = new int[Math.max(cells, count)];
+        }
+        System.arraycopy(cellStart, 0, visited, 0, cells);
+        for (int i = 0; i < count; i++) {
+            int c0 = column(boxes.left(i));
+            int c1 = column(boxes.right(i));
+            int r0 = row(boxes.top(i));
+            int r1 = row(boxes.bottom(i));
+            for (int gy = r0; gy <= r1; gy++) {
+                for (int gx = c0; gx <= c1; gx++) {
+                    cellEntries[visited[gy * gridColumns + gx]++] = i;
+                }
+            }
+        }
+        Arrays.fill(visited, 0, Math.max(cells, count), 0);
+        visitStamp = 0;
+    }
+
+    private int column(float x) {
+        int column = (int) ((x - gridLeft) / cellWidth);
+        return Math.max(0, Math.min(gridColumns - 1, column));
+    }
+
+    private int row(float y) {
+        int row = (int) ((y - gridTop) / cellHeight);
+        return Math.max(0, Math.min(gridRows - 1, row));
+    }
+
+    private int nextVisitStamp(int count) {
+        if (++visitStamp == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0, count, 0);
+            visitStamp = 1;
+        }
+        return visitStamp;
+    }
+
+    private float iou(DetectionBuffer boxes, int a, int b) {
+        iouComparisons++;
+        float intersectLeft = Math.max(boxes.left(a), boxes.left(b));
+        float intersectTop = Math.max(boxes.top(a), boxes.top(b));
+        float intersectRight = Math.min(boxes.right(a), boxes.right(b));
+        float intersectBottom = Math.min(boxes.bottom(a), boxes.bottom(b));
+        if (intersectLeft >= intersectRight || intersectTop >= intersectBottom) {
+            return 0;
+        }
+        float areaA = (boxes.right(a) - boxes.left(a)) * (boxes.bottom(a) - boxes.top(a));
+        float areaB = (boxes.right(b) - boxes.left(b)) * (boxes.bottom(b) - boxes.top(b));
+        float intersectArea = (intersectRight - intersectLeft) * (intersectBottom - intersectTop);
+        return intersectArea / (areaA + areaB - intersectArea);
+    }
+
+    private void ensureCapacity(int count) {
+        if (order.length < count) {
+            int capacity = Math.max(count, order.length * 2);
+            order = new long[capacity];
+            rank = new int[capacity];
+            scores = new float[capacity];
+            removed = new boolean[capacity];
+            visited = new int[Math.max(capacity, visited.length)];
+        }
+    }
+}
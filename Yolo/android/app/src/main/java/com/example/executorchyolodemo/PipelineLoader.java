@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.pytorch.executorch.Module;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the models and species names for a {@link BirdDetectionPipeline}.
+ *
+ * The detector and classifier are extracted from the assets, loaded and warmed up with a
+ * forward on a blank input, each on its own thread, while the species list is parsed on the
+ * calling thread. The warm-up moves one-time runtime setup out of the first camera frame.
+ *
+ * The detector's warm-up also tells the pipeline what it is: its input size comes from the
+ * optional {@value #DETECTOR_SPEC_ASSET} metadata file, or is the first of the common export
+ * sizes the model accepts, and the {@link DetectorHead} is bound from the output shape.
+ */
+public final class PipelineLoader {
+    private static final String TAG = "PipelineLoader";
+
+    static final String DETECTOR_ASSET = "yolo_detector.pte";
+    static final String CLASSIFIER_ASSET = "bird_classifier.pte";
+    static final String SPECIES_ASSET = "bird_species.json";
+    static final String DETECTOR_SPEC_ASSET = "yolo_detector.json";
+    // Input sizes tried, in order, when the metadata file does not give one
+    private static final int[] DETECTOR_INPUT_SIZES = {640, 320, 416, 480, 512, 768, 960, 1024, 1280};
+    private static final long[] CLASSIFIER_WARM_UP_SHAPE =
+            {1, 3, DetectionEngine.CLASSIFIER_INPUT_SIZE, DetectionEngine.CLASSIFIER_INPUT_SIZE};
+
+    /** Receives the loaded pipeline on the callback executor. */
+    public interface Listener {
+        void onLoaded(BirdDetectionPipeline pipeline, Timings timings);
+
+        void onFailed(Exception e);
+    }
+
+    /** Where the time went for one model. */
+    public static final class ModelTimings {
+        public volatile long extractMillis;
+        public volatile long loadMillis;
+        public volatile long warmUpMillis;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "extract=%dms load=%dms warmUp=%dms",
+                    extractMillis, loadMillis, warmUpMillis);
+        }
+    }
+
+    /** Startup breakdown; the per-model times overlap, {@link #totalMillis} is wall time. */
+    public static final class Timings {
+        public final ModelTimings detector = new ModelTimings();
+        public final ModelTimings classifier = new ModelTimings();
+        public long speciesMillis;
+        public long totalMillis;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "total=%dms detector[%s] classifier[%s] species=%dms",
+                    totalMillis, detector, classifier, speciesMillis);
+        }
+    }
+
+    /** Result of a blocking load. */
+    static final class Loaded {
+        final ExecuTorchModelRunner runner;
+        final DetectorSpec detectorSpec;
+        final String[] speciesNames;
+        final Timings timings;
+
+        Loaded(ExecuTorchModelRunner runner, DetectorSpec detectorSpec, String[] speciesNames, Timings timings) {
+            this.runner = runner;
+            this.detectorSpec = detectorSpec;
+            this.speciesNames = speciesNames;
+            this.timings = timings;
+        }
+    }
+
+    /** A loaded module and the shapes its warm-up ran with; the shapes are null if it failed. */
+    private static final class LoadedModel {
+        final Module module;
+        final long[] inputShape;
+        final long[] outputShape;
+
+        LoadedModel(Module module, long[] inputShape, long[] outputShape) {
+            this.module = module;
+            this.inputShape = inputShape;
+            this.outputShape = outputShape;
+        }
+    }
+
+    private PipelineLoader() {
+    }
+
+    /**
+     * Loads the pipeline on a background thread and hands it to {@code listener} on
+     * {@code callbackExecutor}. If the receiver is gone by then it must close the pipeline.
+     */
+    public static void loadAsync(Context context, Executor callbackExecutor, Listener listener) {
+        Context appContext = context.getApplicationContext();
+        Thread thread = new Thread(() -> {
+            try {
+                Loaded loaded = load(appContext);
+                BirdDetectionPipeline pipeline = new BirdDetectionPipeline(loaded);
+                callbackExecutor.execute(() -> listener.onLoaded(pipeline, loaded.timings));
+            } catch (Exception e) {
+                callbackExecutor.execute(() -> listener.onFailed(e));
+            }
+        }, "pipeline-loader");
+        thread.start();
+    }
+
+    /** Loads both models in parallel and waits for them. */
+    static Loaded load(Context context) throws IOException {
+        long start = System.nanoTime();
+        Timings timings = new Timings();
+        DetectorSpec declared = loadDetectorSpec(context);
+        List<long[]> detectorShapes = detectorInputShapes(declared);
+        ExecutorService loaders = Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, "model-loader"));
+        try {
+            Future<LoadedModel> detector = loaders.submit(() ->
+                    loadModel(context, DETECTOR_ASSET, detectorShapes, true, timings.detector));
+            Future<LoadedModel> classifier = loaders.submit(() ->
+                    loadModel(context, CLASSIFIER_ASSET, Collections.singletonList(CLASSIFIER_WARM_UP_SHAPE),
+                            false, timings.classifier));
+
+            long speciesStart = System.nanoTime();
+            String[] speciesNames = loadSpeciesNames(context);
+            timings.speciesMillis = (System.nanoTime() - speciesStart) / 1_000_000;
+
+            LoadedModel detectorModel = await(detector, classifier);
+            LoadedModel classifierModel = await(classifier, detector);
+            DetectorSpec spec = declared.withModel((int) detectorModel.inputShape[2], detectorModel.outputShape);
+            try {
+                int[] targetClasses = spec.getTargetClasses();
+                DetectorHead head = DetectorHeads.bind(spec,
+                        targetClasses != null ? targetClasses : new int[]{YoloV8Decoder.COCO_BIRD});
+                Log.d(TAG, "Detector " + head.getFormat() + ", " + spec);
+            } catch (IllegalArgumentException e) {
+                detectorModel.module.destroy();
+                classifierModel.module.destroy();
+                throw new IOException("Unsupported detector: " + e.getMessage(), e);
+            }
+            timings.totalMillis = (System.nanoTime() - start) / 1_000_000;
+            Log.d(TAG, "Pipeline loaded: " + timings);
+            return new Loaded(new ExecuTorchModelRunner(detectorModel.module, classifierModel.module),
+                    spec, speciesNames, timings);
+        } finally {
+            loaders.shutdown();
+        }
+    }
+
+    /**
+     * Loads a model and warms it up with the first of {@code warmUpShapes} it accepts. Runs on a
+     * loader thread.
+     *
+     * @param required whether the warm-up must succeed, because its output shape is needed
+     */
+    private static LoadedModel loadModel(Context context, String asset, List<long[]> warmUpShapes,
+                                         boolean required, ModelTimings timings) throws IOException {
+        long start = System.nanoTime();
+        String path = Utils.assetFilePath(context, asset);
+        long extracted = System.nanoTime();
+        Module module = Module.load(path);
+        long loaded = System.nanoTime();
+        long[] inputShape = null;
+        long[] outputShape = null;
+        RuntimeException failure = null;
+        for (long[] shape : warmUpShapes) {
+            try {
+                outputShape = ExecuTorchModelRunner.warmUp(module, shape);
+                inputShape = shape;
+                break;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (outputShape == null) {
+            if (required) {
+                module.destroy();
+                throw new IOException("No supported input shape for " + asset, failure);
+            }
+            // Not fatal: the first frame pays the setup cost instead
+            Log.w(TAG, "Warm-up failed for " + asset, failure);
+        }
+        long warmed = System.nanoTime();
+        timings.extractMillis = (extracted - start) / 1_000_000;
+        timings.loadMillis = (loaded - extracted) / 1_000_000;
+        timings.warmUpMillis = (warmed - loaded) / 1_000_000;
+        return new LoadedModel(module, inputShape, outputShape);
+    }
+
+    /**
+     * Waits for {@code future}. If it failed, the {@code other} model is destroyed once it is
+     * done, so a half-loaded pipeline leaks nothing.
+     */
+    private static LoadedModel await(Future<LoadedModel> future, Future<LoadedModel> other) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException | InterruptedException e) {
+            try {
+                LoadedModel model = other.get();
+                if (model != null) {
+                    model.module.destroy();
+                }
+            } catch (ExecutionException | InterruptedException ignored) {
+                // Already reported through the first failure
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            Log.e(TAG, "Failed to load models", cause);
+            throw new IOException("Model loading failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    /** The detector metadata file, or an empty spec if there is none. */
+    private static DetectorSpec loadDetectorSpec(Context context) throws IOException {
+        Reader reader;
+        try {
+            reader = new InputStreamReader(context.getAssets().open(DETECTOR_SPEC_ASSET), StandardCharsets.UTF_8);
+        } catch (FileNotFoundException e) {
+            return new DetectorSpec();
+        }
+        try (Reader metadata = reader) {
+            DetectorSpec spec = new Gson().fromJson(metadata, DetectorSpec.class);
+            return spec != null ? spec : new DetectorSpec();
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed " + DETECTOR_SPEC_ASSET, e);
+        }
+    }
+
+    private static List<long[]> detectorInputShapes(DetectorSpec declared) {
+        List<long[]> shapes = new ArrayList<>();
+        if (declared.getInputSize() > 0) {
+            shapes.add(new long[]{1, 3, declared.getInputSize(), declared.getInputSize()});
+        } else {
+            for (int size : DETECTOR_INPUT_SIZES) {
+                shapes.add(new long[]{1, 3, size, size});
+            }
+        }
+        return shapes;
+    }
+
+    private static String[] loadSpeciesNames(Context context) {
+        try (Reader reader = new InputStreamReader(context.getAssets().open(SPECIES_ASSET), StandardCharsets.UTF_8)) {
+            Type listType = new TypeToken<List<String>>() {}.getType();
+            List<String> speciesList = new Gson().fromJson(reader, listType);
+            Log.d(TAG, "Loaded " + speciesList.size() + " bird species names");
+            return speciesList.toArray(new String[0]);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to load bird species names", e);
+            return new String[]{"Bird"};
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-step latency histograms and detection counters for the {@link DetectionEngine}.
+ *
+ * The engine times every step anyway; when metrics are enabled each frame's timings are added to
+ * lock-free {@link LatencyHistogram}s, one per {@link DetectionEngine.Step}. Disabled, recording
+ * is a single volatile read. Reports are built on demand with {@link #export()}.
+ */
+public final class PipelineMetrics {
+    private static final DetectionEngine.Step[] STEPS = DetectionEngine.Step.values();
+
+    private volatile boolean enabled;
+    private final LatencyHistogram[] steps = new LatencyHistogram[STEPS.length];
+    private final LatencyHistogram detectStage = new LatencyHistogram();
+    private final LatencyHistogram classifyStage = new LatencyHistogram();
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong regionFrames = new AtomicLong();
+    private final AtomicLong candidates = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong detections = new AtomicLong();
+    private final AtomicLong classifierCrops = new AtomicLong();
+    private final AtomicLong reusedVerdicts = new AtomicLong();
+    private final AtomicLong stableDetections = new AtomicLong();
+
+    public PipelineMetrics() {
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = new LatencyHistogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** Records the detection stage of a frame. Called by the engine on the detection thread. */
+    void recordDetect(DetectionEngine.PendingFrame frame) {
+        if (!enabled) {
+            return;
+        }
+        long total = 0;
+        for (int s = DetectionEngine.Step.PREPROCESS.ordinal(); s <= DetectionEngine.Step.CROP.ordinal(); s++) {
+            long nanos = frame.stepNanos[s];
+            steps[s].record(nanos);
+            total += nanos;
+        }
+        detectStage.record(total);
+        frames.incrementAndGet();
+        if (frame.regionCount > 0) {
+            regionFrames.incrementAndGet();
+        }
+        candidates.addAndGet(frame.candidateCount);
+        suppressed.addAndGet(frame.candidateCount - frame.cropCount);
+        detections.addAndGet(frame.cropCount);
+    }
+
+    /** Records the classification stage of a frame. Called by the engine on its thread. */
+    void recordClassify(DetectionEngine.PendingFrame frame) {
+        if (!enabled) {
+            return;
+        }
+        long classify = frame.stepNanos[DetectionEngine.Step.CLASSIFIER.ordinal()];
+        long track = frame.stepNanos[DetectionEngine.Step.TRACK.ordinal()];
+        steps[DetectionEngine.Step.CLASSIFIER.ordinal()].record(classify);
+        steps[DetectionEngine.Step.TRACK.ordinal()].record(track);
+        classifyStage.record(classify + track);
+        classifierCrops.addAndGet(frame.classifiedCount);
+        reusedVerdicts.addAndGet(frame.cropCount - frame.classifiedCount);
+        int stable = 0;
+        for (int c = 0; c < frame.cropCount; c++) {
+            if (frame.stable[c]) {
+                stable++;
+            }
+        }
+        stableDetections.addAndGet(stable);
+    }
+
+    public LatencyHistogram getHistogram(DetectionEngine.Step step) {
+        return steps[step.ordinal()];
+    }
+
+    public LatencyHistogram getDetectStageHistogram() {
+        return detectStage;
+    }
+
+    public LatencyHistogram getClassifyStageHistogram() {
+        return classifyStage;
+    }
+
+    public long getFrames() {
+        return frames.get();
+    }
+
+    /** Frames where the detector only ran on regions around tracked birds. */
+    public long getRegionFrames() {
+        return regionFrames.get();
+    }
+
+    /** Boxes above the confidence threshold, before NMS. */
+    public long getCandidates() {
+        return candidates.get();
+    }
+
+    /** Candidates removed by NMS or the detection limit. */
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    public long getDetections() {
+        return detections.get();
+    }
+
+    /** Crops that went through the classifier; the rest reused a cached verdict. */
+    public long getClassifierCrops() {
+        return classifierCrops.get();
+    }
+
+    public long getReusedVerdicts() {
+        return reusedVerdicts.get();
+    }
+
+    public long getStableDetections() {
+        return stableDetections.get();
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : steps) {
+            histogram.reset();
+        }
+        detectStage.reset();
+        classifyStage.reset();
+        frames.set(0);
+        regionFrames.set(0);
+        candidates.set(0);
+        suppressed.set(0);
+        detections.set(0);
+        classifierCrops.set(0);
+        reusedVerdicts.set(0);
+        stableDetections.set(0);
+    }
+
+    /** Multi-line report of every histogram and counter. */
+    public String export() {
+        StringBuilder report = new StringBuilder();
+        long frameCount = frames.get();
+        report.append(String.format(Locale.US,
+                "frames=%d (regions=%d) candidates=%d suppressed=%d detections=%d (%.2f/frame) stable=%d classified=%d reused=%d",
+                frameCount, regionFrames.get(), candidates.get(), suppressed.get(), detections.get(),
+                frameCount == 0 ? 0 : (double) detections.get() / frameCount,
+                stableDetections.get(), classifierCrops.get(), reusedVerdicts.get()));
+        report.append("\n  detect stage: ").append(detectStage);
+        report.append("\n  classify stage: ").append(classifyStage);
+        for (DetectionEngine.Step step : STEPS) {
+            report.append("\n  ").append(step.name().toLowerCase(Locale.US)).append(": ")
+                    .append(steps[step.ordinal()]);
+        }
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return export();
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-stage pipeline with a dedicated thread per stage, so stage one can work on frame N+1
+ * while stage two is still busy with frame N.
+ *
+ * Stages are connected by {@link LatestFrameQueue}s: if a stage falls behind, the oldest
+ * pending frame is dropped rather than delaying newer ones. The executor owns every item once
+ * it is submitted and hands it back through the recyclers when a stage is done with it or
+ * when it is dropped.
+ *
+ * @param <I> stage one input, e.g. a camera image
+ * @param <W> work handed from stage one to stage two
+ * @param <R> stage two result
+ */
+public final class PipelinedExecutor<I, W, R> {
+
+    /** A pipeline stage. Returning null ends processing of that frame. */
+    public interface Stage<A, B> {
+        B process(A input) throws Exception;
+    }
+
+    public interface ResultListener<R> {
+        void onResult(R result);
+    }
+
+    /** Told about the first failure of each stage; later ones are only counted. */
+    public interface FailureListener {
+        void onFailure(String stageName, Exception e);
+    }
+
+    /** Counters for one stage; safe to read from any thread. */
+    public static final class StageStats {
+        private final String name;
+        private final LatestFrameQueue<?> queue;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private long windowStartNanos = System.nanoTime();
+        private long windowStartProcessed;
+        private volatile int maxQueueDepth;
+        // Written only by the stage's own thread
+        private volatile Exception firstFailure;
+
+        StageStats(String name, LatestFrameQueue<?> queue) {
+            this.name = name;
+            this.queue = queue;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** Frames currently waiting in front of this stage. */
+        public int getQueueDepth() {
+            return queue.size();
+        }
+
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        public long getProcessed() {
+            return processed.get();
+        }
+
+        /** Frames that were replaced by a newer one before this stage got to them. */
+        public long getDropped() {
+            return queue.droppedCount();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /** The first exception thrown by this stage, or null if it has not failed. */
+        public Exception getFirstFailure() {
+            return firstFailure;
+        }
+
+        /** Mean time spent inside the stage per processed frame. */
+        public double getAverageMillis() {
+            long count = processed.get();
+            return count == 0 ? 0 : busyNanos.get() / 1e6 / count;
+        }
+
+        /** Frames per second completed since the previous call. */
+        public synchronized double sampleThroughput() {
+            long now = System.nanoTime();
+            long count = processed.get();
+            double seconds = (now - windowStartNanos) / 1e9;
+            double fps = seconds > 0 ? (count - windowStartProcessed) / seconds : 0;
+            windowStartNanos = now;
+            windowStartProcessed = count;
+            return fps;
+        }
+
+        void recordQueueDepth() {
+            int depth = queue.size();
+            if (depth > maxQueueDepth) {
+                maxQueueDepth = depth;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: depth=%d max=%d processed=%d dropped=%d failed=%d avg=%.1fms",
+                    name, getQueueDepth(), maxQueueDepth, getProcessed(), getDropped(),
+                    getFailed(), getAverageMillis());
+        }
+    }
+
+    private final Stage<I, W> firstStage;
+    private final Stage<W, R> secondStage;
+    private final LatestFrameQueue.Recycler<I> inputRecycler;
+    private final LatestFrameQueue.Recycler<W> workRecycler;
+    private final ResultListener<R> listener;
+
+    private final LatestFrameQueue<I> inputQueue;
+    private final LatestFrameQueue<W> workQueue;
+    private final StageStats firstStats;
+    private final StageStats secondStats;
+    private final Thread firstThread;
+    private final Thread secondThread;
+    private volatile FailureListener failureListener;
+
+    public PipelinedExecutor(String firstName, Stage<I, W> firstStage, LatestFrameQueue.Recycler<I> inputRecycler,
+                             String secondName, Stage<W, R> secondStage, LatestFrameQueue.Recycler<W> workRecycler,
+                             ResultListener<R> listener, int queueCapacity) {
+        this.firstStage = firstStage;
+        this.secondStage = secondStage;
+        this.inputRecycler = inputRecycler;
+        this.workRecycler = workRecycler;
+        this.listener = listener;
+
+        inputQueue = new LatestFrameQueue<>(queueCapacity, inputRecycler);
+        workQueue = new LatestFrameQueue<>(queueCapacity, workRecycler);
+        firstStats = new StageStats(firstName, inputQueue);
+        secondStats = new StageStats(secondName, workQueue);
+
+        firstThread = new Thread(this::runFirstStage, "pipeline-" + firstName);
+        secondThread = new Thread(this::runSecondStage, "pipeline-" + secondName);
+    }
+
+    public void start() {
+        firstThread.start();
+        secondThread.start();
+    }
+
+    /**
+     * Queues an input for stage one. Returns false if the executor is shut down, in which case
+     * the caller keeps ownership of the input.
+     */
+    public boolean submit(I input) {
+        boolean accepted = inputQueue.offer(input);
+        firstStats.recordQueueDepth();
+        return accepted;
+    }
+
+    public void setFailureListener(FailureListener failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    public StageStats getFirstStageStats() {
+        return firstStats;
+    }
+
+    public StageStats getSecondStageStats() {
+        return secondStats;
+    }
+
+    /**
+     * Stops both stages, recycles anything left in the queues and waits up to
+     * {@code timeoutMillis} for the frames in flight to finish.
+     *
+     * @return true if both stage threads have exited. Otherwise a stage may still be running,
+     *     and whatever it uses must stay alive until {@link #awaitTermination} returns.
+     */
+    public boolean shutdown(long timeoutMillis) throws InterruptedException {
+        inputQueue.close();
+        workQueue.close();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        firstThread.join(timeoutMillis);
+        // join(0) would wait forever
+        secondThread.join(Math.max(1, (deadline - System.nanoTime()) / 1_000_000));
+        return isTerminated();
+    }
+
+    /** True once both stage threads have exited. */
+    public boolean isTerminated() {
+        return !firstThread.isAlive() && !secondThread.isAlive();
+    }
+
+    /** Waits for both stage threads to exit, after {@link #shutdown}. */
+    public void awaitTermination() throws InterruptedException {
+        firstThread.join();
+        secondThread.join();
+    }
+
+    private void onStageFailed(StageStats stats, Exception e) {
+        stats.failed.incrementAndGet();
+        if (stats.firstFailure == null) {
+            stats.firstFailure = e;
+            FailureListener listener = failureListener;
+            if (listener != null) {
+                listener.onFailure(stats.name, e);
+            }
+        }
+    }
+
+    private void runFirstStage() {
+        try {
+            I input;
+            while ((input = inputQueue.take()) != null) {
+                W work = null;
+                long start = System.nanoTime();
+                try {
+                    work = firstStage.process(input);
+                } catch (Exception e) {
+                    onStageFailed(firstStats, e);
+                } finally {
+                    inputRecycler.recycle(input);
+                }
+                firstStats.busyNanos.addAndGet(System.nanoTime() - start);
+                firstStats.processed.incrementAndGet();
+
+                if (work != null) {
+                    if (!workQueue.offer(work)) {
+                        workRecycler.recycle(work);
+                    }
+                    secondStats.recordQueueDepth();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runSecondStage() {
+        try {
+            W work;
+            while ((work = workQueue.take()) != null) {
+                R result = null;
+                long start = System.nanoTime();
+                try {
+                    result = secondStage.process(work);
+                } catch (Exception e) {
+                    onStageFailed(secondStats, e);
+                } finally {
+                    workRecycler.recycle(work);
+                }
+                secondStats.busyNanos.addAndGet(System.nanoTime() - start);
+                secondStats.processed.incrementAndGet();
+
+                if (result != null) {
+                    listener.onResult(result);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
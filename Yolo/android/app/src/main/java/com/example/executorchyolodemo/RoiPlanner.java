@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+/**
+ * Decides, per frame, whether the detector scans the whole frame or only regions around the
+ * birds already being tracked.
+ *
+ * A full-frame scan squeezes the whole camera image into the detector input, so a distant bird
+ * covers only a few input pixels. Regions are at least one detector input in size and taken
+ * from the frame at native resolution, which keeps small birds sharp. A full scan still runs
+ * every {@code fullScanInterval} frames, and whenever there are no fresh tracks, so new arrivals
+ * are picked up.
+ *
+ * Regions that would cover more than {@link #MAX_REGION_COVERAGE} of the frame fall back to a
+ * full scan, so regions only ever run on frames of at least twice the area of one region: with
+ * a 640 detector input, e.g. 1280x720 or 1280x960, but not 640x480.
+ *
+ * Tracks are published by the classification thread after each frame and read by the
+ * detection thread; both sides copy under a lock held for a few dozen floats.
+ */
+public final class RoiPlanner {
+    /** Frames a published set of tracks stays usable; covers the hand-off between the stages. */
+    static final int MAX_TRACK_LAG_FRAMES = 3;
+    /** Regions covering more than this fraction of the frame are not worth it. */
+    static final float MAX_REGION_COVERAGE = 0.5f;
+
+    private final int minRegionSize;
+    private final int maxTracks;
+
+    private volatile boolean enabled;
+    private volatile int fullScanInterval = 5;
+    private volatile float margin = 0.5f;
+    private volatile int maxRegions = 1;
+
+    // Published tracks: left, top, right, bottom, velocityX, velocityY. Guarded by this
+    private final float[] publishedTracks;
+    private int publishedCount;
+    private long publishedFrame = -1;
+
+    // Detection-thread scratch
+    private final float[] tracks;
+    private final float[] regions;
+
+    /**
+     * @param minRegionSize smallest region side in frame pixels, normally the detector input
+     *                      size so regions are never upscaled
+     * @param maxTracks     most tracks considered per frame
+     */
+    public RoiPlanner(int minRegionSize, int maxTracks) {
+        this.minRegionSize = minRegionSize;
+        this.maxTracks = maxTracks;
+        this.publishedTracks = new float[6 * maxTracks];
+        this.tracks = new float[6 * maxTracks];
+        this.regions = new float[4 * maxTracks];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getFullScanInterval() {
+        return fullScanInterval;
+    }
+
+    /** Every {@code frames}-th analyzed frame is scanned in full; 1 disables regions. */
+    public void setFullScanInterval(int frames) {
+        if (frames < 1) {
+            throw new IllegalArgumentException("Full scan interval must be at least 1: " + frames);
+        }
+        this.fullScanInterval = frames;
+    }
+
+    /** Context added on every side of a bird, as a fraction of its larger side. */
+    public void setMargin(float margin) {
+        this.margin = margin;
+    }
+
+    /**
+     * Most detector runs per region frame. Regions are merged down to this count; each one costs
+     * a detector forward, so more than one only pays off with a model cheaper than a full scan.
+     */
+    public void setMaxRegions(int maxRegions) {
+        if (maxRegions < 1 || maxRegions > maxTracks) {
+            throw new IllegalArgumentException("Max regions must be in [1, " + maxTracks + "]: " + maxRegions);
+        }
+        this.maxRegions = maxRegions;
+    }
+
+    /**
+     * Publishes the tracks matched in {@code frame}. Called by the classification thread after
+     * the tracker update.
+     */
+    public void publish(BirdTracker tracker, long frame) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            int count = 0;
+            for (int i = 0; i < tracker.getTrackCount() && count < maxTracks; i++) {
+                BirdTracker.Track track = tracker.getTrack(i);
+                if (track.getLastSeenFrame() != frame) {
+                    continue;
+                }
+                int base = 6 * count++;
+                publishedTracks[base] = track.getLeft();
+                publishedTracks[base + 1] = track.getTop();
+                publishedTracks[base + 2] = track.getRight();
+                publishedTracks[base + 3] = track.getBottom();
+                publishedTracks[base + 4] = track.getVelocityX();
+                publishedTracks[base + 5] = track.getVelocityY();
+            }
+            publishedCount = count;
+            publishedFrame = frame;
+        }
+    }
+
+    /**
+     * Plans the detector runs for {@code frame}. Writes {@code left, top, right, bottom} of each
+     * region into {@code out}, in whole frame pixels.
+     *
+     * @return number of regions, or 0 to scan the whole frame
+     */
+    public int plan(long frame, int frameWidth, int frameHeight, float[] out) {
+        if (!enabled || frame % fullScanInterval == 0) {
+            return 0;
+        }
+        int count;
+        long trackFrame;
+        synchronized (this) {
+            count = publishedCount;
+            trackFrame = publishedFrame;
+            System.arraycopy(publishedTracks, 0, tracks, 0, 6 * count);
+        }
+        if (count == 0 || trackFrame < 0 || frame - trackFrame > MAX_TRACK_LAG_FRAMES) {
+            return 0;
+        }
+
+        int maxSide = Math.min(frameWidth, frameHeight);
+        int regionSide = Math.min(minRegionSize, maxSide);
+        float elapsed = frame - trackFrame;
+        for (int t = 0; t < count; t++) {
+            int base = 6 * t;
+            float dx = tracks[base + 4] * elapsed;
+            float dy = tracks[base + 5] * elapsed;
+            float width = tracks[base + 2] - tracks[base];
+            float height = tracks[base + 3] - tracks[base + 1];
+            float centerX = (tracks[base] + tracks[base + 2]) / 2 + dx;
+            float centerY = (tracks[base + 1] + tracks[base + 3]) / 2 + dy;
+            float side = Math.max(width, height) * (1 + 2 * margin);
+            side = Math.min(Math.max(side, regionSide), maxSide);
+            setRegion(t, centerX - side / 2, centerY - side / 2, centerX + side / 2, centerY + side / 2,
+                    frameWidth, frameHeight);
+        }
+
+        count = mergeOverlapping(count);
+        if (count > maxRegions) {
+            for (int r = 1; r < count; r++) {
+                union(0, r);
+            }
+            count = 1;
+        }
+
+        float covered = 0;
+        for (int r = 0; r < count; r++) {
+            covered += (regions[4 * r + 2] - regions[4 * r]) * (regions[4 * r + 3] - regions[4 * r + 1]);
+        }
+        if (covered > MAX_REGION_COVERAGE * frameWidth * frameHeight) {
+            return 0;
+        }
+        System.arraycopy(regions, 0, out, 0, 4 * count);
+        return count;
+    }
+
+    /** Forgets the published tracks. */
+    public synchronized void reset() {
+        publishedCount = 0;
+        publishedFrame = -1;
+    }
+
+    /** Places a region, shifting it back inside the frame and snapping it to whole pixels. */
+    private void setRegion(int r, float left, float top, float right, float bottom,
+                           int frameWidth, int frameHeight) {
+        float shiftX = left < 0 ? -left : (right > frameWidth ? frameWidth - right : 0);
+        float shiftY = top < 0 ? -top : (bottom > frameHeight ? frameHeight - bottom : 0);
+        regions[4 * r] = Math.max(0, (float) Math.floor(left + shiftX));
+        regions[4 * r + 1] = Math.max(0, (float) Math.floor(top + shiftY));
+        regions[4 * r + 2] = Math.min(frameWidth, (float) Math.ceil(right + shiftX));
+        regions[4 * r + 3] = Math.min(frameHeight, (float) Math.ceil(bottom + shiftY));
+    }
+
+    /** Merges regions that overlap until none do, so no bird is detected twice. */
+    private int mergeOverlapping(int count) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int a = 0; a < count && !merged; a++) {
+                for (int b = a + 1; b < count; b++) {
+                    if (overlaps(a, b)) {
+                        union(a, b);
+                        System.arraycopy(regions, 4 * (count - 1), regions, 4 * b, 4);
+                        count--;
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean overlaps(int a, int b) {
+        return regions[4 * a] < regions[4 * b + 2] && regions[4 * b] < regions[4 * a + 2]
+                && regions[4 * a + 1] < regions[4 * b + 3] && regions[4 * b + 1] < regions[4 * a + 3];
+    }
+
+    private void union(int into, int from) {
+        regions[4 * into] = Math.min(regions[4 * into], regions[4 * from]);
+        regions[4 * into + 1] = Math.min(regions[4 * into + 1], regions[4 * from + 1]);
+        regions[4 * into + 2] = Math.max(regions[4 * into + 2], regions[4 * from + 2]);
+        regions[4 * into + 3] = Math.max(regions[4 * into + 3], regions[4 * from + 3]);
+    }
+}
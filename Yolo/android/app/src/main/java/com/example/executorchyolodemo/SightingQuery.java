@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filter for browsing stored sightings, newest first.
+ *
+ * Builds the WHERE clause for {@link SightingStore}. Pages are fetched with keyset pagination:
+ * each page continues strictly after the (time, id) of the last row of the previous one, so
+ * every page is an index range scan no matter how deep into the history it is, unlike OFFSET.
+ */
+public final class SightingQuery {
+    static final String COLUMN_ID = "_id";
+    static final String COLUMN_SESSION = "session_id";
+    static final String COLUMN_SPECIES = "species";
+    static final String COLUMN_TIME = "time_ms";
+
+    /** Rows are ordered so the newest sighting comes first; ties broken by insertion order. */
+    static final String ORDER_BY = COLUMN_TIME + " DESC, " + COLUMN_ID + " DESC";
+
+    private String species;
+    private long sessionId = -1;
+    private long fromMillis = Long.MIN_VALUE;
+    private long toMillis = Long.MAX_VALUE;
+
+    public static SightingQuery all() {
+        return new SightingQuery();
+    }
+
+    public static SightingQuery forSession(long sessionId) {
+        return new SightingQuery().session(sessionId);
+    }
+
+    public SightingQuery session(long sessionId) {
+        this.sessionId = sessionId;
+        return this;
+    }
+
+    /** Restricts to one species, or any species if null. */
+    public SightingQuery species(String species) {
+        this.species = species;
+        return this;
+    }
+
+    /** Restricts to sightings with {@code fromMillis <= time < toMillis}. */
+    public SightingQuery between(long fromMillis, long toMillis) {
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        return this;
+    }
+
+    public String getSpecies() {
+        return species;
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * WHERE clause selecting this query's rows that come after the given cursor. A cursor id
+     * below zero starts from the newest row.
+     */
+    String selection(long afterTimeMillis, long afterId) {
+        List<String> clauses = new ArrayList<>(5);
+        if (sessionId >= 0) {
+            clauses.add(COLUMN_SESSION + " = ?");
+        }
+        if (species != null) {
+            clauses.add(COLUMN_SPECIES + " = ?");
+        }
+        if (fromMillis != Long.MIN_VALUE) {
+            clauses.add(COLUMN_TIME + " >= ?");
+        }
+        if (toMillis != Long.MAX_VALUE) {
+            clauses.add(COLUMN_TIME + " < ?");
+        }
+        if (afterId >= 0) {
+            clauses.add("(" + COLUMN_TIME + " < ? OR (" + COLUMN_TIME + " = ? AND "
+                    + COLUMN_ID + " < ?))");
+        }
+        return clauses.isEmpty() ? null : String.join(" AND ", clauses);
+    }
+
+    /** Arguments for the placeholders of {@link #selection}, in order. */
+    String[] selectionArgs(long afterTimeMillis, long afterId) {
+        List<String> args = new ArrayList<>(7);
+        if (sessionId >= 0) {
+            args.add(Long.toString(sessionId));
+        }
+        if (species != null) {
+            args.add(species);
+        }
+        if (fromMillis != Long.MIN_VALUE) {
+            args.add(Long.toString(fromMillis));
+        }
+        if (toMillis != Long.MAX_VALUE) {
+            args.add(Long.toString(toMillis));
+        }
+        if (afterId >= 0) {
+            args.add(Long.toString(afterTimeMillis));
+            args.add(Long.toString(afterTimeMillis));
+            args.add(Long.toString(afterId));
+        }
+        return args.isEmpty() ? null : args.toArray(new String[0]);
+    }
+}
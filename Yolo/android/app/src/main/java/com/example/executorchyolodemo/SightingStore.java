@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent store of bird sightings across sessions, backed by SQLite.
+ *
+ * Sightings are indexed by time, by species and time, and by session and time, so the history
+ * can be filtered with a {@link SightingQuery} and paged without reading it all into memory.
+ * All database work runs on one background thread, which also keeps reads ordered after the
+ * writes submitted before them.
+ */
+public final class SightingStore extends SQLiteOpenHelper {
+    private static final String TAG = "SightingStore";
+    private static final String DATABASE_NAME = "sightings.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_SIGHTINGS = "sightings";
+    private static final String TABLE_SESSIONS = "sessions";
+    private static final String COLUMN_SIGHTING_ID = "sighting_id";
+    private static final String COLUMN_CONFIDENCE = "confidence";
+    private static final String COLUMN_THUMBNAIL = "thumbnail_path";
+    private static final String COLUMN_STARTED = "started_ms";
+    private static final String COLUMN_ENDED = "ended_ms";
+
+    /** Receives a page of sightings on the store thread. */
+    public interface PageCallback {
+        void onPage(List<BirdSessionManager.BirdSighting> page, boolean lastPage);
+    }
+
+    private static SightingStore instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "sighting-store"));
+
+    public static synchronized SightingStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new SightingStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SightingStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // Inserts and reads do not block each other
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SESSIONS + " ("
+                + SightingQuery.COLUMN_ID + " INTEGER PRIMARY KEY, "
+                + COLUMN_STARTED + " INTEGER NOT NULL, "
+                + COLUMN_ENDED + " INTEGER)");
+        db.execSQL("CREATE TABLE " + TABLE_SIGHTINGS + " ("
+                + SightingQuery.COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_SIGHTING_ID + " TEXT NOT NULL, "
+                + SightingQuery.COLUMN_SESSION + " INTEGER NOT NULL, "
+                + SightingQuery.COLUMN_SPECIES + " TEXT NOT NULL, "
+                + SightingQuery.COLUMN_TIME + " INTEGER NOT NULL, "
+                + COLUMN_CONFIDENCE + " REAL NOT NULL, "
+                + COLUMN_THUMBNAIL + " TEXT)");
+        db.execSQL("CREATE INDEX sightings_time ON " + TABLE_SIGHTINGS
+                + " (" + SightingQuery.COLUMN_TIME + ", " + SightingQuery.COLUMN_ID + ")");
+        db.execSQL("CREATE INDEX sightings_species_time ON " + TABLE_SIGHTINGS
+                + " (" + SightingQuery.COLUMN_SPECIES + ", " + SightingQuery.COLUMN_TIME + ")");
+        db.execSQL("CREATE INDEX sightings_session_time ON " + TABLE_SIGHTINGS
+                + " (" + SightingQuery.COLUMN_SESSION + ", " + SightingQuery.COLUMN_TIME + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // First schema version; nothing to migrate yet
+    }
+
+    /** Records the start of a session. */
+    public void startSession(long sessionId, long startMillis) {
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(SightingQuery.COLUMN_ID, sessionId);
+            values.put(COLUMN_STARTED, startMillis);
+            getWritableDatabase().insertWithOnConflict(TABLE_SESSIONS, null, values,
+                    SQLiteDatabase.CONFLICT_REPLACE);
+        });
+    }
+
+    public void endSession(long sessionId, long endMillis) {
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_ENDED, endMillis);
+            getWritableDatabase().update(TABLE_SESSIONS, values,
+                    SightingQuery.COLUMN_ID + " = ?", new String[]{Long.toString(sessionId)});
+        });
+    }
+
+    /** Appends a sighting; its {@code id} is filled in once the row is written. */
+    public void insert(BirdSessionManager.BirdSighting sighting) {
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_SIGHTING_ID, sighting.sightingId);
+            values.put(SightingQuery.COLUMN_SESSION, sighting.sessionId);
+            values.put(SightingQuery.COLUMN_SPECIES, sighting.species);
+            values.put(SightingQuery.COLUMN_TIME, sighting.timeMillis);
+            values.put(COLUMN_CONFIDENCE, sighting.confidence);
+            values.put(COLUMN_THUMBNAIL, sighting.thumbnailPath);
+            sighting.id = getWritableDatabase().insert(TABLE_SIGHTINGS, null, values);
+            if (sighting.id < 0) {
+                Log.e(TAG, "Failed to store sighting of " + sighting.species);
+            }
+        });
+    }
+
+    /**
+     * Loads up to {@code limit} sightings matching {@code query} that come after {@code after}
+     * (or the newest ones if null) and passes them to {@code callback} on the store thread.
+     */
+    public void loadPage(SightingQuery query, BirdSessionManager.BirdSighting after, int limit,
+                         PageCallback callback) {
+        long afterTime = after != null ? after.timeMillis : 0;
+        long afterId = after != null ? after.id : -1;
+        executor.execute(() -> {
+            List<BirdSessionManager.BirdSighting> page = new ArrayList<>(limit);
+            // One extra row tells whether another page follows
+            try (Cursor cursor = getReadableDatabase().query(TABLE_SIGHTINGS, null,
+                    query.selection(afterTime, afterId), query.selectionArgs(afterTime, afterId),
+                    null, null, SightingQuery.ORDER_BY, Integer.toString(limit + 1))) {
+                int id = cursor.getColumnIndexOrThrow(SightingQuery.COLUMN_ID);
+                int sightingId = cursor.getColumnIndexOrThrow(COLUMN_SIGHTING_ID);
+                int session = cursor.getColumnIndexOrThrow(SightingQuery.COLUMN_SESSION);
+                int species = cursor.getColumnIndexOrThrow(SightingQuery.COLUMN_SPECIES);
+                int time = cursor.getColumnIndexOrThrow(SightingQuery.COLUMN_TIME);
+                int confidence = cursor.getColumnIndexOrThrow(COLUMN_CONFIDENCE);
+                int thumbnail = cursor.getColumnIndexOrThrow(COLUMN_THUMBNAIL);
+                while (page.size() < limit && cursor.moveToNext()) {
+                    BirdSessionManager.BirdSighting sighting = new BirdSessionManager.BirdSighting(
+                            cursor.getString(species), cursor.getLong(session), cursor.getLong(time),
+                            cursor.getFloat(confidence), cursor.getString(thumbnail));
+                    sighting.id = cursor.getLong(id);
+                    sighting.sightingId = cursor.getString(sightingId);
+                    page.add(sighting);
+                }
+                callback.onPage(page, cursor.getCount() <= limit);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to load sightings", e);
+                callback.onPage(page, true);
+            }
+        });
+    }
+
+    /** Counts the sightings matching {@code query}; must not be called on the UI thread. */
+    public long count(SightingQuery query) {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_SIGHTINGS,
+                query.selection(0, -1), query.selectionArgs(0, -1));
+    }
+
+    /** Runs {@code task} on the store thread, after all previously submitted work. */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+}
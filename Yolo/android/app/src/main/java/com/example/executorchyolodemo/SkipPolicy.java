@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+/**
+ * Decides how many camera frames pass between two analyzed frames, based on what the
+ * {@link FrameRateGovernor} has measured. An interval of 1 analyzes every frame.
+ */
+public interface SkipPolicy {
+
+    /** Measurements a policy decides on; refreshed by the governor before every decision. */
+    final class Inputs {
+        /** Interval currently in effect. */
+        public int interval;
+        /** Camera frame rate as observed by the analyzer. */
+        public double cameraFps;
+        /** Smoothed time from frame arrival to pipeline result, in milliseconds. */
+        public double latencyMillis;
+        /** Analyzed frames the pipeline dropped since the previous decision. */
+        public int droppedFrames;
+        /** Thermal status, using the android.os.PowerManager THERMAL_STATUS_* values. */
+        public int thermalStatus;
+    }
+
+    int chooseInterval(Inputs inputs);
+
+    String getName();
+
+    /** Always the same interval, like the old FRAME_SKIP_COUNT. */
+    final class Fixed implements SkipPolicy {
+        private final int interval;
+
+        public Fixed(int interval) {
+            this.interval = Math.max(1, interval);
+        }
+
+        @Override
+        public int chooseInterval(Inputs inputs) {
+            return interval;
+        }
+
+        @Override
+        public String getName() {
+            return "fixed(" + interval + ")";
+        }
+    }
+
+    /**
+     * Analyzes as many frames as the latency target allows, within a power budget.
+     *
+     * The interval grows by one when latency exceeds the target or the pipeline had to drop
+     * frames, and shrinks by one once latency is comfortably below target. Independently, the
+     * analyzed rate is capped at {@code maxAnalyzedFps}, scaled down as the device heats up.
+     */
+    final class LatencyTarget implements SkipPolicy {
+        private static final double SPEED_UP_FRACTION = 0.6;
+
+        private final double targetLatencyMillis;
+        private final double maxAnalyzedFps;
+        private final int maxInterval;
+
+        public LatencyTarget(double targetLatencyMillis, double maxAnalyzedFps, int maxInterval) {
+            this.targetLatencyMillis = targetLatencyMillis;
+            this.maxAnalyzedFps = maxAnalyzedFps;
+            this.maxInterval = maxInterval;
+        }
+
+        @Override
+        public int chooseInterval(Inputs inputs) {
+            int interval = inputs.interval;
+            if (inputs.latencyMillis > targetLatencyMillis || inputs.droppedFrames > 0) {
+                interval++;
+            } else if (inputs.latencyMillis < targetLatencyMillis * SPEED_UP_FRACTION) {
+                interval--;
+            }
+
+            double fpsBudget = maxAnalyzedFps * thermalScale(inputs.thermalStatus);
+            if (inputs.cameraFps > 0 && fpsBudget > 0) {
+                // The small slack keeps a measured 30.0001 fps from rounding up a whole frame
+                interval = Math.max(interval, (int) Math.ceil(inputs.cameraFps / fpsBudget - 1e-3));
+            }
+            return Math.max(1, Math.min(maxInterval, interval));
+        }
+
+        @Override
+        public String getName() {
+            return "latency(" + (int) targetLatencyMillis + "ms, " + maxAnalyzedFps + "fps)";
+        }
+
+        /** Fraction of the power budget allowed at a given thermal status. */
+        static double thermalScale(int thermalStatus) {
+            switch (thermalStatus) {
+                case FrameRateGovernor.THERMAL_STATUS_NONE:
+                case FrameRateGovernor.THERMAL_STATUS_LIGHT:
+                    return 1.0;
+                case FrameRateGovernor.THERMAL_STATUS_MODERATE:
+                    return 0.5;
+                case FrameRateGovernor.THERMAL_STATUS_SEVERE:
+                    return 0.25;
+                default:
+                    return 0.1;
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.util.Locale;
+
+/**
+ * Remembers recent classifier verdicts so a bird that stays put is not re-classified on every
+ * frame.
+ *
+ * A detection whose box overlaps a cached box by at least {@code minIou} reuses that verdict,
+ * unless the verdict is {@code reverifyInterval} frames old or the detector confidence dropped
+ * by more than {@code maxConfidenceDrop} since it was made; then the crop is classified again.
+ * The interval can be adapted so the classifier's average cost per frame fits a latency budget.
+ *
+ * Entries are kept in parallel primitive arrays. Not thread-safe.
+ */
+public final class SpeciesVerdictCache {
+
+    private final int capacity;
+    private final float minIou;
+    private final float maxConfidenceDrop;
+    private final int maxAgeFrames;
+    private final int minReverifyInterval;
+    private final int maxReverifyInterval;
+    private int reverifyInterval;
+
+    private final float[] left;
+    private final float[] top;
+    private final float[] right;
+    private final float[] bottom;
+    private final int[] species;
+    private final float[] speciesScore;
+    private final float[] detectionConfidence;
+    private final long[] classifiedFrame;
+    private final long[] lastSeenFrame;
+    private int size;
+
+    private long hits;
+    private long newMisses;
+    private long staleMisses;
+    private long confidenceMisses;
+
+    /**
+     * @param capacity            most verdicts kept; the least recently seen one is replaced
+     * @param minIou              overlap with a cached box needed to reuse its verdict
+     * @param maxConfidenceDrop   re-classify if detector confidence fell by more than this
+     * @param maxAgeFrames        entries not seen for this many frames are dropped
+     * @param minReverifyInterval lower bound of the re-verification interval, in frames
+     * @param maxReverifyInterval upper bound of the re-verification interval, in frames
+     */
+    public SpeciesVerdictCache(int capacity, float minIou, float maxConfidenceDrop, int maxAgeFrames,
+                               int minReverifyInterval, int maxReverifyInterval) {
+        if (minReverifyInterval < 1 || maxReverifyInterval < minReverifyInterval) {
+            throw new IllegalArgumentException("Invalid re-verification interval range");
+        }
+        this.capacity = capacity;
+        this.minIou = minIou;
+        this.maxConfidenceDrop = maxConfidenceDrop;
+        this.maxAgeFrames = maxAgeFrames;
+        this.minReverifyInterval = minReverifyInterval;
+        this.maxReverifyInterval = maxReverifyInterval;
+        this.reverifyInterval = minReverifyInterval;
+
+        left = new float[capacity];
+        top = new float[capacity];
+        right = new float[capacity];
+        bottom = new float[capacity];
+        species = new int[capacity];
+        speciesScore = new float[capacity];
+        detectionConfidence = new float[capacity];
+        classifiedFrame = new long[capacity];
+        lastSeenFrame = new long[capacity];
+    }
+
+    /**
+     * Looks up a verdict for a detection in {@code frame}. On a hit the entry follows the box,
+     * so a slowly moving bird keeps matching, and its index is returned; otherwise -1.
+     */
+    public int lookup(float boxLeft, float boxTop, float boxRight, float boxBottom,
+                      float confidence, long frame) {
+        int entry = findEntry(boxLeft, boxTop, boxRight, boxBottom, frame);
+        if (entry < 0) {
+            newMisses++;
+            return -1;
+        }
+        if (frame - classifiedFrame[entry] >= reverifyInterval) {
+            staleMisses++;
+            return -1;
+        }
+        if (confidence < detectionConfidence[entry] - maxConfidenceDrop) {
+            confidenceMisses++;
+            return -1;
+        }
+
+        hits++;
+        left[entry] = boxLeft;
+        top[entry] = boxTop;
+        right[entry] = boxRight;
+        bottom[entry] = boxBottom;
+        lastSeenFrame[entry] = frame;
+        return entry;
+    }
+
+    public int getSpecies(int entry) {
+        return species[entry];
+    }
+
+    public float getSpeciesScore(int entry) {
+        return speciesScore[entry];
+    }
+
+    /** Records a fresh classifier verdict, replacing the entry for the same bird if any. */
+    public void store(float boxLeft, float boxTop, float boxRight, float boxBottom,
+                      float confidence, int speciesIndex, float score, long frame) {
+        int entry = findEntry(boxLeft, boxTop, boxRight, boxBottom, frame);
+        if (entry < 0) {
+            entry = size < capacity ? size++ : leastRecentlySeen();
+        }
+        left[entry] = boxLeft;
+        top[entry] = boxTop;
+        right[entry] = boxRight;
+        bottom[entry] = boxBottom;
+        species[entry] = speciesIndex;
+        speciesScore[entry] = score;
+        detectionConfidence[entry] = confidence;
+        classifiedFrame[entry] = frame;
+        lastSeenFrame[entry] = frame;
+    }
+
+    /**
+     * Picks the re-verification interval so that classifying every visible bird once per
+     * interval costs about {@code budgetMillis} per frame on average.
+     *
+     * @param birds           birds currently in view
+     * @param millisPerCrop   measured classifier cost of one crop
+     * @param budgetMillis    classifier time per frame we are willing to spend
+     */
+    public void adaptReverifyInterval(int birds, double millisPerCrop, double budgetMillis) {
+        int interval = minReverifyInterval;
+        if (budgetMillis > 0 && birds > 0) {
+            interval = (int) Math.ceil(birds * millisPerCrop / budgetMillis);
+        }
+        reverifyInterval = Math.max(minReverifyInterval, Math.min(maxReverifyInterval, interval));
+    }
+
+    public int getReverifyInterval() {
+        return reverifyInterval;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /** All lookups that needed the classifier. */
+    public long getMisses() {
+        return newMisses + staleMisses + confidenceMisses;
+    }
+
+    /** Misses because no cached box matched, e.g. a new bird. */
+    public long getNewMisses() {
+        return newMisses;
+    }
+
+    /** Misses because the cached verdict reached the re-verification interval. */
+    public long getStaleMisses() {
+        return staleMisses;
+    }
+
+    /** Misses because the detector confidence dropped below the cached one. */
+    public long getConfidenceMisses() {
+        return confidenceMisses;
+    }
+
+    /** Fraction of lookups answered from the cache, i.e. classifier calls saved. */
+    public double getHitRate() {
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public String getStats() {
+        return String.format(Locale.US,
+                "hits=%d misses=%d (new=%d stale=%d confidence=%d) hitRate=%.2f interval=%d",
+                hits, getMisses(), newMisses, staleMisses, confidenceMisses, getHitRate(),
+                reverifyInterval);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /** Drops expired entries and returns the live one overlapping the box most, or -1. */
+    private int findEntry(float boxLeft, float boxTop, float boxRight, float boxBottom, long frame) {
+        int best = -1;
+        float bestIou = minIou;
+        for (int i = size - 1; i >= 0; i--) {
+            if (frame - lastSeenFrame[i] > maxAgeFrames) {
+                remove(i);
+                if (best == size) {
+                    best = i;
+                }
+                continue;
+            }
+            float iou = iou(i, boxLeft, boxTop, boxRight, boxBottom);
+            if (iou >= bestIou) {
+                bestIou = iou;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** Moves the last entry into slot i. */
+    private void remove(int i) {
+        size--;
+        left[i] = left[size];
+        top[i] = top[size];
+        right[i] = right[size];
+        bottom[i] = bottom[size];
+        species[i] = species[size];
+        speciesScore[i] = speciesScore[size];
+        detectionConfidence[i] = detectionConfidence[size];
+        classifiedFrame[i] = classifiedFrame[size];
+        lastSeenFrame[i] = lastSeenFrame[size];
+    }
+
+    private int leastRecentlySeen() {
+        int oldest = 0;
+        for (int i = 1; i < size; i++) {
+            if (lastSeenFrame[i] < lastSeenFrame[oldest]) {
+                oldest = i;
+            }
+        }
+        return oldest;
+    }
+
+    private float iou(int i, float boxLeft, float boxTop, float boxRight, float boxBottom) {
+        float intersectWidth = Math.min(right[i], boxRight) - Math.max(left[i], boxLeft);
+        float intersectHeight = Math.min(bottom[i], boxBottom) - Math.max(top[i], boxTop);
+        if (intersectWidth <= 0 || intersectHeight <= 0) {
+            return 0;
+        }
+        float intersection = intersectWidth * intersectHeight;
+        float union = (right[i] - left[i]) * (bottom[i] - top[i])
+                + (boxRight - boxLeft) * (boxBottom - boxTop) - intersection;
+        return intersection / union;
+    }
+}
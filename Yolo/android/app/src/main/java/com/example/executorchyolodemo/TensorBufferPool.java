@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Owns the direct input buffers and scratch arrays used to build model inputs.
+ *
+ * Buffers are sized once per model input shape and handed back on every frame, so in steady
+ * state preprocessing allocates nothing. The allocation counters exist to verify exactly that.
+ *
+ * Not thread-safe: each thread that builds tensors should own its own pool.
+ */
+public final class TensorBufferPool {
+
+    private static final class ShapedBuffer {
+        final long[] shape;
+        final FloatBuffer buffer;
+
+        ShapedBuffer(long[] shape, FloatBuffer buffer) {
+            this.shape = shape;
+            this.buffer = buffer;
+        }
+    }
+
+    private final List<ShapedBuffer> buffers = new ArrayList<>();
+    private float[] floatScratch = new float[0];
+    private int[] intScratch = new int[0];
+
+    private long acquireCount;
+    private long allocationCount;
+    private long allocatedBytes;
+
+    /**
+     * Returns the direct buffer for the given shape, rewound and ready to be filled. The same
+     * buffer is returned for equal shapes, so it may be wrapped in a Tensor once and reused.
+     */
+    public FloatBuffer floatBuffer(long[] shape) {
+        acquireCount++;
+        for (int i = 0; i < buffers.size(); i++) {
+            ShapedBuffer candidate = buffers.get(i);
+            if (Arrays.equals(candidate.shape, shape)) {
+                candidate.buffer.rewind();
+                return candidate.buffer;
+            }
+        }
+
+        int elements = numElements(shape);
+        FloatBuffer buffer = ByteBuffer.allocateDirect(elements * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        buffers.add(new ShapedBuffer(shape.clone(), buffer));
+        recordAllocation(elements * 4L);
+        return buffer;
+    }
+
+    /** Returns a float array with at least {@code size} elements. Contents are undefined. */
+    public float[] floatScratch(int size) {
+        acquireCount++;
+        if (floatScratch.length < size) {
+            floatScratch = new float[size];
+            recordAllocation(size * 4L);
+        }
+        return floatScratch;
+    }
+
+    /** Returns an int array with at least {@code size} elements. Contents are undefined. */
+    public int[] intScratch(int size) {
+        acquireCount++;
+        if (intScratch.length < size) {
+            intScratch = new int[size];
+            recordAllocation(size * 4L);
+        }
+        return intScratch;
+    }
+
+    /**
+     * Copies {@code count} floats from the scratch array into the pooled buffer for {@code shape}
+     * and returns the buffer rewound.
+     */
+    public FloatBuffer upload(long[] shape, float[] source, int count) {
+        return upload(shape, source, 0, count);
+    }
+
+    /** Like {@link #upload(long[], float[], int)}, reading from {@code source[offset]}. */
+    public FloatBuffer upload(long[] shape, float[] source, int offset, int count) {
+        FloatBuffer buffer = floatBuffer(shape);
+        buffer.put(source, offset, count);
+        buffer.rewind();
+        return buffer;
+    }
+
+    /** Number of times a buffer had to be created or grown. Flat in steady state. */
+    public long getAllocationCount() {
+        return allocationCount;
+    }
+
+    /** Total bytes allocated by this pool since creation. */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /** Number of buffer requests served, pooled or not. */
+    public long getAcquireCount() {
+        return acquireCount;
+    }
+
+    public String getStats() {
+        return "acquired=" + acquireCount + " allocations=" + allocationCount
+                + " allocatedBytes=" + allocatedBytes;
+    }
+
+    public void clear() {
+        buffers.clear();
+        floatScratch = new float[0];
+        intScratch = new int[0];
+    }
+
+    static int numElements(long[] shape) {
+        long elements = 1;
+        for (long dim : shape) {
+            elements *= dim;
+        }
+        if (elements > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Tensor too large: " + Arrays.toString(shape));
+        }
+        return (int) elements;
+    }
+
+    private void recordAllocation(long bytes) {
+        allocationCount++;
+        allocatedBytes += bytes;
+    }
+}
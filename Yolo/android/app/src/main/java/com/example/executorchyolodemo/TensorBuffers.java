@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import org.pytorch.executorch.Tensor;
+
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Read access to output tensors without copying them into a new float[].
+ *
+ * {@link Tensor#getDataAsFloatArray()} allocates and fills a fresh array on every call, which
+ * for the YOLOv8 head is 2.8 MB per frame. The Tensor already keeps its data in a buffer, but
+ * the accessor is package-private, so it is reached through reflection. If that fails (e.g.
+ * the accessor is renamed in a future release) we fall back to wrapping a copied array.
+ */
+public final class TensorBuffers {
+    private static final Method RAW_DATA_BUFFER = findRawDataBufferMethod();
+
+    private TensorBuffers() {
+    }
+
+    /** Returns a read-only view of a float tensor's data, positioned at zero. */
+    public static FloatBuffer floatView(Tensor tensor) {
+        if (RAW_DATA_BUFFER != null) {
+            try {
+                Buffer raw = (Buffer) RAW_DATA_BUFFER.invoke(tensor);
+                if (raw instanceof FloatBuffer) {
+                    FloatBuffer view = ((FloatBuffer) raw).asReadOnlyBuffer();
+                    view.clear();
+                    return view;
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Fall through to the copying path
+            }
+        }
+        return FloatBuffer.wrap(tensor.getDataAsFloatArray());
+    }
+
+    /** Total number of elements of a tensor, computed from its shape without touching data. */
+    public static long numel(Tensor tensor) {
+        long count = 1;
+        for (long dim : tensor.shape()) {
+            count *= dim;
+        }
+        return count;
+    }
+
+    /** True if the tensor buffer accessor was found, so views normally avoid a copy. */
+    public static boolean isZeroCopy() {
+        return RAW_DATA_BUFFER != null;
+    }
+
+    private static Method findRawDataBufferMethod() {
+        try {
+            Method method = Tensor.class.getDeclaredMethod("getRawDataBuffer");
+            method.setAccessible(true);
+            return method;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
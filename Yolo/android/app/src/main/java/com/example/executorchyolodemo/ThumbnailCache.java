@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache for sighting thumbnails: an LRU of decoded images in memory, within a byte
+ * budget, backed by the thumbnail files on disk.
+ *
+ * Misses are decoded on background threads at a size matched to the target view, and delivered
+ * on the main thread. A request can be cancelled, e.g. when its row is recycled; a cancelled
+ * decode still fills the memory cache but is not delivered. A file that is missing or cannot be
+ * decoded is not cached, so a later load tries it again.
+ *
+ * Decoding and delivery are supplied by the caller, so the cache itself has no Android
+ * dependencies; {@link #getInstance()} is the app's cache of {@link Bitmap}s.
+ *
+ * @param <T> image type, e.g. {@code Bitmap}
+ */
+public final class ThumbnailCache<T> {
+    private static final String TAG = "ThumbnailCache";
+    private static final int DECODE_THREADS = 2;
+
+    /**
+     * Decodes the image at {@code path} for a {@code width} x {@code height} view; returns null
+     * if the file is missing or unreadable. Called on a decoder thread.
+     */
+    public interface Decoder<T> {
+        T decode(String path, int width, int height);
+    }
+
+    /** Bytes an image takes up in the memory cache. */
+    public interface Sizer<T> {
+        int sizeOf(T image);
+    }
+
+    /** Receives a decoded thumbnail, or null if it could not be loaded, on the main thread. */
+    public interface Callback<T> {
+        void onThumbnail(T image);
+    }
+
+    /** A pending load. */
+    public static final class Request {
+        private final AtomicLong cancellations;
+        private volatile boolean cancelled;
+        // Guarded by this
+        private boolean started;
+        private Future<?> future;
+
+        private Request(AtomicLong cancellations) {
+            this.cancellations = cancellations;
+        }
+
+        /** Stops the load if it has not started and suppresses its callback. */
+        public void cancel() {
+            Future<?> pending;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                if (started) {
+                    // Counted when its decode finishes
+                    return;
+                }
+                pending = future;
+            }
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            cancellations.incrementAndGet();
+        }
+
+        /** Marks the decode as started; false if it was cancelled first. */
+        private synchronized boolean start() {
+            started = !cancelled;
+            return started;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private static ThumbnailCache<Bitmap> instance;
+
+    private final int maxBytes;
+    private final Decoder<T> decoder;
+    private final Sizer<T> sizer;
+    private final ExecutorService decodeExecutor;
+    private final Executor mainExecutor;
+    // Least recently used first; guarded by this
+    private final LinkedHashMap<String, T> memoryCache = new LinkedHashMap<>(16, 0.75f, true);
+    private int memoryBytes;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskLoads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+    private final AtomicLong decodeNanos = new AtomicLong();
+
+    /** Shared cache of bitmaps sized to an eighth of the heap. */
+    public static synchronized ThumbnailCache<Bitmap> getInstance() {
+        if (instance == null) {
+            ExecutorService decodeThreads = Executors.newFixedThreadPool(DECODE_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "thumbnail-decoder");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+            instance = new ThumbnailCache<>(maxBytes, ThumbnailCache::decodeBitmap,
+                    Bitmap::getAllocationByteCount, decodeThreads, mainHandler::post);
+        }
+        return instance;
+    }
+
+    /**
+     * @param maxBytes       memory budget for decoded images
+     * @param decodeExecutor runs the decodes of misses
+     * @param mainExecutor   delivers results to callbacks, e.g. by posting to the main thread
+     */
+    public ThumbnailCache(int maxBytes, Decoder<T> decoder, Sizer<T> sizer,
+                          ExecutorService decodeExecutor, Executor mainExecutor) {
+        this.maxBytes = maxBytes;
+        this.decoder = decoder;
+        this.sizer = sizer;
+        this.decodeExecutor = decodeExecutor;
+        this.mainExecutor = mainExecutor;
+    }
+
+    /**
+     * Loads the thumbnail at {@code path} sized for a {@code width} x {@code height} view.
+     * A memory hit is delivered immediately and returns null; otherwise the returned request
+     * can be cancelled until the callback runs.
+     */
+    public Request load(String path, int width, int height, Callback<T> callback) {
+        if (path == null || path.isEmpty()) {
+            failures.incrementAndGet();
+            callback.onThumbnail(null);
+            return null;
+        }
+        T cached = cacheGet(key(path, width, height));
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            callback.onThumbnail(cached);
+            return null;
+        }
+
+        Request request = new Request(cancellations);
+        Future<?> future = decodeExecutor.submit(() -> {
+            if (!request.start()) {
+                return;
+            }
+            T image = decode(path, width, height);
+            mainExecutor.execute(() -> {
+                if (request.cancelled) {
+                    cancellations.incrementAndGet();
+                } else {
+                    callback.onThumbnail(image);
+                }
+            });
+        });
+        synchronized (request) {
+            request.future = future;
+        }
+        return request;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /** Loads that had to decode the file from disk. */
+    public long getDiskLoads() {
+        return diskLoads.get();
+    }
+
+    /** Loads of a missing or unreadable file. */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getCancellations() {
+        return cancellations.get();
+    }
+
+    /** Bytes of decoded images held in memory. */
+    public synchronized int getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /** Fraction of loads served from memory. */
+    public double getHitRate() {
+        long hits = memoryHits.get();
+        long total = hits + diskLoads.get() + failures.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public String getStats() {
+        long loads = diskLoads.get();
+        return String.format(Locale.US,
+                "hits=%d diskLoads=%d failed=%d cancelled=%d hitRate=%.2f decode=%.1fms memory=%dKB/%dKB",
+                memoryHits.get(), loads, failures.get(), cancellations.get(), getHitRate(),
+                loads == 0 ? 0 : decodeNanos.get() / 1e6 / loads,
+                getMemoryBytes() / 1024, maxBytes / 1024);
+    }
+
+    /** Drops all decoded images, e.g. when the system is low on memory. */
+    public synchronized void trimMemory() {
+        memoryCache.clear();
+        memoryBytes = 0;
+    }
+
+    /**
+     * Largest power-of-two subsampling that keeps both sides of a {@code width} x {@code height}
+     * image at least as large as the requested size.
+     */
+    static int calculateInSampleSize(int width, int height, int requestedWidth, int requestedHeight) {
+        int sampleSize = 1;
+        if (requestedWidth <= 0 || requestedHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= requestedWidth && height / (sampleSize * 2) >= requestedHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // Runs on a decoder thread
+    private T decode(String path, int width, int height) {
+        long start = System.nanoTime();
+        T image = decoder.decode(path, width, height);
+        if (image == null) {
+            failures.incrementAndGet();
+            return null;
+        }
+        cachePut(key(path, width, height), image);
+        diskLoads.incrementAndGet();
+        decodeNanos.addAndGet(System.nanoTime() - start);
+        return image;
+    }
+
+    private synchronized T cacheGet(String key) {
+        return memoryCache.get(key);
+    }
+
+    private synchronized void cachePut(String key, T image) {
+        T previous = memoryCache.put(key, image);
+        if (previous != null) {
+            memoryBytes -= sizer.sizeOf(previous);
+        }
+        memoryBytes += sizer.sizeOf(image);
+        // Evict least recently used images until back within the budget
+        Iterator<Map.Entry<String, T>> eldest = memoryCache.entrySet().iterator();
+        while (memoryBytes > maxBytes && eldest.hasNext()) {
+            memoryBytes -= sizer.sizeOf(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    private static Bitmap decodeBitmap(String path, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            // Missing, e.g. still queued in the thumbnail writer, or unreadable
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+        Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+        if (bitmap == null) {
+            Log.w(TAG, "Failed to decode thumbnail " + path);
+        }
+        return bitmap;
+    }
+
+    private static String key(String path, int width, int height) {
+        return path + '@' + width + 'x' + height;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Encodes and writes thumbnails to disk on a background thread.
+ *
+ * Writes go through a bounded queue; when it is full, {@link #submit} refuses the write instead
+ * of blocking the caller. Once accepted, the writer owns the image until it has been persisted
+ * (or dropped) and then hands it to the recycler. A write can be coalesced with one that is still
+ * pending for the same file, so a burst of sightings costs a single encode of the latest image.
+ * Each image is encoded into a temporary file beside its target and renamed into place once
+ * complete, so a reader never sees a partly written thumbnail.
+ *
+ * @param <T> image type, e.g. {@code Bitmap}
+ */
+public final class ThumbnailWriter<T> {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** Encodes an image into a stream; called on the writer thread. */
+    public interface Encoder<T> {
+        void encode(T image, OutputStream out) throws IOException;
+    }
+
+    private static final class Write<T> {
+        final File file;
+        T image;
+
+        Write(File file, T image) {
+            this.file = file;
+            this.image = image;
+        }
+    }
+
+    private final ArrayDeque<Write<T>> pending;
+    private final int capacity;
+    private final Encoder<T> encoder;
+    private final LatestFrameQueue.Recycler<T> recycler;
+    private final Thread thread;
+    private File writing;
+    private boolean closed;
+
+    // Metrics, guarded by this
+    private int maxQueueDepth;
+    private long written;
+    private long failed;
+    private long coalesced;
+    private long rejected;
+    private long encodeNanos;
+    private long bytesWritten;
+
+    public ThumbnailWriter(int capacity, Encoder<T> encoder, LatestFrameQueue.Recycler<T> recycler) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1");
+        }
+        this.capacity = capacity;
+        this.pending = new ArrayDeque<>(capacity);
+        this.encoder = encoder;
+        this.recycler = recycler;
+        this.thread = new Thread(this::run, "thumbnail-writer");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Queues {@code image} to be written to {@code file}. If a write to the same file is still
+     * pending, the new image replaces it. Returns false, leaving ownership with the caller, if
+     * the queue is full or the writer is closed.
+     */
+    public boolean submit(File file, T image) {
+        T replaced;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            Write<T> write = findPending(file);
+            if (write == null) {
+                if (pending.size() == capacity) {
+                    rejected++;
+                    return false;
+                }
+                pending.addLast(new Write<>(file, image));
+                maxQueueDepth = Math.max(maxQueueDepth, pending.size());
+                notifyAll();
+                return true;
+            }
+            replaced = write.image;
+            write.image = image;
+            coalesced++;
+        }
+        recycler.recycle(replaced);
+        return true;
+    }
+
+    /**
+     * Replaces the image of a write that has not started yet. Returns false, leaving ownership
+     * with the caller, if nothing is pending for {@code file}.
+     */
+    public boolean coalesce(File file, T image) {
+        T replaced;
+        synchronized (this) {
+            Write<T> write = closed ? null : findPending(file);
+            if (write == null) {
+                return false;
+            }
+            replaced = write.image;
+            write.image = image;
+            coalesced++;
+        }
+        recycler.recycle(replaced);
+        return true;
+    }
+
+    /** True while a write to {@code file} is queued or in progress. */
+    public synchronized boolean isPending(File file) {
+        return file.equals(writing) || findPending(file) != null;
+    }
+
+    /** True if no write is queued or in progress. */
+    public synchronized boolean isIdle() {
+        return pending.isEmpty() && writing == null;
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} until every accepted write has been persisted. Returns
+     * true if the queue drained in time.
+     */
+    public synchronized boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!pending.isEmpty() || writing != null) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /** Drops writes that have not started yet, e.g. when their directory is about to be cleared. */
+    public void cancelPending() {
+        ArrayDeque<Write<T>> dropped;
+        synchronized (this) {
+            dropped = new ArrayDeque<>(pending);
+            pending.clear();
+            notifyAll();
+        }
+        for (Write<T> write : dropped) {
+            recycler.recycle(write.image);
+        }
+    }
+
+    /**
+     * Finishes pending writes for up to {@code timeoutMillis}, then stops the writer thread.
+     * Anything still queued afterwards is recycled without being written.
+     */
+    public void close(long timeoutMillis) throws InterruptedException {
+        try {
+            flush(timeoutMillis);
+        } finally {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            cancelPending();
+            thread.join(timeoutMillis);
+        }
+    }
+
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    /** Writes absorbed by a pending write to the same file. */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /** Writes refused because the queue was full. */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /** Mean time to encode and write one thumbnail. */
+    public synchronized double getAverageEncodeMillis() {
+        long attempts = written + failed;
+        return attempts == 0 ? 0 : encodeNanos / 1e6 / attempts;
+    }
+
+    public synchronized String getStats() {
+        return String.format(Locale.US,
+                "depth=%d max=%d written=%d failed=%d coalesced=%d rejected=%d encode=%.1fms avgBytes=%d",
+                pending.size(), maxQueueDepth, written, failed, coalesced, rejected,
+                getAverageEncodeMillis(), written == 0 ? 0 : bytesWritten / written);
+    }
+
+    private Write<T> findPending(File file) {
+        for (Write<T> write : pending) {
+            if (write.file.equals(file)) {
+                return write;
+            }
+        }
+        return null;
+    }
+
+    private void run() {
+        while (true) {
+            Write<T> write;
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                write = pending.pollFirst();
+                writing = write.file;
+            }
+
+            long start = System.nanoTime();
+            boolean ok = false;
+            File temp = new File(write.file.getPath() + TEMP_SUFFIX);
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                encoder.encode(write.image, out);
+                ok = true;
+            } catch (IOException | RuntimeException e) {
+                // Not written; the temporary file is deleted below
+            }
+            ok = ok && temp.renameTo(write.file);
+            if (!ok) {
+                // Readers treat a missing thumbnail as absent
+                temp.delete();
+            }
+            long elapsed = System.nanoTime() - start;
+            long bytes = ok ? write.file.length() : 0;
+            recycler.recycle(write.image);
+
+            synchronized (this) {
+                encodeNanos += elapsed;
+                if (ok) {
+                    written++;
+                    bytesWritten += bytes;
+                } else {
+                    failed++;
+                }
+                writing = null;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -9,29 +9,19 @@
 package com.example.executorchyolodemo;
 
 import android.content.Context;
+import android.util.Log;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 
 public class Utils {
-    // Copies asset to a file and returns the absolute path
-    public static String assetFilePath(Context context, String assetName) throws IOException {
-        File file = new File(context.getFilesDir(), assetName);
-        if (file.exists() && file.length() > 0) {
-            return file.getAbsolutePath();
-        }
+    private static final String TAG = "Utils";
 
-        try (InputStream is = context.getAssets().open(assetName);
-             FileOutputStream os = new FileOutputStream(file)) {
-            byte[] buffer = new byte[4096];
-            int read;
-            while ((read = is.read(buffer)) != -1) {
-                os.write(buffer, 0, read);
-            }
-            os.flush();
+    // Copies asset to a file, unless an up-to-date copy exists, and returns the absolute path
+    public static String assetFilePath(Context context, String assetName) throws IOException {
+        AssetExtractor.Result result = AssetExtractor.getInstance(context).extract(assetName);
+        if (result.extracted) {
+            Log.i(TAG, "Extracted " + assetName + " (" + result.bytes + " bytes) in " + result.millis + "ms");
         }
-        return file.getAbsolutePath();
+        return result.file.getAbsolutePath();
     }
 }
\ No newline at end of file
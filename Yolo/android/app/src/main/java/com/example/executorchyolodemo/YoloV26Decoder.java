@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Decodes the end-to-end YOLOv26 head: numDetections rows of
+ * {@code [x1, y1, x2, y2, confidence, class]}, already suppressed by the model.
+ */
+public final class YoloV26Decoder implements DetectorHead {
+    public static final String FORMAT = "yolov26";
+    static final int NUM_FEATURES = 6;
+
+    private final int numDetections;
+    private final int inputSize;
+    private final float confidenceThreshold;
+    private final float minBoxSize;
+
+    /**
+     * @param inputSize  model input resolution the box coordinates are expressed in
+     * @param minBoxSize smallest width and height, in image pixels, a kept box may have
+     */
+    public YoloV26Decoder(int numDetections, int inputSize, float confidenceThreshold, float minBoxSize) {
+        this.numDetections = numDetections;
+        this.inputSize = inputSize;
+        this.confidenceThreshold = confidenceThreshold;
+        this.minBoxSize = minBoxSize;
+    }
+
+    @Override
+    public String getFormat() {
+        return FORMAT;
+    }
+
+    @Override
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    @Override
+    public int getOutputLength() {
+        return numDetections * NUM_FEATURES;
+    }
+
+    @Override
+    public int decode(FloatBuffer output, int imageWidth, int imageHeight, DetectionBuffer out) {
+        int base = output.position();
+        float scaleX = (float) imageWidth / inputSize;
+        float scaleY = (float) imageHeight / inputSize;
+        int added = 0;
+
+        for (int i = 0; i < numDetections; i++) {
+            int offset = base + i * NUM_FEATURES;
+            float confidence = output.get(offset + 4);
+            if (confidence < confidenceThreshold) {
+                continue;
+            }
+
+            float x1 = output.get(offset) * scaleX;
+            float y1 = output.get(offset + 1) * scaleY;
+            float x2 = output.get(offset + 2) * scaleX;
+            float y2 = output.get(offset + 3) * scaleY;
+            if (x2 - x1 < minBoxSize || y2 - y1 < minBoxSize) {
+                continue;
+            }
+            out.add(x1, y1, x2, y2, confidence, (int) output.get(offset + 5));
+            added++;
+        }
+        return added;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Decodes the YOLOv8 detection head (4 + numClasses rows by numAnchors columns, row-major)
+ * for a fixed set of target classes.
+ *
+ * Instead of taking the arg-max over every class for every anchor, the decoder scans only the
+ * rows of the target classes, which are contiguous in memory. The few anchors that clear the
+ * confidence threshold are then checked for a sane box and, last, that the target class really
+ * is the anchor's best class. Results match a full arg-max decode that keeps target classes.
+ *
+ * Not thread-safe; the row scratch array is reused across calls.
+ */
+public final class YoloV8Decoder implements DetectorHead {
+    public static final String FORMAT = "yolov8";
+
+    /** COCO class index of "bird". */
+    public static final int COCO_BIRD = 14;
+
+    private final int numClasses;
+    private final int numAnchors;
+    private final int inputSize;
+    private final float confidenceThreshold;
+    private final float minBoxSize;
+    private final int[] targetClasses;
+    private final float[] rowScores;
+
+    private long anchorsPassingScore;
+
+    /**
+     * @param inputSize     model input resolution the box coordinates are expressed in
+     * @param minBoxSize    smallest width and height, in image pixels, a kept box may have
+     * @param targetClasses class indices to keep; all other classes are never scanned
+     */
+    public YoloV8Decoder(int numClasses, int numAnchors, int inputSize,
+                         float confidenceThreshold, float minBoxSize, int... targetClasses) {
+        if (targetClasses.length == 0) {
+            throw new IllegalArgumentException("At least one target class is required");
+        }
+        for (int targetClass : targetClasses) {
+            if (targetClass < 0 || targetClass >= numClasses) {
+                throw new IllegalArgumentException("Target class out of range: " + targetClass);
+            }
+        }
+        this.numClasses = numClasses;
+        this.numAnchors = numAnchors;
+        this.inputSize = inputSize;
+        this.confidenceThreshold = confidenceThreshold;
+        this.minBoxSize = minBoxSize;
+        this.targetClasses = targetClasses.clone();
+        this.rowScores = new float[numAnchors];
+    }
+
+    @Override
+    public String getFormat() {
+        return FORMAT;
+    }
+
+    @Override
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    public int getNumAnchors() {
+        return numAnchors;
+    }
+
+    /** Number of floats in one output tensor this decoder accepts. */
+    @Override
+    public int getOutputLength() {
+        return (4 + numClasses) * numAnchors;
+    }
+
+    public int[] getTargetClasses() {
+        return targetClasses.clone();
+    }
+
+    /** Anchors that cleared the score threshold for a target class, across all calls. */
+    public long getAnchorsPassingScore() {
+        return anchorsPassingScore;
+    }
+
+    /**
+     * Appends the target-class detections in {@code output} to {@code out}, scaled to an image
+     * of the given size. Uses absolute reads only, so the buffer's position is left untouched.
+     *
+     * @return number of detections added
+     */
+    @Override
+    public int decode(FloatBuffer output, int imageWidth, int imageHeight, DetectionBuffer out) {
+        if (output.limit() < getOutputLength()) {
+            throw new IllegalArgumentException("Output has " + output.limit()
+                    + " floats, expected " + getOutputLength());
+        }
+        float scaleX = (float) imageWidth / inputSize;
+        float scaleY = (float) imageHeight / inputSize;
+        int added = 0;
+
+        for (int targetClass : targetClasses) {
+            int rowStart = (4 + targetClass) * numAnchors;
+            // One bulk copy of the row is much cheaper than per-element reads of a direct buffer
+            FloatBuffer row = output.duplicate();
+            row.position(rowStart);
+            row.get(rowScores, 0, numAnchors);
+
+            for (int anchor = 0; anchor < numAnchors; anchor++) {
+                float score = rowScores[anchor];
+                if (score <= confidenceThreshold) {
+                    continue;
+                }
+                anchorsPassingScore++;
+
+                float x = output.get(anchor);
+                float y = output.get(numAnchors + anchor);
+                float w = output.get(2 * numAnchors + anchor);
+                float h = output.get(3 * numAnchors + anchor);
+                if (x <= 0 || y <= 0 || w <= 0 || h <= 0 || w > inputSize || h > inputSize) {
+                    continue;
+                }
+                if (!isBestClass(output, anchor, targetClass, score)) {
+                    continue;
+                }
+
+                float centerX = x * scaleX;
+                float centerY = y * scaleY;
+                float halfWidth = w * scaleX / 2;
+                float halfHeight = h * scaleY / 2;
+                float left = Math.max(0, centerX - halfWidth);
+                float top = Math.max(0, centerY - halfHeight);
+                float right = Math.min(imageWidth, centerX + halfWidth);
+                float bottom = Math.min(imageHeight, centerY + halfHeight);
+                if (right - left < minBoxSize || bottom - top < minBoxSize) {
+                    continue;
+                }
+
+                out.add(left, top, right, bottom, score, targetClass);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * True if no other class beats {@code score} for this anchor. Ties go to the lower class
+     * index, as with a first-wins arg-max.
+     */
+    private boolean isBestClass(FloatBuffer output, int anchor, int targetClass, float score) {
+        int index = 4 * numAnchors + anchor;
+        for (int c = 0; c < numClasses; c++, index += numAnchors) {
+            if (c == targetClass) {
+                continue;
+            }
+            float other = output.get(index);
+            if (other > score || (other == score && c < targetClass)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
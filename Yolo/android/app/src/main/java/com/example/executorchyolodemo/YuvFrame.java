@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A YUV_420_888 frame read directly from its planes.
+ *
+ * Row and pixel strides are honoured, so both planar (I420) and semi-planar (NV12/NV21)
+ * layouts work. Sampling, rotation and colour conversion happen in a single pass, without an
+ * intermediate Bitmap or JPEG. The instance is meant to be reused across frames: the sampling
+ * tables are kept between calls and only rebuilt when the frame geometry or the requested
+ * region changes.
+ *
+ * This class has no Android dependencies so it can be unit-tested on the JVM.
+ */
+public final class YuvFrame implements FrameSource {
+
+    private ByteBuffer yPlane;
+    private ByteBuffer uPlane;
+    private ByteBuffer vPlane;
+    private int yRowStride;
+    private int uvRowStride;
+    private int uvPixelStride;
+    private int sensorWidth;
+    private int sensorHeight;
+    private int rotationDegrees;
+
+    // Separable sampling tables: plane index = rowOffsets[dy] + colOffsets[dx].
+    private int[] yRowOffsets = new int[0];
+    private int[] yColOffsets = new int[0];
+    private int[] uvRowOffsets = new int[0];
+    private int[] uvColOffsets = new int[0];
+    private int[] rowCoords = new int[0];
+    private int[] colCoords = new int[0];
+
+    // Region the tables were built for; tableWidth == 0 means "not built".
+    private float tableLeft, tableTop, tableRight, tableBottom;
+    private int tableWidth, tableHeight;
+
+    /**
+     * Points this frame at a new set of planes. The buffers are only read during the fill
+     * calls, so they must stay valid (i.e. the ImageProxy open) until those return.
+     *
+     * @param rotationDegrees clockwise rotation needed to make the image upright; one of
+     *                        0, 90, 180 or 270
+     */
+    public YuvFrame set(ByteBuffer y, ByteBuffer u, ByteBuffer v,
+                        int yRowStride, int uvRowStride, int uvPixelStride,
+                        int width, int height, int rotationDegrees) {
+        if (rotationDegrees % 90 != 0) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotationDegrees);
+        }
+        int rotation = (rotationDegrees % 360 + 360) % 360;
+        if (width != sensorWidth || height != sensorHeight || rotation != this.rotationDegrees
+                || yRowStride != this.yRowStride || uvRowStride != this.uvRowStride
+                || uvPixelStride != this.uvPixelStride) {
+            // Geometry changed, the cached sampling tables no longer apply.
+            tableWidth = 0;
+        }
+        this.yPlane = y;
+        this.uPlane = u;
+        this.vPlane = v;
+        this.yRowStride = yRowStride;
+        this.uvRowStride = uvRowStride;
+        this.uvPixelStride = uvPixelStride;
+        this.sensorWidth = width;
+        this.sensorHeight = height;
+        this.rotationDegrees = rotation;
+        return this;
+    }
+
+    @Override
+    public int getWidth() {
+        return isTransposed() ? sensorHeight : sensorWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return isTransposed() ? sensorWidth : sensorHeight;
+    }
+
+    public int getRotationDegrees() {
+        return rotationDegrees;
+    }
+
+    @Override
+    public void fillTensor(float left, float top, float right, float bottom,
+                           int dstWidth, int dstHeight, Normalization normalization,
+                           float[] dst, int dstOffset) {
+        prepareTables(left, top, right, bottom, dstWidth, dstHeight);
+
+        final float[] red = normalization.red;
+        final float[] green = normalization.green;
+        final float[] blue = normalization.blue;
+        final int planeSize = dstWidth * dstHeight;
+        int out = dstOffset;
+
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int yRow = yRowOffsets[dy];
+            int uvRow = uvRowOffsets[dy];
+            for (int dx = 0; dx < dstWidth; dx++, out++) {
+                int luma = yPlane.get(yRow + yColOffsets[dx]) & 0xff;
+                int uvIndex = uvRow + uvColOffsets[dx];
+                int u = (uPlane.get(uvIndex) & 0xff) - 128;
+                int v = (vPlane.get(uvIndex) & 0xff) - 128;
+
+                dst[out] = red[clamp(luma + ((91881 * v) >> 16))];
+                dst[out + planeSize] = green[clamp(luma - ((22554 * u + 46802 * v) >> 16))];
+                dst[out + 2 * planeSize] = blue[clamp(luma + ((116130 * u) >> 16))];
+            }
+        }
+    }
+
+    @Override
+    public void fillArgb(float left, float top, float right, float bottom,
+                         int dstWidth, int dstHeight, int[] dst, int dstOffset) {
+        prepareTables(left, top, right, bottom, dstWidth, dstHeight);
+
+        int out = dstOffset;
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int yRow = yRowOffsets[dy];
+            int uvRow = uvRowOffsets[dy];
+            for (int dx = 0; dx < dstWidth; dx++, out++) {
+                int luma = yPlane.get(yRow + yColOffsets[dx]) & 0xff;
+                int uvIndex = uvRow + uvColOffsets[dx];
+                int u = (uPlane.get(uvIndex) & 0xff) - 128;
+                int v = (vPlane.get(uvIndex) & 0xff) - 128;
+
+                int r = clamp(luma + ((91881 * v) >> 16));
+                int g = clamp(luma - ((22554 * u + 46802 * v) >> 16));
+                int b = clamp(luma + ((116130 * u) >> 16));
+                dst[out] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    private boolean isTransposed() {
+        return rotationDegrees == 90 || rotationDegrees == 270;
+    }
+
+    /**
+     * Builds the plane offset tables for the requested region. Rotation is folded in here:
+     * after a 90 or 270 degree turn, destination rows walk along sensor columns and vice versa.
+     */
+    private void prepareTables(float left, float top, float right, float bottom,
+                               int dstWidth, int dstHeight) {
+        if (dstWidth == tableWidth && dstHeight == tableHeight
+                && left == tableLeft && top == tableTop && right == tableRight && bottom == tableBottom) {
+            return;
+        }
+        if (yColOffsets.length < dstWidth) {
+            yColOffsets = new int[dstWidth];
+            uvColOffsets = new int[dstWidth];
+            colCoords = new int[dstWidth];
+        }
+        if (yRowOffsets.length < dstHeight) {
+            yRowOffsets = new int[dstHeight];
+            uvRowOffsets = new int[dstHeight];
+            rowCoords = new int[dstHeight];
+        }
+
+        // Upright coordinates for each destination column and row.
+        FrameSource.sampleAxis(left, right, dstWidth, getWidth(), colCoords);
+        FrameSource.sampleAxis(top, bottom, dstHeight, getHeight(), rowCoords);
+
+        for (int dx = 0; dx < dstWidth; dx++) {
+            int ux = colCoords[dx];
+            switch (rotationDegrees) {
+                case 90: {
+                    int sy = sensorHeight - 1 - ux;
+                    yColOffsets[dx] = sy * yRowStride;
+                    uvColOffsets[dx] = (sy >> 1) * uvRowStride;
+                    break;
+                }
+                case 180: {
+                    int sx = sensorWidth - 1 - ux;
+                    yColOffsets[dx] = sx;
+                    uvColOffsets[dx] = (sx >> 1) * uvPixelStride;
+                    break;
+                }
+                case 270: {
+                    yColOffsets[dx] = ux * yRowStride;
+                    uvColOffsets[dx] = (ux >> 1) * uvRowStride;
+                    break;
+                }
+                default: {
+                    yColOffsets[dx] = ux;
+                    uvColOffsets[dx] = (ux >> 1) * uvPixelStride;
+                    break;
+                }
+            }
+        }
+
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int uy = rowCoords[dy];
+            switch (rotationDegrees) {
+                case 90: {
+                    yRowOffsets[dy] = uy;
+                    uvRowOffsets[dy] = (uy >> 1) * uvPixelStride;
+                    break;
+                }
+                case 180: {
+                    int sy = sensorHeight - 1 - uy;
+                    yRowOffsets[dy] = sy * yRowStride;
+                    uvRowOffsets[dy] = (sy >> 1) * uvRowStride;
+                    break;
+                }
+                case 270: {
+                    int sx = sensorWidth - 1 - uy;
+                    yRowOffsets[dy] = sx;
+                    uvRowOffsets[dy] = (sx >> 1) * uvPixelStride;
+                    break;
+                }
+                default: {
+                    yRowOffsets[dy] = uy * yRowStride;
+                    uvRowOffsets[dy] = (uy >> 1) * uvRowStride;
+                    break;
+                }
+            }
+        }
+
+        tableLeft = left;
+        tableTop = top;
+        tableRight = right;
+        tableBottom = bottom;
+        tableWidth = dstWidth;
+        tableHeight = dstHeight;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+/**
+ * FrameSource over packed ARGB pixels, for feeding decoded images to the engine on the JVM.
+ */
+final class ArgbFrame implements FrameSource {
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+    private int[] colCoords = new int[0];
+    private int[] rowCoords = new int[0];
+
+    ArgbFrame(int[] pixels, int width, int height) {
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void fillTensor(float left, float top, float right, float bottom,
+                           int dstWidth, int dstHeight, Normalization normalization,
+                           float[] dst, int dstOffset) {
+        sample(left, top, right, bottom, dstWidth, dstHeight);
+        int planeSize = dstWidth * dstHeight;
+        int out = dstOffset;
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int row = rowCoords[dy] * width;
+            for (int dx = 0; dx < dstWidth; dx++, out++) {
+                int pixel = pixels[row + colCoords[dx]];
+                dst[out] = normalization.red[(pixel >> 16) & 0xff];
+                dst[out + planeSize] = normalization.green[(pixel >> 8) & 0xff];
+                dst[out + 2 * planeSize] = normalization.blue[pixel & 0xff];
+            }
+        }
+    }
+
+    @Override
+    public void fillArgb(float left, float top, float right, float bottom,
+                         int dstWidth, int dstHeight, int[] dst, int dstOffset) {
+        sample(left, top, right, bottom, dstWidth, dstHeight);
+        int out = dstOffset;
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int row = rowCoords[dy] * width;
+            for (int dx = 0; dx < dstWidth; dx++, out++) {
+                dst[out] = pixels[row + colCoords[dx]];
+            }
+        }
+    }
+
+    private void sample(float left, float top, float right, float bottom, int dstWidth, int dstHeight) {
+        if (colCoords.length < dstWidth) {
+            colCoords = new int[dstWidth];
+        }
+        if (rowCoords.length < dstHeight) {
+            rowCoords = new int[dstHeight];
+        }
+        FrameSource.sampleAxis(left, right, dstWidth, width, colCoords);
+        FrameSource.sampleAxis(top, bottom, dstHeight, height, rowCoords);
+    }
+}
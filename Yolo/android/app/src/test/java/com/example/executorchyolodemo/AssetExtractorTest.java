@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for asset extraction, with an in-memory asset source.
+ */
+public class AssetExtractorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, byte[]> assets = new HashMap<>();
+    private final Map<String, Integer> opens = new HashMap<>();
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("files");
+    }
+
+    @Test
+    public void extractsMissingAsset() throws Exception {
+        byte[] model = bytes(3_000_000);
+        assets.put("model.pte", model);
+
+        AssetExtractor.Result result = extractor("1").extract("model.pte");
+
+        assertTrue(result.extracted);
+        assertEquals(model.length, result.bytes);
+        assertArrayEquals(model, Files.readAllBytes(result.file.toPath()));
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void reusesUpToDateFileWithoutReadingAsset() throws Exception {
+        assets.put("model.pte", bytes(1000));
+        extractor("1").extract("model.pte");
+
+        AssetExtractor.Result result = extractor("1").extract("model.pte");
+
+        assertFalse(result.extracted);
+        assertEquals(1, (int) opens.get("model.pte"));
+    }
+
+    @Test
+    public void reextractsWhenAppVersionChanges() throws Exception {
+        assets.put("model.pte", bytes(1000));
+        extractor("1").extract("model.pte");
+        byte[] updated = bytes(1200);
+        assets.put("model.pte", updated);
+
+        AssetExtractor.Result result = extractor("2").extract("model.pte");
+
+        assertTrue(result.extracted);
+        assertArrayEquals(updated, Files.readAllBytes(result.file.toPath()));
+    }
+
+    @Test
+    public void reextractsWhenManifestHashChanges() throws Exception {
+        byte[] model = bytes(1000);
+        assets.put("model.pte", model);
+        putManifest("model.pte", model);
+        extractor("1").extract("model.pte");
+        byte[] updated = bytes(999);
+        updated[0] = 42;
+        assets.put("model.pte", updated);
+        putManifest("model.pte", updated);
+
+        // Same app version, but the manifest says the asset changed
+        AssetExtractor.Result result = extractor("1").extract("model.pte");
+
+        assertTrue(result.extracted);
+        assertArrayEquals(updated, Files.readAllBytes(result.file.toPath()));
+    }
+
+    @Test
+    public void replacesTruncatedFile() throws Exception {
+        byte[] model = bytes(1000);
+        assets.put("model.pte", model);
+        File file = extractor("1").extract("model.pte").file;
+        Files.write(file.toPath(), new byte[10]);
+
+        AssetExtractor.Result result = extractor("1").extract("model.pte");
+
+        assertTrue(result.extracted);
+        assertArrayEquals(model, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void replacesFileLeftWithoutStamp() throws Exception {
+        // What the old extraction, which kept any non-empty file, leaves behind
+        byte[] model = bytes(1000);
+        assets.put("model.pte", model);
+        File stale = new File(directory, "model.pte");
+        Files.write(stale.toPath(), bytes(500));
+
+        AssetExtractor.Result result = extractor("1").extract("model.pte");
+
+        assertTrue(result.extracted);
+        assertArrayEquals(model, Files.readAllBytes(stale.toPath()));
+    }
+
+    @Test
+    public void rejectsAssetThatDoesNotMatchManifest() throws Exception {
+        byte[] model = bytes(1000);
+        putManifest("model.pte", model);
+        assets.put("model.pte", bytes(999));
+
+        try {
+            extractor("1").extract("model.pte");
+            fail("Expected a manifest mismatch");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("model.pte"));
+        }
+        assertFalse(new File(directory, "model.pte").exists());
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void keepsPreviousFileWhenExtractionFails() throws Exception {
+        byte[] model = bytes(1000);
+        assets.put("model.pte", model);
+        putManifest("model.pte", model);
+        File file = extractor("1").extract("model.pte").file;
+        byte[] updated = bytes(1000);
+        updated[0] = 42;
+        putManifest("model.pte", updated); // The asset itself is left unchanged, so it fails
+
+        try {
+            extractor("1").extract("model.pte");
+            fail("Expected a manifest mismatch");
+        } catch (IOException expected) {
+            // Expected
+        }
+        assertArrayEquals(model, Files.readAllBytes(file.toPath()));
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void extractsIntoSubdirectories() throws Exception {
+        assets.put("models/model.pte", bytes(10));
+
+        AssetExtractor.Result result = extractor("1").extract("models/model.pte");
+
+        assertEquals(new File(new File(directory, "models"), "model.pte"), result.file);
+        assertTrue(result.file.isFile());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMalformedManifest() throws Exception {
+        assets.put(AssetExtractor.MANIFEST_ASSET, "{\"assets\": [1, 2]}".getBytes(StandardCharsets.UTF_8));
+        assets.put("model.pte", bytes(10));
+        extractor("1").extract("model.pte");
+    }
+
+    private AssetExtractor extractor(String appVersion) {
+        return new AssetExtractor(this::open, directory, appVersion);
+    }
+
+    private InputStream open(String name) throws IOException {
+        byte[] data = assets.get(name);
+        if (data == null) {
+            throw new FileNotFoundException(name);
+        }
+        opens.merge(name, 1, Integer::sum);
+        return new ByteArrayInputStream(data);
+    }
+
+    private void putManifest(String name, byte[] data) throws Exception {
+        String hash = AssetExtractor.toHex(MessageDigest.getInstance("SHA-256").digest(data));
+        String json = "{\"version\": 1, \"assets\": {\"" + name + "\": {\"size\": " + data.length
+                + ", \"sha256\": \"" + hash + "\"}}}";
+        assets.put(AssetExtractor.MANIFEST_ASSET, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void assertNoTempFiles() {
+        String[] names = directory.list((dir, name) -> name.endsWith(".tmp"));
+        assertEquals(0, names == null ? 0 : names.length);
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        return data;
+    }
+}
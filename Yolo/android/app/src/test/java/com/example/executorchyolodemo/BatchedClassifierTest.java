@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for batched species classification and its batch-1 fallback.
+ */
+public class BatchedClassifierTest {
+    private static final int INPUT_SIZE = 4;
+    private static final int NUM_CLASSES = 5;
+
+    /**
+     * Fake classifier: the predicted class of a crop is the value of its first float, so tests
+     * can tell which crop produced which row.
+     */
+    private static final class FakeModel implements BatchedClassifier.Forward {
+        final int maxBatch;
+        final List<Long> batchSizes = new ArrayList<>();
+        // Scores only the first crop, as a model exported with batch 1 may
+        boolean ignoreBatch;
+        int failuresLeft;
+
+        FakeModel(int maxBatch) {
+            this.maxBatch = maxBatch;
+        }
+
+        @Override
+        public FloatBuffer run(FloatBuffer input, long[] shape) {
+            batchSizes.add(shape[0]);
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new IllegalStateException("Transient failure");
+            }
+            if (shape[0] > maxBatch) {
+                throw new IllegalStateException("Input shape mismatch");
+            }
+            int batch = ignoreBatch ? 1 : (int) shape[0];
+            int cropSize = (int) (shape[1] * shape[2] * shape[3]);
+            float[] scores = new float[batch * NUM_CLASSES];
+            for (int i = 0; i < batch; i++) {
+                int label = (int) input.get(i * cropSize);
+                scores[i * NUM_CLASSES + label] = 0.9f;
+            }
+            return FloatBuffer.wrap(scores);
+        }
+    }
+
+    private static float[] crops(BatchedClassifier classifier, int... labels) {
+        float[] batch = new float[labels.length * classifier.getCropSize()];
+        for (int i = 0; i < labels.length; i++) {
+            batch[i * classifier.getCropSize()] = labels[i];
+        }
+        return batch;
+    }
+
+    @Test
+    public void allCropsShareOneForwardCall() throws Exception {
+        BatchedClassifier classifier = new BatchedClassifier(new TensorBufferPool(), INPUT_SIZE, 3);
+        FakeModel model = new FakeModel(3);
+        int[] classes = new int[3];
+        float[] scores = new float[3];
+
+        // The first crop alone tells the class count the batched output is checked against
+        classifier.classify(crops(classifier, 4, 1, 2), 3, model, classes, scores);
+        assertEquals(NUM_CLASSES, classifier.getNumClasses());
+        assertArrayEquals(new int[]{4, 1, 2}, classes);
+
+        model.batchSizes.clear();
+        classifier.classify(crops(classifier, 0, 3, 1), 3, model, classes, scores);
+
+        assertEquals(1, model.batchSizes.size());
+        assertEquals(3L, (long) model.batchSizes.get(0));
+        assertArrayEquals(new int[]{0, 3, 1}, classes);
+        assertEquals(0.9f, scores[2], 0f);
+        assertEquals(2, classifier.getBatchedCalls());
+    }
+
+    @Test
+    public void batchOneModelFallsBackOnceAndStays() throws Exception {
+        BatchedClassifier classifier = new BatchedClassifier(new TensorBufferPool(), INPUT_SIZE, 3);
+        FakeModel model = new FakeModel(1);
+        List<String> reasons = new ArrayList<>();
+        classifier.setFallbackListener(reasons::add);
+        int[] classes = new int[3];
+        float[] scores = new float[3];
+
+        classifier.classify(crops(classifier, 3, 0, 4), 3, model, classes, scores);
+        assertFalse(classifier.isBatchingEnabled());
+        assertArrayEquals(new int[]{3, 0, 4}, classes);
+        assertEquals(1, reasons.size());
+        assertTrue(reasons.get(0).contains("Input shape mismatch"));
+
+        model.batchSizes.clear();
+        classifier.classify(crops(classifier, 2, 2, 1), 3, model, classes, scores);
+        assertEquals(3, model.batchSizes.size());
+        for (long size : model.batchSizes) {
+            assertEquals(1L, size);
+        }
+        assertArrayEquals(new int[]{2, 2, 1}, classes);
+        assertEquals(6, classifier.getSingleCalls());
+        assertEquals(1, reasons.size());
+    }
+
+    @Test
+    public void modelIgnoringTheBatchDimensionIsDetected() throws Exception {
+        BatchedClassifier classifier = new BatchedClassifier(new TensorBufferPool(), INPUT_SIZE, 6);
+        FakeModel model = new FakeModel(6);
+        model.ignoreBatch = true;
+        List<String> reasons = new ArrayList<>();
+        classifier.setFallbackListener(reasons::add);
+        int[] classes = new int[6];
+        float[] scores = new float[6];
+
+        // One row of 5 scores would pass as a batch of 5 crops with a single class each
+        classifier.classify(crops(classifier, 1, 2, 3, 4, 0, 2), 6, model, classes, scores);
+
+        assertFalse(classifier.isBatchingEnabled());
+        assertEquals(0, classifier.getBatchedCalls());
+        assertArrayEquals(new int[]{1, 2, 3, 4, 0, 2}, classes);
+        assertEquals(1, reasons.size());
+        assertTrue(reasons.get(0).contains("returned 5 scores, expected 25"));
+    }
+
+    @Test
+    public void transientFailureKeepsBatching() throws Exception {
+        BatchedClassifier classifier = new BatchedClassifier(new TensorBufferPool(), INPUT_SIZE, 3);
+        FakeModel model = new FakeModel(3);
+        int[] classes = new int[3];
+        float[] scores = new float[3];
+        classifier.classify(crops(classifier, 1, 2, 3), 3, model, classes, scores);
+
+        // Fails batched and then single, so the model is not to blame for the batch
+        model.failuresLeft = 2;
+        try {
+            classifier.classify(crops(classifier, 1, 2, 3), 3, model, classes, scores);
+            fail("Expected the failure to propagate");
+        } catch (IllegalStateException expected) {
+            // Reported to the caller for this frame only
+        }
+        assertTrue(classifier.isBatchingEnabled());
+
+        model.batchSizes.clear();
+        classifier.classify(crops(classifier, 4, 0, 1), 3, model, classes, scores);
+        assertEquals(1, model.batchSizes.size());
+        assertArrayEquals(new int[]{4, 0, 1}, classes);
+    }
+
+    @Test
+    public void singleCropSkipsTheProbe() throws Exception {
+        BatchedClassifier classifier = new BatchedClassifier(new TensorBufferPool(), INPUT_SIZE, 3);
+        FakeModel model = new FakeModel(1);
+        int[] classes = new int[1];
+        float[] scores = new float[1];
+
+        classifier.classify(crops(classifier, 4), 1, model, classes, scores);
+
+        assertTrue(classifier.isBatchingEnabled());
+        assertEquals(4, classes[0]);
+    }
+
+    @Test
+    public void pooledInputsAreReusedAcrossFrames() throws Exception {
+        TensorBufferPool pool = new TensorBufferPool();
+        BatchedClassifier classifier = new BatchedClassifier(pool, INPUT_SIZE, 3);
+        FakeModel model = new FakeModel(3);
+        int[] classes = new int[3];
+        float[] scores = new float[3];
+        float[] batch = crops(classifier, 1, 2, 3);
+
+        // The first frame also classifies one crop alone to learn the class count
+        classifier.classify(batch, 3, model, classes, scores);
+        classifier.classify(batch, 3, model, classes, scores);
+        long allocations = pool.getAllocationCount();
+        for (int frame = 0; frame < 5; frame++) {
+            classifier.classify(batch, 3, model, classes, scores);
+        }
+        assertEquals(allocations, pool.getAllocationCount());
+    }
+
+    @Test
+    public void selectedCropsAreClassifiedInPlace() throws Exception {
+        BatchedClassifier classifier = new BatchedClassifier(new TensorBufferPool(), INPUT_SIZE, 3);
+        FakeModel model = new FakeModel(3);
+        int[] classes = {-1, -1, -1};
+        float[] scores = new float[3];
+
+        classifier.classify(crops(classifier, 4, 1, 2), new int[]{0, 2}, 2, model, classes, scores);
+        assertArrayEquals(new int[]{4, -1, 2}, classes);
+
+        classes = new int[]{-1, -1, -1, -1};
+        scores = new float[4];
+        model.batchSizes.clear();
+        classifier.classify(crops(classifier, 4, 1, 2, 3), new int[]{1, 2, 3}, 3, model, classes, scores);
+
+        // The first selected crop runs alone only until the class count is known
+        assertEquals(1, model.batchSizes.size());
+        assertEquals(3L, (long) model.batchSizes.get(0));
+        assertArrayEquals(new int[]{-1, 1, 2, 3}, classes);
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Keeps the *Benchmark classes out of the regular unit test run. They time loops and print
+ * their results, so they only run when asked for:
+ *
+ * <pre>./gradlew :app:testDebugUnitTest --tests '*Benchmark' -Pbenchmarks=true</pre>
+ */
+final class Benchmarks {
+    static final String PROPERTY = "benchmarks";
+
+    private Benchmarks() {
+    }
+
+    /** Skips the calling class or test unless benchmarks were requested. */
+    static void assumeRequested() {
+        assumeTrue("Benchmarks run with -P" + PROPERTY + "=true", Boolean.getBoolean(PROPERTY));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for track association, motion prediction, aging and confidence history.
+ */
+public class BirdTrackerTest {
+    private final BirdTracker tracker = new BirdTracker(5, 30, 0.3f, 0.5f);
+    private final BirdTracker.Track[] assigned = new BirdTracker.Track[4];
+    private final DetectionBuffer boxes = new DetectionBuffer();
+
+    @Test
+    public void birdCrossingGridLinesKeepsItsTrack() {
+        long id = -1;
+        // 20 px per frame: crosses the old 50 px location grid every few frames
+        for (int frame = 1; frame <= 10; frame++) {
+            float x = 30 + frame * 20;
+            update(frame, x, 100, x + 80, 180, 0.9f);
+            if (frame == 1) {
+                id = assigned[0].getId();
+            }
+            assertEquals(id, assigned[0].getId());
+        }
+        assertEquals(1, tracker.getTrackCount());
+        assertEquals(20f, assigned[0].getVelocityX(), 1f);
+    }
+
+    @Test
+    public void motionModelBridgesMissedFrames() {
+        for (int frame = 1; frame <= 4; frame++) {
+            float x = frame * 30;
+            update(frame, x, 100, x + 60, 160, 0.9f);
+        }
+        long id = assigned[0].getId();
+
+        // Not seen for three frames, moved 120 px: no overlap with the last box, but with the
+        // predicted one
+        update(7, 210, 100, 270, 160, 0.9f);
+        assertEquals(id, assigned[0].getId());
+        assertEquals(1, assigned[0].getConsecutiveFrames());
+    }
+
+    @Test
+    public void separateBirdsGetSeparateTracks() {
+        boxes.clear();
+        boxes.add(0, 0, 100, 100, 0.9f, 14);
+        boxes.add(400, 400, 500, 500, 0.8f, 14);
+        tracker.update(boxes, 1, assigned);
+        long first = assigned[0].getId();
+        long second = assigned[1].getId();
+        assertNotEquals(first, second);
+
+        // Same birds, listed in the opposite order
+        boxes.clear();
+        boxes.add(405, 400, 505, 500, 0.8f, 14);
+        boxes.add(5, 0, 105, 100, 0.9f, 14);
+        tracker.update(boxes, 2, assigned);
+        assertEquals(second, assigned[0].getId());
+        assertEquals(first, assigned[1].getId());
+    }
+
+    @Test
+    public void tracksExpireAfterMaxAgeFrames() {
+        update(1, 0, 0, 100, 100, 0.9f);
+        BirdTracker.Track track = assigned[0];
+        long id = track.getId();
+
+        boxes.clear();
+        tracker.update(boxes, 31, assigned);
+        assertEquals(1, tracker.getTrackCount());
+        tracker.update(boxes, 32, assigned);
+        assertEquals(0, tracker.getTrackCount());
+
+        // The track object is reused, under a new id
+        update(33, 0, 0, 100, 100, 0.9f);
+        assertSame(track, assigned[0]);
+        assertNotEquals(id, assigned[0].getId());
+    }
+
+    @Test
+    public void confidenceHistoryIsWindowed() {
+        float[] confidences = {0.5f, 0.6f, 0.9f, 0.9f, 0.9f, 0.9f, 0.9f};
+        for (int frame = 0; frame < confidences.length; frame++) {
+            update(frame + 1, 0, 0, 100, 100, confidences[frame]);
+            if (frame == 2) {
+                // Three frames, but the mean is only 0.67
+                assertFalse(assigned[0].isStable(3, 0.8f));
+            }
+        }
+        BirdTracker.Track track = assigned[0];
+        assertEquals(5, track.getConfidenceCount());
+        assertEquals(0.9f, track.getAverageConfidence(), 1e-5f);
+        assertEquals(0.9f, track.getConfidence(0), 0f);
+        assertTrue(track.isStable(3, 0.8f));
+    }
+
+    private void update(long frame, float left, float top, float right, float bottom, float score) {
+        boxes.clear();
+        boxes.add(left, top, right, bottom, score, 14);
+        tracker.update(boxes, frame, assigned);
+    }
+}
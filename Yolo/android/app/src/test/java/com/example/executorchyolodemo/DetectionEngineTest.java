@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Unit tests for what the detection stage keeps of a frame once it is released.
+ */
+public class DetectionEngineTest {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int BIRD = 0xffff0000;
+    private static final int SKY = 0xff0000ff;
+
+    @Test
+    public void thumbnailsCropThePaddedBoxOnly() throws Exception {
+        DetectionEngine engine = new DetectionEngine(new RoiPlannerTest.FixedBirdRunner());
+        DetectionEngine.PendingFrame work = engine.obtainPendingFrame();
+        engine.detect(birdFrame(), work);
+        assertNull(work.getThumbnailPixels());
+
+        work.captureThumbnails(birdFrame(), 30, 150);
+
+        // The 240x112 box plus 30 px on each side, scaled by half
+        assertEquals(150, work.getThumbnailWidth(0));
+        assertEquals(86, work.getThumbnailHeight(0));
+        int[] pixels = work.getThumbnailPixels();
+        assertNotNull(pixels);
+        int offset = work.getThumbnailOffset(0);
+        int width = work.getThumbnailWidth(0);
+        assertEquals(BIRD, pixels[offset + 43 * width + 75]);
+        assertEquals(SKY, pixels[offset]);
+        // Nowhere near a frame's worth of pixels
+        assertEquals(DetectionEngine.MAX_DETECTIONS * 150 * 150, pixels.length);
+    }
+
+    /** Sky with a bird where {@link RoiPlannerTest.FixedBirdRunner} reports one. */
+    private static FrameSource birdFrame() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, SKY);
+        for (int y = 304; y < 416; y++) {
+            Arrays.fill(pixels, y * WIDTH + 520, y * WIDTH + 760, BIRD);
+        }
+        return new ArgbFrame(pixels, WIDTH, HEIGHT);
+    }
+}
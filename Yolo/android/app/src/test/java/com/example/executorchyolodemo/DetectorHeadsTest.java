@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for binding detector heads to model shapes, and for the engine using the bound head.
+ */
+public class DetectorHeadsTest {
+
+    @Test
+    public void bindsYoloV8FromOutputShape() {
+        DetectorHead head = DetectorHeads.bind(new DetectorSpec(null, 640, 1, 84, 8400), YoloV8Decoder.COCO_BIRD);
+
+        assertEquals(YoloV8Decoder.FORMAT, head.getFormat());
+        assertEquals(640, head.getInputSize());
+        assertEquals(80, ((YoloV8Decoder) head).getNumClasses());
+        assertEquals(8400, ((YoloV8Decoder) head).getNumAnchors());
+    }
+
+    @Test
+    public void bindsYoloV8WithOtherInputSizeAndClassCount() {
+        // A bird-only export at 320: one class, 2100 anchors
+        DetectorHead head = DetectorHeads.bind(new DetectorSpec(null, 320, 1, 5, 2100), 0);
+
+        assertEquals(YoloV8Decoder.FORMAT, head.getFormat());
+        assertEquals(320, head.getInputSize());
+        assertEquals(5 * 2100, head.getOutputLength());
+    }
+
+    @Test
+    public void bindsYoloV8FromLengthAlone() {
+        DetectorHead head = DetectorHeads.bind(new DetectorSpec(null, 640, 84 * 8400), YoloV8Decoder.COCO_BIRD);
+
+        assertEquals(YoloV8Decoder.FORMAT, head.getFormat());
+        assertEquals(8400, ((YoloV8Decoder) head).getNumAnchors());
+    }
+
+    @Test
+    public void bindsYoloV26() {
+        assertEquals(YoloV26Decoder.FORMAT,
+                DetectorHeads.bind(new DetectorSpec(null, 640, 1, 100, 6), YoloV8Decoder.COCO_BIRD).getFormat());
+        assertEquals(YoloV26Decoder.FORMAT,
+                DetectorHeads.bind(new DetectorSpec(null, 640, 1800), YoloV8Decoder.COCO_BIRD).getFormat());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void declaredFormatMustMatchShape() {
+        DetectorHeads.bind(new DetectorSpec(YoloV26Decoder.FORMAT, 640, 1, 84, 8400), YoloV8Decoder.COCO_BIRD);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownShape() {
+        DetectorHeads.bind(new DetectorSpec(null, 640, 1, 7, 3), YoloV8Decoder.COCO_BIRD);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTargetClassOutsideModel() {
+        DetectorHeads.bind(new DetectorSpec(null, 320, 1, 5, 2100), YoloV8Decoder.COCO_BIRD);
+    }
+
+    @Test
+    public void registeredHeadIsTriedFirst() {
+        DetectorHead custom = new FixedHead("test-grid", 64, 17 * 3);
+        DetectorHeads.register("test-grid", (spec, targetClasses) ->
+                spec.getOutputLength() == 17 * 3 ? custom : null);
+
+        assertSame(custom, DetectorHeads.bind(new DetectorSpec(null, 64, 1, 17, 3), 0));
+        // Other shapes still reach the built-in heads
+        assertEquals(YoloV8Decoder.FORMAT,
+                DetectorHeads.bind(new DetectorSpec(null, 640, 1, 84, 8400), 0).getFormat());
+    }
+
+    @Test
+    public void engineRunsDetectorAtSpecInputSize() throws Exception {
+        RecordingRunner runner = new RecordingRunner(new float[100 * 6]);
+        DetectionEngine engine = new DetectionEngine(runner, new DetectorSpec(null, 320, 1, 100, 6));
+        DetectionEngine.PendingFrame work = engine.obtainPendingFrame();
+
+        engine.detect(ReplayHarness.blank(1, 640, 480).get(0), work);
+
+        assertEquals(YoloV26Decoder.FORMAT, engine.getDetectorHead().getFormat());
+        assertArrayEquals(new long[]{1, 3, 320, 320}, runner.shapes.get(0));
+    }
+
+    @Test
+    public void engineWithoutSpecBindsFromFirstOutput() throws Exception {
+        float[] output = new float[1800];
+        // One YOLOv26 box: x1, y1, x2, y2, confidence, class, in 640 input coordinates
+        System.arraycopy(new float[]{100, 100, 300, 300, 0.9f, YoloV8Decoder.COCO_BIRD}, 0, output, 0, 6);
+        DetectionEngine engine = new DetectionEngine(new RecordingRunner(output));
+        DetectionEngine.PendingFrame work = engine.obtainPendingFrame();
+
+        engine.detect(ReplayHarness.blank(1, 640, 640).get(0), work);
+
+        assertEquals(YoloV26Decoder.FORMAT, engine.getDetectorHead().getFormat());
+        assertEquals(1, work.getCandidateCount());
+    }
+
+    @Test
+    public void engineRejectsOutputOfAnotherLayout() throws Exception {
+        RecordingRunner runner = new RecordingRunner(new float[1800]);
+        DetectionEngine engine = new DetectionEngine(runner, new DetectorSpec(null, 640, 1, 84, 8400));
+
+        try {
+            engine.detect(ReplayHarness.blank(1, 640, 640).get(0), engine.obtainPendingFrame());
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains(YoloV8Decoder.FORMAT));
+            return;
+        }
+        throw new AssertionError("Expected a layout mismatch");
+    }
+
+    private static final class FixedHead implements DetectorHead {
+        private final String format;
+        private final int inputSize;
+        private final int outputLength;
+
+        FixedHead(String format, int inputSize, int outputLength) {
+            this.format = format;
+            this.inputSize = inputSize;
+            this.outputLength = outputLength;
+        }
+
+        @Override
+        public String getFormat() {
+            return format;
+        }
+
+        @Override
+        public int getInputSize() {
+            return inputSize;
+        }
+
+        @Override
+        public int getOutputLength() {
+            return outputLength;
+        }
+
+        @Override
+        public int decode(FloatBuffer output, int imageWidth, int imageHeight, DetectionBuffer out) {
+            return 0;
+        }
+    }
+
+    private static final class RecordingRunner implements DetectionEngine.ModelRunner {
+        final List<long[]> shapes = new ArrayList<>();
+        private final float[] output;
+
+        RecordingRunner(float[] output) {
+            this.output = output;
+        }
+
+        @Override
+        public FloatBuffer runDetector(FloatBuffer input, long[] shape) {
+            shapes.add(shape.clone());
+            return FloatBuffer.wrap(output);
+        }
+
+        @Override
+        public FloatBuffer runClassifier(FloatBuffer input, long[] shape) {
+            return FloatBuffer.wrap(new float[(int) shape[0] * 4]);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Replays a pipeline cost trace against each skip policy and compares the resulting analyzed
+ * rate, latency, drops and busy time (a proxy for power).
+ *
+ * The camera delivers 30 fps. The pipeline is modelled as one worker with a single-slot,
+ * newest-wins queue, like {@link PipelinedExecutor}. The default trace is synthetic: ~90 ms per
+ * frame, getting 1.5x slower at MODERATE and 2x slower at SEVERE thermal status later in the
+ * run. A measured trace (one per-frame cost in milliseconds per line) can be supplied with
+ * {@code -Pgovernor.trace=/path/to/trace.txt}.
+ *
+ * Skipped unless run with {@code -Pbenchmarks=true}, see {@link Benchmarks}.
+ */
+public class FrameRateGovernorBenchmark {
+    private static final long FRAME_NANOS = 33_333_333L;
+    private static final int CAMERA_FRAMES = 30 * 120;
+
+    private static final class Result {
+        int analyzed;
+        int completed;
+        int dropped;
+        double busyMillis;
+        final List<Double> latencies = new ArrayList<>();
+    }
+
+    @BeforeClass
+    public static void onlyWhenRequested() {
+        Benchmarks.assumeRequested();
+    }
+
+    @Test
+    public void comparePolicies() throws IOException {
+        double[] trace = loadTrace();
+        SkipPolicy[] policies = {
+                new SkipPolicy.Fixed(1),
+                new SkipPolicy.Fixed(5),
+                new SkipPolicy.LatencyTarget(300, 10, 30),
+                new SkipPolicy.LatencyTarget(150, 10, 30),
+        };
+
+        for (SkipPolicy policy : policies) {
+            Result result = replay(new FrameRateGovernor(policy, 5, 5), trace);
+            double seconds = CAMERA_FRAMES * FRAME_NANOS / 1e9;
+            double[] latencies = new double[result.latencies.size()];
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = result.latencies.get(i);
+            }
+            Arrays.sort(latencies);
+            double mean = 0;
+            for (double latency : latencies) {
+                mean += latency / latencies.length;
+            }
+            double p95 = latencies.length == 0 ? 0 : latencies[(int) (latencies.length * 0.95)];
+
+            System.out.println(String.format(Locale.US,
+                    "FrameRateGovernorBenchmark: %-24s analyzed %.1f fps, results %.1f fps, "
+                            + "latency mean %.0f ms p95 %.0f ms, dropped %d, busy %.0f%%",
+                    policy.getName(), result.analyzed / seconds, result.completed / seconds,
+                    mean, p95, result.dropped, 100 * result.busyMillis / (seconds * 1000)));
+            assertTrue(result.completed > 0);
+        }
+    }
+
+    private static Result replay(FrameRateGovernor governor, double[] trace) {
+        Result result = new Result();
+        long busyUntil = 0;
+        long runningArrival = -1;
+        long queuedArrival = -1;
+        int traceIndex = 0;
+
+        for (int frame = 0; frame < CAMERA_FRAMES; frame++) {
+            long now = frame * FRAME_NANOS;
+            int thermal = thermalStatusAt(frame);
+            if (thermal != governor.getThermalStatus()) {
+                governor.setThermalStatus(thermal);
+            }
+
+            // Finish whatever the worker completed before this frame arrived
+            while (runningArrival >= 0 && busyUntil <= now) {
+                governor.onFrameCompleted(runningArrival, busyUntil);
+                result.latencies.add((busyUntil - runningArrival) / 1e6);
+                result.completed++;
+                runningArrival = -1;
+                if (queuedArrival >= 0) {
+                    double cost = cost(trace, traceIndex++, thermal);
+                    result.busyMillis += cost;
+                    runningArrival = queuedArrival;
+                    busyUntil += (long) (cost * 1e6);
+                    queuedArrival = -1;
+                }
+            }
+
+            if (!governor.onFrameArrived(now)) {
+                continue;
+            }
+            result.analyzed++;
+            if (runningArrival < 0) {
+                double cost = cost(trace, traceIndex++, thermal);
+                result.busyMillis += cost;
+                runningArrival = now;
+                busyUntil = now + (long) (cost * 1e6);
+            } else {
+                if (queuedArrival >= 0) {
+                    result.dropped++;
+                    governor.onFramesDropped(1);
+                }
+                queuedArrival = now;
+            }
+        }
+        return result;
+    }
+
+    private static int thermalStatusAt(int frame) {
+        if (frame > CAMERA_FRAMES * 2 / 3) {
+            return FrameRateGovernor.THERMAL_STATUS_SEVERE;
+        }
+        if (frame > CAMERA_FRAMES / 3) {
+            return FrameRateGovernor.THERMAL_STATUS_MODERATE;
+        }
+        return FrameRateGovernor.THERMAL_STATUS_NONE;
+    }
+
+    private static double cost(double[] trace, int index, int thermalStatus) {
+        double base = trace[index % trace.length];
+        if (System.getProperty("governor.trace") != null) {
+            return base;
+        }
+        switch (thermalStatus) {
+            case FrameRateGovernor.THERMAL_STATUS_MODERATE:
+                return base * 1.5;
+            case FrameRateGovernor.THERMAL_STATUS_SEVERE:
+                return base * 2;
+            default:
+                return base;
+        }
+    }
+
+    private static double[] loadTrace() throws IOException {
+        String path = System.getProperty("governor.trace");
+        if (path != null) {
+            List<Double> values = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        values.add(Double.parseDouble(line.trim()));
+                    }
+                }
+            }
+            double[] trace = new double[values.size()];
+            for (int i = 0; i < trace.length; i++) {
+                trace[i] = values.get(i);
+            }
+            return trace;
+        }
+
+        Random random = new Random(9);
+        double[] trace = new double[1000];
+        for (int i = 0; i < trace.length; i++) {
+            trace[i] = 90 + random.nextGaussian() * 15;
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the frame rate governor and its skip policies.
+ */
+public class FrameRateGovernorTest {
+    private static final long FRAME_NANOS = 33_333_333L; // 30 fps camera
+
+    @Test
+    public void fixedPolicyAnalyzesEveryNthFrame() {
+        FrameRateGovernor governor = new FrameRateGovernor(new SkipPolicy.Fixed(5), 5, 1);
+        int analyzed = 0;
+        for (int i = 0; i < 30; i++) {
+            if (governor.onFrameArrived(i * FRAME_NANOS)) {
+                analyzed++;
+                governor.onFrameCompleted(i * FRAME_NANOS, i * FRAME_NANOS + 50_000_000L);
+            }
+        }
+        assertEquals(6, analyzed);
+        assertEquals(30.0, governor.getCameraFps(), 0.1);
+        assertEquals(6.0, governor.getAnalyzedFps(), 0.1);
+    }
+
+    @Test
+    public void fastPipelineSpeedsUpToPowerBudget() {
+        FrameRateGovernor governor = latencyGovernor();
+        runFrames(governor, 300, 40);
+        // 40 ms is well under target, so only the 10 fps budget limits: every 3rd frame
+        assertEquals(3, governor.getInterval());
+    }
+
+    @Test
+    public void slowPipelineBacksOff() {
+        FrameRateGovernor governor = latencyGovernor();
+        runFrames(governor, 300, 600);
+        assertTrue(governor.getInterval() > 5);
+        assertTrue(governor.getLatencyMillis() > 300);
+    }
+
+    @Test
+    public void heatLowersTheRateImmediately() {
+        FrameRateGovernor governor = latencyGovernor();
+        runFrames(governor, 300, 40);
+        governor.setThermalStatus(FrameRateGovernor.THERMAL_STATUS_SEVERE);
+        // 10 fps * 0.25 = 2.5 fps budget at 30 fps camera: every 12th frame
+        assertEquals(12, governor.getInterval());
+    }
+
+    @Test
+    public void dropsCountAsOverload() {
+        SkipPolicy.LatencyTarget policy = new SkipPolicy.LatencyTarget(300, 30, 30);
+        SkipPolicy.Inputs inputs = new SkipPolicy.Inputs();
+        inputs.interval = 2;
+        inputs.cameraFps = 30;
+        inputs.latencyMillis = 200;
+        assertEquals(2, policy.chooseInterval(inputs));
+        inputs.droppedFrames = 3;
+        assertEquals(3, policy.chooseInterval(inputs));
+        inputs.droppedFrames = 0;
+        inputs.latencyMillis = 50;
+        assertEquals(1, policy.chooseInterval(inputs));
+    }
+
+    @Test
+    public void skippedFramesAreNotAnalyzed() {
+        FrameRateGovernor governor = new FrameRateGovernor(new SkipPolicy.Fixed(2), 2, 1);
+        assertTrue(governor.onFrameArrived(0));
+        assertFalse(governor.onFrameArrived(FRAME_NANOS));
+        assertEquals(2, governor.getFramesSeen());
+        assertEquals(1, governor.getFramesAnalyzed());
+    }
+
+    private static FrameRateGovernor latencyGovernor() {
+        return new FrameRateGovernor(new SkipPolicy.LatencyTarget(300, 10, 30), 5, 5);
+    }
+
+    /** Feeds frames at 30 fps with a constant result latency. */
+    private static void runFrames(FrameRateGovernor governor, int frames, long latencyMillis) {
+        for (int i = 0; i < frames; i++) {
+            long now = i * FRAME_NANOS;
+            if (governor.onFrameArrived(now)) {
+                governor.onFrameCompleted(now, now + latencyMillis * 1_000_000L);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithBoundedError() {
+        for (long micros = 0; micros < 5_000_000; micros = micros < 100 ? micros + 1 : micros * 11 / 10) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            long upper = LatencyHistogram.bucketUpperMicros(bucket);
+            assertTrue(micros + " above its bucket", micros < upper);
+            assertTrue(micros + " bucket too wide", upper <= Math.max(micros + 1, micros * 1.126));
+            if (bucket > 0) {
+                assertTrue(micros >= LatencyHistogram.bucketUpperMicros(bucket - 1));
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    public void reportsPercentilesOfRecordedLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1_000_000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMeanMillis(), 1e-9);
+        assertEquals(100.0, histogram.getMaxMillis(), 1e-9);
+        assertEquals(50, histogram.getPercentileMillis(0.5), 50 * 0.125);
+        assertEquals(99, histogram.getPercentileMillis(0.99), 99 * 0.125);
+        assertEquals(100.0, histogram.getPercentileMillis(1.0), 1e-9);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMillis(0.5), 0);
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long nanos = (t + 1) * 1_000_000L;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(nanos);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(2.5, histogram.getMeanMillis(), 1e-9);
+        assertEquals(4.0, histogram.getMaxMillis(), 1e-9);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the previous object-based NMS (a list of boxed detections, comparator sort and an
+ * all-pairs IoU loop) with {@link NmsEngine} at candidate counts a low confidence threshold
+ * produces. Results are printed to stdout; the test fails only if the two disagree.
+ *
+ * Skipped unless run with {@code -Pbenchmarks=true}, see {@link Benchmarks}.
+ */
+public class NmsEngineBenchmark {
+    private static final int[] CANDIDATE_COUNTS = {50, 300, 1000};
+    private static final int MAX_DETECTIONS = 100;
+    private static final float THRESHOLD = 0.35f;
+    private static final int WARMUP = 500;
+    private static final int ITERATIONS = 500;
+
+    /** Stand-in for the pipeline's Detection holding an android.graphics.RectF. */
+    private static final class Box {
+        final float left;
+        final float top;
+        final float right;
+        final float bottom;
+        final float confidence;
+
+        Box(float left, float top, float right, float bottom, float confidence) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.confidence = confidence;
+        }
+    }
+
+    @BeforeClass
+    public static void onlyWhenRequested() {
+        Benchmarks.assumeRequested();
+    }
+
+    @Test
+    public void compareNms() {
+        Random random = new Random(3);
+        for (int count : CANDIDATE_COUNTS) {
+            DetectionBuffer candidates = NmsEngineTest.randomBoxes(random, count, 1);
+            NmsEngine engine = new NmsEngine(THRESHOLD, MAX_DETECTIONS);
+            DetectionBuffer out = new DetectionBuffer();
+
+            assertEquals(legacyNms(candidates).size(), engine.run(candidates, out));
+
+            for (int i = 0; i < WARMUP; i++) {
+                legacyNms(candidates);
+                out.clear();
+                engine.run(candidates, out);
+            }
+
+            long legacyStart = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                legacyNms(candidates);
+            }
+            double legacyMicros = (System.nanoTime() - legacyStart) / 1e3 / ITERATIONS;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                out.clear();
+                engine.run(candidates, out);
+            }
+            double micros = (System.nanoTime() - start) / 1e3 / ITERATIONS;
+
+            System.out.println(String.format(Locale.US,
+                    "NmsEngineBenchmark: %d candidates, legacy %.1f us, engine %.1f us (%.1fx)",
+                    count, legacyMicros, micros, legacyMicros / micros));
+        }
+    }
+
+    /** The previous applyEnhancedNMS, including building the detection objects. */
+    private static List<Box> legacyNms(DetectionBuffer candidates) {
+        List<Box> detections = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            detections.add(new Box(candidates.left(i), candidates.top(i),
+                    candidates.right(i), candidates.bottom(i), candidates.score(i)));
+        }
+        Collections.sort(detections, (a, b) -> Float.compare(b.confidence, a.confidence));
+
+        List<Box> result = new ArrayList<>();
+        boolean[] suppressed = new boolean[detections.size()];
+        for (int i = 0; i < detections.size(); i++) {
+            if (suppressed[i]) continue;
+            result.add(detections.get(i));
+            for (int j = i + 1; j < detections.size(); j++) {
+                if (suppressed[j]) continue;
+                if (iou(detections.get(i), detections.get(j)) > THRESHOLD) {
+                    suppressed[j] = true;
+                }
+            }
+            if (result.size() >= MAX_DETECTIONS) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static float iou(Box box1, Box box2) {
+        float area1 = (box1.right - box1.left) * (box1.bottom - box1.top);
+        float area2 = (box2.right - box2.left) * (box2.bottom - box2.top);
+        float intersectLeft = Math.max(box1.left, box2.left);
+        float intersectTop = Math.max(box1.top, box2.top);
+        float intersectRight = Math.min(box1.right, box2.right);
+        float intersectBottom = Math.min(box1.bottom, box2.bottom);
+        if (intersectLeft >= intersectRight || intersectTop >= intersectBottom) {
+            return 0;
+        }
+        float intersectArea = (intersectRight - intersectLeft) * (intersectBottom - intersectTop);
+        return intersectArea / (area1 + area2 - intersectArea);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for the grid-accelerated NMS engine.
+ */
+public class NmsEngineTest {
+
+    @Test
+    public void matchesGreedyReference() {
+        Random random = new Random(11);
+        for (int trial = 0; trial < 20; trial++) {
+            DetectionBuffer candidates = randomBoxes(random, 50 + random.nextInt(400), 3);
+            DetectionBuffer expected = new DetectionBuffer();
+            greedyNms(candidates, 0.35f, 50, false, expected);
+
+            NmsEngine engine = new NmsEngine(0.35f, 50);
+            DetectionBuffer actual = new DetectionBuffer();
+            engine.run(candidates, actual);
+
+            assertSame(expected, actual);
+        }
+    }
+
+    @Test
+    public void classAwareMatchesReference() {
+        Random random = new Random(5);
+        DetectionBuffer candidates = randomBoxes(random, 300, 4);
+        DetectionBuffer expected = new DetectionBuffer();
+        greedyNms(candidates, 0.5f, 100, true, expected);
+
+        NmsEngine engine = new NmsEngine(0.5f, 100);
+        engine.setClassAware(true);
+        DetectionBuffer actual = new DetectionBuffer();
+        engine.run(candidates, actual);
+
+        assertSame(expected, actual);
+    }
+
+    @Test
+    public void gridSkipsDistantPairs() {
+        DetectionBuffer candidates = randomBoxes(new Random(1), 1000, 1);
+        NmsEngine engine = new NmsEngine(0.35f, 1000);
+        engine.run(candidates, new DetectionBuffer());
+        // A brute-force pass would compare up to n²/2 = 500,000 pairs
+        assertTrue(engine.getIouComparisons() > 0);
+        assertTrue(engine.getIouComparisons() < 100_000);
+    }
+
+    @Test
+    public void stopsAtMaxDetectionsAndKeepsScoreOrder() {
+        DetectionBuffer candidates = new DetectionBuffer();
+        candidates.add(0, 0, 10, 10, 0.5f, 0);
+        candidates.add(100, 100, 110, 110, 0.9f, 0);
+        candidates.add(200, 200, 210, 210, 0.7f, 0);
+
+        DetectionBuffer out = new DetectionBuffer();
+        assertEquals(2, new NmsEngine(0.5f, 2).run(candidates, out));
+        assertEquals(0.9f, out.score(0), 0f);
+        assertEquals(0.7f, out.score(1), 0f);
+    }
+
+    @Test
+    public void classAwareKeepsOverlappingBoxesOfDifferentClasses() {
+        DetectionBuffer candidates = new DetectionBuffer();
+        candidates.add(0, 0, 100, 100, 0.9f, 14);
+        candidates.add(5, 5, 100, 100, 0.8f, 15);
+
+        DetectionBuffer agnostic = new DetectionBuffer();
+        new NmsEngine(0.5f, 10).run(candidates, agnostic);
+        assertEquals(1, agnostic.size());
+
+        NmsEngine engine = new NmsEngine(0.5f, 10);
+        engine.setClassAware(true);
+        DetectionBuffer perClass = new DetectionBuffer();
+        engine.run(candidates, perClass);
+        assertEquals(2, perClass.size());
+    }
+
+    @Test
+    public void softNmsDecaysOverlappingScores() {
+        DetectionBuffer candidates = new DetectionBuffer();
+        candidates.add(0, 0, 100, 100, 0.9f, 0);
+        candidates.add(0, 0, 100, 50, 0.8f, 0); // IoU 0.5 with the first box
+        candidates.add(300, 300, 400, 400, 0.6f, 0);
+
+        NmsEngine engine = new NmsEngine(0.5f, 10);
+        engine.setSoftNms(0.5f, 0.1f);
+        DetectionBuffer out = new DetectionBuffer();
+        assertEquals(3, engine.run(candidates, out));
+
+        assertEquals(0.9f, out.score(0), 0f);
+        assertEquals(0.6f, out.score(1), 0f);
+        assertEquals(0.8f * (float) Math.exp(-0.25 / 0.5), out.score(2), 1e-5f);
+
+        // A high minimum score removes the decayed box entirely
+        engine.setSoftNms(0.5f, 0.55f);
+        out.clear();
+        assertEquals(2, engine.run(candidates, out));
+    }
+
+    static DetectionBuffer randomBoxes(Random random, int count, int classes) {
+        DetectionBuffer boxes = new DetectionBuffer();
+        for (int i = 0; i < count; i++) {
+            float x = random.nextFloat() * 1200;
+            float y = random.nextFloat() * 700;
+            float w = 20 + random.nextFloat() * 120;
+            float h = 20 + random.nextFloat() * 120;
+            // Quantized scores produce ties, which must resolve the same way as the reference
+            float score = Math.round(random.nextFloat() * 50) / 50f;
+            boxes.add(x, y, x + w, y + h, score, random.nextInt(classes));
+        }
+        return boxes;
+    }
+
+    /** Plain O(n²) greedy NMS over a stable score sort, as the pipeline used to do. */
+    static void greedyNms(DetectionBuffer boxes, float threshold, int maxDetections,
+                          boolean classAware, DetectionBuffer out) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < boxes.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, (a, b) -> Float.compare(boxes.score(b), boxes.score(a)));
+        boolean[] suppressed = new boolean[boxes.size()];
+        int kept = 0;
+        for (int r = 0; r < order.size() && kept < maxDetections; r++) {
+            int i = order.get(r);
+            if (suppressed[i]) {
+                continue;
+            }
+            out.add(boxes.left(i), boxes.top(i), boxes.right(i), boxes.bottom(i),
+                    boxes.score(i), boxes.classId(i));
+            kept++;
+            for (int s = r + 1; s < order.size(); s++) {
+                int j = order.get(s);
+                if (classAware && boxes.classId(i) != boxes.classId(j)) {
+                    continue;
+                }
+                if (!suppressed[j] && iou(boxes, i, j) > threshold) {
+                    suppressed[j] = true;
+                }
+            }
+        }
+    }
+
+    static float iou(DetectionBuffer boxes, int a, int b) {
+        float left = Math.max(boxes.left(a), boxes.left(b));
+        float top = Math.max(boxes.top(a), boxes.top(b));
+        float right = Math.min(boxes.right(a), boxes.right(b));
+        float bottom = Math.min(boxes.bottom(a), boxes.bottom(b));
+        if (left >= right || top >= bottom) {
+            return 0;
+        }
+        float areaA = (boxes.right(a) - boxes.left(a)) * (boxes.bottom(a) - boxes.top(a));
+        float areaB = (boxes.right(b) - boxes.left(b)) * (boxes.bottom(b) - boxes.top(b));
+        float intersection = (right - left) * (bottom - top);
+        return intersection / (areaA + areaB - intersection);
+    }
+
+    private static void assertSame(DetectionBuffer expected, DetectionBuffer actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.left(i), actual.left(i), 0f);
+            assertEquals(expected.top(i), actual.top(i), 0f);
+            assertEquals(expected.score(i), actual.score(i), 0f);
+            assertEquals(expected.classId(i), actual.classId(i));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+public class PipelineMetricsTest {
+
+    @Test
+    public void recordsNothingUntilEnabled() throws Exception {
+        DetectionEngine engine = new DetectionEngine(new BirdRunner());
+        DetectionEngine.PendingFrame work = engine.obtainPendingFrame();
+        FrameSource frame = ReplayHarness.blank(1, 640, 640).get(0);
+
+        engine.detect(frame, work);
+        engine.classify(work);
+        assertEquals(0, engine.getMetrics().getFrames());
+        assertEquals(0, engine.getMetrics().getHistogram(DetectionEngine.Step.DETECTOR).getCount());
+
+        engine.getMetrics().setEnabled(true);
+        for (int i = 0; i < 3; i++) {
+            engine.detect(frame, work);
+            engine.classify(work);
+        }
+
+        PipelineMetrics metrics = engine.getMetrics();
+        assertEquals(3, metrics.getFrames());
+        // Two overlapping anchors per frame, one survives NMS
+        assertEquals(6, metrics.getCandidates());
+        assertEquals(3, metrics.getSuppressed());
+        assertEquals(3, metrics.getDetections());
+        assertEquals(3, metrics.getClassifierCrops() + metrics.getReusedVerdicts());
+        for (DetectionEngine.Step step : DetectionEngine.Step.values()) {
+            assertEquals(step.name(), 3, metrics.getHistogram(step).getCount());
+        }
+        assertEquals(3, metrics.getDetectStageHistogram().getCount());
+        assertTrue(metrics.export().contains("detector: n=3"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getFrames());
+        assertEquals(0, metrics.getClassifyStageHistogram().getCount());
+    }
+
+    /** Detector that always sees the same bird twice, classifier that always says species 0. */
+    private static final class BirdRunner implements DetectionEngine.ModelRunner {
+        private final float[] output =
+                new float[(4 + YoloV8DecoderTest.NUM_CLASSES) * YoloV8DecoderTest.NUM_ANCHORS];
+
+        BirdRunner() {
+            int birdRow = (4 + YoloV8Decoder.COCO_BIRD) * YoloV8DecoderTest.NUM_ANCHORS;
+            YoloV8DecoderTest.setBox(output, 5, 300, 300, 120, 120);
+            output[birdRow + 5] = 0.9f;
+            YoloV8DecoderTest.setBox(output, 6, 305, 300, 120, 120);
+            output[birdRow + 6] = 0.85f;
+        }
+
+        @Override
+        public FloatBuffer runDetector(FloatBuffer input, long[] shape) {
+            return FloatBuffer.wrap(output);
+        }
+
+        @Override
+        public FloatBuffer runClassifier(FloatBuffer input, long[] shape) {
+            float[] scores = new float[(int) shape[0] * 4];
+            for (int b = 0; b < shape[0]; b++) {
+                scores[b * 4] = 5f;
+            }
+            return FloatBuffer.wrap(scores);
+        }
+    }
+}
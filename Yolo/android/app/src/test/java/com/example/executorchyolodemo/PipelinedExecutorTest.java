@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the latest-frame-wins queue and the two-stage pipelined executor.
+ */
+public class PipelinedExecutorTest {
+
+    @Test
+    public void fullQueueEvictsOldestAndRecyclesIt() throws Exception {
+        List<Integer> recycled = new ArrayList<>();
+        LatestFrameQueue<Integer> queue = new LatestFrameQueue<>(2, recycled::add);
+
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+
+        assertEquals(Collections.singletonList(1), recycled);
+        assertEquals(1, queue.droppedCount());
+        assertEquals(2, (int) queue.take());
+        assertEquals(3, (int) queue.take());
+    }
+
+    @Test
+    public void closedQueueRejectsAndDrains() throws Exception {
+        List<Integer> recycled = new ArrayList<>();
+        LatestFrameQueue<Integer> queue = new LatestFrameQueue<>(1, recycled::add);
+        queue.offer(7);
+        queue.close();
+
+        assertEquals(Collections.singletonList(7), recycled);
+        assertFalse(queue.offer(8));
+        assertNull(queue.take());
+    }
+
+    @Test
+    public void stagesOverlapAcrossFrames() throws Exception {
+        CountDownLatch secondStageEntered = new CountDownLatch(1);
+        CountDownLatch releaseSecondStage = new CountDownLatch(1);
+        CountDownLatch firstStageRanWhileBlocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+
+        PipelinedExecutor<Integer, Integer, Integer> executor = new PipelinedExecutor<>(
+                "detect", frame -> {
+                    if (frame == 2) {
+                        firstStageRanWhileBlocked.countDown();
+                    }
+                    return frame;
+                }, frame -> { },
+                "classify", frame -> {
+                    if (frame == 1) {
+                        secondStageEntered.countDown();
+                        releaseSecondStage.await();
+                    }
+                    return frame * 10;
+                }, frame -> { },
+                result -> {
+                    results.add(result);
+                    done.countDown();
+                }, 1);
+        executor.start();
+
+        executor.submit(1);
+        assertTrue(secondStageEntered.await(5, TimeUnit.SECONDS));
+        // Frame 2 reaches stage one while stage two is still busy with frame 1
+        executor.submit(2);
+        assertTrue(firstStageRanWhileBlocked.await(5, TimeUnit.SECONDS));
+        releaseSecondStage.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(10, (int) results.get(0));
+        assertEquals(20, (int) results.get(1));
+        executor.shutdown(1000);
+    }
+
+    @Test
+    public void slowSecondStageKeepsOnlyLatestFrame() throws Exception {
+        CountDownLatch secondStageEntered = new CountDownLatch(1);
+        CountDownLatch releaseSecondStage = new CountDownLatch(1);
+        CountDownLatch firstStageDone = new CountDownLatch(4);
+        AtomicInteger recycledWork = new AtomicInteger();
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+
+        PipelinedExecutor<Integer, Integer, Integer> executor = new PipelinedExecutor<>(
+                "detect", frame -> {
+                    firstStageDone.countDown();
+                    return frame;
+                }, frame -> { },
+                "classify", frame -> {
+                    secondStageEntered.countDown();
+                    releaseSecondStage.await();
+                    return frame;
+                }, frame -> recycledWork.incrementAndGet(),
+                result -> {
+                    results.add(result);
+                    done.countDown();
+                }, 1);
+        executor.start();
+
+        executor.submit(1);
+        assertTrue(secondStageEntered.await(5, TimeUnit.SECONDS));
+        for (int frame = 2; frame <= 4; frame++) {
+            executor.submit(frame);
+            Thread.sleep(20);
+        }
+        assertTrue(firstStageDone.await(5, TimeUnit.SECONDS));
+        releaseSecondStage.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // Frames 2 and 3 were replaced while stage two was busy with frame 1
+        assertEquals(1, (int) results.get(0));
+        assertEquals(4, (int) results.get(1));
+        PipelinedExecutor.StageStats classify = executor.getSecondStageStats();
+        assertEquals(2, classify.getDropped());
+        assertEquals(2, classify.getProcessed());
+        assertEquals(4, executor.getFirstStageStats().getProcessed());
+        executor.shutdown(1000);
+        // Every work item is recycled exactly once: two dropped, two processed
+        assertEquals(4, recycledWork.get());
+    }
+
+    @Test
+    public void shutdownReportsStageStillRunning() throws Exception {
+        CountDownLatch secondStageEntered = new CountDownLatch(1);
+        CountDownLatch releaseSecondStage = new CountDownLatch(1);
+
+        PipelinedExecutor<Integer, Integer, Integer> executor = new PipelinedExecutor<>(
+                "detect", frame -> frame, frame -> { },
+                "classify", frame -> {
+                    secondStageEntered.countDown();
+                    releaseSecondStage.await();
+                    return frame;
+                }, frame -> { },
+                result -> { }, 1);
+        executor.start();
+        executor.submit(1);
+        assertTrue(secondStageEntered.await(5, TimeUnit.SECONDS));
+
+        assertFalse(executor.shutdown(50));
+        assertFalse(executor.isTerminated());
+
+        releaseSecondStage.countDown();
+        executor.awaitTermination();
+        assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void firstFailureOfEachStageIsReported() throws Exception {
+        IllegalStateException failure = new IllegalStateException("model error");
+        List<String> reported = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch attempted = new CountDownLatch(3);
+
+        PipelinedExecutor<Integer, Integer, Integer> executor = new PipelinedExecutor<>(
+                "detect", frame -> frame, frame -> { },
+                "classify", frame -> {
+                    attempted.countDown();
+                    throw failure;
+                }, frame -> { },
+                result -> { }, 1);
+        executor.setFailureListener((stage, e) -> reported.add(stage + ": " + e.getMessage()));
+        executor.start();
+        for (int frame = 1; frame <= 3; frame++) {
+            executor.submit(frame);
+            Thread.sleep(20);
+        }
+        assertTrue(attempted.await(5, TimeUnit.SECONDS));
+        assertTrue(executor.shutdown(1000));
+
+        PipelinedExecutor.StageStats classify = executor.getSecondStageStats();
+        assertEquals(3, classify.getFailed());
+        assertSame(failure, classify.getFirstFailure());
+        assertEquals(Collections.singletonList("classify: model error"), reported);
+        assertNull(executor.getFirstStageStats().getFirstFailure());
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Replays a recorded session through the {@link DetectionEngine} on the JVM and reports
+ * per-step latency, detection counts, tracking stability and verdict cache reuse as JSON.
+ *
+ * Frames come from a folder of images, a folder of raw I420 {@code .yuv} dumps, or are blank
+ * when only model outputs are given. The model is replaced by {@link ReplayModelRunner}, so the
+ * DETECTOR and CLASSIFIER steps measure the replay, not the network; everything around them is
+ * the code that runs on the device.
+ *
+ * Frames arrive on a simulated camera clock and the analyzer keeps only the latest one, as
+ * CameraX does with STRATEGY_KEEP_ONLY_LATEST, so a slow engine shows up as dropped frames.
+ * The two stages run back to back here rather than pipelined.
+ *
+ * Configured with system properties:
+ * <pre>
+ *   replay.outputs   directory of detector_*.bin / classifier_*.bin recordings (required)
+ *   replay.frames    directory of .png/.jpg images or .yuv dumps (optional)
+ *   replay.yuvSize   WIDTHxHEIGHT of the .yuv dumps
+ *   replay.fps       camera frame rate, default 30
+ *   replay.roi       full-scan interval for region-of-interest detection, default 0 (off)
+ *   replay.species   classifier classes when no classifier outputs are recorded, default 10
+ *   replay.json      report path; printed to stdout when absent
+ * </pre>
+ */
+public final class ReplayHarness {
+    static final double DEFAULT_CAMERA_FPS = 30;
+    static final int SYNTHETIC_WIDTH = 1280;
+    static final int SYNTHETIC_HEIGHT = 720;
+
+    /** Frames of a recording, loaded on demand. */
+    interface Frames {
+        int size();
+
+        FrameSource get(int index) throws IOException;
+    }
+
+    /** Latency percentiles of one step, in milliseconds. */
+    static final class Latency {
+        int count;
+        double mean;
+        double p50;
+        double p90;
+        double p99;
+        double max;
+
+        static Latency of(long[] nanos, int count) {
+            Latency latency = new Latency();
+            latency.count = count;
+            if (count == 0) {
+                return latency;
+            }
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            long sum = 0;
+            for (long value : sorted) {
+                sum += value;
+            }
+            latency.mean = sum / 1e6 / count;
+            latency.p50 = percentile(sorted, 0.50);
+            latency.p90 = percentile(sorted, 0.90);
+            latency.p99 = percentile(sorted, 0.99);
+            latency.max = sorted[count - 1] / 1e6;
+            return latency;
+        }
+
+        private static double percentile(long[] sorted, double fraction) {
+            int index = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    /** The JSON report. */
+    static final class Report {
+        int cameraFrames;
+        int processedFrames;
+        int regionFrames;
+        int droppedFrames;
+        double cameraFps;
+        Map<String, Latency> latencyMs = new LinkedHashMap<>();
+        double rawDetectionsPerFrame;
+        double detectionsPerFrame;
+        int[] detectionHistogram = new int[DetectionEngine.MAX_DETECTIONS + 1];
+        int uniqueTracks;
+        double meanTrackLengthFrames;
+        double stableDetectionRatio;
+        long classifiedCrops;
+        double verdictCacheHitRate;
+    }
+
+    private ReplayHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Report report = runFromProperties();
+        String json = toJson(report);
+        String path = System.getProperty("replay.json");
+        if (path == null) {
+            System.out.println(json);
+        } else {
+            try (Writer writer = Files.newBufferedWriter(new File(path).toPath())) {
+                writer.write(json);
+            }
+        }
+    }
+
+    /** Runs the replay described by the {@code replay.*} system properties. */
+    static Report runFromProperties() throws Exception {
+        String outputs = System.getProperty("replay.outputs");
+        if (outputs == null) {
+            throw new IllegalArgumentException("replay.outputs is not set");
+        }
+        int species = Integer.parseInt(System.getProperty("replay.species",
+                String.valueOf(ReplayModelRunner.DEFAULT_NUM_SPECIES)));
+        ReplayModelRunner runner = ReplayModelRunner.fromDirectory(new File(outputs), species);
+
+        String framesDir = System.getProperty("replay.frames");
+        String yuvSize = System.getProperty("replay.yuvSize");
+        Frames frames;
+        if (framesDir == null) {
+            frames = blank(countFiles(new File(outputs), "detector_"), SYNTHETIC_WIDTH, SYNTHETIC_HEIGHT);
+        } else if (yuvSize != null) {
+            String[] size = yuvSize.toLowerCase().split("x");
+            frames = yuv(new File(framesDir), Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        } else {
+            frames = images(new File(framesDir));
+        }
+        double fps = Double.parseDouble(System.getProperty("replay.fps", String.valueOf(DEFAULT_CAMERA_FPS)));
+        int roiInterval = Integer.parseInt(System.getProperty("replay.roi", "0"));
+        return run(frames, runner, fps, System::nanoTime, roiInterval);
+    }
+
+    /**
+     * Replays {@code frames} through a fresh engine.
+     *
+     * @param clock nanosecond clock used to time each frame for the drop simulation
+     */
+    static Report run(Frames frames, DetectionEngine.ModelRunner runner, double cameraFps,
+                      LongSupplier clock) throws Exception {
+        return run(frames, runner, cameraFps, clock, 0);
+    }
+
+    /**
+     * Replays {@code frames} with region-of-interest detection, scanning the whole frame every
+     * {@code roiFullScanInterval} frames; 0 scans every frame in full.
+     */
+    static Report run(Frames frames, DetectionEngine.ModelRunner runner, double cameraFps,
+                      LongSupplier clock, int roiFullScanInterval) throws Exception {
+        DetectionEngine engine = new DetectionEngine(runner);
+        if (roiFullScanInterval > 0) {
+            engine.getRoiPlanner().setFullScanInterval(roiFullScanInterval);
+            engine.getRoiPlanner().setEnabled(true);
+        }
+        DetectionEngine.PendingFrame work = engine.obtainPendingFrame();
+        int total = frames.size();
+        DetectionEngine.Step[] steps = DetectionEngine.Step.values();
+        long[][] stepNanos = new long[steps.length][total];
+        long[] frameNanos = new long[total];
+        Map<Long, Integer> trackLengths = new HashMap<>();
+
+        Report report = new Report();
+        report.cameraFrames = total;
+        report.cameraFps = cameraFps;
+        long rawDetections = 0;
+        long detections = 0;
+        long stableDetections = 0;
+
+        double frameInterval = 1.0 / cameraFps;
+        double engineFree = 0; // Simulated time at which the engine can take the next frame
+        int next = 0;
+        int processed = 0;
+        while (next < total) {
+            // The newest frame that has arrived by the time the engine is free replaces the rest
+            int latest = Math.min(total - 1, Math.max(next, (int) Math.floor(engineFree / frameInterval + 1e-9)));
+            report.droppedFrames += latest - next;
+            FrameSource frame = frames.get(latest);
+
+            long start = clock.getAsLong();
+            engine.detect(frame, work);
+            engine.classify(work);
+            long elapsed = clock.getAsLong() - start;
+
+            engineFree = Math.max(engineFree, latest * frameInterval) + elapsed / 1e9;
+            next = latest + 1;
+
+            frameNanos[processed] = elapsed;
+            for (int s = 0; s < steps.length; s++) {
+                stepNanos[s][processed] = work.getStepNanos(steps[s]);
+            }
+            if (work.getRegionCount() > 0) {
+                report.regionFrames++;
+            }
+            rawDetections += work.getRawDetectionCount();
+            int count = work.getCandidateCount();
+            detections += count;
+            report.detectionHistogram[count]++;
+            for (int i = 0; i < count; i++) {
+                trackLengths.merge(work.getTrackId(i), 1, Integer::sum);
+                if (work.isStable(i)) {
+                    stableDetections++;
+                }
+            }
+            report.classifiedCrops += work.getClassifiedCount();
+            processed++;
+        }
+
+        report.processedFrames = processed;
+        for (int s = 0; s < steps.length; s++) {
+            report.latencyMs.put(steps[s].name().toLowerCase(), Latency.of(stepNanos[s], processed));
+        }
+        report.latencyMs.put("frame", Latency.of(frameNanos, processed));
+        report.rawDetectionsPerFrame = processed == 0 ? 0 : (double) rawDetections / processed;
+        report.detectionsPerFrame = processed == 0 ? 0 : (double) detections / processed;
+        report.uniqueTracks = trackLengths.size();
+        report.meanTrackLengthFrames = trackLengths.isEmpty() ? 0
+                : (double) detections / trackLengths.size();
+        report.stableDetectionRatio = detections == 0 ? 0 : (double) stableDetections / detections;
+        report.verdictCacheHitRate = engine.getVerdictCache().getHitRate();
+
+        engine.recycle(work);
+        engine.close();
+        return report;
+    }
+
+    static String toJson(Report report) {
+        Gson gson = new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create();
+        return gson.toJson(report);
+    }
+
+    /** {@code count} mid-grey frames, for replays that only have model outputs. */
+    static Frames blank(int count, int width, int height) {
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, 0xff808080);
+        ArgbFrame frame = new ArgbFrame(pixels, width, height);
+        return new Frames() {
+            @Override
+            public int size() {
+                return count;
+            }
+
+            @Override
+            public FrameSource get(int index) {
+                return frame;
+            }
+        };
+    }
+
+    /** Every .png, .jpg and .jpeg image in {@code directory}, in name order. */
+    static Frames images(File directory) {
+        File[] files = listSorted(directory, ".png", ".jpg", ".jpeg");
+        return new Frames() {
+            @Override
+            public int size() {
+                return files.length;
+            }
+
+            @Override
+            public FrameSource get(int index) throws IOException {
+                BufferedImage image = ImageIO.read(files[index]);
+                if (image == null) {
+                    throw new IOException("Unreadable image " + files[index]);
+                }
+                int width = image.getWidth();
+                int height = image.getHeight();
+                int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+                return new ArgbFrame(pixels, width, height);
+            }
+        };
+    }
+
+    /** Every raw I420 .yuv dump in {@code directory}, in name order. */
+    static Frames yuv(File directory, int width, int height) {
+        File[] files = listSorted(directory, ".yuv");
+        int lumaSize = width * height;
+        int chromaSize = (width / 2) * (height / 2);
+        YuvFrame frame = new YuvFrame();
+        return new Frames() {
+            @Override
+            public int size() {
+                return files.length;
+            }
+
+            @Override
+            public FrameSource get(int index) throws IOException {
+                byte[] data = Files.readAllBytes(files[index].toPath());
+                if (data.length < lumaSize + 2 * chromaSize) {
+                    throw new IOException("Short I420 frame " + files[index]);
+                }
+                ByteBuffer y = ByteBuffer.wrap(data, 0, lumaSize).slice();
+                ByteBuffer u = ByteBuffer.wrap(data, lumaSize, chromaSize).slice();
+                ByteBuffer v = ByteBuffer.wrap(data, lumaSize + chromaSize, chromaSize).slice();
+                return frame.set(y, u, v, width, width / 2, 1, width, height, 0);
+            }
+        };
+    }
+
+    private static int countFiles(File directory, String prefix) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".bin"));
+        return files == null ? 0 : files.length;
+    }
+
+    private static File[] listSorted(File directory, String... extensions) {
+        File[] files = directory.listFiles((dir, name) -> {
+            String lower = name.toLowerCase();
+            for (String extension : extensions) {
+                if (lower.endsWith(extension)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs the replay harness over a synthetic recording of one bird crossing the frame. Also the
+ * entry point for replaying a real recording, see {@link #replaysRecording}.
+ */
+public class ReplayHarnessTest {
+    private static final int FRAMES = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void tracksOneBirdAcrossTheReplay() throws Exception {
+        ReplayHarness.Report report = ReplayHarness.run(
+                ReplayHarness.blank(FRAMES, 1280, 720), movingBird(FRAMES), 1, System::nanoTime);
+
+        assertEquals(FRAMES, report.processedFrames);
+        assertEquals(0, report.droppedFrames);
+        assertEquals(1.0, report.detectionsPerFrame, 1e-9);
+        assertEquals(FRAMES, report.detectionHistogram[1]);
+        assertEquals(1, report.uniqueTracks);
+        assertEquals(FRAMES, report.meanTrackLengthFrames, 1e-9);
+        // Stable from the third sighting on
+        assertEquals((FRAMES - 2) / (double) FRAMES, report.stableDetectionRatio, 1e-9);
+        assertEquals(FRAMES, report.latencyMs.get("frame").count);
+        assertTrue(report.classifiedCrops >= 1 && report.classifiedCrops < FRAMES);
+        assertTrue(report.verdictCacheHitRate > 0);
+    }
+
+    @Test
+    public void dropsFramesThatArriveWhileTheEngineIsBusy() throws Exception {
+        // Every frame takes 100 ms on a 30 fps camera, so only frames 0, 3, 6, ... 27 and the
+        // last one, which is still waiting when the engine frees up, get analyzed
+        long[] now = {0};
+        ReplayHarness.Report report = ReplayHarness.run(
+                ReplayHarness.blank(30, 1280, 720), movingBird(30), 30, () -> now[0] += 100_000_000L);
+
+        assertEquals(11, report.processedFrames);
+        assertEquals(19, report.droppedFrames);
+        assertEquals(100.0, report.latencyMs.get("frame").p50, 1e-9);
+    }
+
+    @Test
+    public void loadsRecordedOutputsAndWritesJson() throws Exception {
+        File outputs = folder.newFolder("outputs");
+        List<float[]> frames = birdOutputs(3);
+        for (int i = 0; i < frames.size(); i++) {
+            ReplayModelRunner.writeFloats(new File(outputs, String.format("detector_%05d.bin", i)), frames.get(i));
+        }
+        ReplayModelRunner runner = ReplayModelRunner.fromDirectory(outputs, 4);
+
+        ReplayHarness.Report report = ReplayHarness.run(ReplayHarness.blank(3, 640, 640), runner, 1,
+                System::nanoTime);
+        String json = ReplayHarness.toJson(report);
+
+        assertEquals(3, report.processedFrames);
+        assertTrue(json.contains("\"latencyMs\""));
+        assertTrue(json.contains("\"detector\""));
+        assertTrue(json.contains("\"p99\""));
+        assertTrue(json.contains("\"stableDetectionRatio\""));
+    }
+
+    /**
+     * Replays a real recording when {@code replay.outputs} is set, e.g.
+     * {@code ./gradlew :app:testDebugUnitTest --tests '*ReplayHarnessTest' -Preplay.outputs=...}.
+     */
+    @Test
+    public void replaysRecording() throws Exception {
+        assumeTrue(System.getProperty("replay.outputs") != null);
+        ReplayHarness.main(new String[0]);
+    }
+
+    private static ReplayModelRunner movingBird(int frames) {
+        return new ReplayModelRunner(birdOutputs(frames), Collections.emptyList(),
+                ReplayModelRunner.DEFAULT_NUM_SPECIES);
+    }
+
+    /** YOLOv8 outputs with one confident bird drifting slowly to the right. */
+    private static List<float[]> birdOutputs(int frames) {
+        List<float[]> outputs = new ArrayList<>();
+        int birdRow = (4 + YoloV8Decoder.COCO_BIRD) * YoloV8DecoderTest.NUM_ANCHORS;
+        for (int f = 0; f < frames; f++) {
+            float[] output = new float[(4 + YoloV8DecoderTest.NUM_CLASSES) * YoloV8DecoderTest.NUM_ANCHORS];
+            float x = 200 + f * 2;
+            for (int a = 0; a < 3; a++) {
+                // A small cluster of overlapping anchors, as the real head produces
+                YoloV8DecoderTest.setBox(output, 100 + a, x + a, 320, 120, 100);
+                output[birdRow + 100 + a] = 0.9f - a * 0.01f;
+            }
+            outputs.add(output);
+        }
+        return outputs;
+    }
+}
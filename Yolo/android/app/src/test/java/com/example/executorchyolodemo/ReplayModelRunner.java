@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stands in for the ExecuTorch modules by replaying recorded model outputs, so the rest of the
+ * engine can be measured on a workstation.
+ *
+ * Detector outputs are handed out in order, one per frame, and wrap around at the end.
+ * Classifier outputs are handed out one crop row at a time; without a recording every crop
+ * scores species 0.
+ */
+final class ReplayModelRunner implements DetectionEngine.ModelRunner {
+    static final int DEFAULT_NUM_SPECIES = 10;
+
+    private final List<float[]> detectorOutputs;
+    private final List<float[]> classifierRows;
+    private final int numSpecies;
+    private int nextDetector;
+    private int nextClassifier;
+
+    ReplayModelRunner(List<float[]> detectorOutputs, List<float[]> classifierRows, int numSpecies) {
+        if (detectorOutputs.isEmpty()) {
+            throw new IllegalArgumentException("No detector outputs to replay");
+        }
+        this.detectorOutputs = detectorOutputs;
+        this.classifierRows = classifierRows;
+        this.numSpecies = classifierRows.isEmpty() ? numSpecies : classifierRows.get(0).length;
+    }
+
+    /**
+     * Loads a recording directory: {@code detector_*.bin} files, each one raw little-endian
+     * float32 detector output, and optionally {@code classifier_*.bin} files holding one or more
+     * rows of {@code numSpecies} scores.
+     */
+    static ReplayModelRunner fromDirectory(File directory, int numSpecies) throws IOException {
+        List<float[]> detector = new ArrayList<>();
+        for (File file : list(directory, "detector_")) {
+            detector.add(readFloats(file));
+        }
+        List<float[]> rows = new ArrayList<>();
+        for (File file : list(directory, "classifier_")) {
+            float[] scores = readFloats(file);
+            for (int offset = 0; offset + numSpecies <= scores.length; offset += numSpecies) {
+                rows.add(Arrays.copyOfRange(scores, offset, offset + numSpecies));
+            }
+        }
+        return new ReplayModelRunner(detector, rows, numSpecies);
+    }
+
+    static float[] readFloats(File file) throws IOException {
+        FloatBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()))
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        float[] values = new float[buffer.remaining()];
+        buffer.get(values);
+        return values;
+    }
+
+    static void writeFloats(File file, float[] values) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(values);
+        Files.write(file.toPath(), bytes.array());
+    }
+
+    @Override
+    public FloatBuffer runDetector(FloatBuffer input, long[] shape) {
+        float[] output = detectorOutputs.get(nextDetector);
+        nextDetector = (nextDetector + 1) % detectorOutputs.size();
+        return FloatBuffer.wrap(output);
+    }
+
+    @Override
+    public FloatBuffer runClassifier(FloatBuffer input, long[] shape) {
+        int batchSize = (int) shape[0];
+        float[] scores = new float[batchSize * numSpecies];
+        for (int b = 0; b < batchSize; b++) {
+            if (classifierRows.isEmpty()) {
+                scores[b * numSpecies] = 5f;
+            } else {
+                System.arraycopy(classifierRows.get(nextClassifier), 0, scores, b * numSpecies, numSpecies);
+                nextClassifier = (nextClassifier + 1) % classifierRows.size();
+            }
+        }
+        return FloatBuffer.wrap(scores);
+    }
+
+    int getNumSpecies() {
+        return numSpecies;
+    }
+
+    private static List<File> list(File directory, String prefix) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".bin"));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+}
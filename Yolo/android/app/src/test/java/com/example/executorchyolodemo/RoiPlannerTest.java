@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+public class RoiPlannerTest {
+    private final float[] regions = new float[12];
+
+    @Test
+    public void scansTheWholeFrameWithoutFreshTracks() {
+        RoiPlanner planner = new RoiPlanner(640, 3);
+        planner.setEnabled(true);
+        assertEquals(0, planner.plan(1, 1920, 1080, regions));
+
+        planner.publish(tracker(1, box(100, 100, 200, 180)), 1);
+        assertEquals(1, planner.plan(2, 1920, 1080, regions));
+        // Stale tracks: the stages fell too far apart
+        assertEquals(0, planner.plan(2 + RoiPlanner.MAX_TRACK_LAG_FRAMES, 1920, 1080, regions));
+
+        planner.setEnabled(false);
+        assertEquals(0, planner.plan(2, 1920, 1080, regions));
+    }
+
+    @Test
+    public void runsAFullScanEveryInterval() {
+        RoiPlanner planner = new RoiPlanner(640, 3);
+        planner.setEnabled(true);
+        planner.setFullScanInterval(4);
+        BirdTracker tracker = tracker(1, box(900, 500, 1000, 580));
+        planner.publish(tracker, 1);
+        assertEquals(1, planner.plan(2, 1920, 1080, regions));
+        assertEquals(1, planner.plan(3, 1920, 1080, regions));
+        assertEquals(0, planner.plan(4, 1920, 1080, regions));
+    }
+
+    @Test
+    public void regionsAreAtLeastOneDetectorInputAndStayInsideTheFrame() {
+        RoiPlanner planner = new RoiPlanner(640, 3);
+        planner.setEnabled(true);
+        // A small bird in the corner
+        planner.publish(tracker(1, box(10, 20, 60, 60)), 1);
+
+        assertEquals(1, planner.plan(2, 1920, 1080, regions));
+        assertArrayEquals(new float[]{0, 0, 640, 640}, java.util.Arrays.copyOf(regions, 4), 0);
+
+        // A large bird gets its margin
+        planner.publish(tracker(1, box(800, 300, 1200, 700)), 1);
+        assertEquals(1, planner.plan(2, 1920, 1080, regions));
+        assertEquals(800, regions[2] - regions[0], 1);
+        assertEquals(1000, (regions[0] + regions[2]) / 2, 1);
+    }
+
+    @Test
+    public void regionsRunAtTheAppsAnalysisResolution() {
+        // The app's 640 detector input on its 1280x960 analysis frames, upright in either
+        // orientation
+        RoiPlanner planner = new RoiPlanner(640, 3);
+        planner.setEnabled(true);
+        planner.publish(tracker(1, box(600, 400, 680, 460)), 1);
+        assertEquals(1, planner.plan(2, 1280, 960, regions));
+        assertEquals(640, regions[2] - regions[0], 0);
+        assertEquals(1, planner.plan(2, 960, 1280, regions));
+
+        // At 640x480 a region is most of the frame, so every frame is scanned whole
+        planner.publish(tracker(1, box(280, 200, 360, 260)), 1);
+        assertEquals(0, planner.plan(2, 640, 480, regions));
+        assertEquals(0, planner.plan(2, 480, 640, regions));
+    }
+
+    @Test
+    public void mergesRegionsDownToTheLimit() {
+        RoiPlanner planner = new RoiPlanner(200, 3);
+        planner.setEnabled(true);
+        planner.setMaxRegions(3);
+        planner.publish(tracker(1, box(100, 100, 150, 150), box(180, 100, 230, 150),
+                box(600, 400, 650, 450)), 1);
+
+        // The two neighbours overlap and become one region
+        assertEquals(2, planner.plan(2, 1920, 1080, regions));
+
+        planner.setMaxRegions(1);
+        assertEquals(1, planner.plan(2, 1920, 1080, regions));
+        assertEquals(25, regions[0], 1);
+        assertEquals(525, regions[3], 1);
+
+        // Birds spread over the frame: scanning it whole is cheaper
+        planner.publish(tracker(1, box(100, 100, 150, 150), box(1700, 900, 1750, 950)), 1);
+        assertEquals(0, planner.plan(2, 1920, 1080, regions));
+    }
+
+    @Test
+    public void engineMapsRegionDetectionsBackToTheFrame() throws Exception {
+        DetectionEngine engine = new DetectionEngine(new FixedBirdRunner());
+        engine.getRoiPlanner().setEnabled(true);
+        DetectionEngine.PendingFrame work = engine.obtainPendingFrame();
+        FrameSource frame = ReplayHarness.blank(1, 1280, 720).get(0);
+
+        // Full scan: the detector input is the 1280x720 frame squeezed to 640x640
+        engine.detect(frame, work);
+        assertEquals(0, work.getRegionCount());
+        assertEquals(640, centerX(work), 0.5f);
+        assertEquals(240, work.getBoxes().right(0) - work.getBoxes().left(0), 0.5f);
+        engine.classify(work);
+
+        // Region scan: a native-resolution 640x640 window around the bird
+        engine.detect(frame, work);
+        assertEquals(1, work.getRegionCount());
+        assertEquals(640, centerX(work), 0.5f);
+        assertEquals(360, (work.getBoxes().top(0) + work.getBoxes().bottom(0)) / 2, 0.5f);
+        assertEquals(120, work.getBoxes().right(0) - work.getBoxes().left(0), 0.5f);
+    }
+
+    private static float centerX(DetectionEngine.PendingFrame work) {
+        return (work.getBoxes().left(0) + work.getBoxes().right(0)) / 2;
+    }
+
+    private static float[] box(float left, float top, float right, float bottom) {
+        return new float[]{left, top, right, bottom};
+    }
+
+    private static BirdTracker tracker(long frame, float[]... boxes) {
+        DetectionBuffer detections = new DetectionBuffer();
+        for (float[] box : boxes) {
+            detections.add(box[0], box[1], box[2], box[3], 0.9f, 0);
+        }
+        BirdTracker tracker = new BirdTracker(5, 30, 0.3f, 0.5f);
+        tracker.update(detections, frame, new BirdTracker.Track[boxes.length]);
+        return tracker;
+    }
+
+    /** Always sees a 120x100 bird in the middle of the detector input. */
+    static final class FixedBirdRunner implements DetectionEngine.ModelRunner {
+        private final float[] output =
+                new float[(4 + YoloV8DecoderTest.NUM_CLASSES) * YoloV8DecoderTest.NUM_ANCHORS];
+
+        FixedBirdRunner() {
+            YoloV8DecoderTest.setBox(output, 0, 320, 320, 120, 100);
+            output[(4 + YoloV8Decoder.COCO_BIRD) * YoloV8DecoderTest.NUM_ANCHORS] = 0.9f;
+        }
+
+        @Override
+        public FloatBuffer runDetector(FloatBuffer input, long[] shape) {
+            return FloatBuffer.wrap(output);
+        }
+
+        @Override
+        public FloatBuffer runClassifier(FloatBuffer input, long[] shape) {
+            return FloatBuffer.wrap(new float[(int) shape[0] * 4]);
+        }
+    }
+}
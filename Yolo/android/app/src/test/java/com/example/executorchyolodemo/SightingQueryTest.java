@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the selection built by sighting queries.
+ */
+public class SightingQueryTest {
+
+    @Test
+    public void unfilteredFirstPageHasNoSelection() {
+        SightingQuery query = SightingQuery.all();
+
+        assertNull(query.selection(0, -1));
+        assertNull(query.selectionArgs(0, -1));
+    }
+
+    @Test
+    public void filtersAreCombinedInArgumentOrder() {
+        SightingQuery query = SightingQuery.forSession(42).species("Robin").between(1000, 2000);
+
+        assertEquals("session_id = ? AND species = ? AND time_ms >= ? AND time_ms < ?",
+                query.selection(0, -1));
+        assertArrayEquals(new String[]{"42", "Robin", "1000", "2000"}, query.selectionArgs(0, -1));
+    }
+
+    @Test
+    public void nextPageContinuesAfterCursor() {
+        SightingQuery query = SightingQuery.all().species("Wren");
+
+        assertEquals("species = ? AND (time_ms < ? OR (time_ms = ? AND _id < ?))",
+                query.selection(5000, 17));
+        assertArrayEquals(new String[]{"Wren", "5000", "5000", "17"}, query.selectionArgs(5000, 17));
+    }
+
+    @Test
+    public void placeholdersMatchArguments() {
+        SightingQuery query = SightingQuery.forSession(1).between(10, Long.MAX_VALUE);
+        String selection = query.selection(99, 3);
+        long placeholders = selection.chars().filter(c -> c == '?').count();
+
+        assertEquals(placeholders, query.selectionArgs(99, 3).length);
+    }
+}
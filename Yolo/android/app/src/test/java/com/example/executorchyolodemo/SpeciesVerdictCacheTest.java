@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for species verdict reuse, re-verification and interval adaptation.
+ */
+public class SpeciesVerdictCacheTest {
+    private final SpeciesVerdictCache cache = new SpeciesVerdictCache(4, 0.6f, 0.1f, 30, 5, 30);
+
+    @Test
+    public void overlappingBoxReusesVerdict() {
+        assertEquals(-1, cache.lookup(100, 100, 200, 200, 0.9f, 1));
+        cache.store(100, 100, 200, 200, 0.9f, 42, 0.8f, 1);
+
+        int entry = cache.lookup(105, 102, 205, 202, 0.88f, 2);
+        assertTrue(entry >= 0);
+        assertEquals(42, cache.getSpecies(entry));
+        assertEquals(0.8f, cache.getSpeciesScore(entry), 0f);
+
+        // A different bird elsewhere in the frame misses
+        assertEquals(-1, cache.lookup(400, 400, 500, 500, 0.9f, 2));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getNewMisses());
+    }
+
+    @Test
+    public void verdictIsReverifiedAfterInterval() {
+        cache.store(0, 0, 100, 100, 0.9f, 7, 0.8f, 10);
+        for (long frame = 11; frame < 15; frame++) {
+            assertTrue(cache.lookup(0, 0, 100, 100, 0.9f, frame) >= 0);
+        }
+        assertEquals(-1, cache.lookup(0, 0, 100, 100, 0.9f, 15));
+        assertEquals(1, cache.getStaleMisses());
+
+        cache.store(0, 0, 100, 100, 0.9f, 7, 0.8f, 15);
+        assertTrue(cache.lookup(0, 0, 100, 100, 0.9f, 16) >= 0);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void confidenceDropForcesReverification() {
+        cache.store(0, 0, 100, 100, 0.9f, 7, 0.8f, 1);
+        assertTrue(cache.lookup(0, 0, 100, 100, 0.82f, 2) >= 0);
+        assertEquals(-1, cache.lookup(0, 0, 100, 100, 0.7f, 3));
+        assertEquals(1, cache.getConfidenceMisses());
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void intervalFollowsLatencyBudget() {
+        // Three birds at 20 ms each against a 6 ms budget: re-verify every 10 frames
+        cache.adaptReverifyInterval(3, 20, 6);
+        assertEquals(10, cache.getReverifyInterval());
+
+        // A fast classifier is clamped to the minimum interval
+        cache.adaptReverifyInterval(1, 1, 6);
+        assertEquals(5, cache.getReverifyInterval());
+
+        cache.adaptReverifyInterval(10, 100, 1);
+        assertEquals(30, cache.getReverifyInterval());
+    }
+
+    @Test
+    public void oldEntriesExpireAndLeastRecentIsReplaced() {
+        cache.store(0, 0, 10, 10, 0.9f, 1, 0.8f, 1);
+        assertEquals(-1, cache.lookup(0, 0, 10, 10, 0.9f, 40));
+        assertEquals(0, cache.size());
+
+        for (int i = 0; i < 5; i++) {
+            cache.store(i * 100, 0, i * 100 + 50, 50, 0.9f, i, 0.8f, 50 + i);
+        }
+        assertEquals(4, cache.size());
+        // The first box was the least recently seen and has been replaced
+        assertEquals(-1, cache.lookup(0, 0, 50, 50, 0.9f, 55));
+        assertTrue(cache.lookup(400, 0, 450, 50, 0.9f, 55) >= 0);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Unit tests for the preprocessing buffer pool.
+ */
+public class TensorBufferPoolTest {
+    private static final long[] YOLO_SHAPE = {1, 3, 640, 640};
+    private static final long[] CLASSIFIER_SHAPE = {1, 3, 224, 224};
+
+    @Test
+    public void buffersAreSizedOncePerShape() {
+        TensorBufferPool pool = new TensorBufferPool();
+
+        FloatBuffer yolo = pool.floatBuffer(YOLO_SHAPE);
+        FloatBuffer classifier = pool.floatBuffer(CLASSIFIER_SHAPE);
+        assertTrue(yolo.isDirect());
+        assertEquals(3 * 640 * 640, yolo.capacity());
+        assertNotSame(yolo, classifier);
+
+        long allocations = pool.getAllocationCount();
+        for (int i = 0; i < 10; i++) {
+            assertSame(yolo, pool.floatBuffer(new long[]{1, 3, 640, 640}));
+            assertSame(classifier, pool.floatBuffer(CLASSIFIER_SHAPE));
+        }
+        assertEquals(allocations, pool.getAllocationCount());
+        assertEquals(22, pool.getAcquireCount());
+    }
+
+    @Test
+    public void scratchArraysOnlyGrow() {
+        TensorBufferPool pool = new TensorBufferPool();
+
+        float[] large = pool.floatScratch(1000);
+        assertSame(large, pool.floatScratch(10));
+        assertSame(large, pool.floatScratch(1000));
+        assertEquals(1, pool.getAllocationCount());
+
+        int[] pixels = pool.intScratch(64);
+        assertSame(pixels, pool.intScratch(64));
+        assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    public void uploadRewindsForTheRuntime() {
+        TensorBufferPool pool = new TensorBufferPool();
+        float[] scratch = pool.floatScratch(3 * 224 * 224);
+        scratch[0] = 1.5f;
+        scratch[3 * 224 * 224 - 1] = 2.5f;
+
+        FloatBuffer buffer = pool.upload(CLASSIFIER_SHAPE, scratch, 3 * 224 * 224);
+        assertEquals(0, buffer.position());
+        assertEquals(1.5f, buffer.get(0), 0f);
+        assertEquals(2.5f, buffer.get(3 * 224 * 224 - 1), 0f);
+    }
+
+    @Test
+    public void steadyStatePreprocessingAllocatesNothing() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        int width = 640;
+        int height = 480;
+        ByteBuffer y = ByteBuffer.allocateDirect(width * height);
+        ByteBuffer vu = ByteBuffer.allocateDirect(width * height / 2);
+        ByteBuffer vuFromU = vu.duplicate();
+        vuFromU.position(1);
+        ByteBuffer u = vuFromU.slice();
+        YuvFrame frame = new YuvFrame();
+        TensorBufferPool pool = new TensorBufferPool();
+
+        // First frames size the pool and the sampling tables
+        for (int i = 0; i < 3; i++) {
+            preprocessFrame(frame.set(y, u, vu, width, width, 2, width, height, 90), pool);
+        }
+        long warmAllocations = pool.getAllocationCount();
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 20; i++) {
+            preprocessFrame(frame.set(y, u, vu, width, width, 2, width, height, 90), pool);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(warmAllocations, pool.getAllocationCount());
+        // A single 640x640 frame would be ~4.9 MB; allow only measurement noise.
+        assertTrue("steady state allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    /** Mirrors BirdDetectionPipeline: one detector input and a few classifier crops per frame. */
+    private static void preprocessFrame(YuvFrame frame, TensorBufferPool pool) {
+        int yoloSize = 3 * 640 * 640;
+        float[] scratch = pool.floatScratch(yoloSize);
+        frame.fillTensor(0, 0, frame.getWidth(), frame.getHeight(), 640, 640,
+                FrameSource.Normalization.UNIT, scratch, 0);
+        pool.upload(YOLO_SHAPE, scratch, yoloSize);
+
+        int classifierSize = 3 * 224 * 224;
+        for (int crop = 0; crop < 3; crop++) {
+            float[] cropScratch = pool.floatScratch(classifierSize);
+            frame.fillTensor(10 + crop * 50, 20, 130 + crop * 50, 180, 224, 224,
+                    FrameSource.Normalization.IMAGENET, cropScratch, 0);
+            pool.upload(CLASSIFIER_SHAPE, cropScratch, classifierSize);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pytorch.executorch.Tensor;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Measures the heap allocated per frame to read the YOLOv8 and classifier outputs, copying them
+ * with {@link Tensor#getDataAsFloatArray()} as the pipeline used to, and through
+ * {@link TensorBuffers#floatView}.
+ *
+ * Allocation is read from the HotSpot per-thread counter, so the test is skipped on JVMs that do
+ * not provide it. Results are printed to stdout; the test fails if the view path allocates more
+ * than a few small objects per frame.
+ *
+ * Also times the DeepLabV3 demo's per-pixel arg-max over a 21-class mask read through such a
+ * view: element by element across the class planes, as it first did, against one bulk copy per
+ * plane, as it does now.
+ *
+ * Skipped unless run with {@code -Pbenchmarks=true}, see {@link Benchmarks}.
+ */
+public class TensorBuffersBenchmark {
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 200;
+    private static final long[] YOLO_V8_SHAPE = {1, 84, DetectionEngine.YOLO_V8_NUM_ANCHORS};
+    private static final long[] CLASSIFIER_SHAPE = {DetectionEngine.MAX_DETECTIONS, 525};
+    // A read-only FloatBuffer view plus slack for the reflective call
+    private static final long MAX_VIEW_BYTES_PER_FRAME = 1024;
+    // DeepLabV3 output: 21 PASCAL VOC classes over a 224 x 224 image
+    private static final int SEGMENTATION_CLASSES = 21;
+    private static final int SEGMENTATION_PIXELS = 224 * 224;
+    private static final int SEGMENTATION_ITERATIONS = 20;
+
+    @BeforeClass
+    public static void onlyWhenRequested() {
+        Benchmarks.assumeRequested();
+    }
+
+    @Test
+    public void compareAllocations() {
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        assumeTrue("Per-thread allocation counter unavailable", threads != null);
+        assumeTrue("Tensor buffer accessor not found", TensorBuffers.isZeroCopy());
+
+        Tensor detector = tensor(YOLO_V8_SHAPE);
+        Tensor classifier = tensor(CLASSIFIER_SHAPE);
+        assertEquals(checksum(FloatBuffer.wrap(detector.getDataAsFloatArray())),
+                checksum(TensorBuffers.floatView(detector)), 0f);
+
+        float sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += copy(detector) + copy(classifier);
+            sink += view(detector) + view(classifier);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long copyStart = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += copy(detector) + copy(classifier);
+        }
+        long copyBytes = (threads.getThreadAllocatedBytes(threadId) - copyStart) / ITERATIONS;
+
+        long viewStart = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += view(detector) + view(classifier);
+        }
+        long viewBytes = (threads.getThreadAllocatedBytes(threadId) - viewStart) / ITERATIONS;
+
+        System.out.println(String.format(Locale.US,
+                "Output read allocation per frame: copy=%d bytes, view=%d bytes (checksum %.1f)",
+                copyBytes, viewBytes, sink));
+        assertTrue("View path allocated " + viewBytes + " bytes per frame",
+                viewBytes <= MAX_VIEW_BYTES_PER_FRAME);
+    }
+
+    @Test
+    public void compareSegmentationArgMax() {
+        FloatBuffer scores = directScores(SEGMENTATION_CLASSES * SEGMENTATION_PIXELS);
+        int[] strided = new int[SEGMENTATION_PIXELS];
+        int[] planar = new int[SEGMENTATION_PIXELS];
+        float[] best = new float[SEGMENTATION_PIXELS];
+        float[] plane = new float[SEGMENTATION_PIXELS];
+
+        for (int i = 0; i < WARMUP / 4; i++) {
+            argMaxStrided(scores, strided);
+            argMaxPlanes(scores, planar, best, plane);
+        }
+        assertArrayEquals(strided, planar);
+
+        long stridedStart = System.nanoTime();
+        for (int i = 0; i < SEGMENTATION_ITERATIONS; i++) {
+            argMaxStrided(scores, strided);
+        }
+        long stridedNanos = (System.nanoTime() - stridedStart) / SEGMENTATION_ITERATIONS;
+
+        long planarStart = System.nanoTime();
+        for (int i = 0; i < SEGMENTATION_ITERATIONS; i++) {
+            argMaxPlanes(scores, planar, best, plane);
+        }
+        long planarNanos = (System.nanoTime() - planarStart) / SEGMENTATION_ITERATIONS;
+
+        System.out.println(String.format(Locale.US,
+                "Segmentation arg-max per image: per-element=%.2f ms, per-plane=%.2f ms",
+                stridedNanos / 1e6, planarNanos / 1e6));
+    }
+
+    /** The arg-max as first written against the view: pixel-major, one get() per score. */
+    private static void argMaxStrided(FloatBuffer scores, int[] outClass) {
+        for (int p = 0; p < SEGMENTATION_PIXELS; p++) {
+            int bestClass = 0;
+            float bestScore = -Float.MAX_VALUE;
+            for (int c = 0; c < SEGMENTATION_CLASSES; c++) {
+                float score = scores.get(c * SEGMENTATION_PIXELS + p);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestClass = c;
+                }
+            }
+            outClass[p] = bestClass;
+        }
+    }
+
+    /** Mirrors the demo's TensorBuffers.argMaxPlanes: class-major over bulk-copied planes. */
+    private static void argMaxPlanes(FloatBuffer scores, int[] outClass, float[] best, float[] plane) {
+        FloatBuffer data = scores.duplicate();
+        data.position(0);
+        data.get(best, 0, SEGMENTATION_PIXELS);
+        Arrays.fill(outClass, 0);
+        for (int c = 1; c < SEGMENTATION_CLASSES; c++) {
+            data.get(plane, 0, SEGMENTATION_PIXELS);
+            for (int p = 0; p < SEGMENTATION_PIXELS; p++) {
+                if (plane[p] > best[p]) {
+                    best[p] = plane[p];
+                    outClass[p] = c;
+                }
+            }
+        }
+    }
+
+    /** A read-only direct buffer, like the view of a native output tensor. */
+    private static FloatBuffer directScores(int count) {
+        FloatBuffer scores = ByteBuffer.allocateDirect(count * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int i = 0; i < count; i++) {
+            scores.put(((i * 7919) % 1009) / 1009f);
+        }
+        scores.clear();
+        return scores.asReadOnlyBuffer();
+    }
+
+    private static float copy(Tensor tensor) {
+        float[] data = tensor.getDataAsFloatArray();
+        return data[data.length - 1];
+    }
+
+    private static float view(Tensor tensor) {
+        FloatBuffer data = TensorBuffers.floatView(tensor);
+        return data.get(data.limit() - 1);
+    }
+
+    private static float checksum(FloatBuffer data) {
+        float sum = 0;
+        for (int i = 0; i < data.limit(); i += 97) {
+            sum += data.get(i);
+        }
+        return sum;
+    }
+
+    private static Tensor tensor(long[] shape) {
+        float[] data = new float[(int) (shape[0] * shape[1] * (shape.length > 2 ? shape[2] : 1))];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i % 251) / 251f;
+        }
+        return Tensor.fromBlob(data, shape);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                if (threads.isThreadAllocatedMemorySupported()) {
+                    threads.setThreadAllocatedMemoryEnabled(true);
+                    return threads;
+                }
+            }
+        } catch (LinkageError | UnsupportedOperationException e) {
+            // Not a HotSpot JVM
+        }
+        return null;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the thumbnail cache, using strings as images one byte per character, and for
+ * the decode subsampling.
+ */
+public class ThumbnailCacheTest {
+    private static final int VIEW_SIZE = 100;
+
+    // Files on "disk"; a path that is absent decodes to null
+    private final Map<String, String> files = new ConcurrentHashMap<>();
+    private final List<String> decoded = Collections.synchronizedList(new ArrayList<>());
+    private final ExecutorService decodeThread = Executors.newSingleThreadExecutor();
+    // Stands in for the main thread: deliveries wait here until the test runs them
+    private final LinkedBlockingQueue<Runnable> mainThread = new LinkedBlockingQueue<>();
+    private final List<String> delivered = new ArrayList<>();
+    private CountDownLatch blockDecodeOf;
+    private final CountDownLatch decodeBlocked = new CountDownLatch(1);
+
+    private ThumbnailCache<String> newCache(int maxBytes) {
+        return new ThumbnailCache<>(maxBytes, (path, width, height) -> {
+            decoded.add(path);
+            if (blockDecodeOf != null && path.equals("slow")) {
+                decodeBlocked.countDown();
+                try {
+                    blockDecodeOf.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return files.get(path);
+        }, String::length, decodeThread, mainThread::add);
+    }
+
+    private ThumbnailCache.Request load(ThumbnailCache<String> cache, String path) {
+        return cache.load(path, VIEW_SIZE, VIEW_SIZE, delivered::add);
+    }
+
+    /** Runs the next delivery posted to the main thread. */
+    private void deliverNext() throws InterruptedException {
+        Runnable delivery = mainThread.poll(5, TimeUnit.SECONDS);
+        assertNotNull("No delivery", delivery);
+        delivery.run();
+    }
+
+    @After
+    public void stopDecoder() {
+        decodeThread.shutdownNow();
+    }
+
+    @Test
+    public void secondLoadIsAMemoryHit() throws Exception {
+        ThumbnailCache<String> cache = newCache(100);
+        files.put("robin.jpg", "robin");
+
+        assertNotNull(load(cache, "robin.jpg"));
+        assertTrue(delivered.isEmpty());
+        deliverNext();
+        assertNull(load(cache, "robin.jpg"));
+
+        assertEquals(List.of("robin", "robin"), delivered);
+        assertEquals(List.of("robin.jpg"), decoded);
+        assertEquals(1, cache.getMemoryHits());
+        assertEquals(1, cache.getDiskLoads());
+        assertEquals(0.5, cache.getHitRate(), 0);
+        assertEquals(5, cache.getMemoryBytes());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvictedToStayWithinBudget() throws Exception {
+        ThumbnailCache<String> cache = newCache(10);
+        files.put("a", "aaaa");
+        files.put("b", "bbbb");
+        files.put("c", "cccc");
+
+        load(cache, "a");
+        deliverNext();
+        load(cache, "b");
+        deliverNext();
+        // Touching "a" leaves "b" as the least recently used
+        assertNull(load(cache, "a"));
+        load(cache, "c");
+        deliverNext();
+
+        assertEquals(8, cache.getMemoryBytes());
+        assertNull(load(cache, "a"));
+        assertNull(load(cache, "c"));
+        assertNotNull(load(cache, "b"));
+        deliverNext();
+        assertEquals(List.of("a", "b", "c", "b"), decoded);
+        assertEquals(3, cache.getMemoryHits());
+    }
+
+    @Test
+    public void cancelledLoadsAreNotDelivered() throws Exception {
+        ThumbnailCache<String> cache = newCache(100);
+        files.put("slow", "heron");
+        files.put("queued", "wren");
+        blockDecodeOf = new CountDownLatch(1);
+
+        ThumbnailCache.Request running = load(cache, "slow");
+        decodeBlocked.await();
+        ThumbnailCache.Request queued = load(cache, "queued");
+        // The row was recycled: one load is mid-decode, the other has not started
+        running.cancel();
+        queued.cancel();
+        assertTrue(running.isCancelled());
+        blockDecodeOf.countDown();
+        deliverNext();
+
+        assertTrue(delivered.isEmpty());
+        assertFalse(decoded.contains("queued"));
+        assertEquals(2, cache.getCancellations());
+        // The decode that finished still fills the memory cache
+        assertNull(load(cache, "slow"));
+        assertEquals(List.of("heron"), delivered);
+    }
+
+    @Test
+    public void missingFilesAreNotCached() throws Exception {
+        ThumbnailCache<String> cache = newCache(100);
+
+        load(cache, "pending.jpg");
+        deliverNext();
+        assertNull(cache.load(null, VIEW_SIZE, VIEW_SIZE, delivered::add));
+
+        assertEquals(2, cache.getFailures());
+        assertEquals(0, cache.getMemoryBytes());
+
+        // The thumbnail writer has since finished the file
+        files.put("pending.jpg", "finch");
+        assertNotNull(load(cache, "pending.jpg"));
+        deliverNext();
+        assertEquals(Arrays.asList(null, null, "finch"), delivered);
+    }
+
+    @Test
+    public void smallImagesAreDecodedAtFullSize() {
+        assertEquals(1, ThumbnailCache.calculateInSampleSize(150, 120, 210, 210));
+        assertEquals(1, ThumbnailCache.calculateInSampleSize(300, 300, 200, 200));
+    }
+
+    @Test
+    public void largeImagesUseLargestPowerOfTwoThatStillCoversTheView() {
+        assertEquals(2, ThumbnailCache.calculateInSampleSize(420, 420, 210, 210));
+        assertEquals(4, ThumbnailCache.calculateInSampleSize(1920, 1080, 240, 240));
+        // The shorter side decides, so neither side ends up smaller than the view
+        assertEquals(2, ThumbnailCache.calculateInSampleSize(4000, 500, 200, 200));
+    }
+
+    @Test
+    public void unknownViewSizeDecodesAtFullSize() {
+        assertEquals(1, ThumbnailCache.calculateInSampleSize(4000, 3000, 0, -1));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Unit tests for the background thumbnail writer, using strings as images.
+ */
+public class ThumbnailWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> recycled = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch encoderEntered = new CountDownLatch(1);
+    private final CountDownLatch releaseEncoder = new CountDownLatch(1);
+
+    private ThumbnailWriter<String> newWriter(int capacity, boolean blockFirstWrite) {
+        return new ThumbnailWriter<>(capacity, (image, out) -> {
+            if (blockFirstWrite) {
+                encoderEntered.countDown();
+                try {
+                    releaseEncoder.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (image.equals("bad")) {
+                throw new IOException("cannot encode");
+            }
+            out.write(image.getBytes(StandardCharsets.UTF_8));
+        }, recycled::add);
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void writesAndRecyclesAfterPersisting() throws Exception {
+        ThumbnailWriter<String> writer = newWriter(4, false);
+        File file = folder.newFile("a.jpg");
+
+        assertTrue(writer.submit(file, "robin"));
+        assertTrue(writer.flush(1000));
+
+        assertEquals("robin", read(file));
+        assertEquals(Collections.singletonList("robin"), recycled);
+        assertEquals(1, writer.getWritten());
+        assertFalse(writer.isPending(file));
+        writer.close(1000);
+    }
+
+    @Test
+    public void burstToSameFileIsCoalesced() throws Exception {
+        ThumbnailWriter<String> writer = newWriter(4, true);
+        File busy = new File(folder.getRoot(), "busy.jpg");
+        File file = new File(folder.getRoot(), "b.jpg");
+
+        assertTrue(writer.isIdle());
+        writer.submit(busy, "first");
+        encoderEntered.await();
+        assertFalse(writer.isIdle());
+        assertTrue(writer.submit(file, "blurry"));
+        assertTrue(writer.submit(file, "sharper"));
+        assertTrue(writer.coalesce(file, "sharpest"));
+        assertTrue(writer.isPending(file));
+        releaseEncoder.countDown();
+        assertTrue(writer.flush(1000));
+
+        assertEquals("sharpest", read(file));
+        assertTrue(writer.isIdle());
+        assertEquals(2, writer.getCoalesced());
+        assertEquals(2, writer.getWritten());
+        assertTrue(recycled.containsAll(Arrays.asList("blurry", "sharper", "sharpest")));
+        // Nothing pending any more, so a late frame is not merged into a finished write
+        assertFalse(writer.coalesce(file, "late"));
+        writer.close(1000);
+    }
+
+    @Test
+    public void fullQueueRejectsWithoutTakingOwnership() throws Exception {
+        ThumbnailWriter<String> writer = newWriter(1, true);
+        writer.submit(new File(folder.getRoot(), "busy.jpg"), "first");
+        encoderEntered.await();
+
+        assertTrue(writer.submit(new File(folder.getRoot(), "1.jpg"), "queued"));
+        assertFalse(writer.submit(new File(folder.getRoot(), "2.jpg"), "rejected"));
+        assertEquals(1, writer.getRejected());
+        assertEquals(1, writer.getQueueDepth());
+        assertFalse(recycled.contains("rejected"));
+
+        releaseEncoder.countDown();
+        writer.close(1000);
+    }
+
+    @Test
+    public void fileAppearsOnlyOnceFullyWritten() throws Exception {
+        ThumbnailWriter<String> writer = newWriter(2, true);
+        File file = new File(folder.getRoot(), "c.jpg");
+
+        writer.submit(file, "wren");
+        encoderEntered.await();
+        assertFalse(file.exists());
+        releaseEncoder.countDown();
+        assertTrue(writer.flush(1000));
+
+        assertEquals("wren", read(file));
+        assertEquals(Collections.singletonList("c.jpg"), Arrays.asList(folder.getRoot().list()));
+        writer.close(1000);
+    }
+
+    @Test
+    public void failedWriteLeavesNoPartialFile() throws Exception {
+        ThumbnailWriter<String> writer = newWriter(2, false);
+        File file = new File(folder.getRoot(), "bad.jpg");
+
+        writer.submit(file, "bad");
+        assertTrue(writer.flush(1000));
+
+        assertFalse(file.exists());
+        assertEquals(0, folder.getRoot().list().length);
+        assertEquals(1, writer.getFailed());
+        assertEquals(Collections.singletonList("bad"), recycled);
+        writer.close(1000);
+    }
+
+    @Test
+    public void cancelAndCloseRecycleUnwrittenImages() throws Exception {
+        ThumbnailWriter<String> writer = newWriter(4, true);
+        writer.submit(new File(folder.getRoot(), "busy.jpg"), "first");
+        encoderEntered.await();
+        File cancelled = new File(folder.getRoot(), "c.jpg");
+        writer.submit(cancelled, "cancelled");
+
+        writer.cancelPending();
+        assertTrue(recycled.contains("cancelled"));
+        releaseEncoder.countDown();
+        writer.close(1000);
+
+        assertFalse(cancelled.exists());
+        assertFalse(writer.submit(new File(folder.getRoot(), "d.jpg"), "after close"));
+        assertEquals(Arrays.asList("cancelled", "first"), recycled);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the previous YOLOv8 decode (copy the output to a float[], arg-max over all classes)
+ * with {@link YoloV8Decoder} reading the output buffer in place.
+ *
+ * By default it runs over synthetic outputs. To use captured model outputs, point the
+ * {@code yolo.outputDumps} system property at a directory of {@code .bin} files, each holding
+ * one raw 84 x 8400 float32 little-endian output tensor, e.g. written from the detection stage
+ * with {@code FileChannel.write} on the tensor's buffer:
+ *
+ * <pre>./gradlew :app:testDebugUnitTest --tests '*YoloV8DecoderBenchmark' -Pbenchmarks=true -Pyolo.outputDumps=/path</pre>
+ *
+ * Results are printed to stdout; the test fails only if the two decoders disagree.
+ *
+ * Skipped unless run with {@code -Pbenchmarks=true}, see {@link Benchmarks}.
+ */
+public class YoloV8DecoderBenchmark {
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 100;
+    private static final int IMAGE_WIDTH = 1280;
+    private static final int IMAGE_HEIGHT = 720;
+
+    @BeforeClass
+    public static void onlyWhenRequested() {
+        Benchmarks.assumeRequested();
+    }
+
+    @Test
+    public void compareDecoders() throws IOException {
+        List<FloatBuffer> outputs = loadOutputs();
+        YoloV8Decoder decoder = YoloV8DecoderTest.newDecoder(YoloV8Decoder.COCO_BIRD);
+        DetectionBuffer legacyBoxes = new DetectionBuffer();
+        DetectionBuffer boxes = new DetectionBuffer();
+
+        for (FloatBuffer output : outputs) {
+            legacyBoxes.clear();
+            boxes.clear();
+            legacyDecode(output, legacyBoxes);
+            decoder.decode(output, IMAGE_WIDTH, IMAGE_HEIGHT, boxes);
+            assertEquals(legacyBoxes.size(), boxes.size());
+        }
+
+        for (int i = 0; i < WARMUP; i++) {
+            FloatBuffer output = outputs.get(i % outputs.size());
+            legacyBoxes.clear();
+            legacyDecode(output, legacyBoxes);
+            boxes.clear();
+            decoder.decode(output, IMAGE_WIDTH, IMAGE_HEIGHT, boxes);
+        }
+
+        long legacyStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            legacyBoxes.clear();
+            legacyDecode(outputs.get(i % outputs.size()), legacyBoxes);
+        }
+        double legacyMicros = (System.nanoTime() - legacyStart) / 1e3 / ITERATIONS;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            boxes.clear();
+            decoder.decode(outputs.get(i % outputs.size()), IMAGE_WIDTH, IMAGE_HEIGHT, boxes);
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / ITERATIONS;
+
+        System.out.println(String.format(Locale.US,
+                "YoloV8DecoderBenchmark: %d outputs, legacy %.1f us/frame, class-filtered %.1f us/frame (%.1fx)",
+                outputs.size(), legacyMicros, micros, legacyMicros / micros));
+    }
+
+    /** Mirrors the old pipeline path, including the full getDataAsFloatArray copy. */
+    private static void legacyDecode(FloatBuffer output, DetectionBuffer out) {
+        float[] copy = new float[output.limit()];
+        output.duplicate().get(copy);
+        YoloV8DecoderTest.legacyDecode(copy, IMAGE_WIDTH, IMAGE_HEIGHT, YoloV8Decoder.COCO_BIRD, out);
+    }
+
+    private static List<FloatBuffer> loadOutputs() throws IOException {
+        List<FloatBuffer> outputs = new ArrayList<>();
+        String dumpDir = System.getProperty("yolo.outputDumps");
+        File[] dumps = dumpDir != null ? new File(dumpDir).listFiles((dir, name) -> name.endsWith(".bin")) : null;
+        if (dumps != null && dumps.length > 0) {
+            for (File dump : dumps) {
+                try (RandomAccessFile file = new RandomAccessFile(dump, "r")) {
+                    ByteBuffer bytes = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                    outputs.add(bytes.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+                }
+            }
+            return outputs;
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 4; i++) {
+            float[] output = YoloV8DecoderTest.syntheticOutput(random, 30);
+            FloatBuffer direct = ByteBuffer.allocateDirect(output.length * 4)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            direct.put(output).rewind();
+            outputs.add(direct);
+        }
+        return outputs;
+    }
+}
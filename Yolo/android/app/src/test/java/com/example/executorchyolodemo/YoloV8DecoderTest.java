@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * Checks the class-filtered YOLOv8 decoder against the full arg-max decode it replaces.
+ */
+public class YoloV8DecoderTest {
+    static final int NUM_CLASSES = 80;
+    static final int NUM_ANCHORS = 8400;
+    static final int INPUT_SIZE = 640;
+    static final float THRESHOLD = 0.75f;
+    static final float MIN_BOX = 40;
+
+    @Test
+    public void matchesFullArgMaxDecode() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 5; trial++) {
+            float[] output = syntheticOutput(random, 40);
+            DetectionBuffer expected = new DetectionBuffer();
+            legacyDecode(output, 1280, 720, YoloV8Decoder.COCO_BIRD, expected);
+            assertTrue(expected.size() > 0);
+
+            DetectionBuffer actual = new DetectionBuffer();
+            newDecoder(YoloV8Decoder.COCO_BIRD).decode(FloatBuffer.wrap(output), 1280, 720, actual);
+
+            assertSame(expected, actual);
+        }
+    }
+
+    @Test
+    public void readsDirectBuffersWithoutMovingThem() {
+        float[] output = syntheticOutput(new Random(3), 20);
+        FloatBuffer direct = ByteBuffer.allocateDirect(output.length * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        direct.put(output).rewind();
+
+        DetectionBuffer expected = new DetectionBuffer();
+        legacyDecode(output, 640, 480, YoloV8Decoder.COCO_BIRD, expected);
+        DetectionBuffer actual = new DetectionBuffer();
+        newDecoder(YoloV8Decoder.COCO_BIRD).decode(direct, 640, 480, actual);
+
+        assertSame(expected, actual);
+        assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void rejectsTargetThatIsNotTheBestClass() {
+        float[] output = new float[(4 + NUM_CLASSES) * NUM_ANCHORS];
+        setBox(output, 0, 320, 320, 100, 100);
+        output[(4 + YoloV8Decoder.COCO_BIRD) * NUM_ANCHORS] = 0.8f;
+        output[(4 + 16) * NUM_ANCHORS] = 0.9f; // dog wins
+        setBox(output, 1, 320, 320, 100, 100);
+        output[(4 + YoloV8Decoder.COCO_BIRD) * NUM_ANCHORS + 1] = 0.8f;
+        output[(4 + 3) * NUM_ANCHORS + 1] = 0.8f; // tie goes to the lower class index
+
+        DetectionBuffer out = new DetectionBuffer();
+        newDecoder(YoloV8Decoder.COCO_BIRD).decode(FloatBuffer.wrap(output), 640, 640, out);
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void keepsEveryConfiguredClass() {
+        float[] output = new float[(4 + NUM_CLASSES) * NUM_ANCHORS];
+        setBox(output, 10, 100, 100, 80, 80);
+        output[(4 + YoloV8Decoder.COCO_BIRD) * NUM_ANCHORS + 10] = 0.9f;
+        setBox(output, 20, 400, 400, 80, 80);
+        output[(4 + 15) * NUM_ANCHORS + 20] = 0.95f;
+
+        DetectionBuffer birdsOnly = new DetectionBuffer();
+        newDecoder(YoloV8Decoder.COCO_BIRD).decode(FloatBuffer.wrap(output), 640, 640, birdsOnly);
+        assertEquals(1, birdsOnly.size());
+
+        DetectionBuffer birdsAndCats = new DetectionBuffer();
+        newDecoder(YoloV8Decoder.COCO_BIRD, 15).decode(FloatBuffer.wrap(output), 640, 640, birdsAndCats);
+        assertEquals(2, birdsAndCats.size());
+        assertEquals(YoloV8Decoder.COCO_BIRD, birdsAndCats.classId(0));
+        assertEquals(15, birdsAndCats.classId(1));
+        assertEquals(60f, birdsAndCats.left(0), 1e-4f);
+        assertEquals(440f, birdsAndCats.right(1), 1e-4f);
+    }
+
+    static YoloV8Decoder newDecoder(int... targetClasses) {
+        return new YoloV8Decoder(NUM_CLASSES, NUM_ANCHORS, INPUT_SIZE, THRESHOLD, MIN_BOX, targetClasses);
+    }
+
+    /**
+     * Output shaped like a real frame: plausible boxes everywhere, low class scores, and a few
+     * confident clusters for birds and competing classes.
+     */
+    static float[] syntheticOutput(Random random, int confidentAnchors) {
+        float[] output = new float[(4 + NUM_CLASSES) * NUM_ANCHORS];
+        for (int a = 0; a < NUM_ANCHORS; a++) {
+            setBox(output, a, 1 + random.nextFloat() * 638, 1 + random.nextFloat() * 638,
+                    random.nextFloat() * 300, random.nextFloat() * 300);
+            for (int c = 0; c < NUM_CLASSES; c++) {
+                output[(4 + c) * NUM_ANCHORS + a] = random.nextFloat() * 0.02f;
+            }
+        }
+        for (int i = 0; i < confidentAnchors; i++) {
+            int anchor = random.nextInt(NUM_ANCHORS);
+            output[(4 + YoloV8Decoder.COCO_BIRD) * NUM_ANCHORS + anchor] = 0.7f + random.nextFloat() * 0.3f;
+            if (i % 3 == 0) {
+                int rival = random.nextInt(NUM_CLASSES);
+                output[(4 + rival) * NUM_ANCHORS + anchor] = 0.7f + random.nextFloat() * 0.3f;
+            }
+        }
+        return output;
+    }
+
+    /** The previous decoder: arg-max over all classes for every anchor, then keep the target. */
+    static void legacyDecode(float[] output, int imageWidth, int imageHeight, int targetClass,
+                             DetectionBuffer out) {
+        float scaleX = (float) imageWidth / INPUT_SIZE;
+        float scaleY = (float) imageHeight / INPUT_SIZE;
+        for (int i = 0; i < NUM_ANCHORS; i++) {
+            float x = output[i];
+            float y = output[NUM_ANCHORS + i];
+            float w = output[2 * NUM_ANCHORS + i];
+            float h = output[3 * NUM_ANCHORS + i];
+            if (x <= 0 || y <= 0 || w <= 0 || h <= 0 || w > INPUT_SIZE || h > INPUT_SIZE) {
+                continue;
+            }
+            float maxClassScore = 0;
+            int bestClass = -1;
+            for (int c = 0; c < NUM_CLASSES; c++) {
+                float classScore = output[(4 + c) * NUM_ANCHORS + i];
+                if (classScore > maxClassScore) {
+                    maxClassScore = classScore;
+                    bestClass = c;
+                }
+            }
+            if (maxClassScore > THRESHOLD && bestClass == targetClass) {
+                float left = Math.max(0, x * scaleX - w * scaleX / 2);
+                float top = Math.max(0, y * scaleY - h * scaleY / 2);
+                float right = Math.min(imageWidth, x * scaleX + w * scaleX / 2);
+                float bottom = Math.min(imageHeight, y * scaleY + h * scaleY / 2);
+                if (right - left >= MIN_BOX && bottom - top >= MIN_BOX) {
+                    out.add(left, top, right, bottom, maxClassScore, bestClass);
+                }
+            }
+        }
+    }
+
+    static void setBox(float[] output, int anchor, float x, float y, float w, float h) {
+        output[anchor] = x;
+        output[NUM_ANCHORS + anchor] = y;
+        output[2 * NUM_ANCHORS + anchor] = w;
+        output[3 * NUM_ANCHORS + anchor] = h;
+    }
+
+    private static void assertSame(DetectionBuffer expected, DetectionBuffer actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.left(i), actual.left(i), 1e-3f);
+            assertEquals(expected.top(i), actual.top(i), 1e-3f);
+            assertEquals(expected.right(i), actual.right(i), 1e-3f);
+            assertEquals(expected.bottom(i), actual.bottom(i), 1e-3f);
+            assertEquals(expected.score(i), actual.score(i), 0f);
+            assertEquals(expected.classId(i), actual.classId(i));
+        }
+    }
+}
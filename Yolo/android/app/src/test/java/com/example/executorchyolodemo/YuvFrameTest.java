@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchyolodemo;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Unit tests for the direct YUV_420_888 to tensor conversion.
+ */
+public class YuvFrameTest {
+
+    /** Semi-planar (NV21-style) frame with padded rows, as most camera HALs deliver it. */
+    private static YuvFrame semiPlanarFrame(byte[][] luma, int u, int v, int rowPadding, int rotation) {
+        int height = luma.length;
+        int width = luma[0].length;
+        int rowStride = width + rowPadding;
+
+        ByteBuffer y = ByteBuffer.allocateDirect(rowStride * height);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                y.put(row * rowStride + col, luma[row][col]);
+            }
+        }
+
+        // Interleaved VU plane; U and V are views into it offset by one byte.
+        ByteBuffer vu = ByteBuffer.allocateDirect(rowStride * height / 2);
+        for (int i = 0; i + 1 < vu.capacity(); i += 2) {
+            vu.put(i, (byte) v);
+            vu.put(i + 1, (byte) u);
+        }
+        ByteBuffer vPlane = vu.duplicate();
+        vu.position(1);
+        ByteBuffer uPlane = vu.slice();
+
+        return new YuvFrame().set(y, uPlane, vPlane, rowStride, rowStride, 2, width, height, rotation);
+    }
+
+    private static byte[][] gradient(int width, int height) {
+        byte[][] luma = new byte[height][width];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                luma[row][col] = (byte) (row * width + col);
+            }
+        }
+        return luma;
+    }
+
+    @Test
+    public void neutralChromaProducesGray() {
+        YuvFrame frame = semiPlanarFrame(gradient(4, 2), 128, 128, 3, 0);
+        int[] argb = new int[8];
+        frame.fillArgb(0, 0, 4, 2, 4, 2, argb, 0);
+
+        for (int i = 0; i < 8; i++) {
+            assertEquals(0xff000000 | (i << 16) | (i << 8) | i, argb[i]);
+        }
+    }
+
+    @Test
+    public void colourConversionMatchesJfif() {
+        byte[][] luma = {{(byte) 100, (byte) 100}, {(byte) 100, (byte) 100}};
+        YuvFrame frame = semiPlanarFrame(luma, 90, 200, 0, 0);
+        int[] argb = new int[1];
+        frame.fillArgb(0, 0, 1, 1, 1, 1, argb, 0);
+
+        int r = Math.round(100 + 1.402f * (200 - 128));
+        int g = Math.round(100 - 0.344136f * (90 - 128) - 0.714136f * (200 - 128));
+        int b = Math.round(100 + 1.772f * (90 - 128));
+        assertEquals(r, (argb[0] >> 16) & 0xff, 1);
+        assertEquals(g, (argb[0] >> 8) & 0xff, 1);
+        assertEquals(b, argb[0] & 0xff, 1);
+    }
+
+    @Test
+    public void rotationMapsSensorToUpright() {
+        // Sensor frame is 3 wide, 2 high:  0 1 2 / 3 4 5
+        byte[][] luma = gradient(3, 2);
+        int[][] expected = {
+                {3, 0, 4, 1, 5, 2},     // 90: rows become 3 0 / 4 1 / 5 2
+                {5, 4, 3, 2, 1, 0},     // 180
+                {2, 5, 1, 4, 0, 3},     // 270: rows become 2 5 / 1 4 / 0 3
+        };
+        int[] rotations = {90, 180, 270};
+
+        for (int r = 0; r < rotations.length; r++) {
+            YuvFrame frame = semiPlanarFrame(luma, 128, 128, 1, rotations[r]);
+            int width = frame.getWidth();
+            int height = frame.getHeight();
+            assertEquals(rotations[r] == 180 ? 3 : 2, width);
+
+            int[] argb = new int[6];
+            frame.fillArgb(0, 0, width, height, width, height, argb, 0);
+            for (int i = 0; i < 6; i++) {
+                assertEquals("rotation " + rotations[r] + " pixel " + i, expected[r][i], argb[i] & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void fillTensorResizesIntoPlanarChannels() {
+        YuvFrame frame = semiPlanarFrame(gradient(8, 8), 128, 128, 0, 0);
+        float[] tensor = new float[3 * 4 * 4 + 5];
+        frame.fillTensor(0, 0, 8, 8, 4, 4, FrameSource.Normalization.UNIT, tensor, 5);
+
+        // Destination (1, 2) samples source (3, 5) -> luma 5 * 8 + 3
+        int index = 5 + 2 * 4 + 1;
+        float expected = (5 * 8 + 3) / 255.0f;
+        assertEquals(expected, tensor[index], 1e-6f);
+        assertEquals(expected, tensor[index + 16], 1e-6f);
+        assertEquals(expected, tensor[index + 32], 1e-6f);
+    }
+
+    @Test
+    public void cropRegionIsSampledInUprightSpace() {
+        YuvFrame frame = semiPlanarFrame(gradient(4, 4), 128, 128, 2, 90);
+        float[] tensor = new float[3 * 2 * 2];
+        frame.fillTensor(2, 0, 4, 2, 2, 2, FrameSource.Normalization.UNIT, tensor, 0);
+
+        // Upright (ux, uy) comes from sensor (uy, 3 - ux)
+        assertEquals((1 * 4 + 0) / 255.0f, tensor[0], 1e-6f);
+        assertEquals((0 * 4 + 0) / 255.0f, tensor[1], 1e-6f);
+        assertEquals((1 * 4 + 1) / 255.0f, tensor[2], 1e-6f);
+        assertEquals((0 * 4 + 1) / 255.0f, tensor[3], 1e-6f);
+    }
+
+    @Test
+    public void normalizationTablesApplyMeanAndStd() {
+        YuvFrame frame = semiPlanarFrame(new byte[][]{{(byte) 255, (byte) 255}, {(byte) 255, (byte) 255}},
+                128, 128, 0, 0);
+        float[] tensor = new float[3];
+        frame.fillTensor(0, 0, 2, 2, 1, 1, FrameSource.Normalization.IMAGENET, tensor, 0);
+
+        assertEquals((1f - 0.485f) / 0.229f, tensor[0], 1e-5f);
+        assertEquals((1f - 0.456f) / 0.224f, tensor[1], 1e-5f);
+        assertEquals((1f - 0.406f) / 0.225f, tensor[2], 1e-5f);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.democifar10
+
+import android.content.Context
+import org.json.JSONObject
+import java.io.File
+import java.io.FileNotFoundException
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+
+/**
+ * Copies assets to files so native code can open them by path.
+ *
+ * An asset is copied again only when it changed: the expected size and SHA-256 come from
+ * asset_manifest.json when the build provides one, otherwise from the app version. A stamp next
+ * to each extracted file records what it was extracted from, so a file left by an older APK or
+ * cut short by a crash is never reused. Copies go to a temp file that is verified, synced and
+ * renamed over the target.
+ */
+class AssetExtractor(
+    private val open: (String) -> InputStream,
+    private val directory: File,
+    private val appVersion: String,
+) {
+    /** Where an asset ended up and what it cost to get it there. */
+    class Result(val file: File, val extracted: Boolean, val bytes: Long, val millis: Long)
+
+    private class Entry(val size: Long, val sha256: String)
+
+    private val manifest: Map<String, Entry> by lazy { readManifest() }
+
+    /**
+     * Returns the file for [name], extracting it first if it is missing or out of date.
+     *
+     * @throws IOException if the asset cannot be read, or does not match its manifest entry
+     */
+    @Throws(IOException::class)
+    fun extract(name: String): Result {
+        val target = File(directory, name)
+        val stamp = File(directory, name + STAMP_SUFFIX)
+        val entry = manifest[name]
+        val version = if (entry != null) "sha256:${entry.sha256}" else "app:$appVersion"
+
+        val recorded = readStamp(stamp)
+        if (recorded != null && recorded.first == version && target.isFile && target.length() == recorded.second) {
+            return Result(target, false, target.length(), 0)
+        }
+
+        val start = System.nanoTime()
+        target.parentFile?.let { parent ->
+            if (!parent.isDirectory && !parent.mkdirs()) throw IOException("Cannot create $parent")
+        }
+        // The stamp goes first: if the copy is interrupted the next launch starts over
+        if (stamp.exists() && !stamp.delete()) throw IOException("Cannot delete $stamp")
+        val temp = File(directory, name + TEMP_SUFFIX)
+        val bytes: Long
+        try {
+            bytes = copy(name, temp, entry)
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } finally {
+            if (temp.exists()) temp.delete()
+        }
+        writeStamp(stamp, version, bytes)
+        return Result(target, true, bytes, (System.nanoTime() - start) / 1_000_000)
+    }
+
+    private fun copy(name: String, temp: File, entry: Entry?): Long {
+        val digest = MessageDigest.getInstance("SHA-256")
+        var bytes = 0L
+        open(name).use { input ->
+            FileOutputStream(temp).use { output ->
+                val buffer = ByteArray(BUFFER_SIZE)
+                while (true) {
+                    val read = input.read(buffer)
+                    if (read < 0) break
+                    digest.update(buffer, 0, read)
+                    output.write(buffer, 0, read)
+                    bytes += read
+                }
+                output.fd.sync()
+            }
+        }
+        if (entry != null) {
+            val hash = digest.digest().joinToString("") { "%02x".format(it) }
+            if (bytes != entry.size || !hash.equals(entry.sha256, ignoreCase = true)) {
+                throw IOException(
+                    "Asset $name does not match the manifest: $bytes bytes, sha256 $hash;" +
+                        " expected ${entry.size} bytes, sha256 ${entry.sha256}"
+                )
+            }
+        }
+        return bytes
+    }
+
+    private fun readManifest(): Map<String, Entry> {
+        val text = try {
+            open(MANIFEST_ASSET).bufferedReader().use { it.readText() }
+        } catch (e: FileNotFoundException) {
+            return emptyMap()
+        }
+        val assets = JSONObject(text).optJSONObject("assets") ?: return emptyMap()
+        val entries = HashMap<String, Entry>()
+        for (name in assets.keys()) {
+            val value = assets.getJSONObject(name)
+            entries[name] = Entry(value.getLong("size"), value.getString("sha256"))
+        }
+        return entries
+    }
+
+    private fun readStamp(stamp: File): Pair<String, Long>? {
+        if (!stamp.isFile) return null
+        val lines = try {
+            stamp.readLines()
+        } catch (e: IOException) {
+            return null
+        }
+        val size = lines.getOrNull(1)?.toLongOrNull() ?: return null
+        return lines[0] to size
+    }
+
+    private fun writeStamp(stamp: File, version: String, bytes: Long) {
+        val temp = File(stamp.path + TEMP_SUFFIX)
+        temp.writeText("$version\n$bytes\n")
+        Files.move(temp.toPath(), stamp.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    }
+
+    companion object {
+        const val MANIFEST_ASSET = "asset_manifest.json"
+        private const val BUFFER_SIZE = 1 shl 20
+        private const val STAMP_SUFFIX = ".stamp"
+        private const val TEMP_SUFFIX = ".tmp"
+
+        @Volatile
+        private var instance: AssetExtractor? = null
+
+        /** Extractor for the app's assets into its files directory. */
+        @JvmStatic
+        fun getInstance(context: Context): AssetExtractor =
+            instance ?: synchronized(this) {
+                instance ?: context.applicationContext.let { app ->
+                    val info = app.packageManager.getPackageInfo(app.packageName, 0)
+                    // lastUpdateTime also changes when a debug build is reinstalled with the same version
+                    AssetExtractor(
+                        { name -> app.assets.open(name) },
+                        app.filesDir,
+                        "${info.longVersionCode}@${info.lastUpdateTime}",
+                    ).also { instance = it }
+                }
+            }
+    }
+}
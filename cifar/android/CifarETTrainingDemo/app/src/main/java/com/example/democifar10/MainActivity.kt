@@ -25,29 +25,12 @@ class MainActivity : ComponentActivity() {
 
     @Throws(IOException::class)
     private fun assetFilePath(assetName: String): String {
-        val file = File(filesDir, assetName)
-
-        // Create parent directories if they don't exist
-        if (!file.parentFile?.exists()!!) {
-            file.parentFile?.mkdirs()
-        }
-
-        if (file.exists() && file.length() > 0) {
-            return file.absolutePath
-        }
-
         try {
-            resources.assets.open(assetName).use { inputStream ->
-                FileOutputStream(file).use { outputStream ->
-                    val buffer = ByteArray(4 * 1024)
-                    var read: Int
-                    while (inputStream.read(buffer).also { read = it } != -1) {
-                        outputStream.write(buffer, 0, read)
-                    }
-                    outputStream.flush()
-                }
+            val result = AssetExtractor.getInstance(this).extract(assetName)
+            if (result.extracted) {
+                Log.i(debugTag, "Extracted $assetName (${result.bytes} bytes) in ${result.millis}ms")
             }
-            return file.absolutePath
+            return result.file.absolutePath
         } catch (e: IOException) {
             Log.e(debugTag, "Error copying asset $assetName: ${e.message}")
             throw e
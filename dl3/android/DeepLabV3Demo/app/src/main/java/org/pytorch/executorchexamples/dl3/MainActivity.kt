@@ -81,6 +81,11 @@ class MainActivity : ComponentActivity() {
     private var module: Module? = null
     private lateinit var modelPath: String
 
+    // Per-pixel arg-max scratch, reused across images of the same size
+    private val argMaxLock = Any()
+    private var bestScores = FloatArray(0)
+    private var classPlane = FloatArray(0)
+
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -383,7 +388,8 @@ class MainActivity : ComponentActivity() {
             val inferenceTime = SystemClock.elapsedRealtime() - startTime
             Log.d("ImageSegmentation", "inference time (ms): $inferenceTime")
 
-            val scores = outputTensor.dataAsFloatArray
+            // Read in place; a 21-class mask is several MB per image
+            val scores = TensorBuffers.floatView(outputTensor)
             val width = inputBitmap.width
             val height = inputBitmap.height
 
@@ -394,18 +400,20 @@ class MainActivity : ComponentActivity() {
             val intValues = IntArray(width * height)
             var imageSegmentationSuccess = false
 
+            // Class-major, one bulk copy per class plane
+            val classes = IntArray(width * height)
+            synchronized(argMaxLock) {
+                if (bestScores.size != width * height) {
+                    bestScores = FloatArray(width * height)
+                    classPlane = FloatArray(width * height)
+                }
+                TensorBuffers.argMaxPlanes(scores, CLASSNUM, width * height, classes, bestScores, classPlane)
+            }
+
             for (j in 0 until height) {
                 for (k in 0 until width) {
-                    var maxi = 0
-                    var maxnum = -Double.MAX_VALUE
-                    for (i in 0 until CLASSNUM) {
-                        val score = scores[i * (width * height) + j * width + k]
-                        if (score > maxnum) {
-                            maxnum = score.toDouble()
-                            maxi = i
-                        }
-                    }
                     val pixelIndex = j * width + k
+                    val maxi = classes[pixelIndex]
                     val classColor = CLASS_COLORS[maxi]
 
                     if (maxi == 0) {
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package org.pytorch.executorchexamples.dl3
+
+import org.pytorch.executorch.Tensor
+import java.lang.reflect.Method
+import java.nio.Buffer
+import java.nio.FloatBuffer
+
+/**
+ * Read access to output tensors without copying them into a new [FloatArray].
+ *
+ * [Tensor.getDataAsFloatArray] allocates and fills a fresh array on every call. The Tensor
+ * already keeps its data in a buffer, but the accessor is package-private, so it is reached
+ * through reflection; if that fails the data is copied as before.
+ */
+object TensorBuffers {
+    private val rawDataBuffer: Method? = try {
+        Tensor::class.java.getDeclaredMethod("getRawDataBuffer").apply { isAccessible = true }
+    } catch (e: ReflectiveOperationException) {
+        null
+    } catch (e: RuntimeException) {
+        null
+    }
+
+    /** Returns a read-only view of a float tensor's data, positioned at zero. */
+    @JvmStatic
+    fun floatView(tensor: Tensor): FloatBuffer {
+        val raw = try {
+            rawDataBuffer?.invoke(tensor) as? Buffer
+        } catch (e: ReflectiveOperationException) {
+            null
+        } catch (e: RuntimeException) {
+            null
+        }
+        if (raw is FloatBuffer) {
+            return raw.asReadOnlyBuffer().apply { clear() }
+        }
+        return FloatBuffer.wrap(tensor.dataAsFloatArray)
+    }
+
+    /**
+     * For each of [planeSize] positions, writes into [outClass] the index of the highest of the
+     * [numPlanes] planes stored one after another in [scores]; ties go to the lower index.
+     *
+     * Reading a direct buffer one element at a time costs far more than one bulk copy, so each
+     * plane is copied into [plane] and compared against the best scores so far in [best]. Both
+     * must hold at least [planeSize] floats and can be reused across calls.
+     */
+    @JvmStatic
+    fun argMaxPlanes(
+        scores: FloatBuffer,
+        numPlanes: Int,
+        planeSize: Int,
+        outClass: IntArray,
+        best: FloatArray,
+        plane: FloatArray
+    ) {
+        val data = scores.duplicate()
+        data.position(0)
+        data.get(best, 0, planeSize)
+        outClass.fill(0, 0, planeSize)
+        for (c in 1 until numPlanes) {
+            data.get(plane, 0, planeSize)
+            for (p in 0 until planeSize) {
+                if (plane[p] > best[p]) {
+                    best[p] = plane[p]
+                    outClass[p] = c
+                }
+            }
+        }
+    }
+}
@@ -250,6 +250,12 @@ android {
         compose = true
     }
     packaging { resources { excludes += "/META-INF/{AL2.0,LGPL2.1}" } }
+    testOptions {
+        // Benchmarks in the unit tests are skipped unless run with -Pbenchmarks=true
+        unitTests.all { test ->
+            test.systemProperty("benchmarks", project.findProperty("benchmarks")?.toString() ?: "false")
+        }
+    }
 }
 
 dependencies {
@@ -14,9 +14,16 @@ package com.example.executorchllamademo
 data class AppSettings(
     val appearanceMode: AppearanceMode = AppearanceMode.SYSTEM,
     val saveChatHistory: Boolean = false,
-    val maxSeqLen: Int = DEFAULT_MAX_SEQ_LEN
+    val maxSeqLen: Int = DEFAULT_MAX_SEQ_LEN,
+    // Memory LoRA models may use before the least recently used is unloaded; 0 for half the RAM
+    val loraMemoryBudgetMb: Int = 0,
+    // Number of LoRA models loaded at the same time
+    val loraLoadParallelism: Int = DEFAULT_LORA_LOAD_PARALLELISM,
+    // Load the model the user is likely to switch to next in the background
+    val preloadNextLoraModel: Boolean = true
 ) {
     companion object {
         const val DEFAULT_MAX_SEQ_LEN = 768
+        const val DEFAULT_LORA_LOAD_PARALLELISM = 2
     }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+import android.content.Context
+import com.google.gson.Gson
+import com.google.gson.GsonBuilder
+import com.google.gson.InstanceCreator
+
+/**
+ * Saved chat history, one record per message keyed by message id.
+ *
+ * [save] writes only the messages that were added or replaced since they were last saved or
+ * loaded, and deletes those that were removed from the chat. A message counts as changed when
+ * the chat holds a different [Message] reference for its id, which is already how the chat
+ * signals changes to Compose (see [Message.copy]). Messages are loaded newest first, a page at
+ * a time, so opening a long chat only reads its end.
+ *
+ * A loaded page reaches the chat some time after [loadRecent] or [loadOlder] returns it, so a
+ * save in between sees a chat without it. Such a page is only tracked once a save finds it in
+ * the chat; until then it is neither rewritten nor deleted.
+ *
+ * All methods may be called from any thread.
+ */
+class ChatHistory(private val table: Table) {
+
+    /** Storage for history records. Implementations apply each [write] atomically. */
+    interface Table {
+        fun write(upserts: List<Record>, deletes: Collection<String>)
+
+        /** Up to [limit] records with a sequence number below [beforeSeq], newest first. */
+        fun loadBefore(beforeSeq: Long, limit: Int): List<Record>
+
+        /** Highest sequence number stored, or -1 if the table is empty. */
+        fun maxSeq(): Long
+
+        /** Highest prompt id stored, or -1 if the table is empty. */
+        fun maxPromptId(): Int
+
+        fun clear()
+    }
+
+    /** One saved message. [seq] orders messages in the chat, [json] is the message itself. */
+    class Record(val id: String, val seq: Long, val promptId: Int, val json: String)
+
+    private class Saved(val seq: Long, var message: Message)
+
+    private val saved = HashMap<String, Saved>()
+    // Loaded pages that no save has seen in the chat yet
+    private val loadedNotShown = HashMap<String, Saved>()
+    private var nextSeq = -1L
+    private var oldestLoadedSeq = Long.MAX_VALUE
+
+    /** True while older messages than those loaded so far remain in the table. */
+    @Volatile
+    var hasOlder = false
+        private set
+
+    /** Loads the most recent page of the chat, oldest message first. */
+    @Synchronized
+    fun loadRecent(limit: Int): List<Message> {
+        saved.clear()
+        loadedNotShown.clear()
+        nextSeq = table.maxSeq() + 1
+        oldestLoadedSeq = Long.MAX_VALUE
+        return loadPage(limit)
+    }
+
+    /** Loads the page before the oldest message loaded so far, oldest message first. */
+    @Synchronized
+    fun loadOlder(limit: Int): List<Message> {
+        return if (hasOlder) loadPage(limit) else emptyList()
+    }
+
+    private fun loadPage(limit: Int): List<Message> {
+        // One extra record tells whether there is another page
+        val records = table.loadBefore(oldestLoadedSeq, limit + 1)
+        hasOlder = records.size > limit
+        val page = ArrayList<Message>(minOf(records.size, limit))
+        for (record in records.take(limit).asReversed()) {
+            val message = parse(record.json) ?: continue
+            loadedNotShown[record.id] = Saved(record.seq, message)
+            page.add(message)
+        }
+        if (records.isNotEmpty()) {
+            oldestLoadedSeq = records[minOf(records.size, limit) - 1].seq
+        }
+        return page
+    }
+
+    /**
+     * Brings the table in line with [messages], the chat as currently shown: appends new
+     * messages, rewrites replaced ones and deletes removed ones. Older pages that were never
+     * loaded, or loaded but not yet in [messages], are left as they are.
+     *
+     * @return number of records written or deleted
+     */
+    @Synchronized
+    fun save(messages: List<Message>): Int {
+        if (nextSeq < 0) {
+            nextSeq = table.maxSeq() + 1
+        }
+        val present = HashSet<String>(messages.size * 2)
+        val upserts = ArrayList<Record>()
+        for (message in messages) {
+            present.add(message.id)
+            val entry = saved[message.id]
+                ?: loadedNotShown.remove(message.id)?.also { saved[message.id] = it }
+            if (entry == null) {
+                val seq = nextSeq++
+                saved[message.id] = Saved(seq, message)
+                upserts.add(record(seq, message))
+            } else if (entry.message !== message) {
+                entry.message = message
+                upserts.add(record(entry.seq, message))
+            }
+        }
+        val deletes = saved.keys.filter { it !in present }
+        deletes.forEach { saved.remove(it) }
+        if (upserts.isNotEmpty() || deletes.isNotEmpty()) {
+            table.write(upserts, deletes)
+        }
+        return upserts.size + deletes.size
+    }
+
+    /** Next prompt id to use, continuing after every saved message, loaded or not. */
+    fun nextPromptId(): Int = table.maxPromptId() + 1
+
+    @Synchronized
+    fun clear() {
+        table.clear()
+        saved.clear()
+        loadedNotShown.clear()
+        nextSeq = 0
+        oldestLoadedSeq = Long.MAX_VALUE
+        hasOlder = false
+    }
+
+    private fun parse(json: String): Message? {
+        return try {
+            GSON.fromJson(json, Message::class.java)
+        } catch (e: RuntimeException) {
+            // Skip a record that no longer parses rather than losing the rest of the chat
+            null
+        }
+    }
+
+    private fun record(seq: Long, message: Message): Record =
+        Record(message.id, seq, message.promptID, GSON.toJson(message))
+
+    companion object {
+        // Use InstanceCreator so that Gson calls the Message constructor (which
+        // assigns default values like id = UUID). Without this, Gson uses
+        // Unsafe.allocateInstance() and fields missing from old JSON become null.
+        @JvmField
+        val GSON: Gson = GsonBuilder()
+            .registerTypeAdapter(Message::class.java, InstanceCreator<Message> {
+                Message("", false, MessageType.TEXT, 0)
+            })
+            .create()
+
+        @Volatile
+        private var instance: ChatHistory? = null
+
+        @JvmStatic
+        fun getInstance(context: Context): ChatHistory {
+            return instance ?: synchronized(this) {
+                instance ?: ChatHistory(ChatHistoryDatabase(context.applicationContext)).also {
+                    instance = it
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+import android.content.ContentValues
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteOpenHelper
+
+/**
+ * SQLite table behind [ChatHistory]: one row per message, keyed by message id, with the
+ * message's position in the chat and its prompt id next to the message JSON.
+ */
+class ChatHistoryDatabase(context: Context) :
+    SQLiteOpenHelper(context, DATABASE_NAME, null, DATABASE_VERSION), ChatHistory.Table {
+
+    override fun onCreate(db: SQLiteDatabase) {
+        db.execSQL(
+            "CREATE TABLE $TABLE (" +
+                "$COLUMN_ID TEXT PRIMARY KEY, " +
+                "$COLUMN_SEQ INTEGER NOT NULL, " +
+                "$COLUMN_PROMPT_ID INTEGER NOT NULL, " +
+                "$COLUMN_JSON TEXT NOT NULL)"
+        )
+        db.execSQL("CREATE INDEX ${TABLE}_$COLUMN_SEQ ON $TABLE ($COLUMN_SEQ)")
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        db.execSQL("DROP TABLE IF EXISTS $TABLE")
+        onCreate(db)
+    }
+
+    override fun write(upserts: List<ChatHistory.Record>, deletes: Collection<String>) {
+        val db = writableDatabase
+        db.beginTransaction()
+        try {
+            val values = ContentValues(4)
+            for (record in upserts) {
+                values.put(COLUMN_ID, record.id)
+                values.put(COLUMN_SEQ, record.seq)
+                values.put(COLUMN_PROMPT_ID, record.promptId)
+                values.put(COLUMN_JSON, record.json)
+                db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE)
+            }
+            for (id in deletes) {
+                db.delete(TABLE, "$COLUMN_ID = ?", arrayOf(id))
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    override fun loadBefore(beforeSeq: Long, limit: Int): List<ChatHistory.Record> {
+        val records = ArrayList<ChatHistory.Record>()
+        readableDatabase.query(
+            TABLE,
+            arrayOf(COLUMN_ID, COLUMN_SEQ, COLUMN_PROMPT_ID, COLUMN_JSON),
+            "$COLUMN_SEQ < ?",
+            arrayOf(beforeSeq.toString()),
+            null,
+            null,
+            "$COLUMN_SEQ DESC",
+            limit.toString()
+        ).use { cursor ->
+            while (cursor.moveToNext()) {
+                records.add(
+                    ChatHistory.Record(
+                        cursor.getString(0),
+                        cursor.getLong(1),
+                        cursor.getInt(2),
+                        cursor.getString(3)
+                    )
+                )
+            }
+        }
+        return records
+    }
+
+    override fun maxSeq(): Long = queryMax(COLUMN_SEQ)
+
+    override fun maxPromptId(): Int = queryMax(COLUMN_PROMPT_ID).toInt()
+
+    private fun queryMax(column: String): Long {
+        readableDatabase.rawQuery("SELECT MAX($column) FROM $TABLE", null).use { cursor ->
+            return if (cursor.moveToFirst() && !cursor.isNull(0)) cursor.getLong(0) else -1L
+        }
+    }
+
+    override fun clear() {
+        writableDatabase.delete(TABLE, null, null)
+    }
+
+    companion object {
+        private const val DATABASE_NAME = "chat_history.db"
+        private const val DATABASE_VERSION = 1
+        private const val TABLE = "messages"
+        private const val COLUMN_ID = "id"
+        private const val COLUMN_SEQ = "seq"
+        private const val COLUMN_PROMPT_ID = "prompt_id"
+        private const val COLUMN_JSON = "json"
+    }
+}
@@ -12,6 +12,8 @@ import android.content.Context
 import android.content.SharedPreferences
 import com.google.gson.Gson
 import com.google.gson.reflect.TypeToken
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
 
 class DemoSharedPreferences(private val context: Context) {
 
@@ -24,6 +26,14 @@ class DemoSharedPreferences(private val context: Context) {
 
     // --- Messages ---
 
+    /** Chat history, stored one message per row so saves only write what changed. */
+    val chatHistory: ChatHistory
+        get() = ChatHistory.getInstance(context)
+
+    /**
+     * Messages saved by earlier versions of the app as one JSON array, or "" if there are none.
+     * Only read to move them into [chatHistory].
+     */
     fun getSavedMessages(): String {
         return sharedPreferences.getString(
             context.getString(R.string.saved_messages_json_key),
@@ -31,17 +41,24 @@ class DemoSharedPreferences(private val context: Context) {
         ) ?: ""
     }
 
-    fun addMessages(messages: List<Message>) {
+    fun removeSavedMessagesJson() {
         val editor = sharedPreferences.edit()
-        val msgJSON = gson.toJson(messages)
-        editor.putString(context.getString(R.string.saved_messages_json_key), msgJSON)
+        editor.remove(context.getString(R.string.saved_messages_json_key))
         editor.apply()
     }
 
+    /**
+     * Saves the new and changed messages in [messages]. Writes to disk; call on [historyExecutor].
+     */
+    fun addMessages(messages: List<Message>) {
+        chatHistory.save(messages)
+    }
+
+    /** Deletes the saved chat on [historyExecutor], after any save already queued there. */
     fun removeExistingMessages() {
-        val editor = sharedPreferences.edit()
-        editor.remove(context.getString(R.string.saved_messages_json_key))
-        editor.apply()
+        removeSavedMessagesJson()
+        val chatHistory = chatHistory
+        historyExecutor.execute { chatHistory.clear() }
     }
 
     // --- App Settings (app-wide, e.g., appearance) ---
@@ -86,12 +103,24 @@ class DemoSharedPreferences(private val context: Context) {
         editor.apply()
     }
 
-    fun saveLogs() {
+    // --- LoRA model switches, for preloading the likely next model ---
+
+    fun getSwitchHistory(): SwitchHistory {
+        val json = sharedPreferences.getString(PREF_KEY_SWITCH_HISTORY, null)
+        if (json.isNullOrEmpty()) {
+            return SwitchHistory()
+        }
+        return try {
+            val type = object : TypeToken<ArrayList<SwitchHistory.Switch>>() {}.type
+            SwitchHistory(gson.fromJson<ArrayList<SwitchHistory.Switch>>(json, type) ?: emptyList())
+        } catch (e: Exception) {
+            SwitchHistory()
+        }
+    }
+
+    fun saveSwitchHistory(history: SwitchHistory) {
         val editor = sharedPreferences.edit()
-        // Create a copy to avoid ConcurrentModificationException if logs are added during serialization
-        val logsCopy = ArrayList(ETLogging.getInstance().getLogs())
-        val msgJSON = gson.toJson(logsCopy)
-        editor.putString(context.getString(R.string.logs_json_key), msgJSON)
+        editor.putString(PREF_KEY_SWITCH_HISTORY, gson.toJson(history.toList()))
         editor.apply()
     }
 
@@ -101,6 +130,10 @@ class DemoSharedPreferences(private val context: Context) {
         editor.apply()
     }
 
+    /**
+     * Logs saved by earlier versions of the app as one JSON array. Logs are now written to files
+     * by [LogStore]; these are only read to move them there.
+     */
     fun getSavedLogs(): ArrayList<AppLog> {
         val logsJSONString = sharedPreferences.getString(
             context.getString(R.string.logs_json_key),
@@ -114,7 +147,12 @@ class DemoSharedPreferences(private val context: Context) {
     }
 
     companion object {
+        /** Runs chat history reads and writes one at a time, in the order they were requested. */
+        @JvmField
+        val historyExecutor: Executor = Executors.newSingleThreadExecutor()
+
         private const val PREF_KEY_APP_SETTINGS = "app_settings_json"
         private const val PREF_KEY_MODULE_SETTINGS = "module_settings_json"
+        private const val PREF_KEY_SWITCH_HISTORY = "lora_switch_history_json"
     }
 }
@@ -10,38 +10,61 @@ package com.example.executorchllamademo
 
 import android.app.Application
 import android.util.Log
+import java.io.File
 
 class ETLogging : Application() {
 
-    private lateinit var logs: ArrayList<AppLog>
+    private lateinit var logStore: LogStore
     private lateinit var demoSharedPreferences: DemoSharedPreferences
 
     override fun onCreate() {
         super.onCreate()
         instance = this
         demoSharedPreferences = DemoSharedPreferences(applicationContext)
-        logs = demoSharedPreferences.getSavedLogs()
+        logStore = LogStore(File(filesDir, LOG_DIRECTORY))
+        migrateSavedLogs()
     }
 
+    /** Records a log. Never waits on disk, so it is safe to call while generating. */
     fun log(message: String) {
         val appLog = AppLog(message)
-        logs.add(appLog)
+        logStore.add(appLog)
         Log.d(TAG, appLog.message)
     }
 
-    fun getLogs(): ArrayList<AppLog> = logs
+    /** The most recent logs still held in memory, oldest first. */
+    fun getLogs(): List<AppLog> = logStore.recent()
+
+    /** All logs, including those only on disk. */
+    fun getLogStore(): LogStore = logStore
 
     fun clearLogs() {
-        logs.clear()
+        logStore.clear()
         demoSharedPreferences.removeExistingLogs()
     }
 
+    /** Writes logs still waiting for the background writer. */
     fun saveLogs() {
-        demoSharedPreferences.saveLogs()
+        logStore.flush()
+    }
+
+    /** Moves logs saved in preferences by earlier versions into the log files. */
+    private fun migrateSavedLogs() {
+        val savedLogs = demoSharedPreferences.getSavedLogs()
+        if (savedLogs.isNotEmpty()) {
+            // Flush between chunks so a long history does not overflow the writer's queue
+            savedLogs.chunked(MIGRATION_CHUNK).forEach { chunk ->
+                chunk.forEach { logStore.add(it) }
+                logStore.flush()
+            }
+            demoSharedPreferences.removeExistingLogs()
+        }
     }
 
     companion object {
         private const val TAG = "ETLogging"
+        private const val LOG_DIRECTORY = "logs"
+        private const val MIGRATION_CHUNK = 1000
 
         @Volatile
         private var instance: ETLogging? = null
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+import android.system.Os
+import android.system.OsConstants
+import org.pytorch.executorch.extension.llm.LlmModule
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Loads the LoRA models of the current [ModuleSettings] for [ModuleManager]: the model's PTE
+ * with the shared foundation data file followed by its adapter files.
+ *
+ * A model's resident cost is the larger of how much the process's resident set grew during the
+ * load and the size of its PTE and adapter files. Weights are memory-mapped, so the resident set
+ * alone can miss pages that are only touched on the first generate. When other loads overlap,
+ * the resident set growth is theirs too and only the file sizes are used. The shared foundation
+ * file is not counted, since its pages are shared by every model.
+ */
+class LlmModuleLoader(private val settings: () -> ModuleSettings) : ModuleManager.Loader<LlmModule> {
+
+    override fun load(id: String): ModuleManager.Loaded<LlmModule> {
+        val current = settings()
+        val modelConfig = current.getModelById(id)
+            ?: throw IllegalArgumentException("Model $id is not configured")
+        val dataFiles = dataFiles(current, modelConfig)
+        val dataFilesLog = if (dataFiles.isEmpty()) "no data files" else dataFiles.joinToString(", ")
+        ETLogging.getInstance().log(
+            "LoRA: Loading model ${modelConfig.displayName} with tokenizer ${modelConfig.tokenizerFilePath}, data files: $dataFilesLog"
+        )
+
+        val rssBefore = residentSetBytes()
+        val llmModule = LlmModule(
+            ModelUtils.getModelCategory(modelConfig.modelType, modelConfig.backendType),
+            modelConfig.modelFilePath,
+            modelConfig.tokenizerFilePath,
+            modelConfig.temperature.toFloat(),
+            dataFiles
+        )
+        val loadNumber = loadsStarted.incrementAndGet()
+        val alone = loadsRunning.incrementAndGet() == 1
+        try {
+            llmModule.load()
+        } catch (e: RuntimeException) {
+            llmModule.resetNative()
+            throw e
+        } finally {
+            loadsRunning.decrementAndGet()
+        }
+        val overlapped = !alone || loadsStarted.get() != loadNumber
+        val rssGrowth = if (overlapped) 0L else residentSetBytes() - rssBefore
+        return ModuleManager.Loaded(llmModule, maxOf(rssGrowth, estimateBytes(modelConfig)))
+    }
+
+    override fun release(module: LlmModule) {
+        module.resetNative()
+    }
+
+    companion object {
+        // Loads across all loaders, to tell whether a load had the process to itself
+        private val loadsStarted = AtomicLong()
+        private val loadsRunning = AtomicInteger()
+
+        /** Foundation data file followed by the model's adapter files. */
+        fun dataFiles(settings: ModuleSettings, modelConfig: ModelConfiguration): List<String> {
+            val dataFiles = mutableListOf<String>()
+            val sharedDataPath = settings.getEffectiveDataPath()
+            if (sharedDataPath.isNotEmpty()) {
+                dataFiles.add(sharedDataPath)
+            }
+            dataFiles.addAll(modelConfig.adapterFilePaths)
+            return dataFiles
+        }
+
+        /** Size of the model's own files, what it costs at least once loaded. */
+        fun estimateBytes(modelConfig: ModelConfiguration): Long {
+            return (listOf(modelConfig.modelFilePath) + modelConfig.adapterFilePaths)
+                .sumOf { File(it).length() }
+        }
+
+        /** Resident set size of this process, from /proc/self/statm; 0 if unavailable. */
+        private fun residentSetBytes(): Long {
+            return try {
+                val fields = File("/proc/self/statm").readText().trim().split(' ')
+                fields[1].toLong() * Os.sysconf(OsConstants._SC_PAGESIZE)
+            } catch (e: IOException) {
+                0L
+            } catch (e: RuntimeException) {
+                0L
+            }
+        }
+    }
+}
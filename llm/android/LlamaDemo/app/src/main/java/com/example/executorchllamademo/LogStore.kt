@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+import com.google.gson.Gson
+import com.google.gson.JsonParseException
+import java.io.BufferedWriter
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStreamWriter
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Bounded, asynchronous store behind [ETLogging].
+ *
+ * [add] keeps the newest [ringCapacity] logs in memory and queues the log for a background
+ * writer; it takes a short lock and never waits on disk, so it is safe to call from the
+ * inference thread. If the writer falls more than [queueCapacity] logs behind, further logs are
+ * only kept in memory and a note with the number dropped is written once it catches up.
+ *
+ * Every 200 ms the writer appends the queued logs as one batch to JSON-lines files in
+ * [directory], named `log-<n>.jsonl`. When the current file passes [maxFileBytes] a new one is
+ * started, and only the newest [maxFiles] are kept. [readBefore] pages through them newest first.
+ */
+class LogStore(
+    private val directory: File,
+    private val ringCapacity: Int = DEFAULT_RING_CAPACITY,
+    private val queueCapacity: Int = DEFAULT_QUEUE_CAPACITY,
+    private val maxFileBytes: Long = DEFAULT_MAX_FILE_BYTES,
+    private val maxFiles: Int = DEFAULT_MAX_FILES
+) {
+
+    /** Position in the log files, handed back to [readBefore] to get the page before it. */
+    class Cursor internal constructor(internal val file: Long, internal val line: Int)
+
+    /** Logs oldest first, and the cursor for the page before them, null at the oldest log. */
+    class Page(val logs: List<AppLog>, val before: Cursor?)
+
+    private val gson = Gson()
+
+    private val ring = arrayOfNulls<AppLog>(ringCapacity)
+    private var ringHead = 0
+    private var ringSize = 0
+
+    private val queue = ArrayBlockingQueue<AppLog>(queueCapacity)
+    private val dropped = AtomicInteger()
+
+    // Guards the files and everything below
+    private val fileLock = Any()
+    private var writer: BufferedWriter? = null
+    private var currentFile = -1L
+    private var currentBytes = 0L
+
+    @Volatile
+    private var closed = false
+    private val writerThread = Thread({ writeLoop() }, "LogStore").apply {
+        isDaemon = true
+    }
+
+    init {
+        writerThread.start()
+    }
+
+    /** Records [log] in memory and queues it for the log files. */
+    fun add(log: AppLog) {
+        synchronized(ring) {
+            ring[(ringHead + ringSize) % ringCapacity] = log
+            if (ringSize < ringCapacity) {
+                ringSize++
+            } else {
+                ringHead = (ringHead + 1) % ringCapacity
+            }
+        }
+        if (!queue.offer(log)) {
+            dropped.incrementAndGet()
+        }
+    }
+
+    /** The logs still held in memory, oldest first. */
+    fun recent(): List<AppLog> {
+        synchronized(ring) {
+            return List(ringSize) { i -> ring[(ringHead + i) % ringCapacity]!! }
+        }
+    }
+
+    /** Writes every queued log to disk before returning. */
+    fun flush() {
+        synchronized(fileLock) {
+            flushLocked()
+        }
+    }
+
+    /** Drops the logs in memory, in the queue and on disk. */
+    fun clear() {
+        synchronized(ring) {
+            ring.fill(null)
+            ringHead = 0
+            ringSize = 0
+        }
+        synchronized(fileLock) {
+            queue.clear()
+            dropped.set(0)
+            closeWriter()
+            logFiles().forEach { it.delete() }
+            currentFile = -1L
+        }
+    }
+
+    /**
+     * Reads up to [limit] logs from disk that were written before [cursor], or the newest ones if
+     * [cursor] is null. Queued logs are written first. Only the files the page spans are read.
+     */
+    fun readBefore(cursor: Cursor?, limit: Int): Page {
+        synchronized(fileLock) {
+            flushLocked()
+            val files = logFiles().asReversed()
+            val page = ArrayList<AppLog>()
+            var before: Cursor? = null
+            for (file in files) {
+                val number = fileNumber(file)
+                if (cursor != null && number > cursor.file) continue
+                val lines = readLines(file)
+                val end = if (cursor != null && number == cursor.file) {
+                    minOf(cursor.line, lines.size)
+                } else {
+                    lines.size
+                }
+                val start = maxOf(0, end - (limit - page.size))
+                page.addAll(0, lines.subList(start, end))
+                if (page.size >= limit) {
+                    before = if (start > 0) {
+                        Cursor(number, start)
+                    } else {
+                        // Continue at the end of the next older file, if any
+                        files.firstOrNull { fileNumber(it) < number }
+                            ?.let { Cursor(fileNumber(it), Int.MAX_VALUE) }
+                    }
+                    break
+                }
+            }
+            return Page(page, before)
+        }
+    }
+
+    /** Stops the writer after writing what is queued. Used by tests. */
+    internal fun close() {
+        closed = true
+        writerThread.interrupt()
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5))
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+        synchronized(fileLock) {
+            flushLocked()
+            closeWriter()
+        }
+    }
+
+    private fun writeLoop() {
+        // Logs stay in the queue until written under the file lock, so a flush or read on
+        // another thread always sees them in order
+        while (!closed) {
+            try {
+                Thread.sleep(BATCH_INTERVAL_MS)
+            } catch (e: InterruptedException) {
+                return
+            }
+            synchronized(fileLock) {
+                if (queue.isNotEmpty() || dropped.get() > 0) {
+                    flushLocked()
+                }
+            }
+        }
+    }
+
+    private fun flushLocked() {
+        writeQueued()
+        try {
+            writer?.flush()
+        } catch (e: IOException) {
+            closeWriter()
+        }
+    }
+
+    private fun writeQueued() {
+        val batch = ArrayList<AppLog>(queue.size)
+        queue.drainTo(batch)
+        for (log in batch) {
+            write(log)
+        }
+        val lost = dropped.getAndSet(0)
+        if (lost > 0) {
+            write(AppLog("$lost log lines were not written to disk because the log writer fell behind"))
+        }
+    }
+
+    private fun write(log: AppLog) {
+        try {
+            val line = gson.toJson(log)
+            val out = writer ?: openWriter()
+            out.write(line)
+            out.write('\n'.code)
+            currentBytes += line.length + 1
+            if (currentBytes >= maxFileBytes) {
+                rotate()
+            }
+        } catch (e: IOException) {
+            // The log is still in memory; try a fresh file for the next one
+            closeWriter()
+        }
+    }
+
+    private fun openWriter(): BufferedWriter {
+        if (currentFile < 0) {
+            directory.mkdirs()
+            currentFile = logFiles().lastOrNull()?.let { fileNumber(it) } ?: 0L
+        }
+        val file = File(directory, fileName(currentFile))
+        currentBytes = file.length()
+        return BufferedWriter(OutputStreamWriter(FileOutputStream(file, true), Charsets.UTF_8)).also {
+            writer = it
+        }
+    }
+
+    private fun rotate() {
+        closeWriter()
+        currentFile++
+        val files = logFiles()
+        // Keep maxFiles including the one about to be started
+        for (i in 0 until files.size - (maxFiles - 1)) {
+            files[i].delete()
+        }
+    }
+
+    private fun closeWriter() {
+        try {
+            writer?.close()
+        } catch (e: IOException) {
+            // Nothing more to do with a file that cannot be closed
+        }
+        writer = null
+    }
+
+    private fun readLines(file: File): List<AppLog> {
+        val logs = ArrayList<AppLog>()
+        try {
+            file.forEachLine(Charsets.UTF_8) { line ->
+                if (line.isNotEmpty()) {
+                    try {
+                        gson.fromJson(line, AppLog::class.java)?.let { logs.add(it) }
+                    } catch (e: JsonParseException) {
+                        // A line cut short by the process being killed
+                    }
+                }
+            }
+        } catch (e: IOException) {
+            // Rotated away while reading
+        }
+        return logs
+    }
+
+    /** Log files, oldest first. */
+    private fun logFiles(): List<File> {
+        val files = directory.listFiles { file -> FILE_PATTERN.matches(file.name) } ?: return emptyList()
+        return files.sortedBy { fileNumber(it) }
+    }
+
+    companion object {
+        const val DEFAULT_RING_CAPACITY = 1000
+        const val DEFAULT_QUEUE_CAPACITY = 4096
+        const val DEFAULT_MAX_FILE_BYTES = 256L * 1024
+        const val DEFAULT_MAX_FILES = 4
+        private const val BATCH_INTERVAL_MS = 200L
+        private val FILE_PATTERN = Regex("log-(\\d+)\\.jsonl")
+
+        private fun fileName(number: Long) = "log-$number.jsonl"
+
+        private fun fileNumber(file: File): Long =
+            FILE_PATTERN.matchEntire(file.name)!!.groupValues[1].toLong()
+    }
+}
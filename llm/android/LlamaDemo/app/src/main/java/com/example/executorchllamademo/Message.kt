@@ -61,8 +61,10 @@ class Message(
      * Required for Compose strong skipping mode (default since Kotlin 2.0): composable functions
      * compare unstable parameters by reference equality (===), so mutating an existing object and
      * placing it back in a SnapshotStateList won't trigger recomposition. A new reference is needed.
+     *
+     * Streaming replies pass the text accumulated so far instead of appending to this message.
      */
-    fun copy(): Message {
+    fun copy(text: String = this.text, thinkingContent: String = this.thinkingContent): Message {
         val sourceText = if (messageType == MessageType.IMAGE) (imagePath ?: "") else text
         return Message(sourceText, isSent, messageType, promptID, timestamp, id).also {
             it.tokensPerSecond = tokensPerSecond
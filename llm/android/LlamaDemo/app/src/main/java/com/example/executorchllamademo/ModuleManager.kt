@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.FutureTask
+
+/**
+ * Keeps loaded models within a memory budget, releasing the least recently used one when a new
+ * model would not fit.
+ *
+ * Each model's resident cost and load time are recorded when it is loaded (see [Entry]). The
+ * [active] model, the one chat generates with, is never released by [acquire] or [trimTo];
+ * every other model may be, and is loaded again the next time it is acquired.
+ *
+ * Loading runs without holding the manager's lock, so [get] and [entries] stay responsive while
+ * models load, and different models may load on several threads at once. A model is only ever
+ * loaded once at a time: [acquire] on a model that is already loading waits for that load.
+ *
+ * [preload] loads a model speculatively on an executor, only if it fits without releasing
+ * another model. [cancelPreloads] abandons speculative loads that nobody has acquired yet.
+ */
+class ModuleManager<M : Any>(
+    budgetBytes: Long,
+    private val loader: Loader<M>
+) {
+
+    /** Loads and releases models. */
+    interface Loader<M> {
+        /**
+         * Loads model [id], returning it with its measured resident cost.
+         * Throws if the model cannot be loaded.
+         */
+        fun load(id: String): Loaded<M>
+
+        /** Frees the native memory of a model that is no longer used. */
+        fun release(module: M)
+    }
+
+    /** A model fresh from [Loader.load]. */
+    class Loaded<M>(val module: M, val residentBytes: Long)
+
+    /** A loaded model and what it cost. */
+    class Entry<M>(val id: String, val module: M, val residentBytes: Long, val loadMillis: Long)
+
+    /** Receives eviction notices, e.g. for logging. */
+    fun interface Listener {
+        fun onEvicted(id: String, residentBytes: Long, reason: String)
+    }
+
+    // Iterates from least to most recently used
+    private val loaded = LinkedHashMap<String, Entry<M>>(16, 0.75f, true)
+    private val pending = HashMap<String, PendingLoad>()
+    private var totalResidentBytes = 0L
+
+    @Volatile
+    var budgetBytes: Long = budgetBytes
+        private set
+
+    @Volatile
+    var listener: Listener? = null
+
+    /** Id of the model in use; it is kept loaded whatever the budget. */
+    @Volatile
+    var active: String? = null
+
+    /** The loaded model [id], marking it most recently used, or null if it is not loaded. */
+    @Synchronized
+    fun get(id: String): M? = loaded[id]?.module
+
+    @Synchronized
+    fun contains(id: String): Boolean = loaded.containsKey(id)
+
+    @Synchronized
+    fun isEmpty(): Boolean = loaded.isEmpty()
+
+    /** Loaded models, least recently used first. */
+    @Synchronized
+    fun entries(): List<Entry<M>> = loaded.values.toList()
+
+    @Synchronized
+    fun residentBytes(): Long = totalResidentBytes
+
+    /** True if a model of [bytes] can be loaded without releasing another one. */
+    @Synchronized
+    fun fits(bytes: Long): Boolean = totalResidentBytes + bytes <= budgetBytes
+
+    /**
+     * Returns model [id], loading it on this thread if needed, or waiting for a load of it
+     * already under way, speculative or not. Once loaded, least recently used models are
+     * released until everything fits in the budget; the new model itself is kept even if it
+     * alone exceeds it.
+     */
+    fun acquire(id: String): Entry<M> {
+        while (true) {
+            val load = synchronized(this) {
+                loaded[id]?.let { return it }
+                val existing = pending[id]
+                if (existing != null) {
+                    // Now wanted: keep it whatever happens to other preloads
+                    existing.speculative = false
+                    existing.cancelled = false
+                    existing
+                } else {
+                    PendingLoad(id, false).also { pending[id] = it }
+                }
+            }
+            // Runs the load here unless it has started elsewhere, e.g. a preload still queued
+            // behind another one runs now; a running one is waited for
+            load.task.run()
+            val entry = try {
+                load.task.get()
+            } catch (e: ExecutionException) {
+                throw e.cause ?: e
+            }
+            // A preload cancelled just before it was adopted returns null; load it here instead
+            if (entry != null) {
+                return entry
+            }
+        }
+    }
+
+    /**
+     * Starts loading model [id] on [executor] in case it is needed soon. Nothing is started if
+     * it is loaded or loading already, or if [estimatedBytes] would not fit without releasing
+     * another model.
+     *
+     * @return true if a load was started
+     */
+    fun preload(id: String, estimatedBytes: Long, executor: Executor): Boolean {
+        val load = synchronized(this) {
+            if (loaded.containsKey(id) || pending.containsKey(id) || !fits(estimatedBytes)) {
+                return false
+            }
+            PendingLoad(id, true).also { pending[id] = it }
+        }
+        executor.execute(load.task)
+        return true
+    }
+
+    /**
+     * Abandons speculative loads nobody has acquired, except that of [keep]. One that has not
+     * started is skipped; one that is running cannot be interrupted, and its model is released
+     * as soon as it finishes.
+     *
+     * @return number of loads cancelled
+     */
+    @Synchronized
+    fun cancelPreloads(keep: String? = null): Int {
+        var count = 0
+        for (load in pending.values) {
+            if (load.speculative && !load.cancelled && load.id != keep) {
+                load.cancelled = true
+                count++
+            }
+        }
+        return count
+    }
+
+    /** Ids of models being loaded. */
+    @Synchronized
+    fun loading(): Set<String> = pending.keys.toSet()
+
+    /** A load of one model, run by [acquire] or on a [preload] executor. */
+    private inner class PendingLoad(val id: String, @Volatile var speculative: Boolean) {
+        @Volatile
+        var cancelled = false
+        val task = FutureTask<Entry<M>?> { load() }
+
+        private fun load(): Entry<M>? {
+            synchronized(this@ModuleManager) {
+                if (cancelled) {
+                    pending.remove(id)
+                    return null
+                }
+            }
+            val entry = try {
+                val start = System.currentTimeMillis()
+                val model = loader.load(id)
+                Entry(id, model.module, model.residentBytes, System.currentTimeMillis() - start)
+            } catch (e: Throwable) {
+                synchronized(this@ModuleManager) { pending.remove(id) }
+                throw e
+            }
+
+            val evicted = ArrayList<Entry<M>>()
+            val discarded = synchronized(this@ModuleManager) {
+                pending.remove(id)
+                when {
+                    cancelled -> "preload cancelled"
+                    // A guess is not worth releasing a model for
+                    speculative && !fits(entry.residentBytes) -> "preload did not fit"
+                    else -> {
+                        loaded[id] = entry
+                        totalResidentBytes += entry.residentBytes
+                        evictLocked(budgetBytes, setOf(id), evicted)
+                        null
+                    }
+                }
+            }
+            if (discarded != null) {
+                loader.release(entry.module)
+                listener?.onEvicted(id, entry.residentBytes, discarded)
+                return null
+            }
+            release(evicted, "over budget")
+            return entry
+        }
+    }
+
+    /** Changes the budget, releasing models until the loaded ones fit. */
+    fun setBudget(bytes: Long) {
+        val evicted = ArrayList<Entry<M>>()
+        synchronized(this) {
+            budgetBytes = bytes
+            evictLocked(bytes, emptySet(), evicted)
+        }
+        release(evicted, "budget lowered")
+    }
+
+    /**
+     * Releases least recently used models until at most [targetBytes] are resident, for memory
+     * pressure. The active model is kept.
+     *
+     * @return number of models released
+     */
+    fun trimTo(targetBytes: Long, reason: String): Int {
+        val evicted = ArrayList<Entry<M>>()
+        synchronized(this) {
+            evictLocked(targetBytes, emptySet(), evicted)
+        }
+        release(evicted, reason)
+        return evicted.size
+    }
+
+    /** Releases every model, including the active one. */
+    fun releaseAll() {
+        val evicted = synchronized(this) {
+            val all = loaded.values.toList()
+            loaded.clear()
+            totalResidentBytes = 0
+            active = null
+            all
+        }
+        release(evicted, "unloaded")
+    }
+
+    private fun evictLocked(targetBytes: Long, keep: Set<String>, evicted: MutableList<Entry<M>>) {
+        val iterator = loaded.values.iterator()
+        while (totalResidentBytes > targetBytes && iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.id == active || entry.id in keep) continue
+            iterator.remove()
+            totalResidentBytes -= entry.residentBytes
+            evicted.add(entry)
+        }
+    }
+
+    private fun release(evicted: List<Entry<M>>, reason: String) {
+        for (entry in evicted) {
+            loader.release(entry.module)
+            listener?.onEvicted(entry.id, entry.residentBytes, reason)
+        }
+    }
+}
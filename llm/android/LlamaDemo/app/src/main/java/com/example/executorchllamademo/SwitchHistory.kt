@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+/**
+ * Recent LoRA model switches, used to guess which model the user will switch to next so it can
+ * be loaded ahead of time.
+ *
+ * The guess is the model most often switched to from the current one, ties going to the most
+ * recent; without such a switch on record, it is the model used most recently before the
+ * current one, so toggling between two models is covered from the second switch on.
+ */
+class SwitchHistory(switches: List<Switch> = emptyList(), private val capacity: Int = DEFAULT_CAPACITY) {
+
+    /** One switch, from one model id to another. */
+    data class Switch(val from: String = "", val to: String = "")
+
+    private val switches = ArrayDeque<Switch>(switches.takeLast(capacity))
+
+    @Synchronized
+    fun record(from: String, to: String) {
+        if (from.isEmpty() || from == to) return
+        switches.addLast(Switch(from, to))
+        while (switches.size > capacity) {
+            switches.removeFirst()
+        }
+    }
+
+    /** Most likely next model after [current] among [candidates], or null if there is no clue. */
+    @Synchronized
+    fun predictNext(current: String, candidates: Collection<String>): String? {
+        val counts = HashMap<String, Int>()
+        val lastSeen = HashMap<String, Int>()
+        switches.forEachIndexed { index, switch ->
+            if (switch.from == current && switch.to in candidates) {
+                counts[switch.to] = (counts[switch.to] ?: 0) + 1
+                lastSeen[switch.to] = index
+            }
+        }
+        val best = counts.keys.maxWithOrNull(
+            compareBy<String> { counts.getValue(it) }.thenBy { lastSeen.getValue(it) }
+        )
+        if (best != null) {
+            return best
+        }
+        // No switch away from the current model yet: go back to where the user came from
+        return switches.lastOrNull { it.to == current && it.from in candidates }?.from
+    }
+
+    /** Switches oldest first, for saving. */
+    @Synchronized
+    fun toList(): List<Switch> = switches.toList()
+
+    companion object {
+        const val DEFAULT_CAPACITY = 50
+    }
+}
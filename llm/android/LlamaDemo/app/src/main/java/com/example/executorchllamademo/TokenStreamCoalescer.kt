@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+/**
+ * Collects streamed tokens on the generation thread and hands them to the UI at most once per
+ * display frame.
+ *
+ * Tokens are appended to growable buffers, so building a long answer is linear in its length
+ * instead of quadratic as with repeated string concatenation. The first token after a publish
+ * asks the [FrameScheduler] for the next frame; every token that arrives before that frame is
+ * folded into the same [publish] call, which runs on the UI thread.
+ */
+class TokenStreamCoalescer(
+    private val scheduler: FrameScheduler,
+    private val publish: (text: String, thinkingContent: String) -> Unit
+) {
+
+    /** Runs work on the UI thread before the next frame is drawn. */
+    fun interface FrameScheduler {
+        fun scheduleFrame(frame: Runnable)
+    }
+
+    private val lock = Any()
+    private val text = StringBuilder()
+    private val thinking = StringBuilder()
+    private var publishedText = ""
+    private var publishedThinking = ""
+    private var textChanged = false
+    private var thinkingChanged = false
+    private var frameScheduled = false
+    private val frame = Runnable { flush() }
+
+    /** True once any answer text has been appended since the last [reset]. */
+    val hasText: Boolean
+        get() = synchronized(lock) { text.isNotEmpty() }
+
+    /** True once any thinking text has been appended since the last [reset]. */
+    val hasThinking: Boolean
+        get() = synchronized(lock) { thinking.isNotEmpty() }
+
+    fun append(token: String) {
+        add(token, thinkingBlock = false)
+    }
+
+    fun appendThinking(token: String) {
+        add(token, thinkingBlock = true)
+    }
+
+    private fun add(token: String, thinkingBlock: Boolean) {
+        if (token.isEmpty()) return
+        val schedule = synchronized(lock) {
+            if (thinkingBlock) {
+                thinking.append(token)
+                thinkingChanged = true
+            } else {
+                text.append(token)
+                textChanged = true
+            }
+            val first = !frameScheduled
+            frameScheduled = true
+            first
+        }
+        if (schedule) {
+            scheduler.scheduleFrame(frame)
+        }
+    }
+
+    /**
+     * Publishes the buffered text if it changed since the last publish. Called by the scheduled
+     * frame, and directly when generation ends so the last tokens are not left waiting.
+     * Must run on the UI thread.
+     */
+    fun flush() {
+        val changed = synchronized(lock) {
+            frameScheduled = false
+            if (textChanged) {
+                publishedText = text.toString()
+            }
+            if (thinkingChanged) {
+                publishedThinking = thinking.toString()
+            }
+            val any = textChanged || thinkingChanged
+            textChanged = false
+            thinkingChanged = false
+            any
+        }
+        if (changed) {
+            publish(publishedText, publishedThinking)
+        }
+    }
+
+    /** Empties the buffers for the next answer. A frame that is already scheduled publishes nothing. */
+    fun reset() {
+        synchronized(lock) {
+            text.setLength(0)
+            thinking.setLength(0)
+            publishedText = ""
+            publishedThinking = ""
+            textChanged = false
+            thinkingChanged = false
+        }
+    }
+}
@@ -75,12 +75,16 @@ fun AppSettingsScreen(
     var showAppearanceDialog by remember { mutableStateOf(false) }
     var showClearChatDialog by remember { mutableStateOf(false) }
     var maxSeqLenText by remember { mutableStateOf("") }
+    var loraBudgetText by remember { mutableStateOf("") }
+    var loraParallelismText by remember { mutableStateOf("") }
 
     LaunchedEffect(Unit) {
         val prefs = DemoSharedPreferences(context)
         appSettings = prefs.getAppSettings()
         moduleSettings = prefs.getModuleSettings()
         maxSeqLenText = appSettings.maxSeqLen.toString()
+        loraBudgetText = if (appSettings.loraMemoryBudgetMb > 0) appSettings.loraMemoryBudgetMb.toString() else ""
+        loraParallelismText = appSettings.loraLoadParallelism.toString()
     }
 
     Column(
@@ -210,6 +214,164 @@ fun AppSettingsScreen(
                 )
             }
 
+            Spacer(modifier = Modifier.height(8.dp))
+
+            // LoRA memory budget input field
+            Column(
+                modifier = Modifier
+                    .fillMaxWidth()
+                    .background(appColors.settingsRowBackground, RoundedCornerShape(8.dp))
+                    .padding(horizontal = 16.dp, vertical = 12.dp)
+            ) {
+                Text(
+                    text = "LoRA Memory Budget (MB)",
+                    fontSize = 14.sp,
+                    color = appColors.settingsText,
+                    fontWeight = FontWeight.Medium
+                )
+                Spacer(modifier = Modifier.height(8.dp))
+                BasicTextField(
+                    value = loraBudgetText,
+                    onValueChange = { newValue ->
+                        loraBudgetText = newValue
+                        val newBudget = if (newValue.isEmpty()) 0 else newValue.toIntOrNull()
+                        if (newBudget != null && newBudget >= 0) {
+                            appSettings = appSettings.copy(loraMemoryBudgetMb = newBudget)
+                            val prefs = DemoSharedPreferences(context)
+                            prefs.saveAppSettings(appSettings)
+                        }
+                    },
+                    keyboardOptions = KeyboardOptions(keyboardType = KeyboardType.Number),
+                    singleLine = true,
+                    textStyle = TextStyle(
+                        color = appColors.settingsText,
+                        fontSize = 16.sp
+                    ),
+                    cursorBrush = SolidColor(appColors.settingsText),
+                    modifier = Modifier.fillMaxWidth(),
+                    decorationBox = { innerTextField ->
+                        Row(
+                            modifier = Modifier
+                                .fillMaxWidth()
+                                .border(1.dp, appColors.settingsText.copy(alpha = 0.5f), RoundedCornerShape(4.dp))
+                                .padding(horizontal = 12.dp, vertical = 14.dp)
+                        ) {
+                            if (loraBudgetText.isEmpty()) {
+                                Text(
+                                    text = "Half of device RAM",
+                                    color = appColors.settingsText.copy(alpha = 0.5f),
+                                    fontSize = 16.sp
+                                )
+                            }
+                            innerTextField()
+                        }
+                    }
+                )
+                Text(
+                    text = "Memory loaded LoRA models may use; the least recently used model is unloaded beyond it.",
+                    fontSize = 12.sp,
+                    color = appColors.settingsText.copy(alpha = 0.6f),
+                    modifier = Modifier.padding(top = 4.dp)
+                )
+            }
+
+            Spacer(modifier = Modifier.height(8.dp))
+
+            // LoRA load parallelism input field
+            Column(
+                modifier = Modifier
+                    .fillMaxWidth()
+                    .background(appColors.settingsRowBackground, RoundedCornerShape(8.dp))
+                    .padding(horizontal = 16.dp, vertical = 12.dp)
+            ) {
+                Text(
+                    text = "LoRA Load Parallelism",
+                    fontSize = 14.sp,
+                    color = appColors.settingsText,
+                    fontWeight = FontWeight.Medium
+                )
+                Spacer(modifier = Modifier.height(8.dp))
+                BasicTextField(
+                    value = loraParallelismText,
+                    onValueChange = { newValue ->
+                        loraParallelismText = newValue
+                        val newParallelism = newValue.toIntOrNull()
+                        if (newParallelism != null && newParallelism > 0) {
+                            appSettings = appSettings.copy(loraLoadParallelism = newParallelism)
+                            val prefs = DemoSharedPreferences(context)
+                            prefs.saveAppSettings(appSettings)
+                        }
+                    },
+                    keyboardOptions = KeyboardOptions(keyboardType = KeyboardType.Number),
+                    singleLine = true,
+                    textStyle = TextStyle(
+                        color = appColors.settingsText,
+                        fontSize = 16.sp
+                    ),
+                    cursorBrush = SolidColor(appColors.settingsText),
+                    modifier = Modifier.fillMaxWidth(),
+                    decorationBox = { innerTextField ->
+                        Row(
+                            modifier = Modifier
+                                .fillMaxWidth()
+                                .border(1.dp, appColors.settingsText.copy(alpha = 0.5f), RoundedCornerShape(4.dp))
+                                .padding(horizontal = 12.dp, vertical = 14.dp)
+                        ) {
+                            if (loraParallelismText.isEmpty()) {
+                                Text(
+                                    text = "Enter number of models",
+                                    color = appColors.settingsText.copy(alpha = 0.5f),
+                                    fontSize = 16.sp
+                                )
+                            }
+                            innerTextField()
+                        }
+                    }
+                )
+                Text(
+                    text = "LoRA models loaded at the same time (default: ${AppSettings.DEFAULT_LORA_LOAD_PARALLELISM})",
+                    fontSize = 12.sp,
+                    color = appColors.settingsText.copy(alpha = 0.6f),
+                    modifier = Modifier.padding(top = 4.dp)
+                )
+            }
+
+            Spacer(modifier = Modifier.height(8.dp))
+
+            // Preload likely next LoRA model toggle
+            Row(
+                modifier = Modifier
+                    .fillMaxWidth()
+                    .background(appColors.settingsRowBackground, RoundedCornerShape(8.dp))
+                    .padding(horizontal = 16.dp, vertical = 12.dp),
+                verticalAlignment = Alignment.CenterVertically
+            ) {
+                Column(modifier = Modifier.weight(1f)) {
+                    Text(
+                        text = "Preload Likely Next Model",
+                        fontSize = 14.sp,
+                        color = appColors.settingsText
+                    )
+                    Text(
+                        text = "Load the LoRA model you usually switch to next in the background",
+                        fontSize = 12.sp,
+                        color = appColors.settingsText.copy(alpha = 0.6f)
+                    )
+                }
+                Switch(
+                    checked = appSettings.preloadNextLoraModel,
+                    onCheckedChange = { enabled ->
+                        appSettings = appSettings.copy(preloadNextLoraModel = enabled)
+                        val prefs = DemoSharedPreferences(context)
+                        prefs.saveAppSettings(appSettings)
+                    },
+                    colors = SwitchDefaults.colors(
+                        checkedThumbColor = Color.White,
+                        checkedTrackColor = BtnEnabled
+                    )
+                )
+            }
+
             Spacer(modifier = Modifier.height(24.dp))
 
             // Conversation section header
@@ -305,7 +467,7 @@ fun AppSettingsScreen(
                         val prefs = DemoSharedPreferences(context)
                         moduleSettings = moduleSettings.copy(isClearChatHistory = true)
                         prefs.saveModuleSettings(moduleSettings)
-                        // Also clear the saved messages immediately
+                        // Also clear the saved messages, after any save still queued
                         prefs.removeExistingMessages()
                         showClearChatDialog = false
                     }
@@ -92,11 +92,24 @@ fun ChatScreen(
         }
     }
 
-    // Scroll to bottom when a new message is added (user sent or new response placeholder)
-    LaunchedEffect(viewModel.messages.size) {
+    // Scroll to bottom when a new message is added (user sent or new response placeholder).
+    // Keyed on the last message so that older pages prepended at the top do not scroll.
+    var scrolledToEnd by remember { mutableStateOf(false) }
+    LaunchedEffect(viewModel.messages.lastOrNull()?.id) {
         if (viewModel.messages.isNotEmpty()) {
             listState.animateScrollToItem(viewModel.messages.size - 1)
         }
+        scrolledToEnd = true
+    }
+
+    // Load the previous page of saved messages when the user scrolls to the top
+    val isAtTop by remember {
+        derivedStateOf { listState.firstVisibleItemIndex == 0 }
+    }
+    LaunchedEffect(isAtTop, scrolledToEnd, viewModel.hasOlderMessages) {
+        if (isAtTop && scrolledToEnd && viewModel.hasOlderMessages) {
+            viewModel.loadOlderMessages()
+        }
     }
 
     // During generation: poll and scroll only if user is near bottom (throttled)
@@ -358,9 +371,24 @@ fun ChatScreen(
                             }
                         }
                     }
+                    // Background preload of the likely next model, which can be stopped here
+                    viewModel.preloadingModelName?.let { name ->
+                        Text(
+                            text = "Preloading $name in the background",
+                            fontSize = 12.sp,
+                            color = appColors.settingsSecondaryText,
+                            modifier = Modifier.padding(top = 8.dp)
+                        )
+                    }
+                }
+            },
+            confirmButton = {
+                if (viewModel.preloadingModelName != null) {
+                    TextButton(onClick = { viewModel.cancelPreload() }) {
+                        Text("Stop Preloading")
+                    }
                 }
             },
-            confirmButton = {},
             dismissButton = {
                 TextButton(onClick = { showModelSwitcherDialog = false }) {
                     Text("Cancel")
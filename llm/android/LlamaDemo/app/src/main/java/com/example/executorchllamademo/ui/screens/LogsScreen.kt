@@ -15,7 +15,8 @@ import androidx.compose.foundation.layout.fillMaxSize
 import androidx.compose.foundation.layout.fillMaxWidth
 import androidx.compose.foundation.layout.padding
 import androidx.compose.foundation.lazy.LazyColumn
-import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.lazy.itemsIndexed
+import androidx.compose.foundation.lazy.rememberLazyListState
 import androidx.compose.foundation.text.selection.SelectionContainer
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.ArrowBack
@@ -30,6 +31,8 @@ import androidx.compose.material3.TextButton
 import androidx.compose.foundation.layout.Row
 import androidx.compose.runtime.Composable
 import androidx.compose.runtime.DisposableEffect
+import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.derivedStateOf
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.remember
@@ -60,6 +63,25 @@ fun LogsScreen(
     val appColors = LocalAppColors.current
     val clipboardManager = LocalClipboardManager.current
     val context = LocalContext.current
+    val listState = rememberLazyListState()
+
+    // Logs are read from disk a page at a time: start at the newest log and load the page
+    // before the oldest one shown when the user scrolls to the top
+    var scrolledToEnd by remember { mutableStateOf(false) }
+    LaunchedEffect(viewModel.logs.lastOrNull()) {
+        if (viewModel.logs.isNotEmpty()) {
+            listState.scrollToItem(viewModel.logs.size - 1)
+            scrolledToEnd = true
+        }
+    }
+    val isAtTop by remember {
+        derivedStateOf { listState.firstVisibleItemIndex == 0 }
+    }
+    LaunchedEffect(isAtTop, scrolledToEnd, viewModel.hasOlderLogs) {
+        if (isAtTop && scrolledToEnd && viewModel.hasOlderLogs) {
+            viewModel.loadOlderLogs()
+        }
+    }
 
     // Load logs on resume (like the old onResume behavior)
     DisposableEffect(lifecycleOwner) {
@@ -128,11 +150,15 @@ fun LogsScreen(
         // Logs list
         SelectionContainer {
             LazyColumn(
+                state = listState,
                 modifier = Modifier
                     .fillMaxSize()
                     .padding(8.dp)
             ) {
-                items(viewModel.logs) { log ->
+                itemsIndexed(
+                    items = viewModel.logs,
+                    key = { index, _ -> viewModel.firstLogKey + index }
+                ) { _, log ->
                     LogItem(log = log)
                 }
             }
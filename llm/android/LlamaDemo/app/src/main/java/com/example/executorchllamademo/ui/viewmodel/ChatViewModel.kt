@@ -10,29 +10,37 @@ package com.example.executorchllamademo.ui.viewmodel
 
 import android.app.ActivityManager
 import android.app.Application
+import android.content.ComponentCallbacks2
 import android.content.Context
+import android.content.res.Configuration
 import android.net.Uri
+import android.os.Handler
+import android.os.Looper
+import android.os.Process
 import android.util.Log
+import android.view.Choreographer
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableStateListOf
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.setValue
 import androidx.lifecycle.AndroidViewModel
 import com.example.executorchllamademo.BackendType
+import com.example.executorchllamademo.ChatHistory
 import com.example.executorchllamademo.AppSettings
 import com.example.executorchllamademo.DemoSharedPreferences
 import com.example.executorchllamademo.ETImage
 import com.example.executorchllamademo.ETLogging
+import com.example.executorchllamademo.LlmModuleLoader
 import com.example.executorchllamademo.Message
 import com.example.executorchllamademo.MessageType
 import com.example.executorchllamademo.ModelConfiguration
 import com.example.executorchllamademo.ModelType
 import com.example.executorchllamademo.ModelUtils
 import com.example.executorchllamademo.PromptFormat
+import com.example.executorchllamademo.ModuleManager
 import com.example.executorchllamademo.ModuleSettings
-import com.google.gson.Gson
-import com.google.gson.GsonBuilder
-import com.google.gson.InstanceCreator
+import com.example.executorchllamademo.SwitchHistory
+import com.example.executorchllamademo.TokenStreamCoalescer
 import com.google.gson.reflect.TypeToken
 import org.json.JSONException
 import org.json.JSONObject
@@ -44,7 +52,11 @@ import java.nio.ByteBuffer
 import java.nio.ByteOrder
 import java.nio.file.Files
 import java.nio.file.Paths
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
 import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
 
 class ChatViewModel(application: Application) : AndroidViewModel(application), LlmCallback {
@@ -61,6 +73,9 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
     var showMediaButtons by mutableStateOf(false)
     var supportsImageInput by mutableStateOf(false)
     var supportsAudioInput by mutableStateOf(false)
+    var hasOlderMessages by mutableStateOf(false)
+        private set
+    private var isLoadingOlderMessages = false
 
     // Thinking mode state: tracks whether we're inside a <think>...</think> block
     private var isInThinkingBlock = false
@@ -79,13 +94,43 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
         private set
     var activeModelId by mutableStateOf("")
         private set
+    // Display name of the model being preloaded, or null when none is
+    var preloadingModelName by mutableStateOf<String?>(null)
+        private set
+
+    // Loaded LlmModules by model ID for LoRA mode, kept within a memory budget
+    private val moduleManager = ModuleManager(Long.MAX_VALUE, LlmModuleLoader { currentSettingsFields }).apply {
+        listener = ModuleManager.Listener { id, residentBytes, reason ->
+            val name = currentSettingsFields.getModelById(id)?.displayName ?: id
+            ETLogging.getInstance().log("LoRA: Released $name (${residentBytes / BYTES_PER_MB} MB): $reason")
+        }
+    }
+    // Speculative loads of the model likely to be switched to next, one at a time
+    private val preloadExecutor: ExecutorService = Executors.newSingleThreadExecutor { runnable ->
+        Thread({
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+            runnable.run()
+        }, "LoraPreload")
+    }
+    private val memoryCallbacks = object : ComponentCallbacks2 {
+        override fun onTrimMemory(level: Int) {
+            this@ChatViewModel.onTrimMemory(level)
+        }
 
-    // Map of loaded LlmModules by model ID for LoRA mode
-    private val loadedModules = mutableMapOf<String, LlmModule>()
+        override fun onConfigurationChanged(newConfig: Configuration) {}
+
+        @Deprecated("Deprecated in Java")
+        override fun onLowMemory() {
+            onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE)
+        }
+    }
 
     private var module: LlmModule? = null
     private var resultMessage: Message? = null
+    // Position of resultMessage in _messages, so streaming updates do not search the chat
+    private var resultIndex = -1
     private val demoSharedPreferences = DemoSharedPreferences(application)
+    private val switchHistory: SwitchHistory = demoSharedPreferences.getSwitchHistory()
     private var currentSettingsFields = ModuleSettings()
     private var appSettings = AppSettings()
     private var promptID = 0
@@ -94,9 +139,22 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
     private var shouldAddSystemPrompt = true
 
     private val executor: Executor = Executors.newSingleThreadExecutor()
+    // Chat history reads and writes, ordered with those of the settings screen
+    private val historyExecutor: Executor = DemoSharedPreferences.historyExecutor
+    // Bumped when the chat is cleared, so a load started before that is not shown
+    private var historyEpoch = 0
+    private val mainHandler = Handler(Looper.getMainLooper())
+
+    // The view model is created on the main thread, whose Choreographer paces the token stream
+    private val choreographer = Choreographer.getInstance()
+    private val tokenStream = TokenStreamCoalescer(
+        { frame -> choreographer.postFrameCallback { frame.run() } },
+        ::publishResult
+    )
     private val contentResolver = application.contentResolver
 
     init {
+        application.registerComponentCallbacks(memoryCallbacks)
         // Check for clear chat history flag BEFORE loading saved messages
         val moduleSettings = demoSharedPreferences.getModuleSettings()
         appSettings = demoSharedPreferences.getAppSettings()
@@ -121,30 +179,71 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
             return
         }
 
+        val chatHistory = demoSharedPreferences.chatHistory
+        val epoch = historyEpoch
+        historyExecutor.execute {
+            migrateSavedMessagesJson(chatHistory)
+            // Only the end of the chat is read here; the chat screen asks for older pages on scroll
+            val recent = chatHistory.loadRecent(HISTORY_PAGE_SIZE)
+            val hasOlder = chatHistory.hasOlder
+            val nextPromptId = chatHistory.nextPromptId()
+            mainHandler.post {
+                if (epoch != historyEpoch) return@post
+                // Messages added meanwhile, such as the system prompt, are newer
+                _messages.addAll(0, recent)
+                hasOlderMessages = hasOlder
+                promptID = maxOf(promptID, nextPromptId)
+            }
+        }
+    }
+
+    /** Moves history saved as one JSON array by earlier versions into [ChatHistory]. */
+    private fun migrateSavedMessagesJson(chatHistory: ChatHistory) {
         val existingMsgJSON = demoSharedPreferences.getSavedMessages()
-        if (existingMsgJSON.isNotEmpty()) {
-            // Use InstanceCreator so that Gson calls the Message constructor (which
-            // assigns default values like id = UUID). Without this, Gson uses
-            // Unsafe.allocateInstance() and fields missing from old JSON become null.
-            val gson = GsonBuilder()
-                .registerTypeAdapter(Message::class.java, InstanceCreator<Message> {
-                    Message("", false, MessageType.TEXT, 0)
-                })
-                .create()
+        if (existingMsgJSON.isEmpty()) return
+        try {
             val type = object : TypeToken<ArrayList<Message>>() {}.type
-            val savedMessages: ArrayList<Message>? = gson.fromJson(existingMsgJSON, type)
-            savedMessages?.let {
-                _messages.addAll(it)
-                promptID = _messages.maxOfOrNull { msg -> msg.promptID }?.plus(1) ?: 0
+            val savedMessages: ArrayList<Message>? = ChatHistory.GSON.fromJson(existingMsgJSON, type)
+            if (savedMessages != null) {
+                chatHistory.clear()
+                chatHistory.save(savedMessages)
             }
+        } catch (e: RuntimeException) {
+            Log.e("ChatViewModel", "Could not migrate saved messages: ${e.message}")
         }
+        demoSharedPreferences.removeSavedMessagesJson()
     }
 
+    /** Prepends the page of saved messages before the oldest one shown. */
+    fun loadOlderMessages() {
+        if (!hasOlderMessages || isLoadingOlderMessages) return
+        isLoadingOlderMessages = true
+        val chatHistory = demoSharedPreferences.chatHistory
+        val epoch = historyEpoch
+        historyExecutor.execute {
+            val older = chatHistory.loadOlder(HISTORY_PAGE_SIZE)
+            val hasOlder = chatHistory.hasOlder
+            mainHandler.post {
+                isLoadingOlderMessages = false
+                if (epoch != historyEpoch) return@post
+                _messages.addAll(0, older)
+                hasOlderMessages = hasOlder
+            }
+        }
+    }
+
+    /**
+     * Saves the messages added or replaced since the last save. The list is captured here and
+     * written on a background thread.
+     */
     fun saveMessages() {
         val appSettings = demoSharedPreferences.getAppSettings()
         // Only save messages if saveChatHistory is enabled
         if (appSettings.saveChatHistory) {
-            demoSharedPreferences.addMessages(_messages.toList())
+            val snapshot = _messages.toList()
+            historyExecutor.execute {
+                demoSharedPreferences.addMessages(snapshot)
+            }
         } else {
             // Make sure no messages are persisted
             demoSharedPreferences.removeExistingMessages()
@@ -156,6 +255,12 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
     fun checkAndLoadSettings() {
         val updatedSettingsFields = demoSharedPreferences.getModuleSettings()
         appSettings = demoSharedPreferences.getAppSettings()
+        if (!moduleManager.isEmpty()) {
+            moduleManager.setBudget(loraMemoryBudgetBytes())
+        }
+        if (!appSettings.preloadNextLoraModel) {
+            cancelPreloads()
+        }
         val isUpdated = currentSettingsFields != updatedSettingsFields
         val isLoadModel = updatedSettingsFields.isLoadModel
 
@@ -192,7 +297,7 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
                 currentSettingsFields = settingsAfterClear.copy()
                 // Update media capabilities after settings are updated
                 setBackendMode(settingsAfterClear.backendType)
-                if (module == null && loadedModules.isEmpty()) {
+                if (module == null && moduleManager.isEmpty()) {
                     addSystemMessage(systemPromptMessage)
                 }
             }
@@ -210,7 +315,9 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
     }
 
     /**
-     * Loads all models configured in LoRA mode.
+     * Loads the models configured in LoRA mode that fit in the memory budget, the active one
+     * always, up to [AppSettings.loraLoadParallelism] at a time. The rest are loaded when
+     * switched to.
      */
     private fun loadLoraModels(settings: ModuleSettings) {
         Thread {
@@ -237,73 +344,83 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
             _messages.add(modelLoadingMessage)
             isModelReady = false
 
-            var loadedCount = 0
-            var firstLoadedModelId: String? = null
+            // Models of an earlier configuration are no longer reachable. Stop a generation
+            // still using one and wait for the executor to go idle before freeing them.
+            val previousModule = module
+            module = null
+            cancelPreloads()
+            previousModule?.stop()
+            awaitExecutorIdle()
+            moduleManager.releaseAll()
+            moduleManager.setBudget(loraMemoryBudgetBytes())
+
+            // Active model first, so it is the one loaded if the budget only fits one
+            val validModels = settings.models.filter { it.isValid() }
+            val preferred = validModels.firstOrNull { it.id == settings.activeModelId }
+            val ordered = listOfNotNull(preferred) + validModels.filter { it !== preferred }
+
+            // Decided up front from file sizes, since the models load side by side
+            val toLoad = ArrayList<ModelConfiguration>()
+            var plannedBytes = 0L
+            for (modelConfig in ordered) {
+                val estimate = LlmModuleLoader.estimateBytes(modelConfig)
+                if (toLoad.isNotEmpty() && plannedBytes + estimate > moduleManager.budgetBytes) continue
+                toLoad.add(modelConfig)
+                plannedBytes += estimate
+            }
+            val deferredCount = ordered.size - toLoad.size
+            // Pinned before loading so the others cannot push it out
+            moduleManager.active = toLoad.firstOrNull()?.id
 
-            for (modelConfig in settings.models) {
-                if (!modelConfig.isValid()) continue
+            val pool = Executors.newFixedThreadPool(appSettings.loraLoadParallelism.coerceIn(1, maxOf(toLoad.size, 1)))
+            val loads = toLoad.map { modelConfig ->
+                modelConfig to pool.submit(Callable { moduleManager.acquire(modelConfig.id) })
+            }
+            pool.shutdown()
 
+            val loadedIds = ArrayList<String>()
+            for ((modelConfig, load) in loads) {
                 try {
-                    // Build dataFiles list: foundation PTD + adapter PTDs
-                    val dataFiles = mutableListOf<String>()
-                    if (sharedDataPath.isNotEmpty()) {
-                        dataFiles.add(sharedDataPath)
-                    }
-                    dataFiles.addAll(modelConfig.adapterFilePaths)
-
-                    val dataFilesLog = if (dataFiles.isEmpty()) "no data files" else dataFiles.joinToString(", ")
-                    ETLogging.getInstance().log(
-                        "LoRA: Loading model ${modelConfig.displayName} with tokenizer ${modelConfig.tokenizerFilePath}, data files: $dataFilesLog"
-                    )
-
-                    val runStartTime = System.currentTimeMillis()
-                    val llmModule = LlmModule(
-                        ModelUtils.getModelCategory(modelConfig.modelType, modelConfig.backendType),
-                        modelConfig.modelFilePath,
-                        modelConfig.tokenizerFilePath,
-                        modelConfig.temperature.toFloat(),
-                        dataFiles
-                    )
-
-                    llmModule.load()
-                    val loadDuration = System.currentTimeMillis() - runStartTime
-
-                    // Store in map
-                    loadedModules[modelConfig.id] = llmModule
-                    loadedCount++
-
-                    if (firstLoadedModelId == null) {
-                        firstLoadedModelId = modelConfig.id
-                    }
+                    val entry = load.get()
+                    loadedIds.add(modelConfig.id)
 
                     ETLogging.getInstance().log(
-                        "LoRA: Loaded ${modelConfig.displayName} in ${loadDuration.toFloat() / 1000} sec"
+                        "LoRA: Loaded ${modelConfig.displayName} in ${entry.loadMillis.toFloat() / 1000} sec, " +
+                            "resident ${entry.residentBytes / BYTES_PER_MB} MB"
                     )
-                } catch (e: ExecutorchRuntimeException) {
-                    ETLogging.getInstance().log("LoRA: Failed to load ${modelConfig.displayName}: ${e.message}")
-                    _messages.add(Message("Failed to load ${modelConfig.displayName}: ${e.message}", false, MessageType.SYSTEM, 0))
+                } catch (e: ExecutionException) {
+                    val message = e.cause?.message
+                    ETLogging.getInstance().log("LoRA: Failed to load ${modelConfig.displayName}: $message")
+                    _messages.add(Message("Failed to load ${modelConfig.displayName}: $message", false, MessageType.SYSTEM, 0))
                 }
             }
+            val pinnedId = moduleManager.active
+            if (pinnedId == null || pinnedId !in loadedIds) {
+                // The active model failed to load; use one that did
+                moduleManager.active = loadedIds.firstOrNull()
+            }
+            val loadedCount = loadedIds.count { moduleManager.contains(it) }
 
             _messages.remove(modelLoadingMessage)
 
             if (loadedCount > 0) {
                 // Set the active module
-                val activeId = if (settings.activeModelId.isNotEmpty() && loadedModules.containsKey(settings.activeModelId)) {
-                    settings.activeModelId
-                } else {
-                    firstLoadedModelId ?: ""
-                }
-
+                val activeId = moduleManager.active ?: ""
                 activeModelId = activeId
-                module = loadedModules[activeId]
+                module = moduleManager.get(activeId)
 
                 val activeModelName = settings.getModelById(activeId)?.displayName ?: "Unknown"
+                val deferredText = if (deferredCount > 0) {
+                    " $deferredCount more will load when selected (memory budget ${moduleManager.budgetBytes / BYTES_PER_MB} MB)."
+                } else {
+                    ""
+                }
                 _messages.add(Message(
-                    "Successfully loaded $loadedCount model(s). Active: $activeModelName. Use the switch button to change models.",
+                    "Successfully loaded $loadedCount model(s). Active: $activeModelName. Use the switch button to change models.$deferredText",
                     false, MessageType.SYSTEM, 0
                 ))
                 isModelReady = true
+                preloadLikelyNextModel()
             } else {
                 _messages.add(Message("No models loaded. Please check your configuration.", false, MessageType.SYSTEM, 0))
                 isModelReady = false
@@ -313,7 +430,8 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
 
     /**
      * Switches to a different model in LoRA mode.
-     * Creates a new LlmModule with the selected PTE and the same PTD.
+     * Loads it first if it is not loaded, releasing least recently used models to stay within
+     * the memory budget; a preload of it under way is waited for rather than started over.
      */
     fun switchToModel(modelId: String) {
         if (!isLoraMode) return
@@ -328,10 +446,16 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
             return
         }
 
+        // Guesses for other models are no longer useful
+        cancelPreloads(modelId)
+        val previousId = activeModelId
+
         // Check if model is already loaded
-        if (loadedModules.containsKey(modelId)) {
+        val loadedModule = moduleManager.get(modelId)
+        if (loadedModule != null) {
             // Just switch to the already loaded module
-            module = loadedModules[modelId]
+            moduleManager.active = modelId
+            module = loadedModule
             activeModelId = modelId
 
             // Update settings with new active model
@@ -340,54 +464,128 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
 
             addSystemMessage("Switched to ${modelConfig.displayName}")
             ETLogging.getInstance().log("LoRA: Switched to already loaded model ${modelConfig.displayName}")
+            recordSwitch(previousId, modelId)
         } else {
             // Need to load the model first
             Thread {
-                val sharedDataPath = currentSettingsFields.getEffectiveDataPath()
                 addSystemMessage("Loading ${modelConfig.displayName}...")
                 isModelReady = false
 
                 try {
-                    // Build dataFiles list: foundation PTD + adapter PTDs
-                    val dataFiles = mutableListOf<String>()
-                    if (sharedDataPath.isNotEmpty()) {
-                        dataFiles.add(sharedDataPath)
-                    }
-                    dataFiles.addAll(modelConfig.adapterFilePaths)
-
-                    val runStartTime = System.currentTimeMillis()
-                    val llmModule = LlmModule(
-                        ModelUtils.getModelCategory(modelConfig.modelType, modelConfig.backendType),
-                        modelConfig.modelFilePath,
-                        modelConfig.tokenizerFilePath,
-                        modelConfig.temperature.toFloat(),
-                        dataFiles
-                    )
+                    val entry = moduleManager.acquire(modelId)
 
-                    llmModule.load()
-                    val loadDuration = System.currentTimeMillis() - runStartTime
-
-                    // Store and switch
-                    loadedModules[modelId] = llmModule
-                    module = llmModule
+                    // Switch; the previous model may now be released if memory runs short
+                    moduleManager.active = modelId
+                    module = entry.module
                     activeModelId = modelId
+                    moduleManager.trimTo(moduleManager.budgetBytes, "over budget")
 
                     // Update settings
                     currentSettingsFields = currentSettingsFields.setActiveModel(modelId)
                     demoSharedPreferences.saveModuleSettings(currentSettingsFields)
 
-                    addSystemMessage("Switched to ${modelConfig.displayName} (loaded in ${loadDuration.toFloat() / 1000} sec)")
-                    ETLogging.getInstance().log("LoRA: Loaded and switched to ${modelConfig.displayName} in ${loadDuration.toFloat() / 1000} sec")
+                    val loadSeconds = entry.loadMillis.toFloat() / 1000
+                    val residentMb = entry.residentBytes / BYTES_PER_MB
+                    addSystemMessage("Switched to ${modelConfig.displayName} (loaded in $loadSeconds sec, $residentMb MB)")
+                    ETLogging.getInstance().log("LoRA: Loaded and switched to ${modelConfig.displayName} in $loadSeconds sec, resident $residentMb MB")
                     isModelReady = true
+                    recordSwitch(previousId, modelId)
                 } catch (e: ExecutorchRuntimeException) {
                     addSystemMessage("Failed to load ${modelConfig.displayName}: ${e.message}")
                     ETLogging.getInstance().log("LoRA: Failed to load ${modelConfig.displayName}: ${e.message}")
-                    isModelReady = loadedModules.isNotEmpty()
+                    isModelReady = !moduleManager.isEmpty()
                 }
             }.start()
         }
     }
 
+    /** Remembers a switch, then preloads the model likely to be switched to next. */
+    private fun recordSwitch(previousId: String, modelId: String) {
+        switchHistory.record(previousId, modelId)
+        demoSharedPreferences.saveSwitchHistory(switchHistory)
+        preloadLikelyNextModel()
+    }
+
+    /**
+     * Loads the model predicted by [switchHistory] in the background, if preloading is enabled
+     * and the model fits in the memory budget beside those already loaded.
+     */
+    private fun preloadLikelyNextModel() {
+        if (!appSettings.preloadNextLoraModel) return
+        val currentId = moduleManager.active ?: return
+        val candidates = currentSettingsFields.models.filter { it.isValid() }.map { it.id }
+        val nextId = switchHistory.predictNext(currentId, candidates) ?: return
+        val modelConfig = currentSettingsFields.getModelById(nextId) ?: return
+        if (moduleManager.preload(nextId, LlmModuleLoader.estimateBytes(modelConfig), preloadExecutor)) {
+            val name = modelConfig.displayName
+            preloadingModelName = name
+            ETLogging.getInstance().log("LoRA: Preloading $name, the likely next model")
+            // The executor runs one task at a time, so this runs once the preload has ended
+            preloadExecutor.execute {
+                mainHandler.post {
+                    if (preloadingModelName == name) preloadingModelName = null
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops a background preload of the likely next model, e.g. to free memory or CPU.
+     * Offered in the model switcher while [preloadingModelName] is set.
+     */
+    fun cancelPreload() {
+        val cancelled = cancelPreloads()
+        if (cancelled > 0) {
+            ETLogging.getInstance().log("LoRA: Cancelled $cancelled preload(s)")
+        }
+    }
+
+    private fun cancelPreloads(keep: String? = null): Int {
+        preloadingModelName = null
+        return moduleManager.cancelPreloads(keep)
+    }
+
+    /** Memory budget for LoRA models: the app setting, or half of the device's RAM if unset. */
+    private fun loraMemoryBudgetBytes(): Long {
+        if (appSettings.loraMemoryBudgetMb > 0) {
+            return appSettings.loraMemoryBudgetMb * BYTES_PER_MB
+        }
+        val memoryInfo = ActivityManager.MemoryInfo()
+        val activityManager = getApplication<Application>()
+            .getSystemService(Context.ACTIVITY_SERVICE) as? ActivityManager
+        activityManager?.getMemoryInfo(memoryInfo)
+        return if (memoryInfo.totalMem > 0) memoryInfo.totalMem / 2 else Long.MAX_VALUE
+    }
+
+    /**
+     * Releases LoRA models other than the active one under memory pressure: down to half the
+     * budget while the app is running low or hidden, all of them once the system is critically
+     * low or the app is in the background. Preloads are cancelled either way.
+     */
+    private fun onTrimMemory(level: Int) {
+        if (moduleManager.isEmpty()) return
+        @Suppress("DEPRECATION")
+        val target = when {
+            level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL -> 0L
+            level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW -> moduleManager.budgetBytes / 2
+            else -> return
+        }
+        cancelPreload()
+        val released = moduleManager.trimTo(target, "memory pressure (level $level)")
+        if (released > 0) {
+            ETLogging.getInstance().log(
+                "LoRA: Released $released model(s) on memory pressure, ${moduleManager.residentBytes() / BYTES_PER_MB} MB still resident"
+            )
+        }
+    }
+
+    override fun onCleared() {
+        getApplication<Application>().unregisterComponentCallbacks(memoryCallbacks)
+        moduleManager.cancelPreloads()
+        preloadExecutor.shutdown()
+    }
+
     private fun setBackendMode(backendType: BackendType) {
         // Media buttons visibility depends on backend (MediaTek doesn't support media)
         val backendSupportsMedia = when (backendType) {
@@ -427,6 +625,8 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
     private fun checkForClearChatHistory(updatedSettingsFields: ModuleSettings): ModuleSettings {
         if (updatedSettingsFields.isClearChatHistory) {
             _messages.clear()
+            hasOlderMessages = false
+            historyEpoch++
             demoSharedPreferences.removeExistingMessages()
             val clearedSettings = updatedSettingsFields.copy(isClearChatHistory = false)
             demoSharedPreferences.saveModuleSettings(clearedSettings)
@@ -652,6 +852,8 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
         // Create result message placeholder
         resultMessage = Message("", false, MessageType.TEXT, promptID)
         isInThinkingBlock = false
+        tokenStream.reset()
+        resultIndex = _messages.size
         _messages.add(resultMessage!!)
 
         // Clear selected images after adding to chat
@@ -696,20 +898,28 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
             }
 
             val generateDuration = System.currentTimeMillis() - generateStartTime
-            resultMessage?.let { msg ->
-                msg.totalGenerationTime = generateDuration
-                val index = _messages.indexOfLast { it === msg }
-                if (index >= 0) {
-                    val updated = msg.copy()
-                    _messages[index] = updated
-                    resultMessage = updated
-                }
+            // Generation only ends once the last tokens are published: a prompt sent earlier
+            // would reset the stream and take over the result message
+            mainHandler.post {
+                tokenStream.flush()
+                updateResultMessage { it.totalGenerationTime = generateDuration }
+                isGenerating = false
             }
-            isGenerating = false
             ETLogging.getInstance().log("Inference completed")
         }
     }
 
+    /** Blocks until the prefill and generation tasks queued on [executor] so far have run. */
+    private fun awaitExecutorIdle() {
+        val idle = CountDownLatch(1)
+        executor.execute { idle.countDown() }
+        try {
+            idle.await()
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+    }
+
     fun stopGeneration() {
         Log.i("ChatViewModel", "stopGeneration called")
         module?.stop()
@@ -792,55 +1002,78 @@ class ChatViewModel(application: Application) : AndroidViewModel(application), L
             return
         }
 
+        // Tokens are buffered here on the generation thread and published once per frame
         if (isInThinkingBlock) {
             // Skip leading newlines in thinking content
             val keepThinking = !(processedResult == "\n" || processedResult == "\n\n") ||
-                    resultMessage?.thinkingContent?.isNotEmpty() == true
+                    tokenStream.hasThinking
             if (keepThinking) {
-                resultMessage?.appendThinkingText(processedResult)
+                tokenStream.appendThinking(processedResult)
             }
         } else {
             val keepResult = !(processedResult == "\n" || processedResult == "\n\n") ||
-                    resultMessage?.text?.isNotEmpty() == true
+                    tokenStream.hasText
             if (keepResult) {
-                resultMessage?.appendText(processedResult)
+                tokenStream.append(processedResult)
             }
         }
+    }
+
+    /** Called on the main thread, at most once per frame, with the reply streamed so far. */
+    private fun publishResult(text: String, thinkingContent: String) {
+        val msg = resultMessage ?: return
+        val index = resultPosition(msg)
+        if (index < 0) return
+        val updated = msg.copy(text, thinkingContent)
+        _messages[index] = updated
+        resultMessage = updated
+    }
+
+    /**
+     * Applies [update] to the reply being generated and replaces it with a new reference, which
+     * triggers recomposition under Compose strong skipping mode, where unstable parameters are
+     * compared by reference equality (===). Must run on the main thread.
+     */
+    private fun updateResultMessage(update: (Message) -> Unit) {
+        val msg = resultMessage ?: return
+        val index = resultPosition(msg)
+        if (index < 0) return
+        update(msg)
+        val updated = msg.copy()
+        _messages[index] = updated
+        resultMessage = updated
+    }
 
-        // Create a new Message reference to trigger recomposition under Compose strong
-        // skipping mode, which compares unstable parameters by reference equality (===).
-        val index = _messages.indexOfLast { it === resultMessage }
-        if (index >= 0) {
-            val updated = resultMessage!!.copy()
-            _messages[index] = updated
-            resultMessage = updated
+    /**
+     * Index of [msg] in the chat. Only searches if a message before it was removed since it
+     * was added, and returns -1 once the chat has been cleared.
+     */
+    private fun resultPosition(msg: Message): Int {
+        if (_messages.getOrNull(resultIndex) !== msg) {
+            resultIndex = _messages.indexOfLast { it === msg }
         }
+        return resultIndex
     }
 
     override fun onStats(stats: String) {
-        resultMessage?.let { msg ->
-            var tps = 0f
-            try {
-                val jsonObject = JSONObject(stats)
-                val numGeneratedTokens = jsonObject.getInt("generated_tokens")
-                val inferenceEndMs = jsonObject.getInt("inference_end_ms")
-                val promptEvalEndMs = jsonObject.getInt("prompt_eval_end_ms")
-                tps = numGeneratedTokens.toFloat() / (inferenceEndMs - promptEvalEndMs) * 1000
-            } catch (e: JSONException) {
-                Log.e("LLM", "Error parsing JSON: ${e.message}")
-            }
-            msg.tokensPerSecond = tps
-            // Create a new reference to trigger recomposition under strong skipping mode
-            val index = _messages.indexOfLast { it === msg }
-            if (index >= 0) {
-                val updated = msg.copy()
-                _messages[index] = updated
-                resultMessage = updated
-            }
+        var tps = 0f
+        try {
+            val jsonObject = JSONObject(stats)
+            val numGeneratedTokens = jsonObject.getInt("generated_tokens")
+            val inferenceEndMs = jsonObject.getInt("inference_end_ms")
+            val promptEvalEndMs = jsonObject.getInt("prompt_eval_end_ms")
+            tps = numGeneratedTokens.toFloat() / (inferenceEndMs - promptEvalEndMs) * 1000
+        } catch (e: JSONException) {
+            Log.e("LLM", "Error parsing JSON: ${e.message}")
+        }
+        mainHandler.post {
+            updateResultMessage { it.tokensPerSecond = tps }
         }
     }
 
     companion object {
         private const val MAX_NUM_OF_IMAGES = 5
+        private const val HISTORY_PAGE_SIZE = 50
+        private const val BYTES_PER_MB = 1024L * 1024
     }
 }
@@ -8,26 +8,100 @@
 
 package com.example.executorchllamademo.ui.viewmodel
 
+import android.os.Handler
+import android.os.Looper
+import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableStateListOf
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.setValue
 import androidx.lifecycle.ViewModel
 import com.example.executorchllamademo.AppLog
 import com.example.executorchllamademo.ETLogging
+import com.example.executorchllamademo.LogStore
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 
+/**
+ * Shows the log files a page at a time, newest page first. Files are read on a background
+ * thread and pages are applied on the main thread in the order they were requested.
+ */
 class LogsViewModel : ViewModel() {
     private val _logs = mutableStateListOf<AppLog>()
     val logs: List<AppLog> = _logs
 
+    var hasOlderLogs by mutableStateOf(false)
+        private set
+
+    /**
+     * List key of the first log shown; the log at index i has key firstLogKey + i. Prepended
+     * pages get lower keys, so the list stays on the logs the user was looking at.
+     */
+    var firstLogKey by mutableStateOf(0L)
+        private set
+
+    // Where the page before the oldest shown log starts
+    private var olderCursor: LogStore.Cursor? = null
+    private var isLoadingOlderLogs = false
+
+    private val executor: ExecutorService = Executors.newSingleThreadExecutor()
+    private val mainHandler = Handler(Looper.getMainLooper())
+
     fun loadLogs() {
-        _logs.clear()
-        _logs.addAll(ETLogging.getInstance().getLogs())
+        val logStore = ETLogging.getInstance().getLogStore()
+        executor.execute {
+            val page = logStore.readBefore(null, PAGE_SIZE)
+            mainHandler.post {
+                _logs.clear()
+                _logs.addAll(page.logs)
+                firstLogKey = 0L
+                olderCursor = page.before
+                hasOlderLogs = page.before != null
+            }
+        }
+    }
+
+    /** Prepends the page before the oldest log shown. */
+    fun loadOlderLogs() {
+        val cursor = olderCursor ?: return
+        if (isLoadingOlderLogs) return
+        isLoadingOlderLogs = true
+        val logStore = ETLogging.getInstance().getLogStore()
+        executor.execute {
+            val page = logStore.readBefore(cursor, PAGE_SIZE)
+            mainHandler.post {
+                _logs.addAll(0, page.logs)
+                firstLogKey -= page.logs.size
+                olderCursor = page.before
+                hasOlderLogs = page.before != null
+                isLoadingOlderLogs = false
+            }
+        }
     }
 
     fun clearLogs() {
-        ETLogging.getInstance().clearLogs()
-        _logs.clear()
+        executor.execute {
+            ETLogging.getInstance().clearLogs()
+            mainHandler.post {
+                _logs.clear()
+                olderCursor = null
+                hasOlderLogs = false
+            }
+        }
     }
 
     fun saveLogs() {
-        ETLogging.getInstance().saveLogs()
+        // The screen may be disposed after the view model is cleared; the writer saves them anyway
+        if (executor.isShutdown) return
+        executor.execute {
+            ETLogging.getInstance().saveLogs()
+        }
+    }
+
+    override fun onCleared() {
+        executor.shutdown()
+    }
+
+    companion object {
+        private const val PAGE_SIZE = 200
     }
 }
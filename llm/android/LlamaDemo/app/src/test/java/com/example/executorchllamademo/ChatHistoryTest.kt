@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Unit tests for incremental chat history saves and paged loading.
+ */
+class ChatHistoryTest {
+
+    /** In-memory table that counts the records written. */
+    private class MemoryTable : ChatHistory.Table {
+        val rows = HashMap<String, ChatHistory.Record>()
+        var upserted = 0
+        var deleted = 0
+        var writes = 0
+
+        override fun write(upserts: List<ChatHistory.Record>, deletes: Collection<String>) {
+            writes++
+            upserts.forEach { rows[it.id] = it }
+            deletes.forEach { rows.remove(it) }
+            upserted += upserts.size
+            deleted += deletes.size
+        }
+
+        override fun loadBefore(beforeSeq: Long, limit: Int): List<ChatHistory.Record> =
+            rows.values.filter { it.seq < beforeSeq }.sortedByDescending { it.seq }.take(limit)
+
+        override fun maxSeq(): Long = rows.values.maxOfOrNull { it.seq } ?: -1L
+
+        override fun maxPromptId(): Int = rows.values.maxOfOrNull { it.promptId } ?: -1
+
+        override fun clear() {
+            rows.clear()
+        }
+    }
+
+    private fun chat(count: Int): MutableList<Message> =
+        MutableList(count) { i -> Message("Message $i", i % 2 == 0, MessageType.TEXT, i / 2) }
+
+    @Test
+    fun onlyNewAndReplacedMessagesAreWritten() {
+        val table = MemoryTable()
+        val history = ChatHistory(table)
+        val messages = chat(10)
+
+        assertEquals(10, history.save(messages))
+        assertEquals(0, history.save(messages))
+        assertEquals(1, table.writes)
+
+        messages.add(Message("", false, MessageType.TEXT, 5))
+        messages[9] = messages[9].copy("Edited", "")
+        assertEquals(2, history.save(messages))
+        assertEquals(12, table.upserted)
+        assertEquals(11, table.rows.size)
+    }
+
+    @Test
+    fun removedMessagesAreDeleted() {
+        val table = MemoryTable()
+        val history = ChatHistory(table)
+        val messages = chat(5)
+        history.save(messages)
+
+        val removed = messages.removeAt(2)
+        assertEquals(1, history.save(messages))
+
+        assertFalse(table.rows.containsKey(removed.id))
+        assertEquals(4, table.rows.size)
+    }
+
+    @Test
+    fun loadsMostRecentPageFirst() {
+        val table = MemoryTable()
+        val messages = chat(120)
+        ChatHistory(table).save(messages)
+
+        val history = ChatHistory(table)
+        val recent = history.loadRecent(50)
+
+        assertEquals(messages.takeLast(50).map { it.id }, recent.map { it.id })
+        assertEquals("Message 119", recent.last().text)
+        assertTrue(history.hasOlder)
+        assertEquals(60, history.nextPromptId())
+
+        val middle = history.loadOlder(50)
+        assertEquals(messages.subList(20, 70).map { it.id }, middle.map { it.id })
+        val oldest = history.loadOlder(50)
+        assertEquals(messages.take(20).map { it.id }, oldest.map { it.id })
+        assertFalse(history.hasOlder)
+        assertTrue(history.loadOlder(50).isEmpty())
+    }
+
+    @Test
+    fun savingAfterPagedLoadKeepsUnloadedMessages() {
+        val table = MemoryTable()
+        ChatHistory(table).save(chat(100))
+
+        val history = ChatHistory(table)
+        val shown = history.loadRecent(20).toMutableList()
+        assertEquals(0, history.save(shown))
+
+        shown.add(Message("New question", true, MessageType.TEXT, 50))
+        assertEquals(1, history.save(shown))
+
+        assertEquals(101, table.rows.size)
+        // The new message goes after every saved message, loaded or not
+        assertEquals("New question", history.loadRecent(1).single().text)
+    }
+
+    @Test
+    fun savingBeforeOlderPageIsShownKeepsThatPage() {
+        val table = MemoryTable()
+        ChatHistory(table).save(chat(30))
+
+        val history = ChatHistory(table)
+        val shown = history.loadRecent(10).toMutableList()
+        val older = history.loadOlder(10)
+
+        // A save of the chat as it was before the older page was prepended
+        shown.add(Message("New question", true, MessageType.TEXT, 15))
+        assertEquals(1, history.save(shown))
+        assertEquals(31, table.rows.size)
+
+        shown.addAll(0, older)
+        assertEquals(0, history.save(shown))
+
+        val removed = shown.removeAt(0)
+        assertEquals(1, history.save(shown))
+        assertFalse(table.rows.containsKey(removed.id))
+        assertEquals(30, table.rows.size)
+    }
+
+    @Test
+    fun savingBeforeRecentPageIsShownKeepsThatPage() {
+        val table = MemoryTable()
+        ChatHistory(table).save(chat(10))
+
+        val history = ChatHistory(table)
+        val recent = history.loadRecent(10)
+
+        // The chat shows a system message before the loaded page arrives
+        val shown = mutableListOf(Message("Loading model", false, MessageType.SYSTEM, 0))
+        assertEquals(1, history.save(shown))
+        assertEquals(11, table.rows.size)
+
+        shown.addAll(0, recent)
+        assertEquals(0, history.save(shown))
+        assertEquals("Loading model", history.loadRecent(1).single().text)
+    }
+
+    @Test
+    fun loadedMessagesKeepTheirFields() {
+        val table = MemoryTable()
+        val reply = Message("", false, MessageType.TEXT, 3).copy("The answer", "Some thought")
+        reply.tokensPerSecond = 12.5f
+        reply.totalGenerationTime = 4000L
+        ChatHistory(table).save(listOf(reply))
+
+        val loaded = ChatHistory(table).loadRecent(10).single()
+
+        assertEquals(reply.id, loaded.id)
+        assertEquals("The answer", loaded.text)
+        assertEquals("Some thought", loaded.thinkingContent)
+        assertEquals(3, loaded.promptID)
+        assertEquals(12.5f, loaded.tokensPerSecond, 0f)
+        assertEquals(4000L, loaded.totalGenerationTime)
+        assertFalse(loaded.isSent)
+    }
+
+    @Test
+    fun clearStartsOver() {
+        val table = MemoryTable()
+        val history = ChatHistory(table)
+        history.save(chat(3))
+
+        history.clear()
+
+        assertTrue(table.rows.isEmpty())
+        assertEquals(0, history.nextPromptId())
+        assertEquals(1, history.save(chat(1)))
+        assertEquals(0L, table.rows.values.single().seq)
+    }
+}
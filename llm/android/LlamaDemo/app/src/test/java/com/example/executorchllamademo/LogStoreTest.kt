@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+/**
+ * Unit tests for the in-memory ring and the rotated log files of [LogStore].
+ */
+class LogStoreTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val stores = ArrayList<LogStore>()
+
+    @After
+    fun closeStores() {
+        stores.forEach { it.close() }
+    }
+
+    private fun store(ringCapacity: Int = 100, maxFileBytes: Long = 1L shl 20, maxFiles: Int = 4) =
+        LogStore(folder.root, ringCapacity, 1000, maxFileBytes, maxFiles).also { stores.add(it) }
+
+    private fun messages(logs: List<AppLog>) = logs.map { it.message }
+
+    @Test
+    fun ringKeepsTheNewestLogs() {
+        val logs = store(ringCapacity = 3)
+
+        for (i in 0 until 5) {
+            logs.add(AppLog("log $i", i.toLong()))
+        }
+
+        assertEquals(listOf("log 2", "log 3", "log 4"), messages(logs.recent()))
+    }
+
+    @Test
+    fun everyLogReachesDisk() {
+        val logs = store(ringCapacity = 3)
+        for (i in 0 until 50) {
+            logs.add(AppLog("log $i", i.toLong()))
+        }
+
+        val page = logs.readBefore(null, 100)
+
+        assertEquals((0 until 50).map { "log $it" }, messages(page.logs))
+        assertEquals(49L, page.logs.last().timestamp)
+        assertNull(page.before)
+    }
+
+    @Test
+    fun pagesAcrossRotatedFilesNewestFirst() {
+        // Small files so that the 100 logs span several of them
+        val logs = store(maxFileBytes = 400, maxFiles = 100)
+        for (i in 0 until 100) {
+            logs.add(AppLog("log $i"))
+        }
+        logs.flush()
+        assertTrue(folder.root.list()!!.size > 3)
+
+        val read = ArrayList<String>()
+        var page = logs.readBefore(null, 30)
+        read.addAll(0, messages(page.logs))
+        var pages = 1
+        while (page.before != null) {
+            page = logs.readBefore(page.before, 30)
+            read.addAll(0, messages(page.logs))
+            pages++
+        }
+
+        assertEquals((0 until 100).map { "log $it" }, read)
+        assertEquals(4, pages)
+    }
+
+    @Test
+    fun rotationKeepsTheNewestFiles() {
+        val logs = store(maxFileBytes = 400, maxFiles = 2)
+        for (i in 0 until 100) {
+            logs.add(AppLog("log $i"))
+        }
+        logs.flush()
+
+        assertTrue(folder.root.list()!!.size <= 2)
+        val page = logs.readBefore(null, 1000)
+        assertEquals("log 99", page.logs.last().message)
+        assertTrue(page.logs.size < 100)
+    }
+
+    @Test
+    fun newStoreContinuesExistingFiles() {
+        val first = store()
+        first.add(AppLog("before restart"))
+        first.close()
+
+        val second = store()
+        second.add(AppLog("after restart"))
+
+        assertEquals(listOf("before restart", "after restart"),
+            messages(second.readBefore(null, 10).logs))
+    }
+
+    @Test
+    fun clearDropsMemoryAndFiles() {
+        val logs = store()
+        logs.add(AppLog("gone"))
+        logs.flush()
+
+        logs.clear()
+        logs.add(AppLog("kept"))
+
+        assertEquals(listOf("kept"), messages(logs.recent()))
+        assertEquals(listOf("kept"), messages(logs.readBefore(null, 10).logs))
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.Executor
+
+/**
+ * Unit tests for the memory-budgeted LRU module manager.
+ */
+class ModuleManagerTest {
+
+    /** Loads models named after their id, each costing [sizes] bytes. */
+    private class FakeLoader(private val sizes: Map<String, Long>) : ModuleManager.Loader<String> {
+        val loads = ArrayList<String>()
+        val released = ArrayList<String>()
+
+        override fun load(id: String): ModuleManager.Loaded<String> {
+            loads.add(id)
+            return ModuleManager.Loaded("module-$id", sizes.getValue(id))
+        }
+
+        override fun release(module: String) {
+            released.add(module)
+        }
+    }
+
+    /** Holds tasks until the test runs them. */
+    private class ManualExecutor : Executor {
+        val tasks = ArrayList<Runnable>()
+
+        override fun execute(command: Runnable) {
+            tasks.add(command)
+        }
+
+        fun runAll() {
+            tasks.forEach { it.run() }
+            tasks.clear()
+        }
+    }
+
+    private val sizes = mapOf("a" to 400L, "b" to 400L, "c" to 400L, "big" to 1500L)
+
+    @Test
+    fun evictsLeastRecentlyUsedOverBudget() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(1000L, loader)
+
+        manager.acquire("a")
+        manager.acquire("b")
+        manager.get("a")
+        manager.acquire("c")
+
+        assertEquals(listOf("module-b"), loader.released)
+        assertEquals(listOf("a", "c"), manager.entries().map { it.id })
+        assertEquals(800L, manager.residentBytes())
+    }
+
+    @Test
+    fun activeModelIsNeverEvicted() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(1000L, loader)
+
+        manager.acquire("a")
+        manager.active = "a"
+        manager.acquire("b")
+        manager.acquire("c")
+        assertEquals(listOf("module-b"), loader.released)
+
+        assertEquals(1, manager.trimTo(0L, "test"))
+        assertEquals(listOf("a"), manager.entries().map { it.id })
+    }
+
+    @Test
+    fun modelLargerThanBudgetIsStillLoaded() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(1000L, loader)
+
+        manager.acquire("a")
+        val entry = manager.acquire("big")
+
+        assertEquals("module-big", entry.module)
+        assertEquals(listOf("module-a"), loader.released)
+        assertFalse(manager.fits(1L))
+    }
+
+    @Test
+    fun evictedModelIsReloadedWhenAcquiredAgain() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(500L, loader)
+
+        manager.acquire("a")
+        manager.acquire("b")
+        assertNull(manager.get("a"))
+
+        assertEquals("module-a", manager.acquire("a").module)
+        assertEquals(listOf("a", "b", "a"), loader.loads)
+    }
+
+    @Test
+    fun loadedModelIsNotLoadedTwice() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(1000L, loader)
+
+        val first = manager.acquire("a")
+        val second = manager.acquire("a")
+
+        assertSame(first, second)
+        assertEquals(listOf("a"), loader.loads)
+    }
+
+    @Test
+    fun recordsCostAndReportsEvictions() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(1000L, loader)
+        val evictions = ArrayList<String>()
+        manager.listener = ModuleManager.Listener { id, bytes, reason -> evictions.add("$id $bytes $reason") }
+
+        manager.acquire("a")
+        manager.acquire("b")
+        manager.setBudget(400L)
+
+        assertEquals(400L, manager.entries().single().residentBytes)
+        assertTrue(manager.entries().single().loadMillis >= 0)
+        assertEquals(listOf("a 400 budget lowered"), evictions)
+    }
+
+    @Test
+    fun releaseAllIncludesActive() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(1000L, loader)
+        manager.acquire("a")
+        manager.active = "a"
+
+        manager.releaseAll()
+
+        assertTrue(manager.isEmpty())
+        assertNull(manager.active)
+        assertEquals(listOf("module-a"), loader.released)
+    }
+
+    @Test
+    fun preloadLoadsInBackgroundOnce() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(1000L, loader)
+        val executor = ManualExecutor()
+
+        assertTrue(manager.preload("a", 400L, executor))
+        assertFalse(manager.preload("a", 400L, executor))
+        assertEquals(setOf("a"), manager.loading())
+        executor.runAll()
+
+        assertTrue(manager.contains("a"))
+        assertFalse(manager.preload("a", 400L, executor))
+        assertEquals("module-a", manager.acquire("a").module)
+        assertEquals(listOf("a"), loader.loads)
+    }
+
+    @Test
+    fun preloadIsSkippedWhenItWouldNotFit() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(1000L, loader)
+        val executor = ManualExecutor()
+        manager.acquire("a")
+        manager.acquire("b")
+
+        assertFalse(manager.preload("c", 400L, executor))
+        assertTrue(executor.tasks.isEmpty())
+    }
+
+    @Test
+    fun preloadLargerThanEstimatedIsDiscarded() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(1000L, loader)
+        val executor = ManualExecutor()
+        val evictions = ArrayList<String>()
+        manager.listener = ModuleManager.Listener { id, _, reason -> evictions.add("$id $reason") }
+        manager.acquire("a")
+
+        assertTrue(manager.preload("big", 400L, executor))
+        executor.runAll()
+
+        assertFalse(manager.contains("big"))
+        assertTrue(manager.contains("a"))
+        assertEquals(listOf("module-big"), loader.released)
+        assertEquals(listOf("big preload did not fit"), evictions)
+    }
+
+    @Test
+    fun cancelledPreloadDoesNotLoad() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(1000L, loader)
+        val executor = ManualExecutor()
+        manager.preload("a", 400L, executor)
+        manager.preload("b", 400L, executor)
+
+        assertEquals(1, manager.cancelPreloads(keep = "b"))
+        executor.runAll()
+
+        assertEquals(listOf("b"), loader.loads)
+        assertEquals(listOf("b"), manager.entries().map { it.id })
+        assertTrue(manager.loading().isEmpty())
+    }
+
+    @Test
+    fun acquireAdoptsQueuedPreload() {
+        val loader = FakeLoader(sizes)
+        val manager = ModuleManager(1000L, loader)
+        val executor = ManualExecutor()
+        manager.preload("a", 400L, executor)
+        manager.cancelPreloads()
+
+        // Acquired before the executor got to it: loaded here, despite the cancel
+        assertEquals("module-a", manager.acquire("a").module)
+        executor.runAll()
+
+        assertEquals(listOf("a"), loader.loads)
+        assertTrue(manager.contains("a"))
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+/**
+ * Unit tests for predicting the next LoRA model from [SwitchHistory].
+ */
+class SwitchHistoryTest {
+
+    private val models = listOf("a", "b", "c")
+
+    @Test
+    fun noHistoryPredictsNothing() {
+        assertNull(SwitchHistory().predictNext("a", models))
+    }
+
+    @Test
+    fun predictsTheModelUserCameFrom() {
+        val history = SwitchHistory()
+        history.record("a", "b")
+
+        assertEquals("a", history.predictNext("b", models))
+    }
+
+    @Test
+    fun predictsMostFrequentSuccessor() {
+        val history = SwitchHistory()
+        history.record("a", "b")
+        history.record("b", "a")
+        history.record("a", "c")
+        history.record("c", "a")
+        history.record("a", "b")
+        history.record("b", "a")
+
+        assertEquals("b", history.predictNext("a", models))
+    }
+
+    @Test
+    fun tiesGoToMostRecent() {
+        val history = SwitchHistory()
+        history.record("a", "b")
+        history.record("b", "a")
+        history.record("a", "c")
+        history.record("c", "a")
+
+        assertEquals("c", history.predictNext("a", models))
+    }
+
+    @Test
+    fun ignoresModelsNoLongerConfigured() {
+        val history = SwitchHistory()
+        history.record("a", "gone")
+
+        assertNull(history.predictNext("a", models))
+    }
+
+    @Test
+    fun keepsOnlyTheNewestSwitches() {
+        val history = SwitchHistory(capacity = 2)
+        history.record("a", "b")
+        history.record("a", "c")
+        history.record("c", "a")
+        history.record("a", "a")
+
+        assertEquals(listOf(SwitchHistory.Switch("a", "c"), SwitchHistory.Switch("c", "a")), history.toList())
+        assertEquals(history.toList(), SwitchHistory(history.toList(), 2).toList())
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+import java.util.Locale
+
+/**
+ * Benchmark of the UI-thread time spent per generated token with [TokenStreamCoalescer].
+ * Skipped unless the unit tests run with -Pbenchmarks=true.
+ */
+class TokenStreamCoalescerBenchmark {
+
+    /**
+     * Streams a long answer at the end of a long chat, measuring the time spent on the UI thread
+     * per generated token: before, each token was concatenated onto the message, the message was
+     * searched for in the chat and copied into it; now each frame publishes the buffered tokens
+     * into a known index. Results are printed to stdout; timings are not asserted.
+     */
+    @Test
+    fun uiTimePerToken() {
+        assumeTrue("Run with -Pbenchmarks=true", System.getProperty("benchmarks") == "true")
+        val tokens = List(ANSWER_TOKENS) { i -> if (i % 7 == 0) " token" else "s$i" }
+        val expected = tokens.joinToString("")
+
+        for (round in 0 until WARMUP_ROUNDS) {
+            perToken(tokens)
+            perFrame(tokens, 1)
+        }
+
+        val perTokenNanos = perToken(tokens)
+        System.out.println(String.format(Locale.US,
+            "UI time per token, %d tokens after %d messages: per-token publish=%d ns",
+            ANSWER_TOKENS, HISTORY_MESSAGES, perTokenNanos / ANSWER_TOKENS))
+        for (tokensPerFrame in intArrayOf(1, 2, 4)) {
+            val perFrameNanos = perFrame(tokens, tokensPerFrame)
+            System.out.println(String.format(Locale.US,
+                "  coalesced, %d token(s) per frame=%d ns",
+                tokensPerFrame, perFrameNanos / ANSWER_TOKENS))
+        }
+
+        assertEquals(expected, lastChat!!.last().text)
+    }
+
+    private var lastChat: MutableList<Message>? = null
+
+    private fun chatWithHistory(): MutableList<Message> {
+        val chat = ArrayList<Message>(HISTORY_MESSAGES + 1)
+        for (i in 0 until HISTORY_MESSAGES) {
+            chat.add(Message("Message $i", i % 2 == 0, MessageType.TEXT, i / 2))
+        }
+        return chat
+    }
+
+    /** The old path: everything below ran once per token. */
+    private fun perToken(tokens: List<String>): Long {
+        val chat = chatWithHistory()
+        var result = Message("", false, MessageType.TEXT, HISTORY_MESSAGES)
+        chat.add(result)
+
+        val start = System.nanoTime()
+        for (token in tokens) {
+            result.appendText(token)
+            val index = chat.indexOfLast { it === result }
+            val updated = result.copy()
+            chat[index] = updated
+            result = updated
+        }
+        val elapsed = System.nanoTime() - start
+        lastChat = chat
+        return elapsed
+    }
+
+    /** The coalesced path: only the frames' publishes are timed, appends run on the model's thread. */
+    private fun perFrame(tokens: List<String>, tokensPerFrame: Int): Long {
+        val chat = chatWithHistory()
+        var result = Message("", false, MessageType.TEXT, HISTORY_MESSAGES)
+        val resultIndex = chat.size
+        chat.add(result)
+
+        val frames = ArrayList<Runnable>()
+        val stream = TokenStreamCoalescer({ frames.add(it) }) { text, thinking ->
+            val updated = result.copy(text, thinking)
+            chat[resultIndex] = updated
+            result = updated
+        }
+
+        var uiNanos = 0L
+        tokens.forEachIndexed { i, token ->
+            stream.append(token)
+            if ((i + 1) % tokensPerFrame == 0) {
+                val start = System.nanoTime()
+                runFrames(frames)
+                uiNanos += System.nanoTime() - start
+            }
+        }
+        val start = System.nanoTime()
+        stream.flush()
+        uiNanos += System.nanoTime() - start
+        lastChat = chat
+        return uiNanos
+    }
+
+    private fun runFrames(frames: MutableList<Runnable>) {
+        val due = ArrayList(frames)
+        frames.clear()
+        due.forEach { it.run() }
+    }
+
+    companion object {
+        private const val HISTORY_MESSAGES = 400
+        private const val ANSWER_TOKENS = 2000
+        private const val WARMUP_ROUNDS = 5
+    }
+}
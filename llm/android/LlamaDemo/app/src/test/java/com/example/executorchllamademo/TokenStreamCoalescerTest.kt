@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.executorchllamademo
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Unit tests for streaming tokens through [TokenStreamCoalescer].
+ */
+class TokenStreamCoalescerTest {
+
+    /** Scheduler that holds frames until the test runs them. */
+    private class ManualFrames : TokenStreamCoalescer.FrameScheduler {
+        val pending = ArrayList<Runnable>()
+
+        override fun scheduleFrame(frame: Runnable) {
+            pending.add(frame)
+        }
+
+        fun runFrame() {
+            val frames = ArrayList(pending)
+            pending.clear()
+            frames.forEach { it.run() }
+        }
+    }
+
+    private class Published {
+        val texts = ArrayList<String>()
+        val thinking = ArrayList<String>()
+
+        fun record(text: String, thinkingContent: String) {
+            texts.add(text)
+            thinking.add(thinkingContent)
+        }
+    }
+
+    @Test
+    fun tokensBeforeAFrameArePublishedOnce() {
+        val frames = ManualFrames()
+        val published = Published()
+        val stream = TokenStreamCoalescer(frames, published::record)
+
+        stream.append("Hello")
+        stream.append(",")
+        stream.append(" world")
+
+        assertEquals(1, frames.pending.size)
+        assertTrue(published.texts.isEmpty())
+
+        frames.runFrame()
+
+        assertEquals(listOf("Hello, world"), published.texts)
+    }
+
+    @Test
+    fun eachFrameSchedulesTheNext() {
+        val frames = ManualFrames()
+        val published = Published()
+        val stream = TokenStreamCoalescer(frames, published::record)
+
+        stream.append("a")
+        frames.runFrame()
+        stream.append("b")
+        assertEquals(1, frames.pending.size)
+        frames.runFrame()
+
+        assertEquals(listOf("a", "ab"), published.texts)
+    }
+
+    @Test
+    fun thinkingIsKeptApartFromText() {
+        val frames = ManualFrames()
+        val published = Published()
+        val stream = TokenStreamCoalescer(frames, published::record)
+
+        stream.appendThinking("Let me see.")
+        frames.runFrame()
+        stream.append("42")
+        frames.runFrame()
+
+        assertEquals(listOf("", "42"), published.texts)
+        assertEquals(listOf("Let me see.", "Let me see."), published.thinking)
+        assertTrue(stream.hasText)
+        assertTrue(stream.hasThinking)
+    }
+
+    @Test
+    fun flushWithoutNewTokensPublishesNothing() {
+        val frames = ManualFrames()
+        val published = Published()
+        val stream = TokenStreamCoalescer(frames, published::record)
+
+        stream.append("done")
+        stream.flush()
+        // The frame scheduled for "done" still runs, but has nothing left to publish
+        frames.runFrame()
+        stream.flush()
+        stream.append("")
+
+        assertEquals(listOf("done"), published.texts)
+        assertTrue(frames.pending.isEmpty())
+    }
+
+    @Test
+    fun resetDropsTokensOfThePreviousAnswer() {
+        val frames = ManualFrames()
+        val published = Published()
+        val stream = TokenStreamCoalescer(frames, published::record)
+
+        stream.append("old")
+        stream.reset()
+        frames.runFrame()
+
+        assertTrue(published.texts.isEmpty())
+        assertFalse(stream.hasText)
+
+        stream.append("new")
+        frames.runFrame()
+        assertEquals(listOf("new"), published.texts)
+    }
+}
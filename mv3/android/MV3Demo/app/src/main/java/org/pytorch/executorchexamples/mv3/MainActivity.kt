@@ -62,6 +62,7 @@ import java.io.FileOutputStream
 import java.io.InputStream
 import java.net.HttpURLConnection
 import java.net.URL
+import java.nio.FloatBuffer
 import java.util.concurrent.Executors
 import kotlin.math.exp
 
@@ -414,8 +415,7 @@ class MainActivity : ComponentActivity() {
             val outputTensor = loadedModule.forward(EValue.from(inputTensor))[0].toTensor()
             val inferenceTime = SystemClock.elapsedRealtime() - startTime
 
-            val scores = outputTensor.dataAsFloatArray
-            val top3 = getTopK(scores, 3)
+            val top3 = getTopK(TensorBuffers.floatView(outputTensor), 3)
 
             val results = top3.map { (index, score) ->
                 val label = if (index in ImageNetClasses.IMAGENET_CLASSES.indices) {
@@ -499,8 +499,7 @@ class MainActivity : ComponentActivity() {
             val outputTensor = loadedModule.forward(EValue.from(inputTensor))[0].toTensor()
             val inferenceTime = SystemClock.elapsedRealtime() - startTime
 
-            val scores = outputTensor.dataAsFloatArray
-            val top3 = getTopK(scores, 3)
+            val top3 = getTopK(TensorBuffers.floatView(outputTensor), 3)
             
             val results = top3.map { (index, score) ->
                 val label = if (index in ImageNetClasses.IMAGENET_CLASSES.indices) {
@@ -514,21 +513,35 @@ class MainActivity : ComponentActivity() {
             results to inferenceTime
         }
     
-    // Softmax function
-    private fun softmax(scores: FloatArray): FloatArray {
-        val max = scores.maxOrNull() ?: 0f
-        val expScores = scores.map { exp(it - max) }
-        val sumExp = expScores.sum()
-        return expScores.map { (it / sumExp).toFloat() }.toFloatArray()
-    }
+    /**
+     * Returns the [k] highest-scoring classes with their softmax probabilities, reading the
+     * logits in place. Only the top k are normalized, so nothing is allocated per class.
+     */
+    private fun getTopK(scores: FloatBuffer, k: Int): List<Pair<Int, Float>> {
+        val count = scores.limit()
+        val topIndex = IntArray(k) { -1 }
+        val topScore = FloatArray(k) { Float.NEGATIVE_INFINITY }
+        for (c in 0 until count) {
+            val score = scores.get(c)
+            if (score <= topScore[k - 1]) continue
+            var slot = k - 1
+            while (slot > 0 && score > topScore[slot - 1]) {
+                topScore[slot] = topScore[slot - 1]
+                topIndex[slot] = topIndex[slot - 1]
+                slot--
+            }
+            topScore[slot] = score
+            topIndex[slot] = c
+        }
 
-    private fun getTopK(scores: FloatArray, k: Int): List<Pair<Int, Float>> {
-        val probabilities = softmax(scores)
-        
-        return probabilities.withIndex()
-            .sortedByDescending { it.value }
-            .take(k)
-            .map { it.index to it.value }
+        val max = topScore[0]
+        var sumExp = 0.0
+        for (c in 0 until count) {
+            sumExp += exp((scores.get(c) - max).toDouble())
+        }
+        return (0 until minOf(k, count)).map { i ->
+            topIndex[i] to (exp((topScore[i] - max).toDouble()) / sumExp).toFloat()
+        }
     }
 
     private fun showToast(message: String) {